@@ -0,0 +1,94 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures client authentication, as performed for every token request by
+ * <code>AuthenticatorVerticle</code>, against in-memory registries of
+ * different sizes. Secrets are plain text, so no KDF runs and the handler is
+ * called before <code>authenticate</code> returns. Logging is raised to
+ * ERROR so that the console is not measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@State(Scope.Benchmark)
+public class AuthenticationBenchmark {
+    private static final int PROBES = 4096;
+
+    @Param({"1000", "100000", "1000000"})
+    public int clientCount;
+
+    private Vertx vertx;
+    private ClientAuthenticator authenticator;
+    private String[] ids;
+    private String[] secrets;
+    private int next;
+    private ClientConfig result;
+    private final Handler<AsyncResult<ClientConfig>> handler = outcome -> result = outcome.result();
+
+    @Setup(Level.Trial)
+    public void createAuthenticator() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("io.miscellanea")).setLevel(ch.qos.logback.classic.Level.ERROR);
+
+        var clients = new HashMap<String, ClientConfig>();
+        var allIds = new String[clientCount];
+        var allSecrets = new String[clientCount];
+        var roles = new JsonArray().add("basic");
+        for (int idx = 0; idx < clientCount; idx++) {
+            allIds[idx] = UUID.randomUUID().toString();
+            allSecrets[idx] = UUID.randomUUID().toString();
+            clients.put(allIds[idx], new ClientConfig(allIds[idx], ClientSecret.parse(allSecrets[idx]), roles));
+        }
+
+        var random = new Random(42);
+        ids = new String[PROBES];
+        secrets = new String[PROBES];
+        for (int idx = 0; idx < PROBES; idx++) {
+            int client = random.nextInt(clientCount);
+            ids[idx] = allIds[client];
+            secrets[idx] = allSecrets[client];
+        }
+
+        vertx = Vertx.vertx();
+        var kdfPool = new BoundedWorkerPool(vertx, BoundedWorkerPool.KDF_POOL, 1, 256);
+        authenticator = new ClientAuthenticator(new ClientRegistry(clients), kdfPool, 10_000, 60);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeVertx() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public ClientConfig validSecret() {
+        int idx = next++ & (PROBES - 1);
+        authenticator.authenticate(ids[idx], secrets[idx], handler);
+        return result;
+    }
+
+    @Benchmark
+    public ClientConfig wrongSecret() {
+        int idx = next++ & (PROBES - 1);
+        authenticator.authenticate(ids[idx], "wrong", handler);
+        return result;
+    }
+
+    @Benchmark
+    public ClientConfig unknownClient() {
+        authenticator.authenticate(secrets[next++ & (PROBES - 1)], "wrong", handler);
+        return result;
+    }
+}
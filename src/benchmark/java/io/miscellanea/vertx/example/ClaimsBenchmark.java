@@ -0,0 +1,48 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parts of token issuance that do not depend on the signing
+ * algorithm: serializing a token's claims, and wrapping a cached token in a
+ * token response.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@State(Scope.Thread)
+public class ClaimsBenchmark {
+    private static final String SUBJECT = "6fe630e9-7e07-4ceb-9887-41e195a07917";
+
+    private JwtEncoder encoder;
+    private ClaimTemplate template;
+    private IssuedToken token;
+    private long now;
+
+    @Setup
+    public void createEncoder() {
+        JsonObject config = new JsonObject().put("idp-algorithm", "HS256").put("keys", SigningBenchmark.keysFor("HS256"));
+
+        encoder = new JwtEncoder(new JwtSigner(SigningKey.load(config)), "vertxjwt", 3600);
+        template = ClaimTemplate.of("vertxjwt", SUBJECT, new JsonArray().add("basic").toBuffer().getBytes(), 3600);
+        token = encoder.issue(template);
+        now = System.currentTimeMillis() / 1000;
+    }
+
+    @Benchmark
+    public int generateClaims() {
+        return encoder.encodeClaims(template);
+    }
+
+    @Benchmark
+    public Buffer wrapCachedToken() {
+        return JwtEncoder.wrap(token, now);
+    }
+}
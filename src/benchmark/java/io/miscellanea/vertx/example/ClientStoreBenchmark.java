@@ -0,0 +1,114 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the in-memory registry built from <code>client-config</code> with
+ * the memory-mapped store: the time to open each at startup, and the latency
+ * of a lookup. Client files are generated once per size in the temporary
+ * directory and reused by later runs.
+ *
+ * <p>The 10M config store needs a heap of roughly 12 GB; pass
+ * <code>-jvmArgs -Xmx12g</code> or restrict the run with
+ * <code>-p store=mapped</code>.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class ClientStoreBenchmark {
+    private static final int PROBES = 4096;
+
+    @Param({"1000000", "10000000"})
+    public int clientCount;
+
+    @Param({"config", "mapped"})
+    public String store;
+
+    private Path configFile;
+    private Path storeFile;
+    private ClientStore clients;
+    private String[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void openStore() throws IOException {
+        // Registering millions of clients at debug level would measure the console.
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("io.miscellanea")).setLevel(ch.qos.logback.classic.Level.INFO);
+
+        var dir = Path.of(System.getProperty("java.io.tmpdir"));
+        configFile = dir.resolve("idp-clients-" + clientCount + ".json");
+        storeFile = dir.resolve("idp-clients-" + clientCount + ".store");
+        if (!Files.exists(configFile)) {
+            writeConfig(configFile, clientCount);
+        }
+        if (!Files.exists(storeFile)) {
+            ClientStoreImporter.importClients(configFile, storeFile);
+        }
+
+        clients = open();
+
+        var random = new Random(42);
+        probes = new String[PROBES];
+        for (int idx = 0; idx < PROBES; idx++) {
+            probes[idx] = clientId(random.nextInt(clientCount));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public ClientConfig lookup() {
+        return clients.lookup(probes[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public ClientStore startup() throws IOException {
+        return open();
+    }
+
+    private ClientStore open() throws IOException {
+        if ("mapped".equals(store)) {
+            return MappedClientStore.open(storeFile);
+        }
+
+        // Mirror startup: decode the configuration, then build the registry.
+        var config = new JsonObject(Files.readString(configFile));
+        return ClientRegistry.fromConfig(config);
+    }
+
+    private static String clientId(int idx) {
+        return new UUID(0x6fe630e97e074cebL, idx).toString();
+    }
+
+    private static void writeConfig(Path file, int count) throws IOException {
+        String[] roleSets = {"[\"basic\"]", "[\"basic\",\"admin\"]", "[\"reader\"]", "[]"};
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\"client-config\":[");
+            for (int idx = 0; idx < count; idx++) {
+                if (idx > 0) {
+                    out.write(',');
+                }
+                out.write("{\"id\":\"" + clientId(idx) + "\",\"secret\":\"" + UUID.randomUUID()
+                        + "\",\"roles\":" + roleSets[idx & 3] + "}");
+            }
+            out.write("]}");
+        }
+    }
+}
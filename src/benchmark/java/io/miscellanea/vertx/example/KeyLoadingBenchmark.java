@@ -0,0 +1,52 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading keys at startup and on rotation: formatting a PEM file
+ * that is already in memory, loading one from the classpath, and loading
+ * and parsing a signing key. Logging is raised to INFO so that the console
+ * is not measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@State(Scope.Thread)
+public class KeyLoadingBenchmark {
+    @Param({"RS256", "ES256"})
+    public String algorithm;
+
+    private JsonObject config;
+    private List<String> pem;
+
+    @Setup
+    public void readKey() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("io.miscellanea")).setLevel(ch.qos.logback.classic.Level.INFO);
+
+        config = new JsonObject().put("idp-algorithm", algorithm).put("keys", SigningBenchmark.keysFor(algorithm));
+        var path = config.getJsonObject("keys").getString("private");
+        pem = FileUtils.readTextFileFromClasspath(path.substring("classpath:".length()));
+    }
+
+    @Benchmark
+    public String formatPem() {
+        return FileUtils.formatPemFileForVertx(pem);
+    }
+
+    @Benchmark
+    public String loadKey() {
+        return new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, config).loadKey();
+    }
+
+    @Benchmark
+    public SigningKey loadSigningKey() {
+        return SigningKey.load(config);
+    }
+}
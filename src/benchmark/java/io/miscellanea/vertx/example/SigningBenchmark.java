@@ -0,0 +1,75 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single-threaded token issuance throughput, i.e. tokens per second
+ * per core, for each supported signing algorithm. EdDSA requires Java 15+.
+ * The <code>issueToken</code> benchmark covers the whole response; the
+ * <code>issueCachedToken</code> benchmark stops before wrapping, as the
+ * token cache does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@State(Scope.Thread)
+public class SigningBenchmark {
+    @Param({"RS256", "RS384", "RS512", "ES256", "ES384", "ES512", "EdDSA", "HS256", "HS384", "HS512"})
+    public String algorithm;
+
+    private JwtEncoder encoder;
+    private ClaimTemplate template;
+
+    @Setup
+    public void createEncoder() {
+        JsonObject config = new JsonObject().put("idp-algorithm", algorithm).put("keys", keysFor(algorithm));
+
+        encoder = new JwtEncoder(new JwtSigner(SigningKey.load(config)), "vertxjwt", 3600);
+        template = ClaimTemplate.of("vertxjwt", "6fe630e9-7e07-4ceb-9887-41e195a07917",
+                new JsonArray().add("basic").toBuffer().getBytes(), 3600);
+    }
+
+    @Benchmark
+    public Buffer issueToken() {
+        return encoder.encode(template);
+    }
+
+    @Benchmark
+    public IssuedToken issueCachedToken() {
+        return encoder.issue(template);
+    }
+
+    static JsonObject keysFor(String algorithm) {
+        switch (algorithm) {
+            case "RS256":
+            case "RS384":
+            case "RS512":
+                return new JsonObject()
+                        .put("private", "classpath:keys/idp-private.pem")
+                        .put("public", "classpath:keys/idp-public.pem");
+            case "ES256":
+            case "ES384":
+            case "ES512":
+                String prefix = "classpath:keys/" + algorithm.toLowerCase();
+                return new JsonObject()
+                        .put("private", prefix + "-private.pem")
+                        .put("public", prefix + "-public.pem");
+            case "EdDSA":
+                return new JsonObject()
+                        .put("private", "classpath:keys/ed25519-private.pem")
+                        .put("public", "classpath:keys/ed25519-public.pem");
+            case "HS256":
+                return new JsonObject().put("secret", "classpath:keys/hs256.key");
+            default:
+                // HS384 and HS512 need a key at least as long as their hash.
+                return new JsonObject().put("secret", "classpath:keys/hs512.key");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what a client that does not keep its connection open pays per
+ * token request on top of the request itself: a new TCP connection, a TLS
+ * handshake and one small HTTP/1.1 exchange. A <code>full</code> handshake
+ * discards the session afterwards; a <code>resumed</code> one lets the
+ * client offer it again, as a client with a session cache does when it
+ * reconnects. The server is configured by {@link TlsConfig} from PEM files,
+ * with session tickets on or off. Logging is raised to INFO.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@State(Scope.Benchmark)
+public class TlsHandshakeBenchmark {
+    private static final byte[] REQUEST =
+            "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"full", "resumed"})
+    public String handshake;
+
+    @Param({"TLSv1.2", "TLSv1.3"})
+    public String protocol;
+
+    @Param({"true", "false"})
+    public boolean sessionTickets;
+
+    private Vertx vertx;
+    private HttpServer server;
+    private SSLContext client;
+    private final byte[] response = new byte[1024];
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("io.miscellanea")).setLevel(ch.qos.logback.classic.Level.INFO);
+
+        var config = new JsonObject()
+                .put("keys", new JsonObject()
+                        .put("tls-certificate", "classpath:keys/tls-localhost-cert.pem")
+                        .put("tls-private", "classpath:keys/tls-localhost-key.pem"))
+                .put("tls", new JsonObject().put("http2", false).put("session-tickets", sessionTickets));
+
+        // Each parameter combination runs in its own fork, so the JVM-wide
+        // ticket setting is made before TLS is first used.
+        TlsConfig.configureSessionTickets(config);
+        var tls = TlsConfig.fromConfig(config);
+
+        vertx = Vertx.vertx();
+        var listening = new CompletableFuture<HttpServer>();
+        vertx.createHttpServer(tls.serverOptions())
+                .requestHandler(request -> request.response().end())
+                .listen(0, result -> {
+                    if (result.succeeded()) {
+                        tls.tuneSessionCache(vertx, result.result());
+                        listening.complete(result.result());
+                    } else {
+                        listening.completeExceptionally(result.cause());
+                    }
+                });
+        server = listening.get(10, TimeUnit.SECONDS);
+
+        client = SSLContext.getInstance("TLS");
+        client.init(null, new TrustManager[] {new TrustAll()}, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public boolean connect() throws IOException {
+        try (var socket = (SSLSocket) client.getSocketFactory().createSocket("localhost", server.actualPort())) {
+            socket.setTcpNoDelay(true);
+            socket.setEnabledProtocols(new String[] {protocol});
+            socket.startHandshake();
+
+            // Read the whole response: TLS 1.3 tickets arrive after the handshake.
+            socket.getOutputStream().write(REQUEST);
+            var in = socket.getInputStream();
+            while (in.read(response) >= 0) {
+                // Discard the response.
+            }
+
+            if (handshake.equals("full")) {
+                socket.getSession().invalidate();
+            }
+            return socket.getSession().isValid();
+        }
+    }
+
+    private static final class TrustAll implements X509TrustManager {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
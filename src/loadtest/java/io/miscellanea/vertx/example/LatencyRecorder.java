@@ -0,0 +1,118 @@
+package io.miscellanea.vertx.example;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the outcome of every request of one scenario: exact latencies,
+ * status codes and failures. Each load driver owns its recorders, so they
+ * need no locking; recorders are merged once the run is over.
+ *
+ * <p>Two latency series are kept. Raw latencies run from the moment a request
+ * was sent. Corrected latencies run from the moment it should have been sent,
+ * so stalls that delay sending are charged to the requests they delay
+ * rather than hidden, i.e. they are corrected for coordinated omission.
+ */
+final class LatencyRecorder {
+    private long[] raw = new long[1024];
+    private long[] corrected = new long[1024];
+    private int rawCount;
+    private int correctedCount;
+    private final Map<Integer, Long> statusCodes = new TreeMap<>();
+    private long failures;
+
+    // Methods
+    void recordResponse(int statusCode, long rawNanos, long correctedNanos) {
+        statusCodes.merge(statusCode, 1L, Long::sum);
+        recordRaw(rawNanos);
+        recordCorrected(correctedNanos);
+    }
+
+    /** Record a request that failed without a response, e.g. a timeout. */
+    void recordFailure(long rawNanos, long correctedNanos) {
+        failures++;
+        recordRaw(rawNanos);
+        recordCorrected(correctedNanos);
+    }
+
+    /**
+     * Correct closed-loop latencies. A closed loop only sends once the previous
+     * response arrives, so a slow response hides the requests that would have
+     * been sent in the meantime; like HdrHistogram's
+     * <code>recordValueWithExpectedInterval</code>, add a corrected sample for
+     * each of them.
+     *
+     * @param expectedIntervalNanos The usual time between requests of one user
+     */
+    void correctForExpectedInterval(long expectedIntervalNanos) {
+        if (expectedIntervalNanos <= 0) {
+            return;
+        }
+        for (int idx = 0; idx < rawCount; idx++) {
+            for (long missing = raw[idx] - expectedIntervalNanos; missing >= expectedIntervalNanos; missing -= expectedIntervalNanos) {
+                recordCorrected(missing);
+            }
+        }
+    }
+
+    void merge(LatencyRecorder other) {
+        for (int idx = 0; idx < other.rawCount; idx++) {
+            recordRaw(other.raw[idx]);
+        }
+        for (int idx = 0; idx < other.correctedCount; idx++) {
+            recordCorrected(other.corrected[idx]);
+        }
+        other.statusCodes.forEach((code, count) -> statusCodes.merge(code, count, Long::sum));
+        failures += other.failures;
+    }
+
+    /** @return The number of requests recorded, with or without a response */
+    long getRequests() {
+        return rawCount;
+    }
+
+    long getFailures() {
+        return failures;
+    }
+
+    Map<Integer, Long> getStatusCodes() {
+        return statusCodes;
+    }
+
+    /**
+     * Compute percentiles of the raw or corrected latencies.
+     *
+     * @param corrected Whether to use the corrected latencies
+     * @param percentiles The percentiles, e.g. 99.9
+     * @return The latencies, in nanoseconds, in the order requested
+     */
+    long[] percentiles(boolean corrected, double... percentiles) {
+        var samples = corrected ? Arrays.copyOf(this.corrected, correctedCount) : Arrays.copyOf(raw, rawCount);
+        Arrays.sort(samples);
+
+        var result = new long[percentiles.length];
+        for (int idx = 0; idx < percentiles.length; idx++) {
+            if (samples.length > 0) {
+                int rank = (int) Math.ceil(percentiles[idx] / 100 * samples.length);
+                result[idx] = samples[Math.min(samples.length - 1, Math.max(0, rank - 1))];
+            }
+        }
+        return result;
+    }
+
+    // Private methods
+    private void recordRaw(long nanos) {
+        if (rawCount == raw.length) {
+            raw = Arrays.copyOf(raw, raw.length * 2);
+        }
+        raw[rawCount++] = nanos;
+    }
+
+    private void recordCorrected(long nanos) {
+        if (correctedCount == corrected.length) {
+            corrected = Arrays.copyOf(corrected, corrected.length * 2);
+        }
+        corrected[correctedCount++] = nanos;
+    }
+}
@@ -0,0 +1,206 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Sends token requests from one event loop over its own connections to one
+ * IdP node and records the outcomes. A run has a warmup phase, whose requests
+ * are not recorded, followed by the measured phase; requests still in flight
+ * when it ends are awaited (or time out) before the driver reports that it
+ * is done.
+ *
+ * <p>In fixed mode, requests are scheduled at a constant rate and each is
+ * timed from its scheduled start, so a stalled server or a full connection
+ * pool delays the requests behind it and shows in the corrected latencies.
+ * In closed mode, each user sends its next request as soon as the previous
+ * one completes; its corrected latencies are derived from the raw ones once
+ * the run is over.
+ */
+final class LoadDriver extends AbstractVerticle {
+    private static final String TOKEN_PATH = "/api/oauth2/token";
+    private static final long TICK_MILLIS = 1;
+
+    // Fields
+    private final LoadTestOptions options;
+    private final int index;
+    private final long startNanos;
+    private final long measureNanos;
+    private final long endNanos;
+    private final LoadScenario[] schedule;
+    private final LatencyRecorder[] recorders = new LatencyRecorder[LoadScenario.values().length];
+    private final CountDownLatch done;
+
+    private HttpClient client;
+    private int connections;
+    private long nextSlot;
+    private long inFlight;
+    private boolean stopped;
+    private boolean finished;
+
+    // Constructors
+    LoadDriver(LoadTestOptions options, int index, long startNanos, CountDownLatch done) {
+        this.options = options;
+        this.index = index;
+        this.startNanos = startNanos;
+        this.measureNanos = startNanos + options.warmupSeconds * 1_000_000_000L;
+        this.endNanos = measureNanos + options.durationSeconds * 1_000_000_000L;
+        this.schedule = options.schedule();
+        this.nextSlot = index * 37L;
+        this.done = done;
+        for (int idx = 0; idx < recorders.length; idx++) {
+            recorders[idx] = new LatencyRecorder();
+        }
+    }
+
+    // Methods
+    @Override
+    public void start() {
+        connections = share(options.connections);
+        client = vertx.createHttpClient(
+                new HttpClientOptions()
+                        .setSsl(true)
+                        .setTrustAll(true)
+                        .setVerifyHost(false)
+                        .setDefaultHost(options.host)
+                        .setDefaultPort(options.port + index % options.nodes)
+                        .setKeepAlive(true)
+                        .setMaxPoolSize(connections));
+
+        long delayMillis = Math.max(1, (startNanos - System.nanoTime()) / 1_000_000);
+        if (options.mode == LoadTestOptions.Mode.FIXED) {
+            vertx.setTimer(delayMillis, id -> startFixedRate());
+        } else {
+            vertx.setTimer(delayMillis, id -> {
+                for (int user = 0; user < connections; user++) {
+                    sendClosedLoop();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void stop() {
+        client.close();
+    }
+
+    /** @return The recorder of each scenario, indexed by ordinal; read once the driver is done */
+    LatencyRecorder[] getRecorders() {
+        return recorders;
+    }
+
+    // Private methods
+
+    /** @return This driver's share of a total that is divided between all drivers */
+    private int share(int total) {
+        return total / options.drivers + (index < total % options.drivers ? 1 : 0);
+    }
+
+    private void startFixedRate() {
+        double ratePerDriver = (double) options.rate / options.drivers;
+        long intervalNanos = (long) (1_000_000_000L / ratePerDriver);
+
+        // Stagger the drivers so that their requests interleave.
+        long[] intended = {startNanos + intervalNanos * index / options.drivers};
+        vertx.setPeriodic(TICK_MILLIS, id -> {
+            long now = System.nanoTime();
+            while (intended[0] <= now && intended[0] < endNanos) {
+                send(intended[0], now);
+                intended[0] += intervalNanos;
+            }
+            if (intended[0] >= endNanos) {
+                vertx.cancelTimer(id);
+                stopped = true;
+                finishIfDrained();
+            }
+        });
+    }
+
+    private void sendClosedLoop() {
+        long now = System.nanoTime();
+        if (now >= endNanos) {
+            stopped = true;
+            finishIfDrained();
+        } else {
+            send(now, now);
+        }
+    }
+
+    private void send(long intendedNanos, long sentNanos) {
+        var scenario = schedule[(int) (nextSlot++ % schedule.length)];
+        var exchange = new Exchange(scenario, intendedNanos, sentNanos);
+        inFlight++;
+
+        var request = client.request(HttpMethod.POST, TOKEN_PATH);
+        request.handler(exchange::onResponse)
+                .exceptionHandler(exchange::onFailure)
+                .setTimeout(options.timeoutMillis)
+                .putHeader("Content-Type", "application/x-www-form-urlencoded")
+                .end(scenario.getBody());
+    }
+
+    private void complete(Exchange exchange, int statusCode) {
+        long now = System.nanoTime();
+        long raw = now - exchange.sentNanos;
+        long corrected = now - exchange.intendedNanos;
+
+        if (exchange.intendedNanos >= measureNanos && exchange.intendedNanos < endNanos) {
+            var recorder = recorders[exchange.scenario.ordinal()];
+            if (statusCode < 0) {
+                recorder.recordFailure(raw, corrected);
+            } else {
+                recorder.recordResponse(statusCode, raw, corrected);
+            }
+        }
+
+        inFlight--;
+        if (options.mode == LoadTestOptions.Mode.CLOSED) {
+            sendClosedLoop();
+        } else {
+            finishIfDrained();
+        }
+    }
+
+    private void finishIfDrained() {
+        if (stopped && inFlight == 0 && !finished) {
+            finished = true;
+            done.countDown();
+        }
+    }
+
+    /** One request and its timing; completes at most once. */
+    private final class Exchange {
+        private final LoadScenario scenario;
+        private final long intendedNanos;
+        private final long sentNanos;
+        private boolean completed;
+
+        private Exchange(LoadScenario scenario, long intendedNanos, long sentNanos) {
+            this.scenario = scenario;
+            this.intendedNanos = intendedNanos;
+            this.sentNanos = sentNanos;
+        }
+
+        private void onResponse(HttpClientResponse response) {
+            response.exceptionHandler(this::onFailure);
+            response.endHandler(end -> {
+                if (!completed) {
+                    completed = true;
+                    complete(this, response.statusCode());
+                }
+            });
+        }
+
+        private void onFailure(Throwable cause) {
+            if (!completed) {
+                completed = true;
+                complete(this, -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * The kinds of token request a load test sends. Each request body is built
+ * once and reused.
+ */
+public enum LoadScenario {
+    /** The pre-configured client with its secret. */
+    VALID("client_id=" + LoadScenario.CLIENT_ID + "&client_secret=" + LoadScenario.CLIENT_SECRET
+            + "&grant_type=client_credentials"),
+
+    /** The pre-configured client with the wrong secret. */
+    WRONG_SECRET("client_id=" + LoadScenario.CLIENT_ID + "&client_secret=wrong&grant_type=client_credentials"),
+
+    /** A client that is not registered. */
+    UNKNOWN_CLIENT("client_id=00000000-0000-0000-0000-000000000000&client_secret=" + LoadScenario.CLIENT_SECRET
+            + "&grant_type=client_credentials"),
+
+    /** A form body that cannot be decoded. */
+    MALFORMED("client_id=%zz&client_secret");
+
+    static final String CLIENT_ID = "6fe630e9-7e07-4ceb-9887-41e195a07917";
+    static final String CLIENT_SECRET = "a41a9717-3632-4c75-9806-5ccb6b66f8d6";
+
+    private final Buffer body;
+    private final String label;
+
+    LoadScenario(String body) {
+        this.body = Buffer.buffer(body);
+        this.label = name().toLowerCase().replace('_', '-');
+    }
+
+    /** @return The request body; it is shared and must not be modified */
+    public Buffer getBody() {
+        return body;
+    }
+
+    /** @return The scenario's name as used on the command line, e.g. <code>wrong-secret</code> */
+    public String getLabel() {
+        return label;
+    }
+
+    public static LoadScenario forLabel(String label) {
+        for (var scenario : values()) {
+            if (scenario.label.equals(label)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario '" + label + "'.");
+    }
+}
@@ -0,0 +1,284 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the token endpoint of a complete IdP over TLS and reports
+ * throughput and latency percentiles for each request scenario. Unless a
+ * <code>target</code> is given, the IdP is started in a child JVM with the
+ * same classpath, so the load generator and the server do not share a heap
+ * or a garbage collector. With <code>nodes=N</code>, N nodes are started as a
+ * cluster and the drivers are spread across them, to measure how throughput
+ * scales with the number of nodes.
+ *
+ * <p>Run with <code>mvn -P loadtest test-compile exec:exec
+ * -Dloadtest.args="..."</code>; see {@link LoadTestOptions#USAGE}.
+ */
+public class LoadTest {
+    private static final double[] PERCENTILES = {50, 99, 99.9, 100};
+    private static final String SERVER_LOG = "target/loadtest-server.log";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadTestOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        var workDir = Files.createTempDirectory("idp-loadtest");
+        var servers = new ArrayList<Process>();
+        try {
+            if (options.startServer) {
+                var cluster = "idp-loadtest-" + UUID.randomUUID();
+                for (int node = 0; node < options.nodes; node++) {
+                    servers.add(startServer(options, workDir, node, cluster));
+                }
+            }
+            var recorders = run(options);
+            report(options, recorders);
+        } finally {
+            for (var server : servers) {
+                server.destroy();
+            }
+            for (var server : servers) {
+                server.waitFor(10, TimeUnit.SECONDS);
+            }
+            try (var files = Files.walk(workDir)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // Private methods
+    private static LatencyRecorder[] run(LoadTestOptions options) throws InterruptedException {
+        System.out.printf("Running %s load against https://%s:%d%s for %d s after %d s of warmup...%n",
+                options.mode == LoadTestOptions.Mode.FIXED ? options.rate + " req/s of fixed-rate" : "closed-loop",
+                options.host, options.port,
+                options.nodes > 1 ? " to :" + (options.port + options.nodes - 1) : "",
+                options.durationSeconds, options.warmupSeconds);
+
+        var vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(options.drivers));
+        var done = new CountDownLatch(options.drivers);
+        var drivers = new ArrayList<LoadDriver>();
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        for (int idx = 0; idx < options.drivers; idx++) {
+            var driver = new LoadDriver(options, idx, startNanos, done);
+            drivers.add(driver);
+            vertx.deployVerticle(driver);
+        }
+
+        long limitSeconds = options.warmupSeconds + options.durationSeconds + options.timeoutMillis / 1000 + 10;
+        boolean finished = done.await(limitSeconds, TimeUnit.SECONDS);
+        var latch = new CountDownLatch(1);
+        vertx.close(closed -> latch.countDown());
+        latch.await(10, TimeUnit.SECONDS);
+        if (!finished) {
+            throw new IllegalStateException("The load drivers did not finish in " + limitSeconds + " s.");
+        }
+
+        var merged = new LatencyRecorder[LoadScenario.values().length];
+        for (int idx = 0; idx < merged.length; idx++) {
+            merged[idx] = new LatencyRecorder();
+            for (var driver : drivers) {
+                merged[idx].merge(driver.getRecorders()[idx]);
+            }
+        }
+
+        if (options.mode == LoadTestOptions.Mode.CLOSED) {
+            long intervalNanos = options.expectedIntervalMicros * 1000;
+            if (intervalNanos < 0) {
+                var all = new LatencyRecorder();
+                for (var recorder : merged) {
+                    all.merge(recorder);
+                }
+                intervalNanos = all.percentiles(false, 50)[0];
+            }
+            System.out.printf("Correcting closed-loop latencies with an expected interval of %.3f ms.%n",
+                    millis(intervalNanos));
+            for (var recorder : merged) {
+                recorder.correctForExpectedInterval(intervalNanos);
+            }
+        }
+        return merged;
+    }
+
+    private static void report(LoadTestOptions options, LatencyRecorder[] recorders) throws IOException {
+        var total = new LatencyRecorder();
+        var scenarios = new JsonArray();
+        var out = new PrintWriter(System.out, true);
+
+        out.printf("%n%-15s %9s %9s %7s  %-9s %9s %9s %9s %9s  %s%n",
+                "scenario", "requests", "req/s", "errors", "latency", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "status codes");
+        for (var scenario : options.mix.keySet()) {
+            var recorder = recorders[scenario.ordinal()];
+            total.merge(recorder);
+            printRow(out, options, scenario.getLabel(), recorder);
+            scenarios.add(toJson(options, recorder).put("scenario", scenario.getLabel()));
+        }
+        if (options.mix.size() > 1) {
+            printRow(out, options, "total", total);
+        }
+        out.println();
+        out.println(options.mode == LoadTestOptions.Mode.FIXED
+                ? "Corrected latencies run from each request's scheduled start; raw latencies from when it was sent."
+                : "Corrected latencies add the requests a closed loop would have sent during slow responses.");
+
+        if (options.jsonReport != null) {
+            var json = new JsonObject()
+                    .put("mode", options.mode.name().toLowerCase())
+                    .put("rate", options.mode == LoadTestOptions.Mode.FIXED ? options.rate : null)
+                    .put("connections", options.connections)
+                    .put("drivers", options.drivers)
+                    .put("nodes", options.nodes)
+                    .put("duration-seconds", options.durationSeconds)
+                    .put("warmup-seconds", options.warmupSeconds)
+                    .put("scenarios", scenarios)
+                    .put("total", toJson(options, total));
+            Files.write(Paths.get(options.jsonReport), json.encodePrettily().getBytes(StandardCharsets.UTF_8));
+            out.println("Wrote " + options.jsonReport + ".");
+        }
+    }
+
+    private static void printRow(PrintWriter out, LoadTestOptions options, String label, LatencyRecorder recorder) {
+        var corrected = recorder.percentiles(true, PERCENTILES);
+        var raw = recorder.percentiles(false, PERCENTILES);
+        out.printf("%-15s %9d %9.1f %7d  %-9s %9.3f %9.3f %9.3f %9.3f  %s%n",
+                label, recorder.getRequests(), (double) recorder.getRequests() / options.durationSeconds,
+                recorder.getFailures(), "corrected", millis(corrected[0]), millis(corrected[1]),
+                millis(corrected[2]), millis(corrected[3]), recorder.getStatusCodes());
+        out.printf("%-15s %9s %9s %7s  %-9s %9.3f %9.3f %9.3f %9.3f%n",
+                "", "", "", "", "raw", millis(raw[0]), millis(raw[1]), millis(raw[2]), millis(raw[3]));
+    }
+
+    private static JsonObject toJson(LoadTestOptions options, LatencyRecorder recorder) {
+        var statusCodes = new JsonObject();
+        recorder.getStatusCodes().forEach((code, count) -> statusCodes.put(code.toString(), count));
+        return new JsonObject()
+                .put("requests", recorder.getRequests())
+                .put("throughput", (double) recorder.getRequests() / options.durationSeconds)
+                .put("errors", recorder.getFailures())
+                .put("status-codes", statusCodes)
+                .put("corrected-ms", percentilesToJson(recorder.percentiles(true, PERCENTILES)))
+                .put("raw-ms", percentilesToJson(recorder.percentiles(false, PERCENTILES)));
+    }
+
+    private static JsonObject percentilesToJson(long[] values) {
+        return new JsonObject()
+                .put("p50", millis(values[0]))
+                .put("p99", millis(values[1]))
+                .put("p99.9", millis(values[2]))
+                .put("max", millis(values[3]));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Start an IdP node in a child JVM and wait until its verticles are
+     * deployed. Node <i>n</i> listens on <code>port + n</code>; when there is
+     * more than one, the nodes join a cluster of their own. The first node's
+     * output is copied to <code>target/loadtest-server.log</code>, the others'
+     * to <code>target/loadtest-server-n.log</code>.
+     */
+    private static Process startServer(LoadTestOptions options, Path workDir, int node, String cluster)
+            throws Exception {
+        var keyStore = workDir.resolve("tls-" + node + ".jks");
+        var password = options.keyStorePassword;
+        if (password != null) {
+            try (var in = LoadTest.class.getResourceAsStream("/keys/tls-localhost.jks")) {
+                Files.copy(in, keyStore, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } else {
+            password = UUID.randomUUID().toString();
+            generateKeyStore(keyStore, password);
+        }
+
+        var javaHome = Paths.get(System.getProperty("java.home"));
+        List<String> command = new ArrayList<>(List.of(
+                javaHome.resolve("bin").resolve("java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "-Dlogback.configurationFile=logback-loadtest.xml",
+                "-D" + ConfigProp.IDP_BIND_PORT + "=" + (options.port + node),
+                "-D" + ConfigProp.KEY_STORE + "=" + keyStore,
+                "-D" + ConfigProp.KEY_STORE_PASSWORD + "=" + password,
+                "-D" + ConfigProp.REVOCATION + "=" + new JsonObject()
+                        .put(RevocationList.FILE, workDir.resolve("revoked-tokens-" + node + ".log").toString())
+                        .encode()));
+        if (options.nodes > 1) {
+            command.add("-D" + ConfigProp.CLUSTER + "=" + new JsonObject().put(IdpCluster.NAME, cluster).encode());
+        }
+        command.addAll(options.serverProperties);
+        command.add(JwtIdpDeployer.class.getName());
+
+        var serverLog = node == 0 ? SERVER_LOG : SERVER_LOG.replace(".log", "-" + node + ".log");
+        System.out.println("Starting the IdP on port " + (options.port + node) + "; its log is " + serverLog + ".");
+        var server = new ProcessBuilder(command).redirectErrorStream(true).start();
+        var deployed = new CountDownLatch(1);
+        var log = Files.newBufferedWriter(Paths.get(serverLog), StandardCharsets.UTF_8);
+        var pump = new Thread(() -> {
+            try (var reader = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8));
+                 log) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    log.write(line);
+                    log.newLine();
+                    log.flush();
+                    if (line.contains("Deployed")) {
+                        deployed.countDown();
+                    }
+                }
+            } catch (IOException e) {
+                // The server has gone; startup fails or the run ends.
+            }
+        }, "idp-log");
+        pump.setDaemon(true);
+        pump.start();
+
+        if (!deployed.await(60, TimeUnit.SECONDS) || !server.isAlive()) {
+            server.destroy();
+            throw new IllegalStateException("The IdP did not start; see " + serverLog + ".");
+        }
+        return server;
+    }
+
+    /**
+     * Create a self-signed key pair for localhost. The bundled
+     * <code>tls-localhost.jks</code> is only used when its password is given.
+     */
+    private static void generateKeyStore(Path keyStore, String password) throws Exception {
+        var keytool = Paths.get(System.getProperty("java.home")).resolve("bin").resolve("keytool");
+        var process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "localhost",
+                "-keyalg", "RSA", "-keysize", "2048", "-dname", "CN=localhost", "-validity", "2",
+                "-storetype", "JKS", "-keystore", keyStore.toString(),
+                "-storepass", password, "-keypass", password)
+                .redirectErrorStream(true)
+                .start();
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("keytool failed: " + output);
+        }
+    }
+}
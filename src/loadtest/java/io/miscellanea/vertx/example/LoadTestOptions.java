@@ -0,0 +1,178 @@
+package io.miscellanea.vertx.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The settings of a load test, parsed from <code>key=value</code> arguments.
+ * Any argument of the form <code>server.name=value</code> is passed to the
+ * IdP as the system property <code>-Dname=value</code>.
+ */
+final class LoadTestOptions {
+    enum Mode {
+        /** Send requests on a fixed schedule, whether or not responses have arrived. */
+        FIXED,
+        /** Keep a fixed number of requests in flight, sending the next as each completes. */
+        CLOSED
+    }
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Arguments (key=value):",
+            "  mode=fixed|closed        fixed-rate (open loop) or closed loop [fixed]",
+            "  rate=N                   requests per second, fixed mode [500]",
+            "  connections=N            connections, and closed-loop users [16]",
+            "  drivers=N                driver verticles (event loops) [1]",
+            "  duration=S               measured seconds [30]",
+            "  warmup=S                 unmeasured seconds before measuring [5]",
+            "  mix=label:weight,...     valid, wrong-secret, unknown-client, malformed [valid:100]",
+            "  expected-interval-us=N   closed-loop correction interval [median latency]",
+            "  timeout-ms=N             request timeout [10000]",
+            "  target=host:port         test a running IdP instead of starting one",
+            "  port=N                   the port of the IdP the harness starts [18443]",
+            "  nodes=N                  IdP nodes on consecutive ports; more than one forms a cluster [1]",
+            "  keystore-password=P      use the bundled tls-localhost.jks with this password",
+            "  server.name=value        pass -Dname=value to the IdP",
+            "  json=path                also write the report as JSON");
+
+    // Fields
+    Mode mode = Mode.FIXED;
+    int rate = 500;
+    int connections = 16;
+    int drivers = 1;
+    int durationSeconds = 30;
+    int warmupSeconds = 5;
+    final Map<LoadScenario, Integer> mix = new LinkedHashMap<>();
+    long expectedIntervalMicros = -1;
+    int timeoutMillis = 10_000;
+    String host = "localhost";
+    int port = 18443;
+    int nodes = 1;
+    boolean startServer = true;
+    String keyStorePassword;
+    final List<String> serverProperties = new ArrayList<>();
+    String jsonReport;
+
+    // Factory methods
+    static LoadTestOptions parse(String[] args) {
+        var options = new LoadTestOptions();
+        for (var arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 1) {
+                throw new IllegalArgumentException("Expected key=value but found '" + arg + "'.");
+            }
+            var key = arg.substring(0, eq);
+            var value = arg.substring(eq + 1);
+
+            if (key.startsWith("server.")) {
+                options.serverProperties.add("-D" + key.substring("server.".length()) + "=" + value);
+                continue;
+            }
+            switch (key) {
+                case "mode":
+                    options.mode = Mode.valueOf(value.toUpperCase());
+                    break;
+                case "rate":
+                    options.rate = positive(key, value);
+                    break;
+                case "connections":
+                    options.connections = positive(key, value);
+                    break;
+                case "drivers":
+                    options.drivers = positive(key, value);
+                    break;
+                case "duration":
+                    options.durationSeconds = positive(key, value);
+                    break;
+                case "warmup":
+                    options.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "mix":
+                    options.parseMix(value);
+                    break;
+                case "expected-interval-us":
+                    options.expectedIntervalMicros = Long.parseLong(value);
+                    break;
+                case "timeout-ms":
+                    options.timeoutMillis = positive(key, value);
+                    break;
+                case "target":
+                    int colon = value.lastIndexOf(':');
+                    options.host = value.substring(0, colon);
+                    options.port = Integer.parseInt(value.substring(colon + 1));
+                    options.startServer = false;
+                    break;
+                case "port":
+                    options.port = positive(key, value);
+                    break;
+                case "nodes":
+                    options.nodes = positive(key, value);
+                    break;
+                case "keystore-password":
+                    options.keyStorePassword = value;
+                    break;
+                case "json":
+                    options.jsonReport = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument '" + key + "'.");
+            }
+        }
+
+        if (options.mix.isEmpty()) {
+            options.mix.put(LoadScenario.VALID, 100);
+        }
+        if (options.nodes > options.connections) {
+            throw new IllegalArgumentException("connections must be at least nodes.");
+        }
+        // Each node needs a driver of its own.
+        options.drivers = Math.max(options.drivers, options.nodes);
+        if (options.drivers > options.connections) {
+            options.drivers = options.connections;
+        }
+        return options;
+    }
+
+    // Methods
+
+    /** @return The scenario of each slot of a 100-slot schedule, interleaved by weight */
+    LoadScenario[] schedule() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        var slots = new LoadScenario[100];
+        var credit = new double[LoadScenario.values().length];
+        for (int slot = 0; slot < slots.length; slot++) {
+            LoadScenario next = null;
+            for (var entry : mix.entrySet()) {
+                int ordinal = entry.getKey().ordinal();
+                credit[ordinal] += (double) entry.getValue() / total;
+                if (next == null || credit[ordinal] > credit[next.ordinal()]) {
+                    next = entry.getKey();
+                }
+            }
+            credit[next.ordinal()] -= 1;
+            slots[slot] = next;
+        }
+        return slots;
+    }
+
+    // Private methods
+    private void parseMix(String value) {
+        mix.clear();
+        for (var part : value.split(",")) {
+            var pair = part.split(":");
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1]) : 1;
+            if (weight > 0) {
+                mix.put(LoadScenario.forLabel(pair[0].trim()), weight);
+            }
+        }
+    }
+
+    private static int positive(String key, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed < 1) {
+            throw new IllegalArgumentException(key + " must be positive.");
+        }
+        return parsed;
+    }
+}
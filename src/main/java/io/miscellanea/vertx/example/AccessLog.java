@@ -0,0 +1,423 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A structured access and audit log, written as one JSON object per line.
+ *
+ * <p>Records are copied into a ring buffer of slots allocated up front, so
+ * recording on an event loop never blocks, never allocates and never formats
+ * anything. A background writer drains the buffer in batches, formats each
+ * record and writes the batch with a single call. When the buffer is full,
+ * records are dropped and counted rather than held up behind a slow disk.
+ *
+ * <p>Two kinds of record can be enabled separately: <code>access</code>
+ * records describe every HTTP request, and <code>audit</code> records describe
+ * security events such as failed authentications and revocations. A disabled
+ * kind costs a field read; callers check {@link #isAccessEnabled()} or
+ * {@link #isAuditEnabled()} before gathering a record's fields.
+ *
+ * <p>No record has a field for a token or a secret. The free-text fields,
+ * which clients control, are escaped, truncated and masked if they look like
+ * a JWT, so a client that sends a token in the wrong field does not leak it.
+ *
+ * @author Jason Hallford
+ */
+public final class AccessLog implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(AccessLog.class);
+  public static final String ACCESS = "access";
+  public static final String AUDIT = "audit";
+  public static final String FILE = "file";
+  public static final String BUFFER_SIZE = "buffer-size";
+  public static final String FLUSH_INTERVAL_MS = "flush-interval-ms";
+  public static final String STANDARD_OUTPUT = "-";
+  static final int MAX_FIELD_LENGTH = 128;
+  static final String REDACTED = "[redacted]";
+
+  /** The events that are logged. */
+  public enum Event {
+    REQUEST,
+    AUTHENTICATION_FAILED,
+    TOKEN_REVOKED,
+    REVOCATION_REFUSED;
+
+    private final String label = this.name().toLowerCase(Locale.ROOT).replace('_', '-');
+  }
+
+  private final boolean accessEnabled;
+  private final boolean auditEnabled;
+  private final Slot[] ring;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private volatile long tail;
+  private final LongAdder dropped = new LongAdder();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private final WritableByteChannel out;
+  private final long flushIntervalNanos;
+  private final Thread writer;
+  private final StringBuilder line = new StringBuilder(256);
+
+  // Constructors
+
+  /**
+   * Start a log and its background writer.
+   *
+   * @param out Where records are written
+   * @param accessEnabled Whether request records are kept
+   * @param auditEnabled Whether security events are kept
+   * @param bufferSize The number of records buffered; rounded up to a power
+   *     of two
+   * @param flushIntervalMs How often, at most, the writer sleeps between
+   *     batches, in milliseconds
+   */
+  public AccessLog(
+      WritableByteChannel out,
+      boolean accessEnabled,
+      boolean auditEnabled,
+      int bufferSize,
+      long flushIntervalMs) {
+    this(out, accessEnabled, auditEnabled, bufferSize, flushIntervalMs, true);
+    Runtime.getRuntime().addShutdownHook(new Thread(this::close, "idp-access-log-shutdown"));
+  }
+
+  /** Create a log that, without a background writer, is only written by {@link #flush()}. */
+  AccessLog(
+      WritableByteChannel out,
+      boolean accessEnabled,
+      boolean auditEnabled,
+      int bufferSize,
+      long flushIntervalMs,
+      boolean background) {
+    assert out != null : "out must not be null.";
+    assert bufferSize > 0 : "bufferSize must be positive.";
+    assert flushIntervalMs > 0 : "flushIntervalMs must be positive.";
+
+    this.out = out;
+    this.accessEnabled = accessEnabled;
+    this.auditEnabled = auditEnabled;
+    int capacity = Math.max(2, Integer.highestOneBit(bufferSize - 1) << 1);
+    this.ring = new Slot[capacity];
+    for (int idx = 0; idx < capacity; idx++) {
+      this.ring[idx] = new Slot(idx - capacity);
+    }
+    this.mask = capacity - 1;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+
+    this.writer = new Thread(this::drainUntilInterrupted, "idp-access-log");
+    this.writer.setDaemon(true);
+    if (background) {
+      this.writer.start();
+    }
+  }
+
+  // Factory methods
+
+  /**
+   * Create a log as described by the <code>access-log</code> element of the
+   * provided configuration. Opening a file blocks, so call this from a worker
+   * thread.
+   *
+   * @param config The IdP configuration
+   * @return The log, or <code>null</code> if both kinds of record are disabled
+   */
+  public static AccessLog fromConfig(JsonObject config) {
+    var logConfig = config.getJsonObject(ConfigProp.ACCESS_LOG, new JsonObject());
+    var access = logConfig.getBoolean(ACCESS, false);
+    var audit = logConfig.getBoolean(AUDIT, true);
+    if (!access && !audit) {
+      LOGGER.info("Access and audit logging disabled.");
+      return null;
+    }
+
+    var bufferSize = logConfig.getInteger(BUFFER_SIZE, 8192);
+    var flushInterval = logConfig.getLong(FLUSH_INTERVAL_MS, 200L);
+    if (bufferSize < 1 || bufferSize > 1 << 24 || flushInterval < 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.ACCESS_LOG
+              + "' is invalid: buffer-size must be between 1 and 16777216 and "
+              + "flush-interval-ms must be positive.");
+    }
+
+    var file = logConfig.getString(FILE, STANDARD_OUTPUT);
+    WritableByteChannel out;
+    if (STANDARD_OUTPUT.equals(file)) {
+      out = Channels.newChannel(new FileOutputStream(FileDescriptor.out));
+    } else {
+      try {
+        out =
+            Files.newByteChannel(
+                Path.of(file),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+      } catch (IOException e) {
+        throw new IdpException("Unable to open access log " + file + ".", e);
+      }
+    }
+
+    LOGGER.info(
+        "Writing {}{}{} records to {}.",
+        access ? "access" : "",
+        access && audit ? " and " : "",
+        audit ? "audit" : "",
+        STANDARD_OUTPUT.equals(file) ? "standard output" : file);
+    return new AccessLog(out, access, audit, bufferSize, flushInterval);
+  }
+
+  // Methods
+
+  /** @return <code>true</code> if request records are kept */
+  public boolean isAccessEnabled() {
+    return this.accessEnabled;
+  }
+
+  /** @return <code>true</code> if security events are kept */
+  public boolean isAuditEnabled() {
+    return this.auditEnabled;
+  }
+
+  /**
+   * Record a completed request, if request records are kept.
+   *
+   * @param endpoint The endpoint that served the request
+   * @param status The response's status code
+   * @param durationNanos How long the request took
+   * @param clientId The client named by the request, if any
+   * @param remote The address the request came from
+   */
+  public void access(
+      IdpMetrics.Endpoint endpoint,
+      int status,
+      long durationNanos,
+      String clientId,
+      String remote) {
+    if (this.accessEnabled) {
+      this.append(Event.REQUEST, endpoint, status, durationNanos, clientId, remote, null);
+    }
+  }
+
+  /**
+   * Record a security event, if security events are kept.
+   *
+   * @param event What happened
+   * @param endpoint The endpoint that served the request
+   * @param clientId The client concerned, if known
+   * @param remote The address the request came from
+   * @param jti The identifier of the token concerned, if any
+   */
+  public void audit(
+      Event event, IdpMetrics.Endpoint endpoint, String clientId, String remote, String jti) {
+    if (this.auditEnabled) {
+      this.append(event, endpoint, 0, -1, clientId, remote, jti);
+    }
+  }
+
+  /**
+   * Write every record buffered so far and stop the background writer. Later
+   * records are dropped.
+   */
+  public void close() {
+    if (!this.writer.isAlive()) {
+      this.flush();
+      return;
+    }
+    this.writer.interrupt();
+    try {
+      this.writer.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** @return The log's counters as JSON */
+  public JsonObject stats() {
+    return new JsonObject()
+        .put("written", this.written.get())
+        .put("dropped", this.dropped.sum())
+        .put("batches", this.batches.get())
+        .put("buffered", this.head.get() - this.tail);
+  }
+
+  // Package methods
+
+  /** Write every record published so far; used by tests. */
+  synchronized void flush() {
+    this.drain();
+  }
+
+  /**
+   * Mask a client-controlled value: control characters are escaped by the
+   * caller, JWT-shaped values are replaced and long values are truncated.
+   */
+  static String redact(String value) {
+    if (value.startsWith("eyJ") && value.indexOf('.') > 0) {
+      return REDACTED;
+    }
+    if (value.length() > MAX_FIELD_LENGTH) {
+      return value.substring(0, MAX_FIELD_LENGTH) + "...";
+    }
+    return value;
+  }
+
+  // Private methods
+  private void append(
+      Event event,
+      IdpMetrics.Endpoint endpoint,
+      int status,
+      long durationNanos,
+      String clientId,
+      String remote,
+      String jti) {
+    long sequence;
+    do {
+      sequence = this.head.get();
+      if (sequence - this.tail >= this.ring.length) {
+        this.dropped.increment();
+        return;
+      }
+    } while (!this.head.compareAndSet(sequence, sequence + 1));
+
+    var slot = this.ring[(int) (sequence & this.mask)];
+    slot.timestamp = System.currentTimeMillis();
+    slot.event = event;
+    slot.endpoint = endpoint;
+    slot.status = status;
+    slot.durationNanos = durationNanos;
+    slot.clientId = clientId;
+    slot.remote = remote;
+    slot.jti = jti;
+    slot.published = sequence;
+
+    // Wake the writer every half buffer's worth of records, so a burst is
+    // written before the buffer fills.
+    if ((sequence & (this.mask >> 1)) == 0) {
+      LockSupport.unpark(this.writer);
+    }
+  }
+
+  private void drainUntilInterrupted() {
+    while (!Thread.currentThread().isInterrupted()) {
+      LockSupport.parkNanos(this, this.flushIntervalNanos);
+      this.flush();
+    }
+    this.flush();
+  }
+
+  private void drain() {
+    long next = this.tail;
+    int count = 0;
+    var batch = new StringBuilder(4096);
+    while (true) {
+      var slot = this.ring[(int) (next & this.mask)];
+      if (slot.published != next) {
+        break;
+      }
+      this.format(slot, batch);
+      slot.clear();
+      next++;
+      count++;
+    }
+    if (count == 0) {
+      return;
+    }
+    this.tail = next;
+
+    var bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+    try {
+      while (bytes.hasRemaining()) {
+        this.out.write(bytes);
+      }
+      this.written.addAndGet(count);
+      this.batches.incrementAndGet();
+    } catch (IOException e) {
+      this.dropped.add(count);
+      LOGGER.warn("Unable to write {} access log record(s).", count, e);
+    }
+  }
+
+  private void format(Slot slot, StringBuilder batch) {
+    var line = this.line;
+    line.setLength(0);
+    line.append("{\"ts\":\"").append(Instant.ofEpochMilli(slot.timestamp)).append('"');
+    line.append(",\"event\":\"").append(slot.event.label).append('"');
+    line.append(",\"endpoint\":\"").append(slot.endpoint.name().toLowerCase(Locale.ROOT));
+    line.append('"');
+    if (slot.status > 0) {
+      line.append(",\"status\":").append(slot.status);
+    }
+    if (slot.durationNanos >= 0) {
+      line.append(",\"duration_us\":").append(TimeUnit.NANOSECONDS.toMicros(slot.durationNanos));
+    }
+    appendField(line, "client_id", slot.clientId);
+    appendField(line, "remote", slot.remote);
+    appendField(line, "jti", slot.jti);
+    line.append("}\n");
+    batch.append(line);
+  }
+
+  private static void appendField(StringBuilder line, String name, String value) {
+    if (value == null) {
+      return;
+    }
+
+    line.append(",\"").append(name).append("\":\"");
+    var redacted = redact(value);
+    for (int idx = 0; idx < redacted.length(); idx++) {
+      char c = redacted.charAt(idx);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < 0x20) {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+
+  /** A buffered record; its fields are published by the write to <code>published</code>. */
+  private static final class Slot {
+    long timestamp;
+    Event event;
+    IdpMetrics.Endpoint endpoint;
+    int status;
+    long durationNanos;
+    String clientId;
+    String remote;
+    String jti;
+    volatile long published;
+
+    Slot(long published) {
+      this.published = published;
+    }
+
+    void clear() {
+      this.clientId = null;
+      this.remote = null;
+      this.jti = null;
+    }
+  }
+}
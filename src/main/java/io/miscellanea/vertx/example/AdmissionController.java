@@ -0,0 +1,231 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many OAuth requests (token, batch, introspection and revocation)
+ * the node works on at once, across every issuer verticle. Requests beyond
+ * the limit are shed at once with 503 and <code>Retry-After</code> rather than
+ * queued, so that under overload the requests that are admitted still finish
+ * promptly and clients back off instead of timing out and retrying.
+ *
+ * <p>The limit is <code>max-in-flight</code> (0, the default, for no limit).
+ * When <code>adaptive</code>, it starts there and adjusts itself, additive
+ * increase, multiplicative decrease: every request that completes within
+ * <code>latency-threshold-ms</code> while at least half the limit is in use
+ * raises it by one, and a request that takes longer, or whose authentication
+ * times out, multiplies it by <code>backoff-ratio</code>, at most once per
+ * threshold and never below <code>min-limit</code>.
+ *
+ * <p>Authentication requests sent over the event bus fail after
+ * <code>authn-timeout-ms</code>, so a slow or missing authenticator costs a
+ * request a bounded wait and a 503 rather than a connection held open.
+ *
+ * @author Jason Hallford
+ */
+public final class AdmissionController implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionController.class);
+  public static final String MAX_IN_FLIGHT = "max-in-flight";
+  public static final String ADAPTIVE = "adaptive";
+  public static final String MIN_LIMIT = "min-limit";
+  public static final String LATENCY_THRESHOLD_MS = "latency-threshold-ms";
+  public static final String BACKOFF_RATIO = "backoff-ratio";
+  public static final String AUTHN_TIMEOUT_MS = "authn-timeout-ms";
+
+  private final int maxLimit;
+  private final int minLimit;
+  private final boolean adaptive;
+  private final long latencyThresholdNanos;
+  private final double backoffRatio;
+  private final long authnTimeoutMillis;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger limit;
+  private final AtomicLong lastDecrease;
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder shed = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder decreases = new LongAdder();
+
+  // Constructors
+
+  /**
+   * @param maxLimit The most requests that may be in flight, or 0 for no
+   *     limit
+   * @param adaptive Whether the limit adapts to latency, between
+   *     <code>minLimit</code> and <code>maxLimit</code>
+   * @param minLimit The adaptive limit's floor
+   * @param latencyThresholdMillis Requests slower than this lower an adaptive
+   *     limit
+   * @param backoffRatio The factor by which an adaptive limit is lowered
+   * @param authnTimeoutMillis How long to wait for an authenticator's reply
+   */
+  public AdmissionController(
+      int maxLimit,
+      boolean adaptive,
+      int minLimit,
+      long latencyThresholdMillis,
+      double backoffRatio,
+      long authnTimeoutMillis) {
+    assert maxLimit >= 0 : "maxLimit must not be negative.";
+    assert !adaptive || (minLimit >= 1 && minLimit <= maxLimit)
+        : "minLimit must be between 1 and maxLimit.";
+    assert backoffRatio > 0 && backoffRatio < 1 : "backoffRatio must be between 0 and 1.";
+    assert authnTimeoutMillis > 0 : "authnTimeoutMillis must be positive.";
+
+    this.maxLimit = maxLimit;
+    this.minLimit = minLimit;
+    this.adaptive = adaptive;
+    this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    this.backoffRatio = backoffRatio;
+    this.authnTimeoutMillis = authnTimeoutMillis;
+    this.limit = new AtomicInteger(maxLimit);
+    this.lastDecrease = new AtomicLong(System.nanoTime() - this.latencyThresholdNanos);
+  }
+
+  // Factory methods
+
+  /**
+   * Create a controller as described by the <code>admission</code> element of
+   * the provided configuration. Without one, no limit applies and
+   * authentication times out after five seconds.
+   *
+   * @param config The IdP configuration
+   * @return The controller
+   * @throws IdpException if the <code>admission</code> element is invalid
+   */
+  public static AdmissionController fromConfig(JsonObject config) {
+    var admissionConfig = config.getJsonObject(ConfigProp.ADMISSION, new JsonObject());
+    var maxLimit = admissionConfig.getInteger(MAX_IN_FLIGHT, 0);
+    var adaptive = admissionConfig.getBoolean(ADAPTIVE, false);
+    var minLimit = admissionConfig.getInteger(MIN_LIMIT, Math.max(1, maxLimit / 10));
+    var latencyThreshold = admissionConfig.getLong(LATENCY_THRESHOLD_MS, 250L);
+    var backoffRatio = admissionConfig.getDouble(BACKOFF_RATIO, 0.9);
+    var authnTimeout = admissionConfig.getLong(AUTHN_TIMEOUT_MS, 5000L);
+
+    if (maxLimit < 0 || authnTimeout < 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.ADMISSION
+              + "' is invalid: max-in-flight must not be negative and authn-timeout-ms must be "
+              + "positive.");
+    }
+    if (adaptive
+        && (maxLimit == 0
+            || minLimit < 1
+            || minLimit > maxLimit
+            || latencyThreshold < 1
+            || backoffRatio <= 0
+            || backoffRatio >= 1)) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.ADMISSION
+              + "' is invalid: an adaptive limit needs a positive max-in-flight, a min-limit "
+              + "between 1 and max-in-flight, a positive latency-threshold-ms and a "
+              + "backoff-ratio between 0 and 1.");
+    }
+
+    if (maxLimit > 0) {
+      LOGGER.info(
+          "At most {} request(s) may be in flight{}.",
+          maxLimit,
+          adaptive ? ", adapting down to " + minLimit : "");
+    }
+    return new AdmissionController(
+        maxLimit, adaptive, minLimit, latencyThreshold, backoffRatio, authnTimeout);
+  }
+
+  // Methods
+
+  /**
+   * Admit a request if the limit allows. Every admitted request must be
+   * {@link #release(long) released} exactly once.
+   *
+   * @return <code>true</code> if the request may proceed, <code>false</code>
+   *     if it must be shed
+   */
+  public boolean tryAcquire() {
+    if (this.maxLimit == 0) {
+      this.inFlight.incrementAndGet();
+      this.admitted.increment();
+      return true;
+    }
+
+    int current;
+    do {
+      current = this.inFlight.get();
+      if (current >= this.limit.get()) {
+        this.shed.increment();
+        return false;
+      }
+    } while (!this.inFlight.compareAndSet(current, current + 1));
+    this.admitted.increment();
+    return true;
+  }
+
+  /**
+   * Release an admitted request.
+   *
+   * @param latencyNanos How long the request took
+   */
+  public void release(long latencyNanos) {
+    int wasInFlight = this.inFlight.getAndDecrement();
+    if (this.adaptive) {
+      if (latencyNanos > this.latencyThresholdNanos) {
+        this.decrease();
+      } else if (wasInFlight * 2 >= this.limit.get()) {
+        this.limit.updateAndGet(current -> Math.min(this.maxLimit, current + 1));
+      }
+    }
+  }
+
+  /** Record an authentication request that timed out. */
+  public void authenticationTimedOut() {
+    this.timeouts.increment();
+    if (this.adaptive) {
+      this.decrease();
+    }
+  }
+
+  /** @return How long to wait for an authenticator's reply, in milliseconds */
+  public long getAuthnTimeoutMillis() {
+    return authnTimeoutMillis;
+  }
+
+  /** @return The controller's counters as JSON */
+  public JsonObject stats() {
+    return new JsonObject()
+        .put("in-flight", this.inFlight.get())
+        .put("limit", this.maxLimit == 0 ? null : this.limit.get())
+        .put("admitted", this.admitted.sum())
+        .put("shed", this.shed.sum())
+        .put("authn-timeouts", this.timeouts.sum())
+        .put("limit-decreases", this.decreases.sum());
+  }
+
+  // Private methods
+
+  /**
+   * Lower the limit, unless it was lowered within the last latency threshold:
+   * the requests that overran it together reflect one overload, not many.
+   */
+  private void decrease() {
+    long now = System.nanoTime();
+    long last = this.lastDecrease.get();
+    if (now - last < this.latencyThresholdNanos || !this.lastDecrease.compareAndSet(last, now)) {
+      return;
+    }
+
+    this.limit.updateAndGet(
+        current -> Math.max(this.minLimit, (int) (current * this.backoffRatio)));
+    this.decreases.increment();
+  }
+}
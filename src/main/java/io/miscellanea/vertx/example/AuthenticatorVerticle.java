@@ -7,8 +7,9 @@ import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * A Vert.x verticle that manages principal authentication.
@@ -16,35 +17,10 @@ import java.util.Map;
  * @author Jason Hallford
  */
 public class AuthenticatorVerticle extends AbstractVerticle {
-  /** A value object to store a client's secret and associated roles. */
-  private class ClientConfig {
-    // Fields
-    private String secret;
-    private JsonArray roles;
-
-    // Constructors
-    public ClientConfig(String secret, JsonArray roles) {
-      this.secret = secret;
-      this.roles = roles;
-    }
-
-    // Accessors
-    public String getSecret() {
-      return secret;
-    }
-
-    public JsonArray getRoles() {
-      return roles;
-    }
-  }
-
   // Fields
   private static final Logger LOGGER = LoggerFactory.getLogger(AuthenticatorVerticle.class);
-  private static final String CLIENT_SECRET = "secret";
-  private static final String CLIENT_ID = "id";
-  private static final String CLIENT_ROLES = "roles";
 
-  private Map<String, ClientConfig> idToClient = new HashMap<>();
+  private ClientAuthenticator authenticator;
 
   // Constructors
 
@@ -56,11 +32,14 @@ public class AuthenticatorVerticle extends AbstractVerticle {
   public void start() {
     LOGGER.debug("Starting credential management verticle.");
 
-    this.registerClients();
+    // The registry and authenticator are built once and shared by every
+    // instance of this verticle.
+    this.authenticator = IdpSharedData.clientAuthenticator(getVertx(), config());
 
     LOGGER.debug("Registering for credential events.");
     var bus = getVertx().eventBus();
-    bus.consumer("client.authenticate", this::authenticateClient);
+    bus.consumer(EventBusAddress.CLIENT_AUTHENTICATE, this::authenticateClient);
+    bus.consumer(EventBusAddress.CLIENT_AUTHENTICATE_BATCH, this::authenticateClients);
     LOGGER.debug("Event registration complete.");
 
     LOGGER.info("Successfully started credential management verticle.");
@@ -83,50 +62,84 @@ public class AuthenticatorVerticle extends AbstractVerticle {
     var clientId = payload.getString(MessageField.CLIENT_ID);
     var clientSecret = payload.getString(MessageField.CLIENT_SECRET);
 
-    LOGGER.debug("Authenticating client {}.", clientId);
-
     var authnResult =
         new JsonObject().put(MessageField.SUBJECT, clientId).put(MessageField.AUTHN, false);
 
-    var config = this.idToClient.get(clientId);
-    if (config != null) {
-      if (clientSecret.equals(config.getSecret())) {
-        LOGGER.debug("Successfully authenticated client {}.", clientId);
-        authnResult.put(MessageField.ROLES, config.getRoles());
-        authnResult.put(MessageField.AUTHN, true);
-      } else {
-        LOGGER.warn(
-            "Client {} attempted to authenticate with invalid credentials; request denied.",
-            clientId);
-      }
-    } else {
-      LOGGER.info("Unable to authenticate unknown client {}.", clientId);
+    var queued =
+        this.authenticator.authenticate(
+            clientId,
+            clientSecret,
+            result -> {
+              if (result.failed()) {
+                LOGGER.error("Unable to authenticate client {}.", clientId, result.cause());
+                message.fail(500, "Authentication failed.");
+                return;
+              }
+
+              var config = result.result();
+              if (config != null) {
+                authnResult.put(MessageField.ROLES, config.getRoles());
+                authnResult.put(MessageField.AUTHN, true);
+              }
+
+              message.reply(authnResult);
+            });
+
+    if (!queued) {
+      message.fail(503, "Authentication is temporarily unavailable.");
     }
-
-    message.reply(authnResult);
   }
 
-  // Utility methods
-  private void registerClients() {
-    LOGGER.debug("Registering clients...");
-    var config = config();
-    var clients = config().getJsonArray(ConfigProp.CLIENT_CONFIG);
-    if (clients != null) {
-      for (int idx = 0; idx < clients.size(); idx++) {
-        var client = clients.getJsonObject(idx);
-        if (client.containsKey(CLIENT_ID) && client.containsKey(CLIENT_SECRET)) {
-          var clientId = client.getString(CLIENT_ID);
-          var clientSecret = client.getString(CLIENT_SECRET);
-          var clientRoles = client.getJsonArray(CLIENT_ROLES);
-
-          this.idToClient.put(clientId, new ClientConfig(clientSecret, clientRoles));
-          LOGGER.debug("Successfully registered client {}.", client);
-        } else {
-          LOGGER.warn("Clients must have 'client-id' and 'client-secret' fields.");
-        }
-      }
-    } else {
-      LOGGER.warn("No clients are registered!");
+  /**
+   * Authenticate every client in <code>message</code> in one pass and reply
+   * once all outcomes are known. The reply holds one result per client, in
+   * order, shaped like the reply to a single authentication; a client that
+   * could not be verified has a <code>failure-code</code> instead.
+   *
+   * @param message The message received from the Vert.x event bus
+   */
+  private void authenticateClients(Message<JsonObject> message) {
+    var clients = message.body().getJsonArray(MessageField.CLIENTS, new JsonArray());
+
+    var clientIds = new ArrayList<String>(clients.size());
+    var clientSecrets = new ArrayList<String>(clients.size());
+    for (int idx = 0; idx < clients.size(); idx++) {
+      var client = clients.getJsonObject(idx);
+      clientIds.add(client.getString(MessageField.CLIENT_ID));
+      clientSecrets.add(client.getString(MessageField.CLIENT_SECRET));
+    }
+
+    var results = new JsonObject[clients.size()];
+    int[] remaining = {results.length};
+    if (results.length == 0) {
+      message.reply(new JsonObject().put(MessageField.RESULTS, new JsonArray()));
+      return;
     }
+
+    this.authenticator.authenticateAll(
+        clientIds,
+        clientSecrets,
+        (index, result) -> {
+          var authnResult = new JsonObject().put(MessageField.SUBJECT, clientIds.get(index));
+          if (result.failed()) {
+            var rejected = result.cause() instanceof RejectedExecutionException;
+            if (!rejected) {
+              LOGGER.error(
+                  "Unable to authenticate client {}.", clientIds.get(index), result.cause());
+            }
+            authnResult.put(MessageField.FAILURE_CODE, rejected ? 503 : 500);
+          } else if (result.result() != null) {
+            authnResult.put(MessageField.ROLES, result.result().getRoles());
+            authnResult.put(MessageField.AUTHN, true);
+          } else {
+            authnResult.put(MessageField.AUTHN, false);
+          }
+
+          results[index] = authnResult;
+          if (--remaining[0] == 0) {
+            var reply = new JsonArray(List.of(results));
+            message.reply(new JsonObject().put(MessageField.RESULTS, reply));
+          }
+        });
   }
 }
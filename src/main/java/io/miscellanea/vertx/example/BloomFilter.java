@@ -0,0 +1,99 @@
+package io.miscellanea.vertx.example;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size Bloom filter over strings. A negative answer is exact; a
+ * positive answer is wrong with roughly the configured probability while the
+ * filter holds no more than its expected number of entries.
+ *
+ * <p>Reads never lock and may run concurrently with {@link #add(String)}.
+ * Entries cannot be removed; build a new filter instead.
+ *
+ * @author Jason Hallford
+ */
+final class BloomFilter {
+  // Fields
+  private final AtomicLongArray words;
+  private final long bitCount;
+  private final int hashCount;
+
+  // Constructors
+
+  /**
+   * @param expectedEntries The number of entries the filter is sized for
+   * @param falsePositiveRate The tolerated false positive rate at that size
+   */
+  BloomFilter(long expectedEntries, double falsePositiveRate) {
+    assert expectedEntries > 0 : "expectedEntries must be positive.";
+    assert falsePositiveRate > 0 && falsePositiveRate < 1
+        : "falsePositiveRate must be between 0 and 1.";
+
+    // The textbook optimum: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hashes.
+    var ln2 = Math.log(2);
+    var bits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (ln2 * ln2));
+    this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) >>> 6));
+    this.bitCount = (long) this.words.length() << 6;
+    this.hashCount = (int) Math.max(1, Math.round((double) bits / expectedEntries * ln2));
+  }
+
+  // Methods
+  void add(String value) {
+    long hash = hash(value);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int idx = 0; idx < this.hashCount; idx++) {
+      long bit = this.bitIndex(h1, h2, idx);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long current = this.words.get(word);
+      while ((current & mask) == 0 && !this.words.compareAndSet(word, current, current | mask)) {
+        current = this.words.get(word);
+      }
+    }
+  }
+
+  /** @return <code>false</code> if <code>value</code> was certainly never added */
+  boolean mightContain(String value) {
+    long hash = hash(value);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int idx = 0; idx < this.hashCount; idx++) {
+      long bit = this.bitIndex(h1, h2, idx);
+      if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  long getBitCount() {
+    return bitCount;
+  }
+
+  int getHashCount() {
+    return hashCount;
+  }
+
+  // Private methods
+  private long bitIndex(int h1, int h2, int idx) {
+    // Kirsch-Mitzenmacher double hashing derives every index from two hashes.
+    return ((h1 + (long) idx * h2) & Long.MAX_VALUE) % this.bitCount;
+  }
+
+  private static long hash(String value) {
+    // FNV-1a over the UTF-16 code units, finished with the MurmurHash3 mixer,
+    // so that checking a string allocates nothing.
+    long hash = 0xcbf29ce484222325L;
+    for (int idx = 0; idx < value.length(); idx++) {
+      hash ^= value.charAt(idx);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,199 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named worker pool with a bounded queue, used for CPU heavy work that must
+ * not run on an event loop, such as token signing and secret hashing.
+ *
+ * <p>Once <code>queueCapacity</code> tasks are waiting or running, further
+ * submissions are refused immediately so callers can shed load instead of
+ * letting latency grow without limit. Each pool is shared by every verticle
+ * in the JVM.
+ *
+ * <p>A pool size of zero disables the pool; tasks then run synchronously on
+ * the caller's thread, which suits work that completes faster than a thread
+ * hand-off.
+ *
+ * @author Jason Hallford
+ */
+public final class BoundedWorkerPool implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(BoundedWorkerPool.class);
+  public static final String SIGNING_POOL = "idp-signing";
+  public static final String KDF_POOL = "idp-kdf";
+
+  private final String name;
+  private final WorkerExecutor executor;
+  private final int poolSize;
+  private final int queueCapacity;
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder taskNanos = new LongAdder();
+  private final LongAccumulator maxTaskNanos = new LongAccumulator(Math::max, 0);
+
+  // Constructors
+  public BoundedWorkerPool(Vertx vertx, String name, int poolSize, int queueCapacity) {
+    assert vertx != null : "vertx must not be null.";
+    assert name != null : "name must not be null.";
+    assert poolSize >= 0 : "poolSize must not be negative.";
+    assert queueCapacity > 0 : "queueCapacity must be positive.";
+
+    this.name = name;
+    this.executor = poolSize > 0 ? vertx.createSharedWorkerExecutor(name, poolSize) : null;
+    this.poolSize = poolSize;
+    this.queueCapacity = queueCapacity;
+
+    LOGGER.debug(
+        "Created worker pool {} with {} thread(s) and a queue capacity of {}.",
+        name,
+        poolSize,
+        queueCapacity);
+  }
+
+  // Factory methods
+
+  /**
+   * Create a pool as described by the provided configuration.
+   *
+   * @param vertx The Vert.x runtime
+   * @param name The pool's name
+   * @param config The IdP configuration
+   * @param poolSizeProperty The property holding the pool's size; it defaults
+   *     to the number of available cores
+   * @param queueSizeProperty The property holding the pool's queue capacity
+   * @param defaultQueueSize The queue capacity if none is configured
+   * @return The pool
+   */
+  public static BoundedWorkerPool fromConfig(
+      Vertx vertx,
+      String name,
+      JsonObject config,
+      String poolSizeProperty,
+      String queueSizeProperty,
+      int defaultQueueSize) {
+    var poolSize =
+        config.getInteger(poolSizeProperty, Runtime.getRuntime().availableProcessors());
+    var queueCapacity = config.getInteger(queueSizeProperty, defaultQueueSize);
+    if (poolSize < 0 || queueCapacity < 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + poolSizeProperty
+              + "' must not be negative and '"
+              + queueSizeProperty
+              + "' must be positive.");
+    }
+
+    if (poolSize == 0) {
+      LOGGER.info("Worker pool {} disabled; its tasks will run on the event loop.", name);
+    }
+
+    return new BoundedWorkerPool(vertx, name, poolSize, queueCapacity);
+  }
+
+  // Methods
+
+  /**
+   * Run a task on the pool. The result handler is called on the caller's
+   * context.
+   *
+   * @param task The task to run
+   * @param resultHandler Receives the task's result
+   * @param <T> The task's result type
+   * @return <code>true</code> if the task was queued, or <code>false</code>
+   *     if the queue is full; in that case the result handler is never called
+   */
+  public <T> boolean submit(Callable<T> task, Handler<AsyncResult<T>> resultHandler) {
+    if (this.queueDepth.incrementAndGet() > this.queueCapacity) {
+      this.queueDepth.decrementAndGet();
+      this.rejected.increment();
+      return false;
+    }
+    this.submitted.increment();
+
+    if (this.executor != null) {
+      this.executor.<T>executeBlocking(
+          promise -> this.run(task, promise),
+          false,
+          result -> this.complete(result, resultHandler));
+    } else {
+      Promise<T> promise = Promise.promise();
+      this.run(task, promise);
+      this.complete(promise.future(), resultHandler);
+    }
+
+    return true;
+  }
+
+  /** @return The pool's name */
+  public String getName() {
+    return this.name;
+  }
+
+  /** @return The most tasks that may wait for, or run on, the pool at once */
+  public int getQueueCapacity() {
+    return this.queueCapacity;
+  }
+
+  /** @return The number of tasks currently waiting for, or running on, the pool */
+  public int getQueueDepth() {
+    return this.queueDepth.get();
+  }
+
+  /** @return A snapshot of the pool's queue and task-time statistics */
+  public JsonObject stats() {
+    long count = this.completed.sum();
+    return new JsonObject()
+        .put("pool-size", this.poolSize)
+        .put("queue-capacity", this.queueCapacity)
+        .put("queue-depth", this.queueDepth.get())
+        .put("submitted", this.submitted.sum())
+        .put("rejected", this.rejected.sum())
+        .put("failed", this.failed.sum())
+        .put("completed", count)
+        .put(
+            "task-time-avg-us",
+            count > 0 ? TimeUnit.NANOSECONDS.toMicros(this.taskNanos.sum() / count) : 0)
+        .put("task-time-max-us", TimeUnit.NANOSECONDS.toMicros(this.maxTaskNanos.get()));
+  }
+
+  // Private methods
+  private <T> void run(Callable<T> task, Promise<T> promise) {
+    long start = System.nanoTime();
+    try {
+      promise.complete(task.call());
+    } catch (Exception e) {
+      promise.fail(e);
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      this.completed.increment();
+      this.taskNanos.add(elapsed);
+      this.maxTaskNanos.accumulate(elapsed);
+    }
+  }
+
+  private <T> void complete(AsyncResult<T> result, Handler<AsyncResult<T>> resultHandler) {
+    this.queueDepth.decrementAndGet();
+    if (result.failed()) {
+      this.failed.increment();
+    }
+    resultHandler.handle(result);
+  }
+}
@@ -0,0 +1,211 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The claims of a client's tokens, serialized once, when the client is
+ * registered. Issuing a token writes the template's prefix, the time claims
+ * and identifier, then the template's suffix; nothing is looked up or merged.
+ *
+ * <p>A token's claims appear in this order: <code>iss</code>,
+ * <code>sub</code>, <code>iat</code>, <code>nbf</code>, <code>jti</code>,
+ * <code>exp</code>, then, when configured, <code>rol</code>, <code>aud</code>,
+ * <code>scope</code> and the client's custom claims. A client-config entry
+ * may add:
+ *
+ * <ul>
+ *   <li><code>audience</code>: a string or array, issued as <code>aud</code>
+ *   <li><code>scope</code>: a string or array of strings, issued as a
+ *       space-separated <code>scope</code>
+ *   <li><code>claims</code>: an object of constant custom claims, which must
+ *       not redefine the claims above
+ *   <li><code>expires-in</code>: the lifetime of the client's tokens, in
+ *       seconds, overriding <code>claims-config</code>
+ * </ul>
+ *
+ * @author Jason Hallford
+ */
+public final class ClaimTemplate {
+  // Fields
+  public static final String AUDIENCE = "audience";
+  public static final String SCOPE = "scope";
+  public static final String CLAIMS = "claims";
+  public static final String EXPIRES_IN = "expires-in";
+  private static final Set<String> RESERVED =
+      Set.of("iss", "sub", "iat", "nbf", "jti", "exp", "rol", "aud", "scope");
+
+  private final String subject;
+  private final int expiresIn;
+  private final byte[] prefix;
+  private final byte[] suffix;
+  private final byte[] responseSuffix;
+  private final String cacheKey;
+
+  // Constructors
+  private ClaimTemplate(String issuer, String subject, int expiresIn, String suffix) {
+    this.subject = subject;
+    this.expiresIn = expiresIn;
+
+    var head = new JsonObject().put("iss", issuer).put("sub", subject).encode();
+    this.prefix = head.substring(0, head.length() - 1).getBytes(StandardCharsets.UTF_8);
+    this.suffix = suffix.getBytes(StandardCharsets.UTF_8);
+
+    var wrapper =
+        new JsonObject()
+            .put(JwtIssuerVerticle.JWT_WRAPPER_TOKEN_TYPE, "bearer")
+            .put(JwtIssuerVerticle.JWT_WRAPPER_EXPIRES_IN, expiresIn)
+            .encode();
+    this.responseSuffix = ("\"," + wrapper.substring(1)).getBytes(StandardCharsets.UTF_8);
+
+    // Clients whose tokens differ must never share a cached token.
+    this.cacheKey = subject + '\0' + expiresIn + '\0' + suffix;
+  }
+
+  // Factory methods
+
+  /**
+   * Build the template of a client that has no claims of its own, such as a
+   * client read from a mapped store.
+   *
+   * @param issuer The value of the <code>iss</code> claim
+   * @param subject The token's subject
+   * @param encodedRoles The subject's roles, serialized as a JSON array, or
+   *     <code>null</code> if the subject has none
+   * @param expiresIn Token lifetime, in seconds
+   */
+  public static ClaimTemplate of(
+      String issuer, String subject, byte[] encodedRoles, int expiresIn) {
+    var suffix =
+        encodedRoles != null
+            ? ",\"rol\":" + new String(encodedRoles, StandardCharsets.UTF_8) + "}"
+            : "}";
+    return new ClaimTemplate(issuer, subject, expiresIn, suffix);
+  }
+
+  /**
+   * Compile the template of a registered client.
+   *
+   * @param issuer The value of the <code>iss</code> claim
+   * @param subject The client's identifier
+   * @param roles The client's roles, or <code>null</code>
+   * @param defaultExpiresIn The token lifetime of clients that do not set their
+   *     own, in seconds
+   * @param client The client's <code>client-config</code> entry
+   * @throws IdpException if the entry's claims are invalid
+   */
+  public static ClaimTemplate compile(
+      String issuer, String subject, JsonArray roles, int defaultExpiresIn, JsonObject client) {
+    var expiresIn = client.getValue(EXPIRES_IN, defaultExpiresIn);
+    if (!(expiresIn instanceof Integer) || (Integer) expiresIn < 1) {
+      throw invalid(subject, "'" + EXPIRES_IN + "' must be a positive integer");
+    }
+
+    // Serialize the optional claims in one object, in their documented order.
+    var extra = new JsonObject();
+    if (roles != null) {
+      extra.put("rol", roles);
+    }
+
+    var audience = client.getValue(AUDIENCE);
+    if (audience != null) {
+      if (!(audience instanceof String) && !(audience instanceof JsonArray)) {
+        throw invalid(subject, "'" + AUDIENCE + "' must be a string or an array");
+      }
+      extra.put("aud", audience);
+    }
+
+    var scope = client.getValue(SCOPE);
+    if (scope instanceof JsonArray) {
+      var scopes = new StringBuilder();
+      for (var entry : (JsonArray) scope) {
+        if (!(entry instanceof String)) {
+          throw invalid(subject, "'" + SCOPE + "' must hold only strings");
+        }
+        scopes.append(scopes.length() > 0 ? " " : "").append(entry);
+      }
+      extra.put("scope", scopes.toString());
+    } else if (scope instanceof String) {
+      extra.put("scope", scope);
+    } else if (scope != null) {
+      throw invalid(subject, "'" + SCOPE + "' must be a string or an array");
+    }
+
+    var claims = client.getValue(CLAIMS);
+    if (claims != null) {
+      if (!(claims instanceof JsonObject)) {
+        throw invalid(subject, "'" + CLAIMS + "' must be an object");
+      }
+      for (var claim : ((JsonObject) claims)) {
+        if (RESERVED.contains(claim.getKey())) {
+          throw invalid(subject, "'" + CLAIMS + "' must not set '" + claim.getKey() + "'");
+        }
+        extra.put(claim.getKey(), claim.getValue());
+      }
+    }
+
+    var encoded = extra.encode();
+    var suffix = extra.isEmpty() ? "}" : "," + encoded.substring(1);
+    return new ClaimTemplate(issuer, subject, (Integer) expiresIn, suffix);
+  }
+
+  // Accessors
+  public String getSubject() {
+    return subject;
+  }
+
+  /** @return The lifetime of tokens issued from this template, in seconds */
+  public int getExpiresIn() {
+    return expiresIn;
+  }
+
+  /** @return The key under which this template's tokens are cached */
+  public String getCacheKey() {
+    return cacheKey;
+  }
+
+  // Methods
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ClaimTemplate)) {
+      return false;
+    }
+
+    var that = (ClaimTemplate) other;
+    return this.cacheKey.equals(that.cacheKey) && Arrays.equals(this.prefix, that.prefix);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.cacheKey.hashCode();
+  }
+
+  // Package methods
+
+  /** @return The serialized claims before <code>iat</code>, without a closing brace */
+  byte[] getPrefix() {
+    return prefix;
+  }
+
+  /** @return The serialized claims after <code>exp</code>, with a closing brace */
+  byte[] getSuffix() {
+    return suffix;
+  }
+
+  /** @return The end of a token response, after the token, with a closing brace */
+  byte[] getResponseSuffix() {
+    return responseSuffix;
+  }
+
+  // Private methods
+  private static IdpException invalid(String subject, String problem) {
+    return new IdpException("The claims of client " + subject + " are invalid: " + problem + ".");
+  }
+}
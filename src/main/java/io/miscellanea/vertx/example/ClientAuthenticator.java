@@ -0,0 +1,358 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Authenticates clients against the shared {@link ClientStore}. A single
+ * instance is shared by every verticle in the JVM.
+ *
+ * <p>Plain text secrets are compared on the caller's thread. Hashed secrets
+ * are verified on a bounded KDF pool so that the deliberately slow hash never
+ * blocks an event loop. Successful verifications are remembered for a short
+ * time in a bounded cache that holds only a SHA-256 digest of the presented
+ * secret; an entry is ignored as soon as the client's stored secret changes.
+ *
+ * <p>The store can be replaced at runtime with {@link #reload}. Lookups read
+ * a volatile reference to an immutable store, so they never lock and never
+ * see a partially built one.
+ *
+ * @author Jason Hallford
+ */
+public final class ClientAuthenticator implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClientAuthenticator.class);
+  public static final String ENABLED = "enabled";
+  public static final String MAX_ENTRIES = "max-entries";
+  public static final String TTL_SECONDS = "ttl-seconds";
+
+  private volatile ClientStore clients;
+  private volatile JsonObject lastReload;
+  private final BoundedWorkerPool kdfPool;
+  private final ConcurrentHashMap<String, VerifiedCredential> verified =
+      new ConcurrentHashMap<>();
+  private final int maxEntries;
+  private final long ttlMillis;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder successes = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder reloads = new LongAdder();
+
+  // Constructors
+
+  /**
+   * @param clients The registered clients
+   * @param kdfPool The pool on which hashed secrets are verified
+   * @param maxEntries The maximum number of cached verifications; zero
+   *     disables the cache
+   * @param ttlSeconds How long a verification is remembered
+   */
+  public ClientAuthenticator(
+      ClientStore clients, BoundedWorkerPool kdfPool, int maxEntries, long ttlSeconds) {
+    assert clients != null : "clients must not be null.";
+    assert kdfPool != null : "kdfPool must not be null.";
+    assert maxEntries >= 0 : "maxEntries must not be negative.";
+
+    this.clients = clients;
+    this.kdfPool = kdfPool;
+    this.maxEntries = maxEntries;
+    this.ttlMillis = ttlSeconds * 1000;
+  }
+
+  // Factory methods
+
+  /**
+   * Create an authenticator whose verification cache is described by the
+   * <code>credential-cache</code> element of the provided configuration.
+   *
+   * @param clients The registered clients
+   * @param kdfPool The pool on which hashed secrets are verified
+   * @param config The IdP configuration
+   * @return The authenticator
+   */
+  public static ClientAuthenticator fromConfig(
+      ClientStore clients, BoundedWorkerPool kdfPool, JsonObject config) {
+    var cacheConfig = config.getJsonObject(ConfigProp.CREDENTIAL_CACHE, new JsonObject());
+    var maxEntries =
+        cacheConfig.getBoolean(ENABLED, true) ? cacheConfig.getInteger(MAX_ENTRIES, 10_000) : 0;
+    var ttlSeconds = cacheConfig.getLong(TTL_SECONDS, 60L);
+    if (maxEntries < 0 || ttlSeconds < 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.CREDENTIAL_CACHE
+              + "' must have a non-negative '"
+              + MAX_ENTRIES
+              + "' and a positive '"
+              + TTL_SECONDS
+              + "'.");
+    }
+
+    return new ClientAuthenticator(clients, kdfPool, maxEntries, ttlSeconds);
+  }
+
+  // Methods
+
+  /**
+   * Authenticate a client. The result handler receives the client's
+   * configuration if the credentials are valid, otherwise <code>null</code>.
+   * It is called on the caller's context, and immediately when no KDF is
+   * needed.
+   *
+   * @param clientId The client's identifier
+   * @param clientSecret The secret presented by the client
+   * @param resultHandler Receives the outcome
+   * @return <code>true</code> if authentication was attempted, or
+   *     <code>false</code> if the KDF pool is saturated; in that case the
+   *     result handler is never called
+   */
+  public boolean authenticate(
+      String clientId, String clientSecret, Handler<AsyncResult<ClientConfig>> resultHandler) {
+    return this.authenticate(this.clients, clientId, clientSecret, resultHandler);
+  }
+
+  /**
+   * Find a registered client without authenticating it.
+   *
+   * @param clientId The client's identifier
+   * @return The client's configuration or <code>null</code> if it is unknown
+   */
+  public ClientConfig lookup(String clientId) {
+    return this.clients.lookup(clientId);
+  }
+
+  /**
+   * Authenticate a batch of clients in one pass over a single snapshot of the
+   * store. Each entry's outcome is delivered as soon as it is known, as
+   * {@link #authenticate} would deliver it; an entry whose hashed secret
+   * cannot be queued for verification fails with a
+   * {@link RejectedExecutionException}.
+   *
+   * @param clientIds The clients' identifiers
+   * @param clientSecrets The secrets presented, in the same order
+   * @param resultHandler Receives the index and outcome of each entry
+   */
+  public void authenticateAll(
+      List<String> clientIds,
+      List<String> clientSecrets,
+      BiConsumer<Integer, AsyncResult<ClientConfig>> resultHandler) {
+    assert clientIds.size() == clientSecrets.size()
+        : "clientIds and clientSecrets must be the same size.";
+
+    var store = this.clients;
+    for (int idx = 0; idx < clientIds.size(); idx++) {
+      int index = idx;
+      var queued =
+          this.authenticate(
+              store,
+              clientIds.get(idx),
+              clientSecrets.get(idx),
+              result -> resultHandler.accept(index, result));
+      if (!queued) {
+        resultHandler.accept(
+            index,
+            Future.failedFuture(new RejectedExecutionException("The KDF pool is saturated.")));
+      }
+    }
+  }
+
+  /**
+   * Replace the client store. When both stores are {@link ClientRegistry}
+   * instances the clients added, removed and changed are counted, and cached
+   * verifications of removed or changed clients are discarded; otherwise the
+   * whole cache is discarded. Reloads are expected to be rare and must not run
+   * concurrently.
+   *
+   * @param candidate The newly configured clients
+   * @return The size of the new store, the time the reload took and, when
+   *     known, the number of clients added, removed and changed
+   */
+  public synchronized JsonObject reload(ClientStore candidate) {
+    assert candidate != null : "candidate must not be null.";
+
+    long start = System.nanoTime();
+    var current = this.clients;
+    this.clients = candidate;
+
+    // Stale verifications already fail the secret check in isCached, so
+    // discarding them only frees memory.
+    var result = new JsonObject().put("clients", candidate.size());
+    if (current instanceof ClientRegistry && candidate instanceof ClientRegistry) {
+      int added = 0;
+      int changed = 0;
+      int removed = 0;
+      for (var client : ((ClientRegistry) candidate).clients()) {
+        var existing = current.lookup(client.getId());
+        if (existing == null) {
+          added++;
+        } else if (!existing.equals(client)) {
+          changed++;
+          this.invalidate(client.getId());
+        }
+      }
+      for (var client : ((ClientRegistry) current).clients()) {
+        if (candidate.lookup(client.getId()) == null) {
+          removed++;
+          this.invalidate(client.getId());
+        }
+      }
+      result.put("added", added).put("removed", removed).put("changed", changed);
+    } else {
+      this.verified.clear();
+    }
+
+    this.reloads.increment();
+    this.lastReload =
+        result.put("duration-us", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    return this.lastReload;
+  }
+
+  /**
+   * Forget any cached verification for a client, for example because its
+   * secret has been rotated.
+   *
+   * @param clientId The client's identifier
+   */
+  public void invalidate(String clientId) {
+    this.verified.remove(clientId);
+  }
+
+  /** @return The number of clients currently registered */
+  public int getClientCount() {
+    return this.clients.size();
+  }
+
+  /** @return A snapshot of the authenticator's statistics */
+  public JsonObject stats() {
+    return new JsonObject()
+        .put("clients", this.clients.size())
+        .put("reloads", this.reloads.sum())
+        .put("last-reload", this.lastReload)
+        .put("successes", this.successes.sum())
+        .put("failures", this.failures.sum())
+        .put("cache-size", this.verified.size())
+        .put("cache-hits", this.hits.sum())
+        .put("cache-misses", this.misses.sum());
+  }
+
+  // Private methods
+  private boolean authenticate(
+      ClientStore store,
+      String clientId,
+      String clientSecret,
+      Handler<AsyncResult<ClientConfig>> resultHandler) {
+    LOGGER.debug("Authenticating client {}.", clientId);
+
+    var config = store.lookup(clientId);
+    if (config == null) {
+      LOGGER.debug("Unable to authenticate unknown client {}.", clientId);
+      this.failures.increment();
+      resultHandler.handle(Future.succeededFuture());
+      return true;
+    }
+
+    if (clientSecret == null) {
+      resultHandler.handle(Future.succeededFuture(this.verified(config, false)));
+      return true;
+    }
+
+    var secret = config.getSecret();
+    var presented = ClientSecret.digest(clientSecret);
+    if (!secret.isHashed()) {
+      resultHandler.handle(
+          Future.succeededFuture(this.verified(config, secret.matchesDigest(presented))));
+      return true;
+    }
+
+    if (this.isCached(config, presented)) {
+      this.hits.increment();
+      resultHandler.handle(Future.succeededFuture(this.verified(config, true)));
+      return true;
+    }
+    this.misses.increment();
+
+    return this.kdfPool.submit(
+        () -> secret.matches(clientSecret),
+        result -> {
+          if (result.succeeded()) {
+            if (result.result()) {
+              this.remember(config, presented);
+            }
+            resultHandler.handle(Future.succeededFuture(this.verified(config, result.result())));
+          } else {
+            resultHandler.handle(Future.failedFuture(result.cause()));
+          }
+        });
+  }
+
+  private ClientConfig verified(ClientConfig config, boolean matched) {
+    if (matched) {
+      LOGGER.debug("Successfully authenticated client {}.", config.getId());
+      this.successes.increment();
+      return config;
+    }
+
+    LOGGER.debug(
+        "Client {} attempted to authenticate with invalid credentials; request denied.",
+        config.getId());
+    this.failures.increment();
+    return null;
+  }
+
+  private boolean isCached(ClientConfig config, byte[] presented) {
+    var entry = this.verified.get(config.getId());
+    if (entry == null) {
+      return false;
+    }
+
+    // Verifications made against a since replaced secret are dropped.
+    if (!entry.secret.equals(config.getSecret())
+        || entry.expiresAt <= System.currentTimeMillis()) {
+      this.verified.remove(config.getId(), entry);
+      return false;
+    }
+
+    return MessageDigest.isEqual(entry.digest, presented);
+  }
+
+  private void remember(ClientConfig config, byte[] presented) {
+    // Only one verification per client is kept, so the cache is bounded by the
+    // number of registered clients as well as by maxEntries.
+    if (this.maxEntries == 0
+        || (this.verified.size() >= this.maxEntries
+            && !this.verified.containsKey(config.getId()))) {
+      return;
+    }
+
+    this.verified.put(
+        config.getId(),
+        new VerifiedCredential(
+            config.getSecret(), presented, System.currentTimeMillis() + this.ttlMillis));
+  }
+
+  /** A successful verification of a client's hashed secret. */
+  private static final class VerifiedCredential {
+    private final ClientSecret secret;
+    private final byte[] digest;
+    private final long expiresAt;
+
+    private VerifiedCredential(ClientSecret secret, byte[] digest, long expiresAt) {
+      this.secret = secret;
+      this.digest = digest;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
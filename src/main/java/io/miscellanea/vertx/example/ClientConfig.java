@@ -0,0 +1,125 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonArray;
+
+import java.util.Objects;
+
+/**
+ * An immutable value object that stores a registered client's identifier,
+ * secret, associated roles and, optionally, its own rate limit and the
+ * template its tokens are issued from.
+ *
+ * @author Jason Hallford
+ */
+public final class ClientConfig {
+  // Fields
+  private final String id;
+  private final ClientSecret secret;
+  private final JsonArray roles;
+  private final byte[] encodedRoles;
+  private final RateLimiter.Limit rateLimit;
+  private final ClaimTemplate claimTemplate;
+
+  // Constructors
+  public ClientConfig(String id, ClientSecret secret, JsonArray roles) {
+    this(id, secret, roles, null, null);
+  }
+
+  public ClientConfig(
+      String id,
+      ClientSecret secret,
+      JsonArray roles,
+      RateLimiter.Limit rateLimit,
+      ClaimTemplate claimTemplate) {
+    assert id != null : "id must not be null.";
+    assert secret != null : "secret must not be null.";
+
+    this.id = id;
+    this.secret = secret;
+    this.roles = roles != null ? roles.copy() : null;
+    this.encodedRoles = roles != null ? roles.toBuffer().getBytes() : null;
+    this.rateLimit = rateLimit;
+    this.claimTemplate = claimTemplate;
+  }
+
+  /**
+   * Create a client whose roles are shared with other clients. Neither the
+   * roles nor their encoding are copied.
+   */
+  ClientConfig(String id, ClientSecret secret, JsonArray roles, byte[] encodedRoles) {
+    assert id != null : "id must not be null.";
+    assert secret != null : "secret must not be null.";
+
+    this.id = id;
+    this.secret = secret;
+    this.roles = roles;
+    this.encodedRoles = encodedRoles;
+    this.rateLimit = null;
+    this.claimTemplate = null;
+  }
+
+  // Accessors
+  public String getId() {
+    return id;
+  }
+
+  public ClientSecret getSecret() {
+    return secret;
+  }
+
+  /**
+   * Returns the client's roles. The array is shared by every caller and must
+   * be treated as read-only.
+   *
+   * @return The client's roles or <code>null</code> if it has none
+   */
+  public JsonArray getRoles() {
+    return roles;
+  }
+
+  /**
+   * Returns the client's roles serialized as a JSON array. The array is
+   * shared by every caller and must be treated as read-only.
+   *
+   * @return The encoded roles or <code>null</code> if the client has none
+   */
+  public byte[] getEncodedRoles() {
+    return encodedRoles;
+  }
+
+  /** @return The client's own rate limit or <code>null</code> if the default applies */
+  public RateLimiter.Limit getRateLimit() {
+    return rateLimit;
+  }
+
+  /**
+   * @return The template compiled when the client was registered, or
+   *     <code>null</code> if tokens are issued from its identifier and roles
+   */
+  public ClaimTemplate getClaimTemplate() {
+    return claimTemplate;
+  }
+
+  // Methods
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ClientConfig)) {
+      return false;
+    }
+
+    var that = (ClientConfig) other;
+    return this.id.equals(that.id)
+        && this.secret.equals(that.secret)
+        && Objects.equals(this.roles, that.roles)
+        && Objects.equals(this.rateLimit, that.rateLimit)
+        && Objects.equals(this.claimTemplate, that.claimTemplate);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.id.hashCode();
+  }
+}
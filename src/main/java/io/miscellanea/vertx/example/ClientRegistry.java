@@ -0,0 +1,105 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable registry of clients permitted to request tokens, built from
+ * the <code>client-config</code> array. Registries are never modified; a
+ * reload publishes a new one through {@link ClientAuthenticator}.
+ *
+ * @author Jason Hallford
+ */
+public final class ClientRegistry implements ClientStore {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClientRegistry.class);
+  static final String CLIENT_SECRET = "secret";
+  static final String CLIENT_ID = "id";
+  static final String CLIENT_ROLES = "roles";
+  static final String CLIENT_RATE_LIMIT = "rate-limit";
+
+  private final Map<String, ClientConfig> idToClient;
+
+  // Constructors
+  ClientRegistry(Map<String, ClientConfig> idToClient) {
+    this.idToClient = Map.copyOf(idToClient);
+  }
+
+  // Factory methods
+
+  /**
+   * Build a registry from the <code>client-config</code> element of the
+   * provided configuration. When <code>claims-config</code> is present, each
+   * client's {@link ClaimTemplate} is compiled here, once.
+   *
+   * @param config The IdP configuration
+   * @return A new registry; it is empty if no clients are configured
+   */
+  public static ClientRegistry fromConfig(JsonObject config) {
+    assert config != null : "config must not be null.";
+
+    LOGGER.debug("Registering clients...");
+    Map<String, ClientConfig> idToClient = new HashMap<>();
+    var claimsConfig = config.getJsonObject(ConfigProp.CLAIMS_CONFIGURATION);
+    var clients = config.getJsonArray(ConfigProp.CLIENT_CONFIG);
+    if (clients != null) {
+      for (int idx = 0; idx < clients.size(); idx++) {
+        var client = clients.getJsonObject(idx);
+        if (client.containsKey(CLIENT_ID) && client.containsKey(CLIENT_SECRET)) {
+          var clientId = client.getString(CLIENT_ID);
+          var clientSecret = ClientSecret.parse(client.getString(CLIENT_SECRET));
+          var clientRoles = client.getJsonArray(CLIENT_ROLES);
+          var rateLimit = client.getJsonObject(CLIENT_RATE_LIMIT);
+          var clientRateLimit =
+              rateLimit != null
+                  ? RateLimiter.Limit.fromJson(rateLimit, "The rate limit of client " + clientId)
+                  : null;
+
+          var claimTemplate =
+              claimsConfig != null
+                  ? ClaimTemplate.compile(
+                      claimsConfig.getString(ConfigProp.ISSUER_CLAIM),
+                      clientId,
+                      clientRoles,
+                      claimsConfig.getInteger(ConfigProp.CLAIM_EXPIRES_IN),
+                      client)
+                  : null;
+
+          idToClient.put(
+              clientId,
+              new ClientConfig(
+                  clientId, clientSecret, clientRoles, clientRateLimit, claimTemplate));
+          LOGGER.debug("Successfully registered client {}.", clientId);
+        } else {
+          LOGGER.warn("Clients must have 'client-id' and 'client-secret' fields.");
+        }
+      }
+    } else {
+      LOGGER.warn("No clients are registered!");
+    }
+
+    return new ClientRegistry(idToClient);
+  }
+
+  // Methods
+
+  @Override
+  public ClientConfig lookup(String clientId) {
+    return clientId != null ? this.idToClient.get(clientId) : null;
+  }
+
+  /** @return Every registered client */
+  public Collection<ClientConfig> clients() {
+    return this.idToClient.values();
+  }
+
+  @Override
+  public int size() {
+    return this.idToClient.size();
+  }
+}
@@ -0,0 +1,204 @@
+package io.miscellanea.vertx.example;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * A client's stored secret. Secrets are configured either in plain text or as
+ * a salted PBKDF2 hash of the form
+ * <code>pbkdf2-sha256:&lt;iterations&gt;:&lt;base64 salt&gt;:&lt;base64 hash&gt;</code>
+ * (<code>pbkdf2-sha512</code> is also accepted).
+ *
+ * <p>All comparisons run in constant time. Verifying a hashed secret runs the
+ * KDF and is deliberately slow, so it must not be called on an event loop.
+ *
+ * @author Jason Hallford
+ */
+public final class ClientSecret {
+  // Fields
+  private static final String SEPARATOR = ":";
+  private static final String PBKDF2_SHA256 = "pbkdf2-sha256";
+  private static final String PBKDF2_SHA512 = "pbkdf2-sha512";
+  public static final int DEFAULT_ITERATIONS = 210_000;
+  private static final ThreadLocal<MessageDigest> SHA256 =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+              throw new IdpException("SHA-256 is not available.", e);
+            }
+          });
+
+  private final String kdfAlgorithm;
+  private final int iterations;
+  private final byte[] salt;
+  private final byte[] hash;
+
+  // Constructors
+  private ClientSecret(String kdfAlgorithm, int iterations, byte[] salt, byte[] hash) {
+    this.kdfAlgorithm = kdfAlgorithm;
+    this.iterations = iterations;
+    this.salt = salt;
+    this.hash = hash;
+  }
+
+  // Factory methods
+
+  /**
+   * Parse a configured secret.
+   *
+   * @param stored The secret as it appears in <code>client-config</code>
+   * @return The parsed secret
+   * @throws IdpException if the secret looks hashed but is malformed
+   */
+  public static ClientSecret parse(String stored) {
+    assert stored != null : "stored must not be null.";
+
+    if (!stored.startsWith(PBKDF2_SHA256 + SEPARATOR)
+        && !stored.startsWith(PBKDF2_SHA512 + SEPARATOR)) {
+      return new ClientSecret(null, 0, null, digest(stored));
+    }
+
+    var parts = stored.split(SEPARATOR);
+    try {
+      if (parts.length != 4) {
+        throw new IllegalArgumentException("expected four fields");
+      }
+
+      var iterations = Integer.parseInt(parts[1]);
+      if (iterations < 1) {
+        throw new IllegalArgumentException("iterations must be positive");
+      }
+
+      var decoder = Base64.getDecoder();
+      return new ClientSecret(
+          kdfAlgorithmFor(parts[0]), iterations, decoder.decode(parts[2]), decoder.decode(parts[3]));
+    } catch (IllegalArgumentException e) {
+      throw new IdpException("Hashed client secret is malformed: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Hash a secret for storage in <code>client-config</code>.
+   *
+   * @param secret The plain text secret
+   * @param iterations The number of PBKDF2 iterations
+   * @return The hashed secret
+   */
+  public static String hash(String secret, int iterations) {
+    var salt = new byte[16];
+    new SecureRandom().nextBytes(salt);
+
+    var hash = pbkdf2(kdfAlgorithmFor(PBKDF2_SHA256), secret, salt, iterations, 256);
+    var encoder = Base64.getEncoder();
+    return String.join(
+        SEPARATOR,
+        PBKDF2_SHA256,
+        Integer.toString(iterations),
+        encoder.encodeToString(salt),
+        encoder.encodeToString(hash));
+  }
+
+  /**
+   * Compute the SHA-256 digest of a presented secret. Digests are cheap, fixed
+   * length and safe to keep in memory, which makes them suitable cache keys.
+   *
+   * @param secret The secret
+   * @return The digest
+   */
+  public static byte[] digest(String secret) {
+    return SHA256.get().digest(secret.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // Methods
+
+  /** @return <code>true</code> if verifying this secret requires running a KDF */
+  public boolean isHashed() {
+    return this.kdfAlgorithm != null;
+  }
+
+  /**
+   * Check a presented secret against a plain text stored secret, in constant
+   * time. This is cheap enough for an event loop.
+   *
+   * @param presentedDigest The {@link #digest(String)} of the presented secret
+   * @return <code>true</code> if the secrets match
+   * @throws IllegalStateException if this secret is hashed
+   */
+  public boolean matchesDigest(byte[] presentedDigest) {
+    if (this.isHashed()) {
+      throw new IllegalStateException("Hashed secrets must be verified with the KDF.");
+    }
+    return MessageDigest.isEqual(this.hash, presentedDigest);
+  }
+
+  /**
+   * Check a presented secret, running the KDF if the stored secret is hashed.
+   *
+   * @param presented The presented secret
+   * @return <code>true</code> if the secrets match
+   */
+  public boolean matches(String presented) {
+    if (!this.isHashed()) {
+      return this.matchesDigest(digest(presented));
+    }
+
+    var candidate =
+        pbkdf2(this.kdfAlgorithm, presented, this.salt, this.iterations, this.hash.length * 8);
+    return MessageDigest.isEqual(this.hash, candidate);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ClientSecret)) {
+      return false;
+    }
+
+    var that = (ClientSecret) other;
+    return Objects.equals(this.kdfAlgorithm, that.kdfAlgorithm)
+        && this.iterations == that.iterations
+        && Arrays.equals(this.salt, that.salt)
+        && MessageDigest.isEqual(this.hash, that.hash);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.kdfAlgorithm, this.iterations, Arrays.hashCode(this.salt));
+  }
+
+  // Private methods
+  private static String kdfAlgorithmFor(String scheme) {
+    switch (scheme) {
+      case PBKDF2_SHA256:
+        return "PBKDF2WithHmacSHA256";
+      case PBKDF2_SHA512:
+        return "PBKDF2WithHmacSHA512";
+      default:
+        throw new IllegalArgumentException("unknown scheme " + scheme);
+    }
+  }
+
+  private static byte[] pbkdf2(
+      String algorithm, String secret, byte[] salt, int iterations, int bits) {
+    var spec = new PBEKeySpec(secret.toCharArray(), salt, iterations, bits);
+    try {
+      return SecretKeyFactory.getInstance(algorithm).generateSecret(spec).getEncoded();
+    } catch (GeneralSecurityException e) {
+      throw new IdpException("Unable to hash client secret.", e);
+    } finally {
+      spec.clearPassword();
+    }
+  }
+}
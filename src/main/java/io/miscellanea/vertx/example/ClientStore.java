@@ -0,0 +1,71 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.nio.file.Path;
+
+/**
+ * A source of registered clients. Implementations are immutable and safe to
+ * query concurrently from any thread; a changed set of clients is published
+ * as a new store.
+ *
+ * <p>The store is chosen by the <code>client-store</code> configuration
+ * element:
+ *
+ * <ul>
+ *   <li><code>{"type": "config"}</code> (the default) reads clients from the
+ *       <code>client-config</code> array into a {@link ClientRegistry}
+ *   <li><code>{"type": "mapped", "path": "..."}</code> memory-maps a binary
+ *       store written by {@link ClientStoreImporter}; see {@link
+ *       MappedClientStore}
+ * </ul>
+ *
+ * @author Jason Hallford
+ */
+public interface ClientStore extends Shareable {
+  String TYPE = "type";
+  String PATH = "path";
+  String TYPE_CONFIG = "config";
+  String TYPE_MAPPED = "mapped";
+
+  /**
+   * Find a registered client.
+   *
+   * @param clientId The client's identifier
+   * @return The client's configuration or <code>null</code> if it is unknown
+   */
+  ClientConfig lookup(String clientId);
+
+  /** @return The number of registered clients */
+  int size();
+
+  /**
+   * Open the store described by the provided configuration. Opening may read
+   * files, so call this from a worker thread.
+   *
+   * @param config The IdP configuration
+   * @return The store
+   */
+  static ClientStore fromConfig(JsonObject config) {
+    var storeConfig = config.getJsonObject(ConfigProp.CLIENT_STORE, new JsonObject());
+    var type = storeConfig.getString(TYPE, TYPE_CONFIG);
+    switch (type) {
+      case TYPE_CONFIG:
+        return ClientRegistry.fromConfig(config);
+      case TYPE_MAPPED:
+        var path = storeConfig.getString(PATH);
+        if (path == null) {
+          throw new IdpException(
+              "Configuration element '"
+                  + ConfigProp.CLIENT_STORE
+                  + "' must name a '"
+                  + PATH
+                  + "' for mapped stores.");
+        }
+        return MappedClientStore.open(Path.of(path));
+      default:
+        throw new IdpException("Client store type '" + type + "' is not supported.");
+    }
+  }
+}
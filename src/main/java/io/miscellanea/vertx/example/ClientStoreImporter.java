@@ -0,0 +1,104 @@
+package io.miscellanea.vertx.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.json.JsonArray;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * A command line tool that converts the <code>client-config</code> array of
+ * a JSON configuration file into a {@link MappedClientStore} file. The input
+ * is streamed, so files far larger than the heap can be converted. Usage:
+ * <code>java -cp vertx-jwt-idp-fat.jar io.miscellanea.vertx.example.ClientStoreImporter &lt;config.json&gt; &lt;clients.store&gt;</code>
+ *
+ * @author Jason Hallford
+ */
+public final class ClientStoreImporter {
+  private ClientStoreImporter() {}
+
+  // Main method
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: ClientStoreImporter <config.json> <clients.store>");
+      System.exit(1);
+    }
+
+    long start = System.nanoTime();
+    var count = importClients(Path.of(args[0]), Path.of(args[1]));
+    System.out.printf(
+        "Imported %d client(s) in %d ms.%n", count, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  // Methods
+
+  /**
+   * Convert a JSON configuration file to a client store.
+   *
+   * @param input A JSON object holding a <code>client-config</code> array
+   * @param output Where to write the store
+   * @return The number of clients imported
+   * @throws IOException if either file cannot be read or written
+   * @throws IdpException if the input is not a valid client configuration
+   */
+  public static int importClients(Path input, Path output) throws IOException {
+    try (var parser = new JsonFactory().createParser(Files.newInputStream(input));
+        var writer = new ClientStoreWriter(output)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IdpException("File " + input + " does not hold a JSON object.");
+      }
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        var field = parser.getCurrentName();
+        parser.nextToken();
+        if (ConfigProp.CLIENT_CONFIG.equals(field)) {
+          if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IdpException("Element '" + ConfigProp.CLIENT_CONFIG + "' must be an array.");
+          }
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            readClient(parser, writer);
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+
+      writer.commit();
+      return writer.getCount();
+    }
+  }
+
+  // Private methods
+  private static void readClient(JsonParser parser, ClientStoreWriter writer) throws IOException {
+    String id = null;
+    String secret = null;
+    JsonArray roles = null;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      var field = parser.getCurrentName();
+      var token = parser.nextToken();
+      if (ClientRegistry.CLIENT_ID.equals(field)) {
+        id = parser.getValueAsString();
+      } else if (ClientRegistry.CLIENT_SECRET.equals(field)) {
+        secret = parser.getValueAsString();
+      } else if (ClientRegistry.CLIENT_ROLES.equals(field) && token == JsonToken.START_ARRAY) {
+        var values = new ArrayList<Object>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          values.add(parser.getValueAsString());
+        }
+        roles = new JsonArray(values);
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    if (id == null || secret == null) {
+      throw new IdpException("Clients must have 'id' and 'secret' fields.");
+    }
+    writer.add(id, secret, roles);
+  }
+}
@@ -0,0 +1,273 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonArray;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link MappedClientStore} file. Records are streamed to a
+ * temporary file as clients are added, so only a hash and an offset per
+ * client are held in memory; the index is built and the store assembled when
+ * the writer is {@link #commit() committed}.
+ *
+ * <p>The store is assembled in a temporary file beside the output and renamed
+ * over it, so a node that has the previous store mapped keeps reading it
+ * intact, and a writer closed without committing, for example because its
+ * input was invalid, leaves the output untouched.
+ *
+ * @author Jason Hallford
+ */
+public final class ClientStoreWriter implements AutoCloseable {
+  // Fields
+  private static final double MAX_LOAD_FACTOR = 0.7;
+  private static final int MAX_SLOTS = 1 << 28;
+
+  private final Path output;
+  private final Path parent;
+  private final Path recordsFile;
+  private final DataOutputStream records;
+  private final Map<JsonArray, Integer> roleSetNumbers = new HashMap<>();
+  private final List<byte[]> roleSets = new ArrayList<>();
+  private long[] hashes = new long[1024];
+  private long[] offsets = new long[1024];
+  private int count;
+  private long position;
+  private Path storeFile;
+
+  // Constructors
+
+  /**
+   * @param output Where to write the store; an existing file is replaced when
+   *     the writer is committed
+   * @throws IOException if the temporary records file cannot be created
+   */
+  public ClientStoreWriter(Path output) throws IOException {
+    assert output != null : "output must not be null.";
+
+    this.output = output;
+    this.parent = output.toAbsolutePath().getParent();
+    this.recordsFile =
+        Files.createTempFile(this.parent, output.getFileName().toString(), ".records");
+    this.records =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.recordsFile)));
+  }
+
+  // Methods
+
+  /**
+   * Add a client.
+   *
+   * @param id The client's identifier
+   * @param secret The client's secret, in <code>client-config</code> form
+   * @param roles The client's roles, or <code>null</code>
+   * @throws IOException if the record cannot be written
+   * @throws IdpException if the id or secret is too long, or the secret is a
+   *     malformed hash
+   */
+  public void add(String id, String secret, JsonArray roles) throws IOException {
+    assert id != null : "id must not be null.";
+    assert secret != null : "secret must not be null.";
+
+    ClientSecret.parse(secret);
+    var idBytes = id.getBytes(StandardCharsets.UTF_8);
+    var secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+    if (idBytes.length > 0xffff || secretBytes.length > 0xffff) {
+      throw new IdpException("Client " + id + " has an id or secret longer than 65535 bytes.");
+    }
+
+    // Never let a record straddle a chunk boundary.
+    int length = 2 * Short.BYTES + idBytes.length + secretBytes.length + Integer.BYTES;
+    long room =
+        MappedClientStore.CHUNK_SIZE - (this.position & (MappedClientStore.CHUNK_SIZE - 1));
+    if (length > room) {
+      this.records.write(new byte[(int) room]);
+      this.position += room;
+    }
+
+    if (this.position + length >= MappedClientStore.OFFSET_MASK) {
+      throw new IdpException("A client store's records must not exceed 1 TiB.");
+    }
+
+    if (this.count == this.hashes.length) {
+      this.hashes = Arrays.copyOf(this.hashes, this.count * 2);
+      this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+    }
+    this.hashes[this.count] = MappedClientStore.hash(idBytes);
+    this.offsets[this.count] = this.position;
+    this.count++;
+
+    this.records.writeShort(idBytes.length);
+    this.records.write(idBytes);
+    this.records.writeShort(secretBytes.length);
+    this.records.write(secretBytes);
+    this.records.writeInt(roles != null ? this.roleSetNumber(roles) : MappedClientStore.NO_ROLES);
+    this.position += length;
+  }
+
+  /** @return The number of clients added so far */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Build the index, write the store and replace the output with it. No
+   * clients may be added afterwards.
+   *
+   * @throws IOException if the store cannot be written
+   * @throws IdpException if a client id was added twice
+   */
+  public void commit() throws IOException {
+    this.records.close();
+    var index = this.buildIndex();
+
+    this.storeFile =
+        Files.createTempFile(this.parent, this.output.getFileName().toString(), ".tmp");
+    try (var channel = FileChannel.open(this.storeFile, StandardOpenOption.WRITE)) {
+      int roleSetsLength = 0;
+      for (var roleSet : this.roleSets) {
+        roleSetsLength += Integer.BYTES + roleSet.length;
+      }
+      long indexOffset = align(MappedClientStore.HEADER_SIZE + roleSetsLength);
+      long recordsOffset = indexOffset + (long) index.length * Long.BYTES;
+
+      var head = ByteBuffer.allocate((int) indexOffset);
+      head.putInt(MappedClientStore.MAGIC)
+          .putInt(MappedClientStore.VERSION)
+          .putInt(this.count)
+          .putInt(this.roleSets.size())
+          .putInt(index.length)
+          .putInt(0)
+          .putLong(indexOffset)
+          .putLong(recordsOffset);
+      for (var roleSet : this.roleSets) {
+        head.putInt(roleSet.length).put(roleSet);
+      }
+      writeFully(channel, head.clear());
+
+      var block = ByteBuffer.allocate(64 * 1024);
+      for (long slot : index) {
+        if (!block.hasRemaining()) {
+          writeFully(channel, block.flip());
+          block.clear();
+        }
+        block.putLong(slot);
+      }
+      writeFully(channel, block.flip());
+
+      try (var source = FileChannel.open(this.recordsFile, StandardOpenOption.READ)) {
+        long transferred = 0;
+        while (transferred < this.position) {
+          transferred += source.transferTo(transferred, this.position - transferred, channel);
+        }
+      }
+    }
+
+    Files.move(
+        this.storeFile,
+        this.output,
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Delete the writer's temporary files. Unless the writer was committed, the
+   * output is left as it was.
+   *
+   * @throws IOException if a temporary file cannot be deleted
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.records.close();
+    } finally {
+      Files.deleteIfExists(this.recordsFile);
+      if (this.storeFile != null) {
+        Files.deleteIfExists(this.storeFile);
+      }
+    }
+  }
+
+  // Private methods
+  private int roleSetNumber(JsonArray roles) {
+    return this.roleSetNumbers.computeIfAbsent(
+        roles.copy(),
+        key -> {
+          this.roleSets.add(key.toBuffer().getBytes());
+          return this.roleSets.size() - 1;
+        });
+  }
+
+  private long[] buildIndex() throws IOException {
+    long wanted = Math.max(2, (long) Math.ceil(this.count / MAX_LOAD_FACTOR));
+    if (wanted > MAX_SLOTS) {
+      throw new IdpException(
+          "A client store holds at most " + (long) (MAX_SLOTS * MAX_LOAD_FACTOR) + " clients.");
+    }
+    var slots = new long[Integer.highestOneBit((int) wanted - 1) << 1];
+    var mask = slots.length - 1;
+
+    try (var channel = FileChannel.open(this.recordsFile, StandardOpenOption.READ)) {
+      var chunks = MappedClientStore.mapRecords(channel, 0, this.position);
+      for (int idx = 0; idx < this.count; idx++) {
+        var hash = this.hashes[idx];
+        var tag = hash >>> MappedClientStore.TAG_SHIFT;
+        var slot = (int) hash & mask;
+        while (slots[slot] != 0) {
+          // Equal tags are rare enough that reading both ids is cheap.
+          var other = (slots[slot] & MappedClientStore.OFFSET_MASK) - 1;
+          if (slots[slot] >>> MappedClientStore.TAG_SHIFT == tag
+              && sameId(chunks, this.offsets[idx], other)) {
+            throw new IdpException(
+                "Client " + readId(chunks, this.offsets[idx]) + " is defined more than once.");
+          }
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = (tag << MappedClientStore.TAG_SHIFT) | (this.offsets[idx] + 1);
+      }
+    }
+
+    return slots;
+  }
+
+  private static boolean sameId(ByteBuffer[] chunks, long offset, long otherOffset) {
+    var id = readId(chunks, offset).getBytes(StandardCharsets.UTF_8);
+    return MappedClientStore.idEquals(
+        chunks[(int) (otherOffset >>> MappedClientStore.CHUNK_BITS)],
+        (int) (otherOffset & (MappedClientStore.CHUNK_SIZE - 1)),
+        id);
+  }
+
+  private static String readId(ByteBuffer[] chunks, long offset) {
+    var chunk = chunks[(int) (offset >>> MappedClientStore.CHUNK_BITS)];
+    var position = (int) (offset & (MappedClientStore.CHUNK_SIZE - 1));
+    var id = new byte[chunk.getShort(position) & 0xffff];
+    for (int idx = 0; idx < id.length; idx++) {
+      id[idx] = chunk.get(position + Short.BYTES + idx);
+    }
+    return new String(id, StandardCharsets.UTF_8);
+  }
+
+  private static long align(long offset) {
+    return (offset + Long.BYTES - 1) & -Long.BYTES;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Propagates revocations and rate-limit usage between the nodes of a
+ * cluster. Every node keeps its own replica of both, so checks never leave
+ * the node; changes are published on the clustered event bus and applied by
+ * the other nodes as they arrive.
+ *
+ * <ul>
+ *   <li>A revocation is published once it is on the revoking node's disk, and
+ *       each other node records it in its own revocation file. A node that
+ *       joins asks a member for a snapshot of the live revocations first.
+ *   <li>The requests each node admits are counted per client and published
+ *       every <code>sync-interval-ms</code>; the other nodes charge them to
+ *       their own buckets.
+ * </ul>
+ *
+ * <p>Propagation is asynchronous: until a change arrives, a node may accept a
+ * token that another node has just revoked, or admit a client that has used
+ * up its allowance elsewhere.
+ *
+ * @author Jason Hallford
+ */
+public final class ClusterReplicator implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterReplicator.class);
+  private static final String ORIGIN = "origin";
+  private static final String JTI = "jti";
+  private static final String EXPIRES_AT = "exp";
+  private static final String USAGE = "usage";
+
+  private final Vertx vertx;
+  private final RevocationList revocationList;
+  private final RateLimiter rateLimiter;
+  private final long syncIntervalMillis;
+  private final String origin = UUID.randomUUID().toString();
+  private final LongAdder revocationsSent = new LongAdder();
+  private final LongAdder revocationsReceived = new LongAdder();
+  private final LongAdder usageSent = new LongAdder();
+  private final LongAdder usageReceived = new LongAdder();
+
+  // Constructors
+
+  /**
+   * @param vertx A clustered Vert.x runtime
+   * @param revocationList This node's revocation list
+   * @param rateLimiter This node's rate limiter, or <code>null</code> if
+   *     rate limiting is disabled
+   * @param syncIntervalMillis How often rate-limit usage is published
+   */
+  public ClusterReplicator(
+      Vertx vertx,
+      RevocationList revocationList,
+      RateLimiter rateLimiter,
+      long syncIntervalMillis) {
+    assert vertx != null : "vertx must not be null.";
+    assert revocationList != null : "revocationList must not be null.";
+    assert syncIntervalMillis > 0 : "syncIntervalMillis must be positive.";
+
+    this.vertx = vertx;
+    this.revocationList = revocationList;
+    this.rateLimiter = rateLimiter;
+    this.syncIntervalMillis = syncIntervalMillis;
+  }
+
+  // Factory methods
+
+  /**
+   * Create a replicator for a clustered runtime.
+   *
+   * @param vertx The Vert.x runtime
+   * @param config The IdP configuration
+   * @param revocationList This node's revocation list
+   * @param rateLimiter This node's rate limiter, or <code>null</code>
+   * @return The replicator, or <code>null</code> if the runtime is not
+   *     clustered
+   */
+  public static ClusterReplicator fromConfig(
+      Vertx vertx, JsonObject config, RevocationList revocationList, RateLimiter rateLimiter) {
+    if (!vertx.isClustered()) {
+      return null;
+    }
+
+    var syncInterval =
+        config
+            .getJsonObject(ConfigProp.CLUSTER, new JsonObject())
+            .getLong(IdpCluster.SYNC_INTERVAL_MS, 100L);
+    if (syncInterval < 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.CLUSTER
+              + "' is invalid: sync-interval-ms must be positive.");
+    }
+    return new ClusterReplicator(vertx, revocationList, rateLimiter, syncInterval);
+  }
+
+  // Methods
+
+  /**
+   * Fetch the cluster's revocations, then start applying and publishing
+   * changes. Call once, after the node has joined the cluster.
+   */
+  public void start() {
+    var bus = this.vertx.eventBus();
+    bus.<JsonObject>request(
+        EventBusAddress.REPLICATE_REVOCATION_SNAPSHOT,
+        this.origin,
+        snapshot -> {
+          if (snapshot.succeeded()) {
+            this.applySnapshot(snapshot.result().body());
+          } else {
+            LOGGER.info("No revocation snapshot available: {}", snapshot.cause().getMessage());
+          }
+
+          // Answer snapshot requests only once this node holds one, so that
+          // a joining node never asks itself.
+          bus.<String>consumer(EventBusAddress.REPLICATE_REVOCATION_SNAPSHOT, this::sendSnapshot);
+        });
+    bus.consumer(EventBusAddress.REPLICATE_REVOCATION, this::applyRevocation);
+
+    if (this.rateLimiter != null) {
+      this.rateLimiter.trackUsage();
+      bus.consumer(EventBusAddress.REPLICATE_RATE_LIMIT_USAGE, this::applyUsage);
+      this.vertx.setPeriodic(this.syncIntervalMillis, id -> this.publishUsage());
+    }
+    LOGGER.info("Replicating revocations and rate-limit usage as node {}.", this.origin);
+  }
+
+  /**
+   * Publish a revocation that this node has recorded.
+   *
+   * @param jti The token's identifier
+   * @param expiresAt The token's expiry, in seconds since the epoch
+   */
+  public void revoked(String jti, long expiresAt) {
+    this.vertx
+        .eventBus()
+        .publish(
+            EventBusAddress.REPLICATE_REVOCATION,
+            new JsonObject().put(ORIGIN, this.origin).put(JTI, jti).put(EXPIRES_AT, expiresAt));
+    this.revocationsSent.increment();
+  }
+
+  /** @return The replicator's counters as JSON */
+  public JsonObject stats() {
+    return new JsonObject()
+        .put("node", this.origin)
+        .put("revocations-sent", this.revocationsSent.sum())
+        .put("revocations-received", this.revocationsReceived.sum())
+        .put("usage-sent", this.usageSent.sum())
+        .put("usage-received", this.usageReceived.sum());
+  }
+
+  // Private methods
+  private void applyRevocation(Message<JsonObject> message) {
+    var body = message.body();
+    if (this.origin.equals(body.getString(ORIGIN))) {
+      return;
+    }
+
+    this.revocationsReceived.increment();
+    var revocation = Map.of(body.getString(JTI), body.getLong(EXPIRES_AT));
+    this.recordRevocations(revocation);
+  }
+
+  private void applySnapshot(JsonObject snapshot) {
+    var revocations = new HashMap<String, Long>();
+    for (var entry : snapshot) {
+      revocations.put(entry.getKey(), ((Number) entry.getValue()).longValue());
+    }
+    this.revocationsReceived.add(revocations.size());
+    this.recordRevocations(revocations);
+  }
+
+  /** Revocations are forced to disk, so they must not block the event loop. */
+  private void recordRevocations(Map<String, Long> revocations) {
+    this.vertx.<Integer>executeBlocking(
+        promise ->
+            promise.complete(
+                this.revocationList.revokeAll(revocations, System.currentTimeMillis() / 1000)),
+        false,
+        recorded -> {
+          if (recorded.failed()) {
+            LOGGER.error("Unable to record replicated revocations.", recorded.cause());
+          } else if (recorded.result() > 0) {
+            LOGGER.debug("Recorded {} replicated revocation(s).", recorded.result());
+          }
+        });
+  }
+
+  private void sendSnapshot(Message<String> request) {
+    request.reply(this.revocationList.snapshot(System.currentTimeMillis() / 1000));
+  }
+
+  private void publishUsage() {
+    var usage = this.rateLimiter.drainUsage();
+    if (!usage.isEmpty()) {
+      this.vertx
+          .eventBus()
+          .publish(
+              EventBusAddress.REPLICATE_RATE_LIMIT_USAGE,
+              new JsonObject().put(ORIGIN, this.origin).put(USAGE, usage));
+      this.usageSent.increment();
+    }
+  }
+
+  private void applyUsage(Message<JsonObject> message) {
+    var body = message.body();
+    if (this.origin.equals(body.getString(ORIGIN))) {
+      return;
+    }
+
+    this.usageReceived.increment();
+    for (var entry : body.getJsonObject(USAGE, new JsonObject())) {
+      this.rateLimiter.charge(entry.getKey(), ((Number) entry.getValue()).intValue());
+    }
+  }
+}
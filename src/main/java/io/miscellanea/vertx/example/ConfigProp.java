@@ -7,8 +7,16 @@ package io.miscellanea.vertx.example;
  */
 public final class ConfigProp {
   public static final String KEYS = "keys";
+  public static final String VERIFICATION_KEYS = "verification-keys";
+  public static final String JWKS_MAX_AGE = "jwks-max-age-seconds";
   public static final String PRIVATE_KEY = "private";
+  public static final String PRIVATE_KEY_PASSPHRASE = "private-passphrase";
   public static final String PUBLIC_KEY = "public";
+  public static final String SECRET_KEY = "secret";
+  public static final String TLS_CERTIFICATE = "tls-certificate";
+  public static final String TLS_PRIVATE_KEY = "tls-private";
+  public static final String TLS_PRIVATE_KEY_PASSPHRASE = "tls-private-passphrase";
+  public static final String KEY_WATCH_PERIOD = "key-watch-period-ms";
   public static final String IDP_CONFIG_FILE = "idp-config-file";
   public static final String IDP_BIND_PORT = "bind-port";
   public static final String IDP_TIME_ZONE = "idp-timezone";
@@ -18,7 +26,29 @@ public final class ConfigProp {
   public static final String CLAIM_EXPIRES_IN = "expires-in";
   public static final String KEY_STORE = "idp-keystore";
   public static final String KEY_STORE_PASSWORD = "idp-keystore-password";
+  public static final String TLS = "tls";
   public static final String CLIENT_CONFIG = "client-config";
+  public static final String CLIENT_CONFIG_FILE = "client-config-file";
+  public static final String CLIENT_STORE = "client-store";
+  public static final String CONFIG_SCAN_PERIOD = "config-scan-period-ms";
+  public static final String ISSUER_INSTANCES = "issuer-instances";
+  public static final String AUTHENTICATOR_INSTANCES = "authenticator-instances";
+  public static final String AUTHN_MODE = "authn-mode";
+  public static final String SIGNING_POOL_SIZE = "signing-pool-size";
+  public static final String SIGNING_QUEUE_SIZE = "signing-queue-size";
+  public static final String TOKEN_CACHE = "token-cache";
+  public static final String BATCH_MAX_SIZE = "batch-max-size";
+  public static final String INTROSPECTION_CACHE = "introspection-cache";
+  public static final String REVOCATION = "revocation";
+  public static final String METRICS = "metrics";
+  public static final String ACCESS_LOG = "access-log";
+  public static final String RATE_LIMIT = "rate-limit";
+  public static final String CLUSTER = "cluster";
+  public static final String ADMISSION = "admission";
+  public static final String HEALTH = "health";
+  public static final String KDF_POOL_SIZE = "kdf-pool-size";
+  public static final String KDF_QUEUE_SIZE = "kdf-queue-size";
+  public static final String CREDENTIAL_CACHE = "credential-cache";
 
   private ConfigProp() {
   }
@@ -7,6 +7,10 @@ package io.miscellanea.vertx.example;
  */
 public final class EventBusAddress {
   public static final String CLIENT_AUTHENTICATE = "client.authenticate";
+  public static final String CLIENT_AUTHENTICATE_BATCH = "client.authenticate-batch";
+  public static final String REPLICATE_REVOCATION = "idp.replicate.revocation";
+  public static final String REPLICATE_REVOCATION_SNAPSHOT = "idp.replicate.revocation-snapshot";
+  public static final String REPLICATE_RATE_LIMIT_USAGE = "idp.replicate.rate-limit-usage";
 
   private EventBusAddress() {
   }
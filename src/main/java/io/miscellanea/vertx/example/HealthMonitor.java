@@ -0,0 +1,236 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether the node is ready to serve tokens, for the orchestrator's
+ * readiness probe. The node is ready once every verticle has deployed, its
+ * signing keys are loaded, at least one client is registered and it is not
+ * overloaded: no monitored event loop lags more than
+ * <code>max-event-loop-lag-ms</code> and no more than
+ * <code>max-signing-queue-depth</code> tokens wait to be signed.
+ *
+ * <p>Each issuer's event loop runs a timer every <code>probe-period-ms</code>
+ * that records how late it fired. A loop that is stuck cannot run its timer,
+ * so a loop whose timer is overdue is taken to lag by as much as it is
+ * overdue. The same samples feed the event-loop lag histogram of
+ * {@link IdpMetrics}, when metrics are enabled. Checking readiness reads these
+ * values and a few counters; it never waits on another thread, so the probe
+ * may be polled every second.
+ *
+ * @author Jason Hallford
+ */
+public final class HealthMonitor implements Shareable {
+  // Fields
+  public static final String PROBE_PERIOD_MS = "probe-period-ms";
+  public static final String MAX_EVENT_LOOP_LAG_MS = "max-event-loop-lag-ms";
+  public static final String MAX_SIGNING_QUEUE_DEPTH = "max-signing-queue-depth";
+
+  private static final String UP = "UP";
+  private static final String DOWN = "DOWN";
+
+  private final long probePeriodMillis;
+  private final long maxLagNanos;
+  private final int maxSigningQueueDepth;
+  private final Map<Long, Probe> probes = new ConcurrentHashMap<>();
+
+  // Constructors
+
+  /**
+   * @param probePeriodMillis How often each monitored event loop measures its
+   *     lag, in milliseconds
+   * @param maxLagMillis The most an event loop may lag while the node is ready
+   * @param maxSigningQueueDepth The most tokens that may wait to be signed
+   *     while the node is ready
+   */
+  public HealthMonitor(long probePeriodMillis, long maxLagMillis, int maxSigningQueueDepth) {
+    assert probePeriodMillis > 0 : "probePeriodMillis must be positive.";
+    assert maxLagMillis > 0 : "maxLagMillis must be positive.";
+    assert maxSigningQueueDepth > 0 : "maxSigningQueueDepth must be positive.";
+
+    this.probePeriodMillis = probePeriodMillis;
+    this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+    this.maxSigningQueueDepth = maxSigningQueueDepth;
+  }
+
+  // Factory methods
+
+  /**
+   * Create a monitor as described by the <code>health</code> element of the
+   * provided configuration. By default event loops are probed every 100 ms
+   * and may lag by 500 ms, and up to half the signing pool's queue may be
+   * used.
+   *
+   * @param config The IdP configuration
+   * @param signingPool The pool tokens are signed on
+   * @return The monitor
+   * @throws IdpException if the <code>health</code> element is invalid
+   */
+  public static HealthMonitor fromConfig(JsonObject config, BoundedWorkerPool signingPool) {
+    var healthConfig = config.getJsonObject(ConfigProp.HEALTH, new JsonObject());
+    var probePeriod = healthConfig.getLong(PROBE_PERIOD_MS, 100L);
+    var maxLag = healthConfig.getLong(MAX_EVENT_LOOP_LAG_MS, 500L);
+    var maxQueueDepth =
+        healthConfig.getInteger(
+            MAX_SIGNING_QUEUE_DEPTH, Math.max(1, signingPool.getQueueCapacity() / 2));
+
+    if (probePeriod < 1 || maxLag < 1 || maxQueueDepth < 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.HEALTH
+              + "' is invalid: "
+              + PROBE_PERIOD_MS
+              + ", "
+              + MAX_EVENT_LOOP_LAG_MS
+              + " and "
+              + MAX_SIGNING_QUEUE_DEPTH
+              + " must be positive.");
+    }
+    return new HealthMonitor(probePeriod, maxLag, maxQueueDepth);
+  }
+
+  // Methods
+
+  /**
+   * Probe the lag of the calling context's event loop until {@link
+   * #stopMonitoring(Vertx, long)} is called. Call this from an event loop.
+   *
+   * @param vertx The Vert.x instance
+   * @return The probe's identifier, to stop it with when the calling verticle
+   *     is undeployed
+   */
+  public long monitorEventLoop(Vertx vertx) {
+    return this.monitorEventLoop(vertx, null);
+  }
+
+  /**
+   * Probe the lag of the calling context's event loop until {@link
+   * #stopMonitoring(Vertx, long)} is called, recording every sample in the
+   * provided metrics too. Call this from an event loop.
+   *
+   * @param vertx The Vert.x instance
+   * @param metrics Receives every lag sample, or <code>null</code>
+   * @return The probe's identifier, to stop it with when the calling verticle
+   *     is undeployed
+   */
+  public long monitorEventLoop(Vertx vertx, IdpMetrics metrics) {
+    var probe = new Probe(TimeUnit.MILLISECONDS.toNanos(this.probePeriodMillis));
+    var timerId =
+        vertx.setPeriodic(
+            this.probePeriodMillis,
+            id -> {
+              long lag = probe.tick(System.nanoTime());
+              if (metrics != null) {
+                metrics.recordEventLoopLag(lag);
+              }
+            });
+    this.probes.put(timerId, probe);
+    return timerId;
+  }
+
+  /**
+   * Stop probing an event loop, so that a loop no longer in use is not taken
+   * to be stuck.
+   *
+   * @param vertx The Vert.x instance
+   * @param probeId The identifier returned by {@link #monitorEventLoop(Vertx)}
+   */
+  public void stopMonitoring(Vertx vertx, long probeId) {
+    vertx.cancelTimer(probeId);
+    this.probes.remove(probeId);
+  }
+
+  /**
+   * @return The largest lag of any monitored event loop, in nanoseconds,
+   *     counting a loop whose probe is overdue as lagging by as much
+   */
+  public long eventLoopLagNanos() {
+    long now = System.nanoTime();
+    long lag = 0;
+    for (var probe : this.probes.values()) {
+      lag = Math.max(lag, probe.lagNanos(now));
+    }
+    return lag;
+  }
+
+  /**
+   * Check whether the node is ready to serve tokens.
+   *
+   * @param started Whether every verticle has deployed
+   * @param keys The node's key ring, or <code>null</code> if it is not loaded
+   * @param clients The number of registered clients
+   * @param signingQueueDepth The number of tokens waiting to be signed
+   * @return The overall <code>status</code>, <code>UP</code> or
+   *     <code>DOWN</code>, and the outcome of each check
+   */
+  public JsonObject readiness(boolean started, KeyRing keys, int clients, int signingQueueDepth) {
+    var lagMillis = TimeUnit.NANOSECONDS.toMillis(this.eventLoopLagNanos());
+    var checks =
+        new JsonObject()
+            .put("startup", check(started))
+            .put("keys", check(keys != null && keys.current() != null))
+            .put("clients", check(clients > 0).put("count", clients))
+            .put(
+                "event-loop",
+                check(lagMillis <= TimeUnit.NANOSECONDS.toMillis(this.maxLagNanos))
+                    .put("lag-ms", lagMillis)
+                    .put("loops", this.probes.size()))
+            .put(
+                "signing-queue",
+                check(signingQueueDepth <= this.maxSigningQueueDepth)
+                    .put("depth", signingQueueDepth));
+
+    var ready = checks.stream().allMatch(entry -> UP.equals(status(entry.getValue())));
+    return new JsonObject().put("status", ready ? UP : DOWN).put("checks", checks);
+  }
+
+  /** @return Whether a report returned by {@link #readiness} is <code>UP</code> */
+  public static boolean isUp(JsonObject report) {
+    return UP.equals(report.getString("status"));
+  }
+
+  // Private methods
+  private static JsonObject check(boolean up) {
+    return new JsonObject().put("status", up ? UP : DOWN);
+  }
+
+  private static String status(Object check) {
+    return ((JsonObject) check).getString("status");
+  }
+
+  /**
+   * The lag last measured on one event loop, and when its next measurement is
+   * due. Vert.x periodic timers run at a fixed rate, so each run is due one
+   * period after the previous one was due. After a stall, the runs that were
+   * missed fire at once; the probe starts a new schedule instead, so that a
+   * stall is sampled once rather than once per missed period.
+   */
+  private static final class Probe {
+    private final long periodNanos;
+    private volatile long due;
+    private volatile long lag;
+
+    Probe(long periodNanos) {
+      this.periodNanos = periodNanos;
+      this.due = System.nanoTime() + periodNanos;
+    }
+
+    /** @return The lag of this run */
+    long tick(long now) {
+      long lag = Math.max(0, now - this.due);
+      this.lag = lag;
+      this.due = lag > this.periodNanos ? now + this.periodNanos : this.due + this.periodNanos;
+      return lag;
+    }
+
+    long lagNanos(long now) {
+      return Math.max(this.lag, now - this.due);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.spi.cluster.hazelcast.ConfigUtil;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+
+/**
+ * Joins IdP nodes into a Vert.x cluster, as described by the
+ * <code>cluster</code> configuration element. Members of a cluster share the
+ * event bus, so the <code>client.authenticate</code> address is served by
+ * every node's authenticators, and {@link ClusterReplicator} propagates
+ * revocations and rate-limit usage between them.
+ *
+ * <p>Members find each other over TCP rather than multicast. By default they
+ * bind to the loopback interface only and look for one another on ports
+ * 5701 to 5703, which is enough to run up to three nodes on one machine; set
+ * <code>host</code> and <code>members</code> to span machines.
+ *
+ * @author Jason Hallford
+ */
+public final class IdpCluster {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdpCluster.class);
+  public static final String ENABLED = "enabled";
+  public static final String NAME = "name";
+  public static final String HOST = "host";
+  public static final String PORT = "port";
+  public static final String MEMBERS = "members";
+  public static final String EVENT_BUS_PORT = "event-bus-port";
+  public static final String SYNC_INTERVAL_MS = "sync-interval-ms";
+  public static final String DEFAULT_NAME = "vertx-jwt-idp";
+  public static final String DEFAULT_HOST = "127.0.0.1";
+  public static final int DEFAULT_PORT = 5701;
+
+  private IdpCluster() {}
+
+  // Methods
+
+  /** @return <code>true</code> if the configuration asks for a clustered node */
+  public static boolean isEnabled(JsonObject config) {
+    var clusterConfig = config.getJsonObject(ConfigProp.CLUSTER);
+    return clusterConfig != null && clusterConfig.getBoolean(ENABLED, true);
+  }
+
+  /**
+   * Start a clustered Vert.x runtime that joins the cluster described by the
+   * <code>cluster</code> element of the provided configuration.
+   *
+   * @param config The IdP configuration
+   * @param resultHandler Receives the runtime once it has joined
+   */
+  public static void join(JsonObject config, Handler<AsyncResult<Vertx>> resultHandler) {
+    var options = vertxOptions(config);
+    var clusterConfig = config.getJsonObject(ConfigProp.CLUSTER);
+    LOGGER.info(
+        "Joining cluster '{}' from {}.",
+        clusterConfig.getString(NAME, DEFAULT_NAME),
+        clusterConfig.getString(HOST, DEFAULT_HOST));
+    Vertx.clusteredVertx(options, resultHandler);
+  }
+
+  // Package methods
+
+  /**
+   * Build the options of a clustered runtime.
+   *
+   * @throws IdpException if the <code>cluster</code> element is invalid
+   */
+  static VertxOptions vertxOptions(JsonObject config) {
+    var clusterConfig = config.getJsonObject(ConfigProp.CLUSTER, new JsonObject());
+    var host = clusterConfig.getString(HOST, DEFAULT_HOST);
+    var port = clusterConfig.getInteger(PORT, DEFAULT_PORT);
+    var eventBusPort = clusterConfig.getInteger(EVENT_BUS_PORT, 0);
+    var members = new ArrayList<String>();
+    for (var member : clusterConfig.getJsonArray(MEMBERS, new JsonArray().add(host))) {
+      if (!(member instanceof String)) {
+        throw new IdpException(
+            "Configuration element '"
+                + ConfigProp.CLUSTER
+                + "' is invalid: members must be host or host:port strings.");
+      }
+      members.add((String) member);
+    }
+    if (port < 1 || eventBusPort < 0) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.CLUSTER
+              + "' is invalid: port must be positive and event-bus-port must not be negative.");
+    }
+
+    var hazelcast = ConfigUtil.loadConfig();
+    hazelcast.getGroupConfig().setName(clusterConfig.getString(NAME, DEFAULT_NAME));
+    hazelcast.setProperty("hazelcast.logging.type", "slf4j");
+    hazelcast.setProperty("hazelcast.phone.home.enabled", "false");
+
+    // Bind to the configured interface only, and find members over TCP.
+    hazelcast.setProperty("hazelcast.socket.bind.any", "false");
+    var network = hazelcast.getNetworkConfig().setPort(port).setPortAutoIncrement(true);
+    network.getInterfaces().setEnabled(true).addInterface(host);
+    var join = network.getJoin();
+    join.getMulticastConfig().setEnabled(false);
+    join.getTcpIpConfig().setEnabled(true).setMembers(members);
+
+    var options = new VertxOptions().setClusterManager(new HazelcastClusterManager(hazelcast));
+    options
+        .getEventBusOptions()
+        .setClustered(true)
+        .setHost(host)
+        .setClusterPublicHost(host)
+        .setPort(eventBusPort);
+    return options;
+  }
+}
@@ -9,21 +9,44 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * A class to load keys and certificates serialized in PEM format.
  *
+ * <p>Parsed keys, certificates and key configuration files are kept in a
+ * registry shared by every loader in the JVM, so each file is read and parsed
+ * once, however many verticles or key sets use it. A file is parsed again only
+ * when it has changed on disk; {@link #changedKeys()} reports such changes so
+ * that the keys that use the file can be reloaded.
+ *
  * @author Jason Hallford
  */
 public class IdpKeyLoader {
   public enum KeyType {
     IdpPublic,
-    IdpPrivate
+    IdpPrivate,
+    IdpSecret,
+    TlsCertificate,
+    TlsPrivate
   }
 
   // Fields
   private static final Logger LOGGER = LoggerFactory.getLogger(IdpKeyLoader.class);
+  private static final String CLASSPATH = "classpath:";
+
+  private static final Map<String, KeyMaterial> REGISTRY = new ConcurrentHashMap<>();
 
   private JsonObject config;
   private KeyType ofType;
@@ -43,73 +66,242 @@ public class IdpKeyLoader {
   public String loadKey() {
     LOGGER.debug("Loading key.");
 
-    JsonObject keyConfig = this.initializeKeyConfig();
+    this.key = this.material("key", FileUtils::formatPemFileForVertx);
 
-    String pathToKey = null;
-    switch (this.ofType) {
-      case IdpPrivate:
-        if (keyConfig.containsKey(ConfigProp.PRIVATE_KEY)
-            && keyConfig.getString(ConfigProp.PRIVATE_KEY) != null) {
-          pathToKey = keyConfig.getString(ConfigProp.PRIVATE_KEY);
-        } else {
-          throw new IdpException("Provided configuration does not contain a private key entry.");
-        }
-        break;
-      case IdpPublic:
-        if (keyConfig.containsKey(ConfigProp.PUBLIC_KEY)
-            && keyConfig.getString(ConfigProp.PUBLIC_KEY) != null) {
-          pathToKey = keyConfig.getString(ConfigProp.PUBLIC_KEY);
-        } else {
-          throw new IdpException("Provided configuration does not contain a public key entry.");
+    LOGGER.debug("Successfully loaded {} key.", ofType);
+
+    return this.key;
+  }
+
+  /**
+   * Load a PEM file as is, armour included, as TLS certificates and keys
+   * are configured.
+   *
+   * @return The PEM file's contents
+   */
+  public String loadPem() {
+    LOGGER.debug("Loading {} PEM file.", ofType);
+
+    return String.join("\n", read(this.keyLocation())) + "\n";
+  }
+
+  /**
+   * Load a private key, decrypting it with the passphrase configured next to
+   * it (<code>private-passphrase</code> or <code>tls-private-passphrase</code>)
+   * if it is encrypted.
+   *
+   * @param factory A factory for keys of the expected algorithm
+   * @return The parsed key, shared with every other loader of the same file
+   */
+  public PrivateKey loadPrivateKey(KeyFactory factory) {
+    var passphraseEntry =
+        this.ofType == KeyType.TlsPrivate
+            ? ConfigProp.TLS_PRIVATE_KEY_PASSPHRASE
+            : ConfigProp.PRIVATE_KEY_PASSPHRASE;
+    var passphrase = this.initializeKeyConfig().getString(passphraseEntry);
+
+    // A key decrypted with one passphrase must not be handed to a loader
+    // configured with another, so the passphrase's digest is part of the form.
+    var form =
+        passphrase == null
+            ? factory.getAlgorithm()
+            : factory.getAlgorithm()
+                + "|"
+                + Base64.getEncoder().encodeToString(ClientSecret.digest(passphrase));
+    return this.material(form, pem -> PemKeyParser.parsePrivateKey(pem, factory, passphrase));
+  }
+
+  /**
+   * Load a public key.
+   *
+   * @param factory A factory for keys of the expected algorithm
+   * @return The parsed key, shared with every other loader of the same file
+   */
+  public PublicKey loadPublicKey(KeyFactory factory) {
+    return this.material(
+        factory.getAlgorithm(), pem -> PemKeyParser.parsePublicKey(pem, factory));
+  }
+
+  /**
+   * Load a certificate chain, the server's certificate first.
+   *
+   * @return The parsed certificates, shared with every other loader of the
+   *     same file
+   */
+  public List<X509Certificate> loadCertificates() {
+    return this.material("X.509", PemKeyParser::parseCertificates);
+  }
+
+  /**
+   * Report the kinds of keys whose files have changed since they were loaded
+   * or last reported. Keys loaded from the classpath never change.
+   *
+   * @return The kinds of keys to reload; every kind if a key configuration
+   *     file changed
+   */
+  public static Set<KeyType> changedKeys() {
+    var changed = EnumSet.noneOf(KeyType.class);
+    for (var material : REGISTRY.values()) {
+      if (material.file == null) {
+        continue;
+      }
+
+      String stamp;
+      try {
+        stamp = stampOf(material.file);
+      } catch (IOException e) {
+        // Wait for a file that is being replaced to reappear.
+        continue;
+      }
+      if (!stamp.equals(material.observed)) {
+        material.observed = stamp;
+        LOGGER.info("Key file {} has changed.", material.file);
+        if (material.ofType == null) {
+          return EnumSet.allOf(KeyType.class);
         }
-        break;
+        changed.add(material.ofType);
+      }
+    }
+    return changed;
+  }
+
+  // Package methods
+
+  /**
+   * Resolve the key configuration in effect: the file named by
+   * <code>idp-config-file</code> if there is one, otherwise the
+   * <code>keys</code> element.
+   *
+   * @param config The IdP configuration
+   * @return The key configuration
+   */
+  static JsonObject keyConfig(JsonObject config) {
+    if (config.containsKey(ConfigProp.IDP_CONFIG_FILE)) {
+      var path = config.getString(ConfigProp.IDP_CONFIG_FILE);
+      LOGGER.debug("Reading key configuration from file at '{}'.", path);
+
+      return readKeyConfigFromFile(path);
     }
+    return config.getJsonObject(ConfigProp.KEYS, new JsonObject());
+  }
+
+  // Private methods
+
+  /**
+   * Return the registered material parsed from this loader's file, parsing
+   * the file if it is new or has changed since it was parsed. Two threads may
+   * parse a file at once; both get equivalent results.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T material(String form, Function<List<String>, T> parser) {
+    var location = this.keyLocation();
+    return (T) lookup(this.ofType + "|" + form + "|" + location, this.ofType, location, parser);
+  }
+
+  private static Object lookup(
+      String registryKey, KeyType ofType, String location, Function<List<String>, ?> parser) {
+    var file = location.startsWith(CLASSPATH) ? null : Path.of(location);
+    String stamp;
+    try {
+      stamp = file != null ? stampOf(file) : CLASSPATH;
+    } catch (IOException e) {
+      throw new IdpException("Unable to read " + ofType + " key from file " + location + "!", e);
+    }
+
+    var current = REGISTRY.get(registryKey);
+    if (current != null && current.stamp.equals(stamp)) {
+      return current.value;
+    }
+
+    LOGGER.debug("Parsing {}.", location);
+    var value = parser.apply(read(location));
+    REGISTRY.put(registryKey, new KeyMaterial(ofType, file, stamp, value));
+    return value;
+  }
 
+  private static List<String> read(String location) {
     try {
-      List<String> contents;
-      if (pathToKey.startsWith("classpath:")) {
-        contents = FileUtils.readTextFileFromClasspath(pathToKey.substring("classpath:".length()));
+      if (location.startsWith(CLASSPATH)) {
+        return FileUtils.readTextFileFromClasspath(location.substring(CLASSPATH.length()));
       } else {
-        contents = Files.readAllLines(Path.of(pathToKey));
+        return Files.readAllLines(Path.of(location), StandardCharsets.UTF_8);
       }
-      this.key = FileUtils.formatPemFileForVertx(contents);
     } catch (IOException e) {
-      throw new IdpException("Unable to read " + ofType + " key from file " + pathToKey + "!", e);
+      throw new IdpException("Unable to read key from file " + location + "!", e);
     }
+  }
 
-    LOGGER.debug("Successfully loaded {} key {}", ofType, this.key);
-
-    return this.key;
+  /**
+   * Identify a version of a file by its modification time, size and, where
+   * the file system has them, its inode, so that a file replaced by a rename
+   * is noticed even if its time and size are unchanged.
+   */
+  private static String stampOf(Path file) throws IOException {
+    var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    return attributes.lastModifiedTime() + "/" + attributes.size() + "/" + attributes.fileKey();
   }
 
-  // Private methods
-  private JsonObject initializeKeyConfig() {
-    JsonObject keyConfig = config.getJsonObject(ConfigProp.KEYS);
-    if (config.containsKey(ConfigProp.IDP_CONFIG_FILE)) {
-      var path = Path.of(config.getString(ConfigProp.IDP_CONFIG_FILE));
-      LOGGER.debug("Reading key configuration from file at '{}'.", path.toString());
+  private String keyLocation() {
+    JsonObject keyConfig = this.initializeKeyConfig();
 
-      keyConfig = this.readKeyConfigFromFile(path);
+    switch (this.ofType) {
+      case IdpPrivate:
+        return this.keyPath(keyConfig, ConfigProp.PRIVATE_KEY, "a private key");
+      case IdpPublic:
+        return this.keyPath(keyConfig, ConfigProp.PUBLIC_KEY, "a public key");
+      case IdpSecret:
+        return this.keyPath(keyConfig, ConfigProp.SECRET_KEY, "a secret key");
+      case TlsCertificate:
+        return this.keyPath(keyConfig, ConfigProp.TLS_CERTIFICATE, "a TLS certificate");
+      default:
+        return this.keyPath(keyConfig, ConfigProp.TLS_PRIVATE_KEY, "a TLS private key");
     }
+  }
 
-    LOGGER.debug("Key config = {}", keyConfig.toString());
-    return keyConfig;
+  private String keyPath(JsonObject keyConfig, String entry, String description) {
+    if (keyConfig.containsKey(entry) && keyConfig.getString(entry) != null) {
+      return keyConfig.getString(entry);
+    }
+    throw new IdpException("Provided configuration does not contain " + description + " entry.");
   }
 
-  private JsonObject readKeyConfigFromFile(Path path) throws IdpException {
-    JsonObject config;
+  private JsonObject initializeKeyConfig() {
+    return keyConfig(this.config);
+  }
 
+  private static JsonObject readKeyConfigFromFile(String path) throws IdpException {
     try {
-      List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
-      var joined = String.join(" ", lines);
-
-      LOGGER.debug("Key config from file = {}", joined);
-      config = (JsonObject) Json.decodeValue(joined);
+      var keyConfig =
+          (JsonObject)
+              lookup(
+                  "config|" + path,
+                  null,
+                  path,
+                  lines -> (JsonObject) Json.decodeValue(String.join(" ", lines)));
+      return keyConfig.copy();
     } catch (Exception e) {
-      throw new IdpException(
-          "Unable to read key configuration from file " + path.toString() + ".", e);
+      throw new IdpException("Unable to read key configuration from file " + path + ".", e);
     }
+  }
+
+  /**
+   * A key, certificate chain or key configuration parsed from a file, with
+   * the version of the file it was parsed from. Parsed values are immutable
+   * and shared.
+   */
+  private static final class KeyMaterial {
+    private final KeyType ofType;
+    private final Path file;
+    private final String stamp;
+    private final Object value;
+    private volatile String observed;
 
-    return config;
+    KeyMaterial(KeyType ofType, Path file, String stamp, Object value) {
+      this.ofType = ofType;
+      this.file = file;
+      this.stamp = stamp;
+      this.value = value;
+      this.observed = stamp;
+    }
   }
 }
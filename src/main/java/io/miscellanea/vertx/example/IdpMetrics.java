@@ -0,0 +1,273 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request, stage and event-loop metrics, exposed in the Prometheus text
+ * exposition format.
+ *
+ * <p>Every histogram and counter that can be recorded on a request path is
+ * allocated up front (a response counter is allocated the first time its
+ * status code is seen), so recording never locks and never allocates.
+ *
+ * <p>Event-loop lag is sampled by the {@link HealthMonitor}'s probe on each
+ * issuer event loop and {@link #recordEventLoopLag(long) recorded} here. A
+ * sample longer than Vert.x's blocked-thread threshold is also counted as a
+ * blocked event loop.
+ *
+ * @author Jason Hallford
+ */
+public final class IdpMetrics implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdpMetrics.class);
+  private static final int MAX_STATUS = 600;
+  public static final String ENABLED = "enabled";
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  /** The endpoints that requests are counted against. */
+  public enum Endpoint {
+    TOKEN,
+    TOKEN_BATCH,
+    INTROSPECT,
+    REVOKE,
+    JWKS,
+    STATS,
+    METRICS,
+    HEALTH,
+    OTHER;
+
+    private final String label = this.name().toLowerCase(Locale.ROOT);
+
+    /** @return The endpoint serving <code>path</code> */
+    public static Endpoint forPath(String path) {
+      if (path == null) {
+        return OTHER;
+      }
+      switch (path) {
+        case "/api/oauth2/token":
+          return TOKEN;
+        case "/api/oauth2/token/batch":
+          return TOKEN_BATCH;
+        case "/api/oauth2/introspect":
+          return INTROSPECT;
+        case "/api/oauth2/revoke":
+          return REVOKE;
+        case "/.well-known/jwks.json":
+          return JWKS;
+        case "/api/stats":
+          return STATS;
+        case "/metrics":
+          return METRICS;
+        case "/health/live":
+        case "/health/ready":
+          return HEALTH;
+        default:
+          return OTHER;
+      }
+    }
+  }
+
+  /** The timed stages of a request. */
+  public enum Stage {
+    FORM_PARSE,
+    AUTHENTICATE,
+    CLAIMS,
+    SIGNING,
+    RESPONSE_WRITE;
+
+    private final String label = this.name().toLowerCase(Locale.ROOT);
+  }
+
+  private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+  private final LatencyHistogram[] requests = new LatencyHistogram[Endpoint.values().length];
+  /** Response counters, created on first use, at <code>endpoint * MAX_STATUS + status</code>. */
+  private final AtomicReferenceArray<LongAdder> responses =
+      new AtomicReferenceArray<>(Endpoint.values().length * MAX_STATUS);
+  private final LatencyHistogram eventLoopLag = new LatencyHistogram();
+  private final LongAdder eventLoopBlocked = new LongAdder();
+  private final long blockedThresholdNanos;
+
+  // Constructors
+  public IdpMetrics() {
+    for (int idx = 0; idx < this.stages.length; idx++) {
+      this.stages[idx] = new LatencyHistogram();
+    }
+    for (int idx = 0; idx < this.requests.length; idx++) {
+      this.requests[idx] = new LatencyHistogram();
+    }
+    this.blockedThresholdNanos =
+        VertxOptions.DEFAULT_MAX_EVENT_LOOP_EXECUTE_TIME_UNIT.toNanos(
+            VertxOptions.DEFAULT_MAX_EVENT_LOOP_EXECUTE_TIME);
+  }
+
+  // Factory methods
+
+  /**
+   * Create metrics as described by the <code>metrics</code> element of the
+   * provided configuration.
+   *
+   * @param config The IdP configuration
+   * @return The metrics, or <code>null</code> if metrics are disabled
+   */
+  public static IdpMetrics fromConfig(JsonObject config) {
+    var metricsConfig = config.getJsonObject(ConfigProp.METRICS, new JsonObject());
+    if (!metricsConfig.getBoolean(ENABLED, true)) {
+      LOGGER.info("Metrics disabled.");
+      return null;
+    }
+
+    return new IdpMetrics();
+  }
+
+  // Methods
+
+  /** @return The histogram timing <code>stage</code> */
+  public LatencyHistogram stage(Stage stage) {
+    return this.stages[stage.ordinal()];
+  }
+
+  /**
+   * Record a completed request.
+   *
+   * @param endpoint The endpoint that served the request
+   * @param status The response's status code
+   * @param nanos The time taken to serve the request
+   */
+  public void recordRequest(Endpoint endpoint, int status, long nanos) {
+    this.requests[endpoint.ordinal()].record(nanos);
+
+    int slot = endpoint.ordinal() * MAX_STATUS + (status >= 0 && status < MAX_STATUS ? status : 0);
+    var counter = this.responses.get(slot);
+    if (counter == null) {
+      this.responses.compareAndSet(slot, null, new LongAdder());
+      counter = this.responses.get(slot);
+    }
+    counter.increment();
+  }
+
+  /**
+   * Record one sample of an event loop's lag.
+   *
+   * @param lagNanos How late the event loop ran a task that was due
+   */
+  public void recordEventLoopLag(long lagNanos) {
+    this.eventLoopLag.record(lagNanos);
+    if (lagNanos > this.blockedThresholdNanos) {
+      this.eventLoopBlocked.increment();
+    }
+  }
+
+  /**
+   * Write the metrics in the Prometheus text format.
+   *
+   * @param out Receives the metrics
+   */
+  public void writeTo(StringBuilder out) {
+    writeHeader(
+        out, "idp_http_requests_total", "counter", "HTTP requests by endpoint and status code.");
+    for (var endpoint : Endpoint.values()) {
+      for (int status = 0; status < MAX_STATUS; status++) {
+        var counter = this.responses.get(endpoint.ordinal() * MAX_STATUS + status);
+        if (counter != null) {
+          out.append("idp_http_requests_total{endpoint=\"")
+              .append(endpoint.label)
+              .append("\",code=\"")
+              .append(status)
+              .append("\"} ")
+              .append(counter.sum())
+              .append('\n');
+        }
+      }
+    }
+
+    writeHeader(
+        out,
+        "idp_http_request_duration_seconds",
+        "histogram",
+        "Time from receiving a request to completing its response.");
+    for (var endpoint : Endpoint.values()) {
+      writeHistogram(
+          out,
+          "idp_http_request_duration_seconds",
+          "endpoint",
+          endpoint.label,
+          this.requests[endpoint.ordinal()]);
+    }
+
+    writeHeader(
+        out, "idp_stage_duration_seconds", "histogram", "Time spent in each stage of a request.");
+    for (var stage : Stage.values()) {
+      writeHistogram(
+          out, "idp_stage_duration_seconds", "stage", stage.label, this.stages[stage.ordinal()]);
+    }
+
+    writeHeader(
+        out,
+        "idp_event_loop_lag_seconds",
+        "histogram",
+        "How late periodic timers fire on the event loops.");
+    writeHistogram(out, "idp_event_loop_lag_seconds", null, null, this.eventLoopLag);
+
+    writeHeader(
+        out,
+        "idp_event_loop_blocked_total",
+        "counter",
+        "Event-loop lag samples longer than the Vert.x blocked-thread threshold.");
+    writeSample(out, "idp_event_loop_blocked_total", null, this.eventLoopBlocked.sum());
+  }
+
+  /** Write the <code># HELP</code> and <code># TYPE</code> lines of a metric family. */
+  static void writeHeader(StringBuilder out, String name, String type, String help) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  /**
+   * Write a sample.
+   *
+   * @param out Receives the sample
+   * @param name The sample's name
+   * @param labels The sample's labels, such as <code>pool="idp-kdf"</code>,
+   *     or <code>null</code>
+   * @param value The sample's value
+   */
+  static void writeSample(StringBuilder out, String name, String labels, double value) {
+    out.append(name);
+    if (labels != null) {
+      out.append('{').append(labels).append('}');
+    }
+    out.append(' ');
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      out.append((long) value);
+    } else {
+      out.append(value);
+    }
+    out.append('\n');
+  }
+
+  // Private methods
+  private static void writeHistogram(
+      StringBuilder out, String name, String label, String value, LatencyHistogram histogram) {
+    var prefix = label != null ? label + "=\"" + value + "\"," : "";
+    var counts = histogram.cumulativeCounts();
+    for (int idx = 0; idx < counts.length; idx++) {
+      var bound =
+          idx < LatencyHistogram.BOUNDS.length
+              ? Double.toString(LatencyHistogram.BOUNDS[idx])
+              : "+Inf";
+      writeSample(out, name + "_bucket", prefix + "le=\"" + bound + "\"", counts[idx]);
+    }
+
+    var labels = label != null ? label + "=\"" + value + "\"" : null;
+    writeSample(out, name + "_sum", labels, histogram.getSumSeconds());
+    writeSample(out, name + "_count", labels, counts[counts.length - 1]);
+  }
+}
@@ -0,0 +1,210 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Accessors for objects shared by every verticle instance in the JVM. Each
+ * object is built exactly once, by whichever caller gets there first, and
+ * published to a Vert.x local map. Objects with different names may be built
+ * in parallel.
+ *
+ * @author Jason Hallford
+ */
+final class IdpSharedData {
+  // Fields
+  static final String MAP_NAME = "idp.shared";
+  static final String KEY_RING = "key-ring";
+  static final String CLIENT_STORE = "client-store";
+  static final String SIGNING_EXECUTOR = "signing-executor";
+  static final String TOKEN_CACHE = "token-cache";
+  static final String VERIFIED_TOKEN_CACHE = "verified-token-cache";
+  static final String REVOCATION_LIST = "revocation-list";
+  static final String METRICS = "metrics";
+  static final String ACCESS_LOG = "access-log";
+  static final String RATE_LIMITER = "rate-limiter";
+  static final String CLUSTER_REPLICATOR = "cluster-replicator";
+  static final String TLS_CONFIG = "tls-config";
+  static final String STARTUP_REPORT = "startup-report";
+  static final String ADMISSION_CONTROLLER = "admission-controller";
+  static final String HEALTH_MONITOR = "health-monitor";
+  static final String KDF_POOL = "kdf-pool";
+  static final String CLIENT_AUTHENTICATOR = "client-authenticator";
+
+  /** Stands in for objects whose factory returned <code>null</code>, i.e. disabled features. */
+  private static final Shareable ABSENT = new Shareable() {};
+
+  private static final ConcurrentHashMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+  private IdpSharedData() {}
+
+  // Accessors
+
+  /**
+   * Return the shared key ring, loading it if necessary. Loading reads files,
+   * so call this from a worker thread.
+   */
+  static KeyRing keyRing(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, KEY_RING, () -> KeyRing.load(config));
+  }
+
+  /**
+   * Return the client store the IdP started with, opening it if necessary.
+   * Opening may read files, so call this from a worker thread.
+   */
+  static ClientStore clientStore(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, CLIENT_STORE, () -> ClientStore.fromConfig(config));
+  }
+
+  /**
+   * Return the issuer's shared TLS settings, loading the server's certificate
+   * and key if necessary. Loading reads files, so call this from a worker
+   * thread.
+   */
+  static TlsConfig tlsConfig(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, TLS_CONFIG, () -> TlsConfig.fromConfig(config));
+  }
+
+  /**
+   * Return the node's startup report.
+   *
+   * @param report The report to publish if none has been yet
+   */
+  static StartupReport startupReport(Vertx vertx, StartupReport report) {
+    return getOrCreate(vertx, STARTUP_REPORT, () -> report);
+  }
+
+  /** Return the shared signing pool, creating it if necessary. */
+  static BoundedWorkerPool signingExecutor(Vertx vertx, JsonObject config) {
+    return getOrCreate(
+        vertx,
+        SIGNING_EXECUTOR,
+        () ->
+            BoundedWorkerPool.fromConfig(
+                vertx,
+                BoundedWorkerPool.SIGNING_POOL,
+                config,
+                ConfigProp.SIGNING_POOL_SIZE,
+                ConfigProp.SIGNING_QUEUE_SIZE,
+                1024));
+  }
+
+  /** Return the shared pool that verifies hashed client secrets, creating it if necessary. */
+  static BoundedWorkerPool kdfPool(Vertx vertx, JsonObject config) {
+    return getOrCreate(
+        vertx,
+        KDF_POOL,
+        () ->
+            BoundedWorkerPool.fromConfig(
+                vertx,
+                BoundedWorkerPool.KDF_POOL,
+                config,
+                ConfigProp.KDF_POOL_SIZE,
+                ConfigProp.KDF_QUEUE_SIZE,
+                256));
+  }
+
+  /** Return the shared client authenticator, creating it if necessary. */
+  static ClientAuthenticator clientAuthenticator(Vertx vertx, JsonObject config) {
+    // Resolve dependencies first; the local map cannot be updated recursively.
+    var clients = clientStore(vertx, config);
+    var kdfPool = kdfPool(vertx, config);
+    return getOrCreate(
+        vertx,
+        CLIENT_AUTHENTICATOR,
+        () -> ClientAuthenticator.fromConfig(clients, kdfPool, config));
+  }
+
+  /** Return the shared rate limiter, or <code>null</code> if rate limiting is disabled. */
+  static RateLimiter rateLimiter(Vertx vertx, JsonObject config) {
+    var clients = clientAuthenticator(vertx, config);
+    return getOrCreate(vertx, RATE_LIMITER, () -> RateLimiter.fromConfig(clients, config));
+  }
+
+  /** Return the shared admission controller, creating it if necessary. */
+  static AdmissionController admissionController(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, ADMISSION_CONTROLLER, () -> AdmissionController.fromConfig(config));
+  }
+
+  /** Return the shared health monitor, creating it if necessary. */
+  static HealthMonitor healthMonitor(Vertx vertx, JsonObject config) {
+    var signingPool = signingExecutor(vertx, config);
+    return getOrCreate(
+        vertx, HEALTH_MONITOR, () -> HealthMonitor.fromConfig(config, signingPool));
+  }
+
+  /**
+   * Return the shared cluster replicator, or <code>null</code> if the runtime
+   * is not clustered. The replicator depends on the revocation list, so call
+   * this from a worker thread.
+   */
+  static ClusterReplicator clusterReplicator(Vertx vertx, JsonObject config) {
+    var revocationList = revocationList(vertx, config);
+    var rateLimiter = rateLimiter(vertx, config);
+    return getOrCreate(
+        vertx,
+        CLUSTER_REPLICATOR,
+        () -> ClusterReplicator.fromConfig(vertx, config, revocationList, rateLimiter));
+  }
+
+  /** Return the shared token cache, or <code>null</code> if caching is disabled. */
+  static TokenCache tokenCache(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, TOKEN_CACHE, () -> TokenCache.fromConfig(config));
+  }
+
+  /**
+   * Return the shared cache of verified tokens, or <code>null</code> if
+   * introspection caching is disabled.
+   */
+  static VerifiedTokenCache verifiedTokenCache(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, VERIFIED_TOKEN_CACHE, () -> VerifiedTokenCache.fromConfig(config));
+  }
+
+  /**
+   * Return the shared revocation list, opening it if necessary. Opening
+   * replays the revocation file, so call this from a worker thread.
+   */
+  static RevocationList revocationList(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, REVOCATION_LIST, () -> RevocationList.fromConfig(config));
+  }
+
+  /** Return the shared metrics, or <code>null</code> if metrics are disabled. */
+  static IdpMetrics metrics(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, METRICS, () -> IdpMetrics.fromConfig(config));
+  }
+
+  /**
+   * Return the shared access log, or <code>null</code> if access and audit
+   * logging are disabled. Opening the log may open a file, so call this from
+   * a worker thread.
+   */
+  static AccessLog accessLog(Vertx vertx, JsonObject config) {
+    return getOrCreate(vertx, ACCESS_LOG, () -> AccessLog.fromConfig(config));
+  }
+
+  // Private methods
+  @SuppressWarnings("unchecked")
+  private static <T extends Shareable> T getOrCreate(
+      Vertx vertx, String name, Supplier<T> factory) {
+    LocalMap<String, Shareable> map = vertx.sharedData().getLocalMap(MAP_NAME);
+    var shared = map.get(name);
+    if (shared == null) {
+      // Build outside the map, whose own locks would serialize unrelated
+      // objects, but under a lock per name, so each is built only once.
+      synchronized (LOCKS.computeIfAbsent(name, key -> new Object())) {
+        shared = map.get(name);
+        if (shared == null) {
+          var created = factory.get();
+          shared = created != null ? created : ABSENT;
+          map.put(name, shared);
+        }
+      }
+    }
+    return shared != ABSENT ? (T) shared : null;
+  }
+}
@@ -0,0 +1,44 @@
+package io.miscellanea.vertx.example;
+
+/**
+ * An immutable, signed access token, its identifier and the time at which it
+ * expires.
+ *
+ * @author Jason Hallford
+ */
+public final class IssuedToken {
+  // Fields
+  private final byte[] token;
+  private final String jti;
+  private final long expiresAt;
+
+  // Constructors
+  public IssuedToken(byte[] token, String jti, long expiresAt) {
+    assert token != null : "token must not be null.";
+    assert jti != null : "jti must not be null.";
+
+    this.token = token;
+    this.jti = jti;
+    this.expiresAt = expiresAt;
+  }
+
+  // Accessors
+
+  /**
+   * Returns the token in JWS compact serialization as ASCII bytes. The array
+   * is shared by every caller and must be treated as read-only.
+   */
+  public byte[] getToken() {
+    return token;
+  }
+
+  /** @return The value of the token's <code>jti</code> claim */
+  public String getJti() {
+    return jti;
+  }
+
+  /** @return The value of the token's <code>exp</code> claim, in seconds since the epoch */
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+}
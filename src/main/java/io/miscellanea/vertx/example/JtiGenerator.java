@@ -0,0 +1,49 @@
+package io.miscellanea.vertx.example;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates token identifiers as time-ordered (version 7) UUIDs: 48 bits of
+ * Unix time in milliseconds, a 12-bit counter that keeps identifiers issued
+ * within the same millisecond unique and ordered, and 62 random bits that
+ * keep identifiers from different JVMs apart.
+ *
+ * <p>Unlike {@link UUID#randomUUID()}, generation never waits on the shared
+ * <code>SecureRandom</code>: the timestamp and counter advance with a single
+ * compare-and-set, and the random bits come from the calling thread's
+ * generator. Token identifiers need to be unique, not unpredictable.
+ *
+ * @author Jason Hallford
+ */
+final class JtiGenerator {
+  // Fields
+  private static final AtomicLong LAST = new AtomicLong();
+
+  private JtiGenerator() {}
+
+  // Methods
+
+  /** @return A new identifier, greater than every one this JVM generated before */
+  static UUID next() {
+    return next(System.currentTimeMillis());
+  }
+
+  // Package methods
+  static UUID next(long nowMillis) {
+    // The timestamp and counter are advanced together. Should the counter
+    // overflow, the timestamp runs ahead of the clock until it catches up.
+    long candidate = nowMillis << 12;
+    long last;
+    long next;
+    do {
+      last = LAST.get();
+      next = candidate > last ? candidate : last + 1;
+    } while (!LAST.compareAndSet(last, next));
+
+    long msb = (next >>> 12) << 16 | 0x7000L | (next & 0xFFFL);
+    long lsb = 0x8000000000000000L | (ThreadLocalRandom.current().nextLong() >>> 2);
+    return new UUID(msb, lsb);
+  }
+}
@@ -0,0 +1,327 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Encodes, signs and wraps access tokens with as little allocation as
+ * possible. The JOSE header is serialized once, at construction, and every
+ * constant claim once per client, in its {@link ClaimTemplate}; each token
+ * only writes its time claims and identifier between the template's
+ * fragments in a reusable buffer.
+ *
+ * <p>Given the same time and <code>jti</code>, the output has the same
+ * layout and claim order as building the claims as a <code>JsonObject</code>,
+ * signing them with <code>JWTAuth</code> and wrapping the result in another
+ * <code>JsonObject</code>. It is not identical to that path: <code>iat</code>
+ * and <code>nbf</code> are seconds since the epoch rather than that value
+ * divided by 1000, and by default <code>jti</code> is a time-ordered version 7
+ * UUID from {@link JtiGenerator} rather than a random one. Instances reuse
+ * their buffers and are not thread safe; create one per thread.
+ *
+ * @author Jason Hallford
+ */
+public class JwtEncoder {
+  // Fields
+  private static final byte[] BASE64URL =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+          .getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] IAT = ascii(",\"iat\":");
+  private static final byte[] NBF = ascii(",\"nbf\":");
+  private static final byte[] JTI = ascii(",\"jti\":\"");
+  private static final byte[] EXP = ascii("\",\"exp\":");
+  private static final byte[] ACCESS_TOKEN = ascii("{\"access_token\":\"");
+  private static final byte[] EXPIRES_IN = ascii("\",\"token_type\":\"bearer\",\"expires_in\":");
+
+  private final JwtSigner signer;
+  private final String issuerClaim;
+  private final int expiresIn;
+  private final LongSupplier clock;
+  private final Supplier<UUID> ids;
+  private final byte[] header;
+  private final LatencyHistogram claimsTime;
+  private final LatencyHistogram signingTime;
+
+  private byte[] claims = new byte[512];
+  private byte[] token = new byte[1024];
+  private UUID jti;
+  private long expiresAt;
+
+  // Constructors
+  public JwtEncoder(JwtSigner signer, String issuerClaim, int expiresIn) {
+    this(signer, issuerClaim, expiresIn, null);
+  }
+
+  /**
+   * @param signer Signs tokens
+   * @param issuerClaim The value of the <code>iss</code> claim of tokens
+   *     issued without a template
+   * @param expiresIn Lifetime of tokens issued without a template, in seconds
+   * @param metrics Receives claim generation and signing times, or
+   *     <code>null</code>
+   */
+  public JwtEncoder(JwtSigner signer, String issuerClaim, int expiresIn, IdpMetrics metrics) {
+    this(signer, issuerClaim, expiresIn, System::currentTimeMillis, JtiGenerator::next, metrics);
+  }
+
+  JwtEncoder(
+      JwtSigner signer,
+      String issuerClaim,
+      int expiresIn,
+      LongSupplier clock,
+      Supplier<UUID> ids) {
+    this(signer, issuerClaim, expiresIn, clock, ids, null);
+  }
+
+  private JwtEncoder(
+      JwtSigner signer,
+      String issuerClaim,
+      int expiresIn,
+      LongSupplier clock,
+      Supplier<UUID> ids,
+      IdpMetrics metrics) {
+    assert signer != null : "signer must not be null.";
+
+    this.signer = signer;
+    this.claimsTime = metrics != null ? metrics.stage(IdpMetrics.Stage.CLAIMS) : null;
+    this.signingTime = metrics != null ? metrics.stage(IdpMetrics.Stage.SIGNING) : null;
+    this.issuerClaim = issuerClaim;
+    this.expiresIn = expiresIn;
+    this.clock = clock;
+    this.ids = ids;
+    this.header = ascii(signer.getEncodedHeader() + ".");
+  }
+
+  // Methods
+
+  /**
+   * Issue a signed token and wrap it in an OAuth 2.0 token response.
+   *
+   * @param subject The token's subject
+   * @param encodedRoles The subject's roles, serialized as a JSON array, or
+   *     <code>null</code> if the subject has none
+   * @return The JSON response body
+   * @throws IdpException if the token cannot be signed
+   */
+  public Buffer encode(String subject, byte[] encodedRoles) {
+    return this.encode(this.template(subject, encodedRoles));
+  }
+
+  /**
+   * Issue a signed token from a client's template and wrap it in an OAuth 2.0
+   * token response.
+   *
+   * @param template The client's claims
+   * @return The JSON response body
+   * @throws IdpException if the token cannot be signed
+   */
+  public Buffer encode(ClaimTemplate template) {
+    int length = this.encodeToken(template);
+
+    var responseSuffix = template.getResponseSuffix();
+    return Buffer.buffer(ACCESS_TOKEN.length + length + responseSuffix.length)
+        .appendBytes(ACCESS_TOKEN)
+        .appendBytes(this.token, 0, length)
+        .appendBytes(responseSuffix);
+  }
+
+  /**
+   * Issue a signed token without wrapping it, so that it can be cached and
+   * wrapped later with {@link #wrap(IssuedToken, long)}.
+   *
+   * @param subject The token's subject
+   * @param encodedRoles The subject's roles, serialized as a JSON array, or
+   *     <code>null</code> if the subject has none
+   * @return The signed token
+   * @throws IdpException if the token cannot be signed
+   */
+  public IssuedToken issue(String subject, byte[] encodedRoles) {
+    return this.issue(this.template(subject, encodedRoles));
+  }
+
+  /**
+   * Issue a signed token from a client's template without wrapping it.
+   *
+   * @param template The client's claims
+   * @return The signed token
+   * @throws IdpException if the token cannot be signed
+   */
+  public IssuedToken issue(ClaimTemplate template) {
+    int length = this.encodeToken(template);
+    return new IssuedToken(Arrays.copyOf(this.token, length), this.jti.toString(), this.expiresAt);
+  }
+
+  /**
+   * Wrap a previously issued token in an OAuth 2.0 token response whose
+   * <code>expires_in</code> reflects the token's remaining lifetime.
+   *
+   * @param token The token
+   * @param now The current time in seconds since the epoch
+   * @return The JSON response body
+   */
+  public static Buffer wrap(IssuedToken token, long now) {
+    var encoded = token.getToken();
+    var buf = new byte[EXPIRES_IN.length + 21];
+    int length = put(EXPIRES_IN, buf, 0);
+    length = putLong(Math.max(0, token.getExpiresAt() - now), buf, length);
+    buf[length++] = '}';
+
+    return Buffer.buffer(ACCESS_TOKEN.length + encoded.length + length)
+        .appendBytes(ACCESS_TOKEN)
+        .appendBytes(encoded)
+        .appendBytes(buf, 0, length);
+  }
+
+  /** @return The key this encoder signs with */
+  public SigningKey getSigningKey() {
+    return this.signer.getKey();
+  }
+
+  // Package methods
+
+  /**
+   * Serialize the claims of a new token into the claims buffer. Package
+   * private so that benchmarks can time claim generation on its own.
+   *
+   * @return The length of the serialized claims
+   */
+  int encodeClaims(ClaimTemplate template) {
+    var prefix = template.getPrefix();
+    var suffix = template.getSuffix();
+    this.claims = ensureCapacity(this.claims, prefix.length + suffix.length + 160);
+
+    var buf = this.claims;
+    int pos = put(prefix, buf, 0);
+
+    long now = this.clock.getAsLong() / 1000;
+    pos = put(IAT, buf, pos);
+    pos = putLong(now, buf, pos);
+    pos = put(NBF, buf, pos);
+    pos = putLong(now, buf, pos);
+
+    this.jti = this.ids.get();
+    pos = put(JTI, buf, pos);
+    pos = putUuid(this.jti, buf, pos);
+
+    pos = put(EXP, buf, pos);
+    this.expiresAt = now + template.getExpiresIn();
+    pos = putLong(this.expiresAt, buf, pos);
+
+    return put(suffix, buf, pos);
+  }
+
+  // Private methods
+  private ClaimTemplate template(String subject, byte[] encodedRoles) {
+    return ClaimTemplate.of(this.issuerClaim, subject, encodedRoles, this.expiresIn);
+  }
+
+  private int encodeToken(ClaimTemplate template) {
+    long start = this.claimsTime != null ? System.nanoTime() : 0;
+    int length = this.encodeClaims(template);
+
+    // Signing input: the precomputed header, then the encoded claims.
+    int pos = 0;
+    this.token = ensureCapacity(this.token, this.header.length + (length + 2) / 3 * 4 + 512);
+    System.arraycopy(this.header, 0, this.token, 0, this.header.length);
+    pos += this.header.length;
+    pos = base64url(this.claims, length, this.token, pos);
+
+    long signingStart = 0;
+    if (this.claimsTime != null) {
+      signingStart = System.nanoTime();
+      this.claimsTime.record(signingStart - start);
+    }
+
+    var signature = this.signer.sign(this.token, 0, pos);
+    this.token = ensureCapacity(this.token, pos + 1 + (signature.length + 2) / 3 * 4);
+    this.token[pos++] = '.';
+    pos = base64url(signature, signature.length, this.token, pos);
+
+    if (this.signingTime != null) {
+      this.signingTime.recordSince(signingStart);
+    }
+    return pos;
+  }
+
+  private static int putUuid(UUID uuid, byte[] buf, int pos) {
+    long msb = uuid.getMostSignificantBits();
+    long lsb = uuid.getLeastSignificantBits();
+    pos = putHex(msb >>> 32, 8, buf, pos);
+    buf[pos++] = '-';
+    pos = putHex(msb >>> 16, 4, buf, pos);
+    buf[pos++] = '-';
+    pos = putHex(msb, 4, buf, pos);
+    buf[pos++] = '-';
+    pos = putHex(lsb >>> 48, 4, buf, pos);
+    buf[pos++] = '-';
+    return putHex(lsb, 12, buf, pos);
+  }
+
+  private static int putHex(long value, int digits, byte[] buf, int pos) {
+    for (int idx = digits - 1; idx >= 0; idx--) {
+      buf[pos + idx] = HEX[(int) (value & 0xF)];
+      value >>>= 4;
+    }
+    return pos + digits;
+  }
+
+  private static int putLong(long value, byte[] buf, int pos) {
+    if (value < 0) {
+      return put(ascii(Long.toString(value)), buf, pos);
+    }
+
+    int digits = 1;
+    for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+      digits++;
+    }
+    for (int idx = pos + digits - 1; idx >= pos; idx--) {
+      buf[idx] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return pos + digits;
+  }
+
+  private static int put(byte[] src, byte[] buf, int pos) {
+    System.arraycopy(src, 0, buf, pos, src.length);
+    return pos + src.length;
+  }
+
+  private static int base64url(byte[] src, int length, byte[] dst, int pos) {
+    int idx = 0;
+    for (; idx + 2 < length; idx += 3) {
+      int bits = (src[idx] & 0xFF) << 16 | (src[idx + 1] & 0xFF) << 8 | (src[idx + 2] & 0xFF);
+      dst[pos++] = BASE64URL[bits >>> 18];
+      dst[pos++] = BASE64URL[(bits >>> 12) & 0x3F];
+      dst[pos++] = BASE64URL[(bits >>> 6) & 0x3F];
+      dst[pos++] = BASE64URL[bits & 0x3F];
+    }
+
+    int remaining = length - idx;
+    if (remaining == 1) {
+      int bits = (src[idx] & 0xFF) << 16;
+      dst[pos++] = BASE64URL[bits >>> 18];
+      dst[pos++] = BASE64URL[(bits >>> 12) & 0x3F];
+    } else if (remaining == 2) {
+      int bits = (src[idx] & 0xFF) << 16 | (src[idx + 1] & 0xFF) << 8;
+      dst[pos++] = BASE64URL[bits >>> 18];
+      dst[pos++] = BASE64URL[(bits >>> 12) & 0x3F];
+      dst[pos++] = BASE64URL[(bits >>> 6) & 0x3F];
+    }
+
+    return pos;
+  }
+
+  private static byte[] ensureCapacity(byte[] buf, int capacity) {
+    return buf.length >= capacity ? buf : Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
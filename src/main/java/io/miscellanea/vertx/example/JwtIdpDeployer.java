@@ -1,14 +1,23 @@
 package io.miscellanea.vertx.example;
 
+import io.miscellanea.vertx.example.IdpKeyLoader.KeyType;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
 import io.vertx.config.ConfigStoreOptions;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
 /**
  * The example's main class. It deploys two verticles:
  * <ol>
@@ -16,6 +25,10 @@ import org.slf4j.LoggerFactory;
  *     <li>A authenticator verticle, responsible for authenticating client
  *     token requests</li>
  * </ol>
+ * Each verticle is deployed as several instances (by default, one per
+ * available core) that share the signing key and client registry. When the
+ * <code>cluster</code> element enables it, the node joins a cluster of IdPs
+ * first; see {@link IdpCluster}.
  *
  * @author Jason Hallford
  */
@@ -25,41 +38,444 @@ public class JwtIdpDeployer {
 
   // Main method
   public static void main(String[] args) {
+    var report = new StartupReport();
+
     LOGGER.debug("Bootstrapping the Vert.x runtime...");
+    long start = System.nanoTime();
     var vertx = Vertx.vertx();
+    report.record("vertx", start, System.nanoTime());
     LOGGER.debug("Vert.x runtime initialized.");
 
-    // Configure the runtime so that it reads configuration in the following order:
-    // 1. System properties specified as "-D" options on the command line
-    // 2. OS environment variables (useful for Docker)
-    // 3. The default configuration file included in the JAR
-    var defaultStore =
-        new ConfigStoreOptions()
-            .setType("file")
-            .setFormat("json")
-            .setConfig(new JsonObject().put("path", "conf/issuer-config.json"));
-    var systemPropsStore = new ConfigStoreOptions().setType("sys");
-    var envVarStore = new ConfigStoreOptions().setType("env");
-
-    var configRetrieverOpts =
+    // Read the configuration once to learn whether the node is clustered and
+    // whether an external client file should be watched, then build the
+    // retriever that the IdP runs with.
+    long configStart = System.nanoTime();
+    var bootstrap = ConfigRetriever.create(vertx, retrieverOptions(new JsonObject()));
+    bootstrap.getConfig(
+        config -> {
+          bootstrap.close();
+          if (config.failed()) {
+            LOGGER.error("Unable to read IdP configuration.", config.cause());
+            vertx.close();
+            return;
+          }
+          report.record("bootstrap-config", configStart, System.nanoTime());
+          if (!IdpCluster.isEnabled(config.result())) {
+            run(vertx, config.result(), report);
+            return;
+          }
+
+          // A clustered node runs on a clustered runtime; the bootstrap
+          // runtime has served its purpose.
+          vertx.close();
+          try {
+            long joinStart = System.nanoTime();
+            IdpCluster.join(
+                config.result(),
+                clustered -> {
+                  if (clustered.failed()) {
+                    LOGGER.error("Unable to join the IdP cluster.", clustered.cause());
+                    return;
+                  }
+                  report.record("cluster-join", joinStart, System.nanoTime());
+                  run(clustered.result(), config.result(), report);
+                });
+          } catch (IdpException e) {
+            LOGGER.error(e.getMessage());
+          }
+        });
+  }
+
+  // Private methods
+
+  /** Deploy the IdP with watched configuration. */
+  private static void run(Vertx vertx, JsonObject bootstrap, StartupReport report) {
+    IdpSharedData.startupReport(vertx, report);
+
+    long start = System.nanoTime();
+    var retriever = ConfigRetriever.create(vertx, retrieverOptions(bootstrap));
+    retriever.getConfig(
+        watched -> {
+          if (watched.failed()) {
+            LOGGER.error("Unable to read IdP configuration.", watched.cause());
+            vertx.close();
+            return;
+          }
+          report.record("config", start, System.nanoTime());
+
+          deploy(vertx, watched.result(), report);
+          watchKeys(vertx, retriever);
+          retriever.listen(
+              change ->
+                  reload(vertx, change.getPreviousConfiguration(), change.getNewConfiguration()));
+        });
+  }
+
+  /**
+   * Configure the runtime so that it reads configuration in the following
+   * order, later stores overriding earlier ones:
+   *
+   * <ol>
+   *   <li>The default configuration file included in the JAR
+   *   <li>The file named by <code>client-config-file</code>, if any
+   *   <li>OS environment variables (useful for Docker)
+   *   <li>System properties specified as "-D" options on the command line
+   * </ol>
+   *
+   * Stores are re-read every <code>config-scan-period-ms</code>.
+   */
+  private static ConfigRetrieverOptions retrieverOptions(JsonObject bootstrap) {
+    var options =
         new ConfigRetrieverOptions()
-            .addStore(defaultStore)
-            .addStore(envVarStore)
-            .addStore(systemPropsStore);
-
-    // Deploy the verticles.
-    ConfigRetriever.create(vertx, configRetrieverOpts)
-        .getConfig(
-            config -> {
-              var json = config.result();
-
-              // Deploy the credential manager
-              var credOpts = new DeploymentOptions().setConfig(json);
-              vertx.deployVerticle(AuthenticatorVerticle.class.getName(), credOpts);
-
-              // Deploy the REST API
-              var apiOpts = new DeploymentOptions().setConfig(json);
-              vertx.deployVerticle(JwtIssuerVerticle.class.getName(), apiOpts);
+            .addStore(
+                new ConfigStoreOptions()
+                    .setType("file")
+                    .setFormat("json")
+                    .setConfig(new JsonObject().put("path", "conf/issuer-config.json")));
+
+    var clientConfigFile = bootstrap.getString(ConfigProp.CLIENT_CONFIG_FILE);
+    if (clientConfigFile != null) {
+      options.addStore(
+          new ConfigStoreOptions()
+              .setType("file")
+              .setFormat("json")
+              .setConfig(new JsonObject().put("path", clientConfigFile)));
+    }
+
+    return options
+        .addStore(new ConfigStoreOptions().setType("env"))
+        .addStore(new ConfigStoreOptions().setType("sys"))
+        .setScanPeriod(bootstrap.getLong(ConfigProp.CONFIG_SCAN_PERIOD, 5000L));
+  }
+
+  private static void deploy(Vertx vertx, JsonObject json, StartupReport report) {
+    int authnInstances;
+    int issuerInstances;
+    try {
+      authnInstances = instanceCount(json, ConfigProp.AUTHENTICATOR_INSTANCES);
+      issuerInstances = instanceCount(json, ConfigProp.ISSUER_INSTANCES);
+    } catch (IdpException e) {
+      LOGGER.error(e.getMessage());
+      vertx.close();
+      return;
+    }
+
+    // Parse the keys, load the TLS key store, build the client registry and
+    // open the other shared state once, before any verticle instance starts,
+    // so that every instance shares them. Independent parts load in parallel
+    // on worker threads; the JDK reads the session ticket setting when TLS is
+    // first used, so it is made before any of them start.
+    TlsConfig.configureSessionTickets(json);
+    CompositeFuture.all(
+            List.of(
+                load(vertx, report, "keys", () -> IdpSharedData.keyRing(vertx, json)),
+                load(vertx, report, "tls", () -> IdpSharedData.tlsConfig(vertx, json)),
+                load(
+                    vertx,
+                    report,
+                    "clients",
+                    () -> IdpSharedData.clientAuthenticator(vertx, json)),
+                load(vertx, report, "revocations", () -> IdpSharedData.revocationList(vertx, json)),
+                load(vertx, report, "access-log", () -> IdpSharedData.accessLog(vertx, json)),
+                load(
+                    vertx,
+                    report,
+                    "signing-pool",
+                    () -> IdpSharedData.signingExecutor(vertx, json)),
+                load(
+                    vertx,
+                    report,
+                    "caches",
+                    () -> {
+                      IdpSharedData.tokenCache(vertx, json);
+                      return IdpSharedData.verifiedTokenCache(vertx, json);
+                    })))
+        .compose(
+            independent ->
+                load(
+                    vertx,
+                    report,
+                    "rate-limit",
+                    () -> {
+                      IdpSharedData.rateLimiter(vertx, json);
+                      return IdpSharedData.clusterReplicator(vertx, json);
+                    }))
+        .setHandler(
+            shared -> {
+              if (shared.failed()) {
+                LOGGER.error("Unable to initialize shared IdP state.", shared.cause());
+                vertx.close();
+                return;
+              }
+
+              schedulePurge(vertx, json);
+              scheduleIntrospectionCachePurge(vertx, json);
+              scheduleRateLimitSweep(vertx, json);
+              startReplication(vertx, json);
+              deployVerticles(vertx, json, report, authnInstances, issuerInstances);
             });
   }
+
+  /**
+   * Deploy the credential manager, then the REST API. Instances of the REST
+   * API share the HTTP bind port.
+   */
+  private static void deployVerticles(
+      Vertx vertx, JsonObject json, StartupReport report, int authnInstances, int issuerInstances) {
+    var credOpts = new DeploymentOptions().setConfig(json).setInstances(authnInstances);
+    var apiOpts = new DeploymentOptions().setConfig(json).setInstances(issuerInstances);
+
+    long start = System.nanoTime();
+    Promise<String> credDeployed = Promise.promise();
+    vertx.deployVerticle(AuthenticatorVerticle.class.getName(), credOpts, credDeployed);
+    credDeployed
+        .future()
+        .compose(
+            id -> {
+              long apiStart = System.nanoTime();
+              report.record("authenticator-verticles", start, apiStart);
+
+              Promise<String> apiDeployed = Promise.promise();
+              vertx.deployVerticle(JwtIssuerVerticle.class.getName(), apiOpts, apiDeployed);
+              return apiDeployed
+                  .future()
+                  .map(
+                      deployment -> {
+                        report.record("issuer-verticles", apiStart, System.nanoTime());
+                        return deployment;
+                      });
+            })
+        .setHandler(
+            deployed -> {
+              if (deployed.succeeded()) {
+                LOGGER.info(
+                    "Deployed {} authenticator and {} issuer verticle instance(s).",
+                    authnInstances,
+                    issuerInstances);
+                report.ready();
+              } else {
+                LOGGER.error("Unable to deploy IdP verticles.", deployed.cause());
+                vertx.close();
+              }
+            });
+  }
+
+  /** Build part of the shared state on a worker thread, as one phase of startup. */
+  private static Future<Void> load(
+      Vertx vertx, StartupReport report, String phase, Supplier<?> loader) {
+    Promise<Void> promise = Promise.promise();
+    vertx.<Void>executeBlocking(
+        loading -> {
+          report.time(phase, loader);
+          loading.complete();
+        },
+        false,
+        promise);
+    return promise.future();
+  }
+
+  /**
+   * Apply changed configuration: rotate keys if the key configuration changed
+   * and publish a new client store if the client configuration changed. Other
+   * changes take effect at the next restart.
+   */
+  private static void reload(Vertx vertx, JsonObject previous, JsonObject json) {
+    if (changed(
+        previous,
+        json,
+        ConfigProp.IDP_ALGORITHM,
+        ConfigProp.KEYS,
+        ConfigProp.VERIFICATION_KEYS)) {
+      rotateKeys(vertx, json);
+    }
+    if (changed(previous, json, ConfigProp.CLIENT_CONFIG, ConfigProp.CLIENT_STORE)) {
+      reloadClients(vertx, json);
+    }
+  }
+
+  private static boolean changed(JsonObject previous, JsonObject json, String... properties) {
+    for (var property : properties) {
+      if (!Objects.equals(previous.getValue(property), json.getValue(property))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void rotateKeys(Vertx vertx, JsonObject json) {
+    vertx.<Void>executeBlocking(
+        promise -> {
+          IdpSharedData.keyRing(vertx, json).rotate(KeySet.load(json));
+
+          // Cached tokens were signed with the previous key, which may have
+          // been withdrawn.
+          var tokenCache = IdpSharedData.tokenCache(vertx, json);
+          if (tokenCache != null) {
+            tokenCache.clear();
+          }
+          promise.complete();
+        },
+        rotated -> {
+          if (rotated.failed()) {
+            LOGGER.error("Unable to rotate keys; keeping the current ones.", rotated.cause());
+          }
+        });
+  }
+
+  /**
+   * Every <code>key-watch-period-ms</code>, reload the signing keys or the
+   * TLS certificate and key if their files have changed. Reloads use the
+   * latest configuration and leave the current keys in place if they fail.
+   */
+  private static void watchKeys(Vertx vertx, ConfigRetriever retriever) {
+    var period = retriever.getCachedConfig().getLong(ConfigProp.KEY_WATCH_PERIOD, 5000L);
+    if (period < 1) {
+      return;
+    }
+
+    vertx.setPeriodic(
+        period,
+        id ->
+            vertx.<Set<KeyType>>executeBlocking(
+                promise -> promise.complete(IdpKeyLoader.changedKeys()),
+                false,
+                changed -> {
+                  if (changed.failed()) {
+                    LOGGER.error("Unable to check key files for changes.", changed.cause());
+                    return;
+                  }
+
+                  var json = retriever.getCachedConfig();
+                  var keys = changed.result();
+                  if (keys.contains(KeyType.IdpPrivate)
+                      || keys.contains(KeyType.IdpPublic)
+                      || keys.contains(KeyType.IdpSecret)) {
+                    rotateKeys(vertx, json);
+                  }
+                  if (keys.contains(KeyType.TlsCertificate)
+                      || keys.contains(KeyType.TlsPrivate)) {
+                    reloadTlsKeys(vertx, json);
+                  }
+                }));
+  }
+
+  private static void reloadTlsKeys(Vertx vertx, JsonObject json) {
+    vertx.<Void>executeBlocking(
+        promise -> {
+          IdpSharedData.tlsConfig(vertx, json).reloadKeys(json);
+          promise.complete();
+        },
+        reloaded -> {
+          if (reloaded.failed()) {
+            LOGGER.error(
+                "Unable to reload the TLS certificate and key; keeping the current ones.",
+                reloaded.cause());
+          }
+        });
+  }
+
+  /** Publish a new client store opened from changed configuration. */
+  private static void reloadClients(Vertx vertx, JsonObject json) {
+    vertx.<JsonObject>executeBlocking(
+        promise ->
+            promise.complete(
+                IdpSharedData.clientAuthenticator(vertx, json)
+                    .reload(ClientStore.fromConfig(json))),
+        reloaded -> {
+          if (reloaded.succeeded()) {
+            LOGGER.info("Reloaded client store: {}.", reloaded.result());
+          } else {
+            LOGGER.error(
+                "Unable to reload client store; keeping the current one.", reloaded.cause());
+          }
+        });
+  }
+
+  /** Periodically forget revocations of tokens that have expired. */
+  private static void schedulePurge(Vertx vertx, JsonObject json) {
+    var period =
+        json.getJsonObject(ConfigProp.REVOCATION, new JsonObject())
+            .getLong(RevocationList.PURGE_PERIOD_SECONDS, 60L);
+    if (period < 1) {
+      return;
+    }
+
+    var revocationList = IdpSharedData.revocationList(vertx, json);
+    vertx.setPeriodic(
+        period * 1000,
+        id ->
+            vertx.<Integer>executeBlocking(
+                promise ->
+                    promise.complete(revocationList.purge(System.currentTimeMillis() / 1000)),
+                false,
+                purged -> {
+                  if (purged.failed()) {
+                    LOGGER.error("Unable to purge expired revocations.", purged.cause());
+                  }
+                }));
+  }
+
+  /** Periodically drop cached verifications of tokens that have expired. */
+  private static void scheduleIntrospectionCachePurge(Vertx vertx, JsonObject json) {
+    var cache = IdpSharedData.verifiedTokenCache(vertx, json);
+    var period =
+        json.getJsonObject(ConfigProp.INTROSPECTION_CACHE, new JsonObject())
+            .getLong(VerifiedTokenCache.PURGE_PERIOD_SECONDS, 60L);
+    if (cache == null || period < 1) {
+      return;
+    }
+
+    vertx.setPeriodic(
+        period * 1000,
+        id ->
+            vertx.<Integer>executeBlocking(
+                promise -> promise.complete(cache.purge(System.currentTimeMillis() / 1000)),
+                false,
+                purged -> {
+                  if (purged.failed()) {
+                    LOGGER.error("Unable to purge expired verifications.", purged.cause());
+                  }
+                }));
+  }
+
+  /** Periodically drop the rate-limit buckets of idle clients. */
+  private static void scheduleRateLimitSweep(Vertx vertx, JsonObject json) {
+    var rateLimiter = IdpSharedData.rateLimiter(vertx, json);
+    var period =
+        json.getJsonObject(ConfigProp.RATE_LIMIT, new JsonObject())
+            .getLong(RateLimiter.SWEEP_PERIOD_SECONDS, 60L);
+    if (rateLimiter == null || period < 1) {
+      return;
+    }
+
+    vertx.setPeriodic(
+        period * 1000,
+        id ->
+            vertx.<Integer>executeBlocking(
+                promise -> promise.complete(rateLimiter.sweep()),
+                false,
+                swept -> {
+                  if (swept.failed()) {
+                    LOGGER.error("Unable to sweep idle rate-limit buckets.", swept.cause());
+                  }
+                }));
+  }
+
+  /** Share revocations and rate-limit usage with the rest of the cluster, if any. */
+  private static void startReplication(Vertx vertx, JsonObject json) {
+    var replicator = IdpSharedData.clusterReplicator(vertx, json);
+    if (replicator != null) {
+      replicator.start();
+    }
+  }
+
+  private static int instanceCount(JsonObject config, String property) {
+    var instances = config.getInteger(property, Runtime.getRuntime().availableProcessors());
+    if (instances < 1) {
+      throw new IdpException(
+          "Configuration element '" + property + "' must be at least 1; found " + instances + ".");
+    }
+
+    return instances;
+  }
 }
@@ -1,47 +1,74 @@
 package io.miscellanea.vertx.example;
 
-import io.miscellanea.vertx.example.IdpKeyLoader.KeyType;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
-import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.core.net.JksOptions;
-import io.vertx.ext.auth.PubSecKeyOptions;
-import io.vertx.ext.auth.jwt.JWTAuth;
-import io.vertx.ext.auth.jwt.JWTAuthOptions;
-import io.vertx.ext.jwt.JWTOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 public class JwtIssuerVerticle extends AbstractVerticle {
   // Fields
   private static final Logger LOGGER = LoggerFactory.getLogger(JwtIssuerVerticle.class);
-  public static final String DEFAULT_TIMEZONE = "Z";
-  public static final String DEFAULT_ALGORITHM = "RS256";
   public static final String CLIENT_ID_FORM_FIELD = "client_id";
   public static final String CLIENT_SECRET_FORM_FIELD = "client_secret";
+  public static final String TOKEN_FORM_FIELD = "token";
   public static final String CONTENT_TYPE_HEADER = "Content-Type";
   public static final String JWT_WRAPPER_ACCESS_TOKEN = "access_token";
   public static final String JWT_WRAPPER_TOKEN_TYPE = "token_type";
   public static final String JWT_WRAPPER_EXPIRES_IN = "expires_in";
+  public static final String RETRY_AFTER_HEADER = "Retry-After";
+  public static final String RETRY_AFTER_SECONDS = "1";
   public static final String MIME_TYPE_JSON = "application/json";
+  public static final String AUTHN_MODE_EVENT_BUS = "event-bus";
+  public static final String AUTHN_MODE_LOCAL = "local";
+  public static final String CACHE_CONTROL_HEADER = "Cache-Control";
+  public static final String ETAG_HEADER = "ETag";
+  public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+  public static final String MIME_TYPE_JWKS = "application/jwk-set+json";
+  private static final String REQUEST_START = "idp.request-start";
+  private static final int BATCH_ENTRY_MAX_BYTES = 1024;
+  private static final String LIVE = new JsonObject().put("status", "UP").encode();
 
   private int bindPort;
-  private String keyStorePath;
-  private String keyStorePassword;
-  private JWTAuth signer;
-  private String signerAlgorithm;
+  private TlsConfig tlsConfig;
+  private KeyRing keyRing;
+  private ThreadLocal<JwtEncoder> encoders;
+  private String jwksCacheControl;
+  private BoundedWorkerPool signingExecutor;
+  private TokenCache tokenCache;
+  private VerifiedTokenCache verifiedTokenCache;
+  private RevocationList revocationList;
+  private IdpMetrics metrics;
+  private AccessLog accessLog;
+  private RateLimiter rateLimiter;
+  private ClusterReplicator replicator;
+  private AdmissionController admission;
+  private HealthMonitor health;
+  private long healthProbe = -1;
+  private DeliveryOptions authnDelivery;
   private String issuerClaim;
-  private String issuerTimeZone;
   private int epiresIn;
+  private int batchMaxSize;
+  private ClientAuthenticator authenticator;
+  private ClientAuthenticator clients;
 
   // Constructors
   public JwtIssuerVerticle() {}
@@ -60,22 +87,17 @@ public class JwtIssuerVerticle extends AbstractVerticle {
         this::createJwtSigner,
         asyncResult -> {
           if (asyncResult.succeeded()) {
-            // Configure the endpoint for TLS. This requires that we provide HTTP
-            // options that identify the keystore and its password.
-            var httpOpts =
-                new HttpServerOptions()
-                    .setSsl(true)
-                    .setKeyStoreOptions(
-                        new JksOptions()
-                            .setPath(this.keyStorePath)
-                            .setPassword(this.keyStorePassword));
+            // Configure the endpoint for TLS, and HTTP/2 where clients
+            // negotiate it.
             vertx
-                .createHttpServer(httpOpts)
+                .createHttpServer(this.tlsConfig.serverOptions())
                 .requestHandler(router)
                 .listen(
                     this.bindPort,
                     result -> {
                       if (result.succeeded()) {
+                        this.tlsConfig.tuneSessionCache(vertx, result.result());
+                        this.healthProbe = this.health.monitorEventLoop(vertx, this.metrics);
                         LOGGER.debug("HTTP server started successfully.");
                         startPromise.complete();
                       } else {
@@ -91,21 +113,31 @@ public class JwtIssuerVerticle extends AbstractVerticle {
         });
   }
 
+  @Override
+  public void stop() {
+    // The monitor is shared, so it must forget this instance's event loop.
+    if (this.healthProbe != -1) {
+      this.health.stopMonitoring(vertx, this.healthProbe);
+    }
+  }
+
   // Verticle initialization
   private void createJwtSigner(Promise<Object> promise) {
     try {
-      String secretKey = new IdpKeyLoader(KeyType.IdpPrivate, config()).loadKey();
-      String publicKey = new IdpKeyLoader(KeyType.IdpPublic, config()).loadKey();
-
-      this.signer =
-          JWTAuth.create(
-              vertx,
-              new JWTAuthOptions()
-                  .addPubSecKey(
-                      new PubSecKeyOptions()
-                          .setAlgorithm("RS256")
-                          .setPublicKey(publicKey)
-                          .setSecretKey(secretKey)));
+      // Keys are parsed once and shared by every issuer instance. Tokens are
+      // signed on the shared signing pool, and each pool thread gets its own
+      // encoder so threads never contend for one.
+      this.keyRing = IdpSharedData.keyRing(vertx, config());
+
+      // Build one signer up front so that an unusable key fails deployment
+      // rather than the first token request.
+      new JwtSigner(this.keyRing.current().getActive());
+      this.encoders = new ThreadLocal<>();
+      this.signingExecutor = IdpSharedData.signingExecutor(vertx, config());
+      this.tokenCache = IdpSharedData.tokenCache(vertx, config());
+      this.verifiedTokenCache = IdpSharedData.verifiedTokenCache(vertx, config());
+      this.revocationList = IdpSharedData.revocationList(vertx, config());
+      this.tlsConfig = IdpSharedData.tlsConfig(vertx, config());
 
       promise.complete();
     } catch (Exception e) {
@@ -118,6 +150,23 @@ public class JwtIssuerVerticle extends AbstractVerticle {
     // requests to specific handlers based on URL pattern matching.
     var router = Router.router(vertx);
 
+    // Time and log every request, including those no route matches.
+    if (this.metrics != null || (this.accessLog != null && this.accessLog.isAccessEnabled())) {
+      router.route().handler(this::startRequest);
+    }
+
+    // Shed OAuth requests beyond the node's limit before reading their bodies.
+    router.route("/api/oauth2*").handler(this::admit);
+
+    // Bound the batch endpoint's body by its largest batch, so an oversized
+    // request is refused while it is read rather than buffered and parsed.
+    router
+        .post("/api/oauth2/token/batch")
+        .handler(
+            BodyHandler.create()
+                .setBodyLimit((long) (this.batchMaxSize + 1) * BATCH_ENTRY_MAX_BYTES))
+        .failureHandler(this::refuseOversizedBatch);
+
     // Add a body handler to all routes. If we forget to do this,
     // we won't be able to access the content of any POST methods!
     router.route("/api/oauth2*").handler(BodyHandler.create());
@@ -125,124 +174,905 @@ public class JwtIssuerVerticle extends AbstractVerticle {
     // Add handler to issue client credential flow tokens
     router.post("/api/oauth2/token").handler(this::issueJwt);
 
+    // Add handler to issue tokens to many clients in one request
+    router.post("/api/oauth2/token/batch").handler(this::issueJwtBatch);
+
+    // Add handler to introspect tokens (RFC 7662)
+    router.post("/api/oauth2/introspect").handler(this::introspectJwt);
+
+    // Add handler to revoke tokens (RFC 7009)
+    router.post("/api/oauth2/revoke").handler(this::revokeJwt);
+
+    // Add handler to publish the IdP's public keys
+    router.get("/.well-known/jwks.json").handler(this::serveJwks);
+
+    // Add handlers for the orchestrator's liveness and readiness probes
+    router.get("/health/live").handler(this::reportLiveness);
+    router.get("/health/ready").handler(this::reportReadiness);
+
+    // Add handler to report runtime statistics
+    router.get("/api/stats").handler(this::reportStats);
+
+    // Add handler to expose metrics in the Prometheus text format
+    if (this.metrics != null) {
+      router.get("/metrics").handler(this::reportMetrics);
+    }
+
     return router;
   }
 
   private void initializeClaimsAndIssuerConfiguration() {
     // Initialize issuer configuration properties
     this.bindPort = config().getInteger(ConfigProp.IDP_BIND_PORT);
-    this.issuerTimeZone =
-        config().getString(ConfigProp.IDP_TIME_ZONE) != null
-            ? config().getString(ConfigProp.IDP_TIME_ZONE)
-            : DEFAULT_TIMEZONE; // default to UTC
-    this.signerAlgorithm =
-        config().getString(ConfigProp.IDP_ALGORITHM) != null
-            ? config().getString(ConfigProp.IDP_ALGORITHM)
-            : DEFAULT_ALGORITHM; // RSA with SHA-256 hash
-
-    // Initialize TLS configuration
-    this.keyStorePath = config().getString(ConfigProp.KEY_STORE);
-    if (this.keyStorePath == null) {
-      throw new IdpException(
-          "Required configuration element '"
-              + ConfigProp.KEY_STORE
-              + "' is missing; verticle will not deploy.");
-    }
 
-    this.keyStorePassword = config().getString(ConfigProp.KEY_STORE_PASSWORD);
-    if (this.keyStorePassword == null) {
+    // In local mode, clients are authenticated against the shared registry
+    // without a round trip over the event bus.
+    var authnMode = config().getString(ConfigProp.AUTHN_MODE, AUTHN_MODE_EVENT_BUS);
+    this.clients = IdpSharedData.clientAuthenticator(vertx, config());
+    if (AUTHN_MODE_LOCAL.equals(authnMode)) {
+      this.authenticator = this.clients;
+    } else if (!AUTHN_MODE_EVENT_BUS.equals(authnMode)) {
       throw new IdpException(
-          "Required configuration element '"
-              + ConfigProp.KEY_STORE_PASSWORD
-              + "' is missing; verticle will not deploy.");
+          "Configuration element '"
+              + ConfigProp.AUTHN_MODE
+              + "' must be '"
+              + AUTHN_MODE_EVENT_BUS
+              + "' or '"
+              + AUTHN_MODE_LOCAL
+              + "'; verticle will not deploy.");
     }
 
     // Initialize properties affecting claim issuance.
     var claimsConfig = config().getJsonObject(ConfigProp.CLAIMS_CONFIGURATION);
     this.issuerClaim = claimsConfig.getString(ConfigProp.ISSUER_CLAIM);
     this.epiresIn = claimsConfig.getInteger(ConfigProp.CLAIM_EXPIRES_IN);
+
+    this.metrics = IdpSharedData.metrics(vertx, config());
+    this.accessLog = IdpSharedData.accessLog(vertx, config());
+    this.rateLimiter = IdpSharedData.rateLimiter(vertx, config());
+    this.replicator = IdpSharedData.clusterReplicator(vertx, config());
+    this.admission = IdpSharedData.admissionController(vertx, config());
+    this.authnDelivery =
+        new DeliveryOptions().setSendTimeout(this.admission.getAuthnTimeoutMillis());
+    this.health = IdpSharedData.healthMonitor(vertx, config());
+
+    this.batchMaxSize = config().getInteger(ConfigProp.BATCH_MAX_SIZE, 500);
+    if (this.batchMaxSize < 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.BATCH_MAX_SIZE
+              + "' must be positive; verticle will not deploy.");
+    }
+
+    var jwksMaxAge = config().getInteger(ConfigProp.JWKS_MAX_AGE, 300);
+    this.jwksCacheControl = "public, max-age=" + jwksMaxAge;
+  }
+
+  /**
+   * Return this thread's encoder for the active key, replacing it if the key
+   * has been rotated since it was built.
+   */
+  private JwtEncoder encoder() {
+    var active = this.keyRing.current().getActive();
+    var encoder = this.encoders.get();
+    if (encoder == null || encoder.getSigningKey() != active) {
+      encoder =
+          new JwtEncoder(new JwtSigner(active), this.issuerClaim, this.epiresIn, this.metrics);
+      this.encoders.set(encoder);
+    }
+    return encoder;
   }
 
   // Path handlers
+  private void startRequest(RoutingContext routingContext) {
+    long start = System.nanoTime();
+    routingContext.put(REQUEST_START, start);
+    routingContext.addBodyEndHandler(v -> this.endRequest(routingContext, start));
+    routingContext.next();
+  }
+
+  private void admit(RoutingContext routingContext) {
+    if (!this.admission.tryAcquire()) {
+      this.sendServiceUnavailable(routingContext);
+      return;
+    }
+
+    // The end handler runs when the response ends or its stream is reset.
+    long start = System.nanoTime();
+    boolean[] released = {false};
+    routingContext
+        .response()
+        .endHandler(
+            v -> {
+              if (!released[0]) {
+                released[0] = true;
+                this.admission.release(System.nanoTime() - start);
+              }
+            });
+    routingContext.next();
+  }
+
+  private void endRequest(RoutingContext routingContext, long start) {
+    long duration = System.nanoTime() - start;
+    var request = routingContext.request();
+    var endpoint = IdpMetrics.Endpoint.forPath(request.path());
+    int status = routingContext.response().getStatusCode();
+    if (this.metrics != null) {
+      this.metrics.recordRequest(endpoint, status, duration);
+    }
+    if (this.accessLog != null && this.accessLog.isAccessEnabled()) {
+      this.accessLog.access(
+          endpoint,
+          status,
+          duration,
+          request.getFormAttribute(CLIENT_ID_FORM_FIELD),
+          remoteHost(request));
+    }
+  }
+
   private void issueJwt(RoutingContext routingContext) {
     LOGGER.debug("Handling request to issue JWT token.");
+    this.recordFormParse(routingContext);
+
+    this.authenticate(
+        routingContext,
+        template -> this.respondWithJwt(routingContext, template));
+  }
+
+  private void issueJwtBatch(RoutingContext routingContext) {
+    LOGGER.debug("Handling request to issue a batch of JWT tokens.");
+
+    JsonArray entries;
+    try {
+      entries = routingContext.getBodyAsJsonArray();
+    } catch (DecodeException e) {
+      entries = null;
+    }
+    this.recordFormParse(routingContext);
+
+    if (entries == null || entries.isEmpty()) {
+      this.sendError(routingContext, 400, new JsonObject().put("error", "invalid_request"));
+      return;
+    }
+    if (entries.size() > this.batchMaxSize) {
+      this.sendBatchTooLarge(routingContext);
+      return;
+    }
 
+    // Entries without credentials are answered at once; the rest are
+    // authenticated together.
+    var batch = new TokenBatch(routingContext.response(), entries.size());
+    var indexes = new ArrayList<Integer>(entries.size());
+    var clientIds = new ArrayList<String>(entries.size());
+    var clientSecrets = new ArrayList<String>(entries.size());
+    for (int idx = 0; idx < entries.size(); idx++) {
+      var entry = entries.getValue(idx);
+      var clientId =
+          entry instanceof JsonObject ? ((JsonObject) entry).getValue(CLIENT_ID_FORM_FIELD) : null;
+      var clientSecret =
+          entry instanceof JsonObject
+              ? ((JsonObject) entry).getValue(CLIENT_SECRET_FORM_FIELD)
+              : null;
+      if (clientId instanceof String && (clientSecret == null || clientSecret instanceof String)) {
+        if (this.rateLimiter != null && this.rateLimiter.acquire((String) clientId) > 0) {
+          batch.failed(idx, (String) clientId, 429, "temporarily_unavailable");
+          continue;
+        }
+        indexes.add(idx);
+        clientIds.add((String) clientId);
+        clientSecrets.add((String) clientSecret);
+      } else {
+        var named = clientId instanceof String ? (String) clientId : null;
+        batch.failed(idx, named, 400, "invalid_request");
+      }
+    }
+    if (clientIds.isEmpty()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    if (this.authenticator != null) {
+      int[] remaining = {clientIds.size()};
+      this.authenticator.authenticateAll(
+          clientIds,
+          clientSecrets,
+          (idx, result) -> {
+            if (--remaining[0] == 0) {
+              this.recordStage(IdpMetrics.Stage.AUTHENTICATE, start);
+            }
+
+            int index = indexes.get(idx);
+            var clientId = clientIds.get(idx);
+            if (result.failed()) {
+              if (result.cause() instanceof RejectedExecutionException) {
+                batch.failed(index, clientId, 503, "temporarily_unavailable");
+              } else {
+                LOGGER.error("Unable to authenticate client {}.", clientId, result.cause());
+                batch.failed(index, clientId, 500, "server_error");
+              }
+            } else if (result.result() != null) {
+              var client = result.result();
+              this.issueBatchEntry(batch, index, this.templateOf(client));
+            } else {
+              this.audit(routingContext, AccessLog.Event.AUTHENTICATION_FAILED, clientId, null);
+              batch.failed(index, clientId, 401, "invalid_client");
+            }
+          });
+      return;
+    }
+
+    var clients = new JsonArray();
+    for (int idx = 0; idx < clientIds.size(); idx++) {
+      clients.add(
+          new JsonObject()
+              .put(MessageField.CLIENT_ID, clientIds.get(idx))
+              .put(MessageField.CLIENT_SECRET, clientSecrets.get(idx)));
+    }
+
+    getVertx()
+        .eventBus()
+        .request(
+            EventBusAddress.CLIENT_AUTHENTICATE_BATCH,
+            new JsonObject().put(MessageField.CLIENTS, clients),
+            this.authnDelivery,
+            response -> {
+              this.recordStage(IdpMetrics.Stage.AUTHENTICATE, start);
+              if (response.failed()) {
+                if (isTimeout(response.cause())) {
+                  this.admission.authenticationTimedOut();
+                }
+                boolean unavailable = isUnavailable(response.cause());
+                if (!unavailable) {
+                  LOGGER.error("Unable to authenticate client batch.", response.cause());
+                }
+                for (int idx = 0; idx < clientIds.size(); idx++) {
+                  batch.failed(
+                      indexes.get(idx),
+                      clientIds.get(idx),
+                      unavailable ? 503 : 500,
+                      unavailable ? "temporarily_unavailable" : "server_error");
+                }
+                return;
+              }
+
+              var results =
+                  ((JsonObject) response.result().body()).getJsonArray(MessageField.RESULTS);
+              for (int idx = 0; idx < clientIds.size(); idx++) {
+                int index = indexes.get(idx);
+                var authnResult = results.getJsonObject(idx);
+                var failureCode = authnResult.getInteger(MessageField.FAILURE_CODE);
+                if (failureCode != null) {
+                  batch.failed(
+                      index,
+                      clientIds.get(idx),
+                      failureCode,
+                      failureCode == 503 ? "temporarily_unavailable" : "server_error");
+                } else if (authnResult.getBoolean(MessageField.AUTHN)) {
+                  this.issueBatchEntry(batch, index, this.templateOf(authnResult));
+                } else {
+                  this.audit(
+                      routingContext,
+                      AccessLog.Event.AUTHENTICATION_FAILED,
+                      clientIds.get(idx),
+                      null);
+                  batch.failed(index, clientIds.get(idx), 401, "invalid_client");
+                }
+              }
+            });
+  }
+
+  private void introspectJwt(RoutingContext routingContext) {
+    LOGGER.debug("Handling request to introspect JWT token.");
+    this.recordFormParse(routingContext);
+
+    // Only registered clients may introspect tokens.
+    this.authenticate(
+        routingContext, template -> this.respondWithIntrospection(routingContext));
+  }
+
+  private void revokeJwt(RoutingContext routingContext) {
+    LOGGER.debug("Handling request to revoke JWT token.");
+    this.recordFormParse(routingContext);
+
+    this.authenticate(
+        routingContext,
+        template -> this.respondWithRevocation(routingContext, template.getSubject()));
+  }
+
+  /**
+   * Authenticate the client named by the request's form fields, then hand its
+   * claim template to <code>onAuthenticated</code>. Requests that
+   * fail authentication are answered here.
+   */
+  private void authenticate(
+      RoutingContext routingContext, Consumer<ClaimTemplate> onAuthenticated) {
     // Read the multipart form data
     MultiMap attributes = routingContext.request().formAttributes();
     if (attributes != null) {
-      var authnRequest =
-          new JsonObject()
-              .put(MessageField.CLIENT_ID, attributes.get(CLIENT_ID_FORM_FIELD))
-              .put(MessageField.CLIENT_SECRET, attributes.get(CLIENT_SECRET_FORM_FIELD));
-
-      getVertx()
-          .eventBus()
-          .request(
-              EventBusAddress.CLIENT_AUTHENTICATE,
-              authnRequest,
-              response -> {
-                JsonObject authnResult = (JsonObject) response.result().body();
-                if (authnResult.getBoolean("authn")) {
-                  try {
-                    JsonObject jwt = this.generateJwt(authnResult);
-                    routingContext
-                        .response()
-                        .putHeader(CONTENT_TYPE_HEADER, MIME_TYPE_JSON)
-                        .setStatusCode(200)
-                        .end(jwt.toString());
-                  } catch (Exception e) {
-                    LOGGER.error("Unable to generate JWT.", e);
+      long start = System.nanoTime();
+      var clientId = attributes.get(CLIENT_ID_FORM_FIELD);
+      var clientSecret = attributes.get(CLIENT_SECRET_FORM_FIELD);
+
+      // Turn away clients over their rate before spending anything on them.
+      if (this.rateLimiter != null) {
+        long retryAfter = this.rateLimiter.acquire(clientId);
+        if (retryAfter > 0) {
+          routingContext
+              .response()
+              .putHeader(RETRY_AFTER_HEADER, String.valueOf(retryAfter))
+              .setStatusCode(429)
+              .end();
+          return;
+        }
+      }
+
+      if (this.authenticator != null) {
+        // Local mode: check the shared registry on this event loop. Hashed
+        // secrets are verified on the KDF pool.
+        var queued =
+            this.authenticator.authenticate(
+                clientId,
+                clientSecret,
+                result -> {
+                  this.recordStage(IdpMetrics.Stage.AUTHENTICATE, start);
+                  if (result.failed()) {
+                    LOGGER.error("Unable to authenticate client {}.", clientId, result.cause());
                     routingContext.response().setStatusCode(500).end();
+                  } else if (result.result() != null) {
+                    var client = result.result();
+                    onAuthenticated.accept(this.templateOf(client));
+                  } else {
+                    this.audit(
+                        routingContext, AccessLog.Event.AUTHENTICATION_FAILED, clientId, null);
+                    routingContext.response().setStatusCode(401).end();
                   }
-                } else {
-                  routingContext.response().setStatusCode(401).end();
-                }
-              });
+                });
+        if (!queued) {
+          this.sendServiceUnavailable(routingContext);
+        }
+      } else {
+        var authnRequest =
+            new JsonObject()
+                .put(MessageField.CLIENT_ID, clientId)
+                .put(MessageField.CLIENT_SECRET, clientSecret);
+
+        getVertx()
+            .eventBus()
+            .request(
+                EventBusAddress.CLIENT_AUTHENTICATE,
+                authnRequest,
+                this.authnDelivery,
+                response -> {
+                  this.recordStage(IdpMetrics.Stage.AUTHENTICATE, start);
+                  if (response.failed()) {
+                    if (isTimeout(response.cause())) {
+                      this.admission.authenticationTimedOut();
+                    }
+                    this.sendAuthenticationFailure(routingContext, response.cause());
+                    return;
+                  }
+
+                  JsonObject authnResult = (JsonObject) response.result().body();
+                  if (authnResult.getBoolean(MessageField.AUTHN)) {
+                    onAuthenticated.accept(this.templateOf(authnResult));
+                  } else {
+                    this.audit(
+                        routingContext, AccessLog.Event.AUTHENTICATION_FAILED, clientId, null);
+                    routingContext.response().setStatusCode(401).end();
+                  }
+                });
+      }
+    } else {
+      routingContext.response().setStatusCode(400).end();
+    }
+  }
+
+  private void respondWithJwt(RoutingContext routingContext, ClaimTemplate template) {
+    var queued =
+        this.issueTokenResponse(
+            template,
+            result -> {
+              if (result.succeeded()) {
+                this.sendJson(routingContext, result.result());
+              } else {
+                LOGGER.error("Unable to generate JWT.", result.cause());
+                routingContext.response().setStatusCode(500).end();
+              }
+            });
+
+    if (!queued) {
+      this.sendServiceUnavailable(routingContext);
+    }
+  }
+
+  /**
+   * Issue a token, or reuse a cached one, and hand its token response to
+   * <code>resultHandler</code> on this verticle's context.
+   *
+   * @return <code>true</code> if the token was issued or is being signed, or
+   *     <code>false</code> if the signing pool is saturated; in that case the
+   *     result handler is never called
+   */
+  private boolean issueTokenResponse(
+      ClaimTemplate template, Handler<AsyncResult<Buffer>> resultHandler) {
+    if (this.tokenCache == null) {
+      return this.signingExecutor.submit(() -> this.encoder().encode(template), resultHandler);
+    }
+
+    var key = template.getCacheKey();
+    var now = System.currentTimeMillis() / 1000;
+
+    var cached = this.tokenCache.get(key, now);
+    if (cached != null && !this.revocationList.isRevoked(cached.getJti())) {
+      resultHandler.handle(Future.succeededFuture(JwtEncoder.wrap(cached, now)));
+
+      // Re-sign hot tokens in the background before they become unusable.
+      if (this.tokenCache.startRefresh(key, cached, now)) {
+        var queued =
+            this.signingExecutor.submit(
+                () -> this.encoder().issue(template),
+                result -> {
+                  if (result.succeeded()) {
+                    this.tokenCache.put(key, result.result());
+                  } else {
+                    LOGGER.warn("Unable to refresh cached JWT.", result.cause());
+                    this.tokenCache.cancelRefresh(key);
+                  }
+                });
+        if (!queued) {
+          this.tokenCache.cancelRefresh(key);
+        }
+      }
+      return true;
+    }
+
+    return this.signingExecutor.submit(
+        () -> this.encoder().issue(template),
+        result -> {
+          if (result.succeeded()) {
+            var token = result.result();
+            this.tokenCache.put(key, token);
+            resultHandler.handle(
+                Future.succeededFuture(
+                    JwtEncoder.wrap(token, System.currentTimeMillis() / 1000)));
+          } else {
+            resultHandler.handle(Future.failedFuture(result.cause()));
+          }
+        });
+  }
+
+  private void refuseOversizedBatch(RoutingContext routingContext) {
+    if (routingContext.statusCode() == 413) {
+      this.sendBatchTooLarge(routingContext);
     } else {
+      routingContext.next();
+    }
+  }
+
+  private void sendBatchTooLarge(RoutingContext routingContext) {
+    this.sendError(
+        routingContext,
+        413,
+        new JsonObject().put("error", "invalid_request").put("max_batch_size", this.batchMaxSize));
+  }
+
+  /**
+   * Issue one token of a batch. Entries are signed as separate tasks, so a
+   * batch spreads across every signing worker.
+   */
+  private void issueBatchEntry(TokenBatch batch, int index, ClaimTemplate template) {
+    var subject = template.getSubject();
+    var queued =
+        this.issueTokenResponse(
+            template,
+            result -> {
+              if (result.succeeded()) {
+                batch.issued(index, subject, result.result());
+              } else {
+                LOGGER.error("Unable to generate JWT.", result.cause());
+                batch.failed(index, subject, 500, "server_error");
+              }
+            });
+
+    if (!queued) {
+      batch.failed(index, subject, 503, "temporarily_unavailable");
+    }
+  }
+
+  /** Return the template a locally authenticated client's tokens are issued from. */
+  private ClaimTemplate templateOf(ClientConfig client) {
+    var template = client.getClaimTemplate();
+    return template != null
+        ? template
+        : ClaimTemplate.of(
+            this.issuerClaim, client.getId(), client.getEncodedRoles(), this.epiresIn);
+  }
+
+  /**
+   * Return the template of a client authenticated over the event bus. The
+   * template compiled when the client was registered is shared, so only
+   * clients without one have a template built from the reply.
+   */
+  private ClaimTemplate templateOf(JsonObject authnResult) {
+    var subject = authnResult.getString(MessageField.SUBJECT);
+    var client = this.clients.lookup(subject);
+    if (client != null && client.getClaimTemplate() != null) {
+      return client.getClaimTemplate();
+    }
+
+    var roles = authnResult.getJsonArray(MessageField.ROLES);
+    return ClaimTemplate.of(
+        this.issuerClaim,
+        subject,
+        roles != null ? roles.toBuffer().getBytes() : null,
+        this.epiresIn);
+  }
+
+  private void respondWithIntrospection(RoutingContext routingContext) {
+    var token = routingContext.request().formAttributes().get(TOKEN_FORM_FIELD);
+    if (token == null) {
       routingContext.response().setStatusCode(400).end();
+      return;
+    }
+
+    var keys = this.keyRing.current();
+    var now = System.currentTimeMillis() / 1000;
+    var key = this.verifiedTokenCache != null ? VerifiedTokenCache.keyOf(token) : null;
+    if (key != null) {
+      var cached = this.verifiedTokenCache.get(key, keys, now);
+      if (cached != null) {
+        this.sendIntrospection(routingContext, cached, now);
+        return;
+      }
+    }
+
+    // Signature checks are CPU heavy, so they share the signing pool.
+    var queued =
+        this.signingExecutor.submit(
+            () -> JwtVerifier.verify(keys, token),
+            result -> {
+              if (result.failed()) {
+                LOGGER.error("Unable to verify JWT.", result.cause());
+                routingContext.response().setStatusCode(500).end();
+                return;
+              }
+
+              var verified = result.result();
+              if (verified != null && key != null) {
+                this.verifiedTokenCache.put(key, verified, now);
+              }
+              this.sendIntrospection(routingContext, verified, now);
+            });
+
+    if (!queued) {
+      this.sendServiceUnavailable(routingContext);
     }
   }
 
-  private JsonObject generateJwt(JsonObject authnResult) {
-    var jwt = new JsonObject();
+  private void respondWithRevocation(RoutingContext routingContext, String subject) {
+    var token = routingContext.request().formAttributes().get(TOKEN_FORM_FIELD);
+    if (token == null) {
+      routingContext.response().setStatusCode(400).end();
+      return;
+    }
 
-    var tokenConfig = config().getJsonObject(ConfigProp.CLAIMS_CONFIGURATION);
-    LOGGER.debug("claims-config = {}", tokenConfig.toString());
+    var keys = this.keyRing.current();
+    var queued =
+        this.signingExecutor.submit(
+            () -> JwtVerifier.verify(keys, token),
+            result -> {
+              if (result.failed()) {
+                LOGGER.error("Unable to verify JWT.", result.cause());
+                routingContext.response().setStatusCode(500).end();
+                return;
+              }
 
-    // Generate the token and its JSON wrapper
-    jwt.put(
-        JWT_WRAPPER_ACCESS_TOKEN,
-        this.signer.generateToken(
-            this.generateTokenClaims(authnResult),
-            new JWTOptions().setAlgorithm(this.signerAlgorithm)));
-    jwt.put(JWT_WRAPPER_TOKEN_TYPE, "bearer");
-    jwt.put(JWT_WRAPPER_EXPIRES_IN, this.epiresIn);
+              // Per RFC 7009, invalid tokens need no revocation and are
+              // acknowledged like valid ones.
+              var verified = result.result();
+              if (verified == null || verified.getJti() == null) {
+                routingContext.response().setStatusCode(200).end();
+              } else if (!subject.equals(verified.getClaims().getString("sub"))) {
+                // Clients may only revoke their own tokens.
+                this.audit(
+                    routingContext,
+                    AccessLog.Event.REVOCATION_REFUSED,
+                    subject,
+                    verified.getJti());
+                routingContext
+                    .response()
+                    .putHeader(CONTENT_TYPE_HEADER, MIME_TYPE_JSON)
+                    .setStatusCode(400)
+                    .end(new JsonObject().put("error", "unauthorized_client").toBuffer());
+              } else {
+                this.revoke(routingContext, subject, verified);
+              }
+            });
 
-    LOGGER.debug("Issued jtw: {}", jwt.toString());
+    if (!queued) {
+      this.sendServiceUnavailable(routingContext);
+    }
+  }
 
-    return jwt;
+  private void revoke(RoutingContext routingContext, String subject, VerifiedToken token) {
+    // Revocations are forced to disk, so they must not block the event loop.
+    vertx.<Boolean>executeBlocking(
+        promise ->
+            promise.complete(
+                this.revocationList.revoke(
+                    token.getJti(), token.getExpiresAt(), System.currentTimeMillis() / 1000)),
+        false,
+        result -> {
+          if (result.succeeded()) {
+            if (result.result()) {
+              LOGGER.debug("Client {} revoked token {}.", subject, token.getJti());
+              if (this.replicator != null) {
+                this.replicator.revoked(token.getJti(), token.getExpiresAt());
+              }
+              this.audit(routingContext, AccessLog.Event.TOKEN_REVOKED, subject, token.getJti());
+            }
+            routingContext.response().setStatusCode(200).end();
+          } else {
+            LOGGER.error("Unable to revoke JWT.", result.cause());
+            routingContext.response().setStatusCode(500).end();
+          }
+        });
   }
 
-  private JsonObject generateTokenClaims(JsonObject authnResult) {
-    var claims = new JsonObject();
+  private void sendIntrospection(RoutingContext routingContext, VerifiedToken token, long now) {
+    var body = new JsonObject();
+    if (token != null && token.isActive(now) && !this.revocationList.isRevoked(token.getJti())) {
+      // Set the RFC 7662 members last, so that no custom claim can override them.
+      body.mergeIn(token.getClaims());
+      body.put("active", true).put("client_id", token.getClaims().getValue("sub"));
+    } else {
+      body.put("active", false);
+    }
+
+    this.sendJson(routingContext, body.toBuffer());
+  }
 
-    claims.put("iss", this.issuerClaim);
-    claims.put("sub", authnResult.getString("subject"));
+  private void sendJson(RoutingContext routingContext, Buffer body) {
+    long start = System.nanoTime();
+    routingContext
+        .response()
+        .putHeader(CONTENT_TYPE_HEADER, MIME_TYPE_JSON)
+        .setStatusCode(200)
+        .end(body);
+    this.recordStage(IdpMetrics.Stage.RESPONSE_WRITE, start);
+  }
 
-    // Generate the time--in UTC--for all date/time based claims.
-    var now = ZonedDateTime.now(ZoneId.of(this.issuerTimeZone));
-    claims.put("iat", now.toEpochSecond() / 1000); // Adjust ms to seconds
-    claims.put("nbf", now.toEpochSecond() / 1000); // Adjust ms to seconds
-    claims.put("jti", UUID.randomUUID().toString());
-    claims.put(
-        "exp",
-        now.plusSeconds(this.epiresIn).toInstant().toEpochMilli() / 1000); // Adjust ms to seconds
+  private void recordFormParse(RoutingContext routingContext) {
+    Long start = routingContext.get(REQUEST_START);
+    if (start != null) {
+      this.recordStage(IdpMetrics.Stage.FORM_PARSE, start);
+    }
+  }
+
+  private void recordStage(IdpMetrics.Stage stage, long startNanos) {
+    if (this.metrics != null) {
+      this.metrics.stage(stage).recordSince(startNanos);
+    }
+  }
 
-    // Does the user have any roles? If so, add as a custom claim.
-    if(authnResult.containsKey(MessageField.ROLES)){
-      claims.put("rol",authnResult.getJsonArray(MessageField.ROLES));
+  private void audit(
+      RoutingContext routingContext, AccessLog.Event event, String clientId, String jti) {
+    if (this.accessLog != null && this.accessLog.isAuditEnabled()) {
+      var request = routingContext.request();
+      this.accessLog.audit(
+          event, IdpMetrics.Endpoint.forPath(request.path()), clientId, remoteHost(request), jti);
+    }
+  }
+
+  private static String remoteHost(HttpServerRequest request) {
+    var remote = request.remoteAddress();
+    return remote != null ? remote.host() : null;
+  }
+
+  private void sendAuthenticationFailure(RoutingContext routingContext, Throwable cause) {
+    if (isUnavailable(cause)) {
+      this.sendServiceUnavailable(routingContext);
+    } else {
+      LOGGER.error("Unable to authenticate client.", cause);
+      routingContext.response().setStatusCode(500).end();
+    }
+  }
+
+  /**
+   * Decide whether an authentication request failed because no authenticator
+   * could take it: the authenticators' pool is saturated, none replied in
+   * time or none is deployed.
+   */
+  private static boolean isUnavailable(Throwable cause) {
+    if (!(cause instanceof ReplyException)) {
+      return false;
+    }
+
+    var failure = (ReplyException) cause;
+    return isTimeout(failure)
+        || failure.failureType() == ReplyFailure.NO_HANDLERS
+        || failure.failureCode() == 503;
+  }
+
+  /** Decide whether an authentication request failed because no reply came in time. */
+  private static boolean isTimeout(Throwable cause) {
+    return cause instanceof ReplyException
+        && ((ReplyException) cause).failureType() == ReplyFailure.TIMEOUT;
+  }
+
+  private void sendError(RoutingContext routingContext, int status, JsonObject error) {
+    routingContext
+        .response()
+        .putHeader(CONTENT_TYPE_HEADER, MIME_TYPE_JSON)
+        .setStatusCode(status)
+        .end(error.toBuffer());
+  }
+
+  private void sendServiceUnavailable(RoutingContext routingContext) {
+    // The node or a worker pool is saturated; fail fast so the client can
+    // back off.
+    routingContext
+        .response()
+        .putHeader(RETRY_AFTER_HEADER, RETRY_AFTER_SECONDS)
+        .setStatusCode(503)
+        .end();
+  }
+
+  private void serveJwks(RoutingContext routingContext) {
+    // The document and its tag are built when keys are loaded, so polling
+    // verifiers cost a header comparison and, at most, a buffer write.
+    var keys = this.keyRing.current();
+    var response =
+        routingContext
+            .response()
+            .putHeader(ETAG_HEADER, keys.getEtag())
+            .putHeader(CACHE_CONTROL_HEADER, this.jwksCacheControl);
+
+    if (keys.getEtag().equals(routingContext.request().getHeader(IF_NONE_MATCH_HEADER))) {
+      response.setStatusCode(304).end();
+    } else {
+      response
+          .putHeader(CONTENT_TYPE_HEADER, MIME_TYPE_JWKS)
+          .setStatusCode(200)
+          .end(keys.getJwks());
+    }
+  }
+
+  private void reportLiveness(RoutingContext routingContext) {
+    // Answering at all shows that this event loop is running.
+    routingContext
+        .response()
+        .putHeader(CONTENT_TYPE_HEADER, MIME_TYPE_JSON)
+        .setStatusCode(200)
+        .end(LIVE);
+  }
+
+  private void reportReadiness(RoutingContext routingContext) {
+    var startupReport = IdpSharedData.startupReport(vertx, null);
+    var report =
+        this.health.readiness(
+            startupReport == null || startupReport.isReady(),
+            this.keyRing,
+            this.clients.getClientCount(),
+            this.signingExecutor.getQueueDepth());
+    routingContext
+        .response()
+        .putHeader(CONTENT_TYPE_HEADER, MIME_TYPE_JSON)
+        .setStatusCode(HealthMonitor.isUp(report) ? 200 : 503)
+        .end(report.toBuffer());
+  }
+
+  private void reportStats(RoutingContext routingContext) {
+    var stats =
+        new JsonObject()
+            .put("signing", this.signingExecutor.stats())
+            .put("kdf", IdpSharedData.kdfPool(vertx, config()).stats())
+            .put("authentication", this.clients.stats());
+    if (this.tokenCache != null) {
+      stats.put("token-cache", this.tokenCache.stats());
+    }
+    if (this.verifiedTokenCache != null) {
+      stats.put("introspection-cache", this.verifiedTokenCache.stats());
+    }
+    stats.put("revocation", this.revocationList.stats());
+    if (this.accessLog != null) {
+      stats.put("access-log", this.accessLog.stats());
+    }
+    if (this.rateLimiter != null) {
+      stats.put("rate-limit", this.rateLimiter.stats());
+    }
+    if (this.replicator != null) {
+      stats.put("cluster", this.replicator.stats());
+    }
+    stats.put("admission", this.admission.stats());
+    var startupReport = IdpSharedData.startupReport(vertx, null);
+    if (startupReport != null) {
+      stats.put("startup", startupReport.toJson());
+    }
+    routingContext
+        .response()
+        .putHeader(CONTENT_TYPE_HEADER, MIME_TYPE_JSON)
+        .setStatusCode(200)
+        .end(stats.toBuffer());
+  }
+
+  private void reportMetrics(RoutingContext routingContext) {
+    var out = new StringBuilder(16 * 1024);
+    this.metrics.writeTo(out);
+
+    var authn = this.clients.stats();
+    IdpMetrics.writeHeader(
+        out, "idp_authentications_total", "counter", "Client authentications by result.");
+    IdpMetrics.writeSample(
+        out, "idp_authentications_total", "result=\"success\"", authn.getLong("successes"));
+    IdpMetrics.writeSample(
+        out, "idp_authentications_total", "result=\"failure\"", authn.getLong("failures"));
+
+    if (this.accessLog != null) {
+      var log = this.accessLog.stats();
+      IdpMetrics.writeHeader(
+          out, "idp_access_log_records_total", "counter", "Access and audit records by result.");
+      IdpMetrics.writeSample(
+          out, "idp_access_log_records_total", "result=\"written\"", log.getLong("written"));
+      IdpMetrics.writeSample(
+          out, "idp_access_log_records_total", "result=\"dropped\"", log.getLong("dropped"));
+    }
+
+    if (this.rateLimiter != null) {
+      IdpMetrics.writeHeader(
+          out, "idp_rate_limited_total", "counter", "Requests refused by a client's rate limit.");
+      IdpMetrics.writeSample(
+          out, "idp_rate_limited_total", null, this.rateLimiter.stats().getLong("limited"));
+    }
+
+    var admission = this.admission.stats();
+    IdpMetrics.writeHeader(
+        out, "idp_requests_in_flight", "gauge", "OAuth requests admitted and not yet answered.");
+    IdpMetrics.writeSample(out, "idp_requests_in_flight", null, admission.getInteger("in-flight"));
+    if (admission.getInteger("limit") != null) {
+      IdpMetrics.writeHeader(
+          out, "idp_in_flight_limit", "gauge", "The most OAuth requests that may be in flight.");
+      IdpMetrics.writeSample(out, "idp_in_flight_limit", null, admission.getInteger("limit"));
+    }
+    IdpMetrics.writeHeader(
+        out,
+        "idp_requests_shed_total",
+        "counter",
+        "OAuth requests refused by the in-flight limit.");
+    IdpMetrics.writeSample(out, "idp_requests_shed_total", null, admission.getLong("shed"));
+    IdpMetrics.writeHeader(
+        out,
+        "idp_authentication_timeouts_total",
+        "counter",
+        "Authentication requests that no authenticator answered in time.");
+    IdpMetrics.writeSample(
+        out, "idp_authentication_timeouts_total", null, admission.getLong("authn-timeouts"));
+
+    var pools =
+        new BoundedWorkerPool[] {this.signingExecutor, IdpSharedData.kdfPool(vertx, config())};
+    IdpMetrics.writeHeader(
+        out, "idp_worker_queue_depth", "gauge", "Tasks waiting for, or running on, a worker pool.");
+    for (var pool : pools) {
+      IdpMetrics.writeSample(
+          out,
+          "idp_worker_queue_depth",
+          "pool=\"" + pool.getName() + "\"",
+          pool.getQueueDepth());
+    }
+    IdpMetrics.writeHeader(
+        out, "idp_worker_rejected_total", "counter", "Tasks refused by a full worker pool.");
+    for (var pool : pools) {
+      IdpMetrics.writeSample(
+          out,
+          "idp_worker_rejected_total",
+          "pool=\"" + pool.getName() + "\"",
+          pool.stats().getLong("rejected"));
     }
 
-    return claims;
+    routingContext
+        .response()
+        .putHeader(CONTENT_TYPE_HEADER, IdpMetrics.CONTENT_TYPE)
+        .setStatusCode(200)
+        .end(out.toString());
   }
 }
@@ -0,0 +1,89 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import javax.crypto.Mac;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * Verifies the signature of JWTs in JWS compact serialization against the
+ * IdP's {@link KeySet}. The <code>kid</code> header selects the key, so
+ * tokens signed before a rotation verify for as long as their key is
+ * retained. Verification only checks the signature; callers check the
+ * token's lifetime.
+ *
+ * @author Jason Hallford
+ */
+public final class JwtVerifier {
+  // Fields
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  private JwtVerifier() {}
+
+  // Methods
+
+  /**
+   * Verify a token's signature.
+   *
+   * @param keys The keys that may have signed the token
+   * @param token The token
+   * @return The verified token, or <code>null</code> if the token is
+   *     malformed, names an unknown key or its signature does not match
+   */
+  public static VerifiedToken verify(KeySet keys, String token) {
+    assert keys != null : "keys must not be null.";
+    assert token != null : "token must not be null.";
+
+    int headerEnd = token.indexOf('.');
+    int payloadEnd = token.indexOf('.', headerEnd + 1);
+    if (headerEnd < 0 || payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+      return null;
+    }
+
+    try {
+      var header = decodeJson(token.substring(0, headerEnd));
+      var key = keys.verificationKey(header.getString(SigningKey.KEY_ID));
+      if (key == null || !key.getAlgorithm().name().equals(header.getString("alg"))) {
+        return null;
+      }
+
+      var input = token.substring(0, payloadEnd).getBytes(StandardCharsets.US_ASCII);
+      var signature = DECODER.decode(token.substring(payloadEnd + 1));
+      if (!verifySignature(key, input, signature)) {
+        return null;
+      }
+
+      var claims = decodeJson(token.substring(headerEnd + 1, payloadEnd));
+      return new VerifiedToken(key, claims);
+    } catch (RuntimeException | GeneralSecurityException e) {
+      // Malformed base64 or JSON is no different from a bad signature.
+      return null;
+    }
+  }
+
+  // Private methods
+  private static boolean verifySignature(SigningKey key, byte[] input, byte[] signature)
+      throws GeneralSecurityException {
+    var algorithm = key.getAlgorithm();
+    if (algorithm.isSymmetric()) {
+      var mac = Mac.getInstance(algorithm.getJcaName());
+      mac.init(key.getVerificationKey());
+      return MessageDigest.isEqual(mac.doFinal(input), signature);
+    }
+
+    var verifier = Signature.getInstance(algorithm.getJcaName());
+    verifier.initVerify((PublicKey) key.getVerificationKey());
+    verifier.update(input);
+    return verifier.verify(signature);
+  }
+
+  private static JsonObject decodeJson(String encoded) {
+    return new JsonObject(Buffer.buffer(DECODER.decode(encoded)));
+  }
+}
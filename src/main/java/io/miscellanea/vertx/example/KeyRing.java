@@ -0,0 +1,63 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the IdP's current {@link KeySet}. A single instance is shared by
+ * every verticle in the JVM. Rotating publishes a new, fully built key set
+ * through a volatile reference, so signers and the JWKS endpoint never lock
+ * and never see a half-rotated set.
+ *
+ * @author Jason Hallford
+ */
+public final class KeyRing implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(KeyRing.class);
+
+  private volatile KeySet current;
+
+  // Constructors
+  public KeyRing(KeySet initial) {
+    assert initial != null : "initial must not be null.";
+
+    this.current = initial;
+  }
+
+  // Factory methods
+
+  /**
+   * Load the key ring described by the provided configuration. Loading reads
+   * files, so call this from a worker thread.
+   *
+   * @param config The IdP configuration
+   * @return The key ring
+   */
+  public static KeyRing load(JsonObject config) {
+    return new KeyRing(KeySet.load(config));
+  }
+
+  // Methods
+
+  /** @return The current key set */
+  public KeySet current() {
+    return this.current;
+  }
+
+  /**
+   * Publish a new key set. Tokens signed from now on use its active key.
+   *
+   * @param keys The new key set
+   */
+  public void rotate(KeySet keys) {
+    assert keys != null : "keys must not be null.";
+
+    this.current = keys;
+    LOGGER.info(
+        "Rotated keys; active key is {} with {} verification key(s).",
+        keys.getActive().getKid(),
+        keys.getKeys().size() - 1);
+  }
+}
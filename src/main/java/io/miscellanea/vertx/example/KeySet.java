@@ -0,0 +1,217 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable set of IdP keys: the active key, which signs every new token,
+ * and any retiring keys that still verify tokens signed before a rotation.
+ *
+ * <p>The set's public keys are serialized as a JSON Web Key Set (RFC 7517)
+ * once, when the set is built, together with an entity tag, so the JWKS
+ * endpoint can answer without building JSON. HMAC secrets are never
+ * published.
+ *
+ * @author Jason Hallford
+ */
+public final class KeySet {
+  // Fields
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+  private final SigningKey active;
+  private final List<SigningKey> keys;
+  private final Map<String, SigningKey> kidToKey;
+  private final Buffer jwks;
+  private final String etag;
+
+  // Constructors
+
+  /**
+   * @param active The key that signs new tokens
+   * @param retiring Keys that may only verify
+   */
+  public KeySet(SigningKey active, List<SigningKey> retiring) {
+    assert active != null : "active must not be null.";
+    assert retiring != null : "retiring must not be null.";
+
+    var keys = new ArrayList<SigningKey>();
+    keys.add(active);
+    keys.addAll(retiring);
+
+    Map<String, SigningKey> kidToKey = new LinkedHashMap<>();
+    var jwks = new JsonArray();
+    for (var key : keys) {
+      if (key.getKid() != null && kidToKey.put(key.getKid(), key) != null) {
+        throw new IdpException("Key identifier '" + key.getKid() + "' is used more than once.");
+      }
+      if (!key.getAlgorithm().isSymmetric()) {
+        jwks.add(toJwk(key));
+      }
+    }
+
+    this.active = active;
+    this.keys = Collections.unmodifiableList(keys);
+    this.kidToKey = Collections.unmodifiableMap(kidToKey);
+    this.jwks = new JsonObject().put("keys", jwks).toBuffer();
+    this.etag = "\"" + ENCODER.encodeToString(sha256(this.jwks.getBytes())) + "\"";
+  }
+
+  // Factory methods
+
+  /**
+   * Load the active key from <code>keys</code> and the retiring keys from
+   * <code>verification-keys</code>.
+   *
+   * @param config The IdP configuration
+   * @return The key set
+   * @throws IdpException if a key cannot be read or parsed
+   */
+  public static KeySet load(JsonObject config) {
+    var active = SigningKey.load(config);
+
+    var retiring = new ArrayList<SigningKey>();
+    var entries = config.getJsonArray(ConfigProp.VERIFICATION_KEYS, new JsonArray());
+    for (int idx = 0; idx < entries.size(); idx++) {
+      retiring.add(SigningKey.loadVerificationKey(config, entries.getJsonObject(idx)));
+    }
+
+    if (!retiring.isEmpty() && active.getKid() == null) {
+      throw new IdpException(
+          "The active key needs a '"
+              + SigningKey.KEY_ID
+              + "' when '"
+              + ConfigProp.VERIFICATION_KEYS
+              + "' are configured.");
+    }
+
+    return new KeySet(active, retiring);
+  }
+
+  // Methods
+
+  /**
+   * Find a key that verifies tokens with the provided key identifier.
+   *
+   * @param kid The token's <code>kid</code> header, or <code>null</code>
+   * @return The matching key; the active key if <code>kid</code> is
+   *     <code>null</code>; or <code>null</code> if no key matches
+   */
+  public SigningKey verificationKey(String kid) {
+    return kid != null ? this.kidToKey.get(kid) : this.active;
+  }
+
+  // Accessors
+  public SigningKey getActive() {
+    return active;
+  }
+
+  /** @return Every key in the set, the active key first */
+  public List<SigningKey> getKeys() {
+    return keys;
+  }
+
+  /**
+   * Returns the serialized JSON Web Key Set. The buffer is shared by every
+   * caller and must be treated as read-only.
+   *
+   * @return The JWKS document
+   */
+  public Buffer getJwks() {
+    return jwks;
+  }
+
+  /** @return A quoted entity tag that changes whenever the JWKS does */
+  public String getEtag() {
+    return etag;
+  }
+
+  // Private methods
+  private static JsonObject toJwk(SigningKey key) {
+    var jwk = new JsonObject();
+    var publicKey = key.getVerificationKey();
+    var algorithm = key.getAlgorithm();
+    switch (algorithm) {
+      case RS256:
+      case RS384:
+      case RS512:
+        var rsa = (RSAPublicKey) publicKey;
+        jwk.put("kty", "RSA")
+            .put("n", encode(unsigned(rsa.getModulus())))
+            .put("e", encode(unsigned(rsa.getPublicExponent())));
+        break;
+      case ES256:
+      case ES384:
+      case ES512:
+        var ec = (ECPublicKey) publicKey;
+        var size = (ec.getParams().getCurve().getField().getFieldSize() + 7) / 8;
+        jwk.put("kty", "EC")
+            .put("crv", curveName(algorithm))
+            .put("x", encode(fixedLength(ec.getW().getAffineX(), size)))
+            .put("y", encode(fixedLength(ec.getW().getAffineY(), size)));
+        break;
+      case EdDSA:
+        // The raw key is the last 32 bytes of its SubjectPublicKeyInfo encoding.
+        var encoded = publicKey.getEncoded();
+        jwk.put("kty", "OKP")
+            .put("crv", "Ed25519")
+            .put("x", encode(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length)));
+        break;
+      default:
+        throw new IdpException("Keys for " + algorithm + " cannot be published.");
+    }
+
+    if (key.getKid() != null) {
+      jwk.put("kid", key.getKid());
+    }
+    return jwk.put("use", "sig").put("alg", algorithm.name());
+  }
+
+  private static String curveName(SigningAlgorithm algorithm) {
+    switch (algorithm) {
+      case ES256:
+        return "P-256";
+      case ES384:
+        return "P-384";
+      default:
+        return "P-521";
+    }
+  }
+
+  private static byte[] unsigned(BigInteger value) {
+    var bytes = value.toByteArray();
+    return bytes[0] == 0 && bytes.length > 1 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+  }
+
+  private static byte[] fixedLength(BigInteger value, int length) {
+    var bytes = unsigned(value);
+    var padded = new byte[length];
+    System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+    return padded;
+  }
+
+  private static String encode(byte[] value) {
+    return ENCODER.encodeToString(value);
+  }
+
+  private static byte[] sha256(byte[] value) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(value);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IdpException("SHA-256 is not available.", e);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package io.miscellanea.vertx.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed buckets, matching the cumulative
+ * <code>le</code> buckets of a Prometheus histogram.
+ *
+ * <p>Every bucket is a striped counter allocated up front, so recording a
+ * sample neither locks nor allocates, and threads recording concurrently
+ * rarely touch the same cache line.
+ *
+ * @author Jason Hallford
+ */
+public final class LatencyHistogram {
+  // Fields
+
+  /** Bucket upper bounds, in seconds, from 10 microseconds to 10 seconds. */
+  static final double[] BOUNDS = {
+    0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+    0.1, 0.25, 0.5, 1, 2.5, 5, 10
+  };
+
+  private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+
+  static {
+    for (int idx = 0; idx < BOUNDS.length; idx++) {
+      BOUNDS_NANOS[idx] = Math.round(BOUNDS[idx] * TimeUnit.SECONDS.toNanos(1));
+    }
+  }
+
+  private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+  private final LongAdder sumNanos = new LongAdder();
+
+  // Constructors
+  public LatencyHistogram() {
+    for (int idx = 0; idx < this.buckets.length; idx++) {
+      this.buckets[idx] = new LongAdder();
+    }
+  }
+
+  // Methods
+
+  /**
+   * Record a sample.
+   *
+   * @param nanos The sample, in nanoseconds
+   */
+  public void record(long nanos) {
+    int idx = 0;
+    while (idx < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[idx]) {
+      idx++;
+    }
+    this.buckets[idx].increment();
+    this.sumNanos.add(nanos);
+  }
+
+  /**
+   * Record the time elapsed since <code>startNanos</code>.
+   *
+   * @param startNanos A value of {@link System#nanoTime()}
+   */
+  public void recordSince(long startNanos) {
+    this.record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Return the cumulative counts, one per bound in {@link #BOUNDS} followed by
+   * the total count. Counts read while samples are recorded may be off by
+   * the samples in flight.
+   *
+   * @return The cumulative counts
+   */
+  public long[] cumulativeCounts() {
+    var counts = new long[this.buckets.length];
+    long total = 0;
+    for (int idx = 0; idx < this.buckets.length; idx++) {
+      total += this.buckets[idx].sum();
+      counts[idx] = total;
+    }
+    return counts;
+  }
+
+  /** @return The sum of every sample, in seconds */
+  public double getSumSeconds() {
+    return this.sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+}
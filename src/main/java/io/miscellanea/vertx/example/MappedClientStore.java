@@ -0,0 +1,223 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only client store backed by a memory-mapped binary file. Neither the
+ * clients nor the index live on the heap, so a store of millions of clients
+ * opens in milliseconds and costs the JVM almost nothing until clients are
+ * looked up; the operating system pages in what is used.
+ *
+ * <p>The file, written by {@link ClientStoreWriter}, has four sections:
+ *
+ * <ol>
+ *   <li>A header: magic, version, client count, role set count, index slot
+ *       count, a reserved word and the offsets of the index and records
+ *   <li>The distinct role sets, each a length-prefixed JSON array. Every
+ *       client with the same roles refers to the same set, which is decoded
+ *       once when the store is opened.
+ *   <li>An open-addressing hash index on client id. Each slot is a long
+ *       holding a 24 bit hash tag and a 40 bit record offset.
+ *   <li>The records: a length-prefixed UTF-8 id, a length-prefixed secret in
+ *       <code>client-config</code> form and a role set number, or -1. Records
+ *       never straddle a 1 GiB boundary so each can be read from one mapping.
+ * </ol>
+ *
+ * @author Jason Hallford
+ */
+public final class MappedClientStore implements ClientStore {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(MappedClientStore.class);
+  static final int MAGIC = 0x49445043;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 40;
+  static final int CHUNK_BITS = 30;
+  static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+  static final int TAG_SHIFT = 40;
+  static final long OFFSET_MASK = (1L << TAG_SHIFT) - 1;
+  static final int NO_ROLES = -1;
+
+  private final int size;
+  private final LongBuffer index;
+  private final int indexMask;
+  private final ByteBuffer[] records;
+  private final JsonArray[] roleSets;
+  private final byte[][] encodedRoleSets;
+
+  // Constructors
+  private MappedClientStore(
+      int size,
+      LongBuffer index,
+      ByteBuffer[] records,
+      JsonArray[] roleSets,
+      byte[][] encodedRoleSets) {
+    this.size = size;
+    this.index = index;
+    this.indexMask = index.capacity() - 1;
+    this.records = records;
+    this.roleSets = roleSets;
+    this.encodedRoleSets = encodedRoleSets;
+  }
+
+  // Factory methods
+
+  /**
+   * Map a client store file.
+   *
+   * @param path The file's location
+   * @return The store
+   * @throws IdpException if the file cannot be read or is not a client store
+   */
+  public static MappedClientStore open(Path path) {
+    assert path != null : "path must not be null.";
+
+    LOGGER.debug("Mapping client store {}.", path);
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IdpException("File " + path + " is not a version " + VERSION + " client store.");
+      }
+
+      var size = header.getInt(8);
+      var roleSetCount = header.getInt(12);
+      var slots = header.getInt(16);
+      var indexOffset = header.getLong(24);
+      var recordsOffset = header.getLong(32);
+
+      // Role sets are few and hot, so they are decoded onto the heap once.
+      var roleSets = new JsonArray[roleSetCount];
+      var encodedRoleSets = new byte[roleSetCount][];
+      var roles =
+          channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, indexOffset - HEADER_SIZE);
+      for (int idx = 0; idx < roleSetCount; idx++) {
+        var encoded = new byte[roles.getInt()];
+        roles.get(encoded);
+        encodedRoleSets[idx] = encoded;
+        roleSets[idx] = new JsonArray(Buffer.buffer(encoded));
+      }
+
+      var index =
+          channel
+              .map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) slots * Long.BYTES)
+              .asLongBuffer();
+      var records = mapRecords(channel, recordsOffset, channel.size() - recordsOffset);
+
+      LOGGER.info(
+          "Mapped {} client(s) with {} distinct role set(s) from {}.", size, roleSetCount, path);
+      return new MappedClientStore(size, index, records, roleSets, encodedRoleSets);
+    } catch (IdpException e) {
+      throw e;
+    } catch (IOException | RuntimeException e) {
+      throw new IdpException("Unable to map client store " + path + ".", e);
+    }
+  }
+
+  // Methods
+  @Override
+  public ClientConfig lookup(String clientId) {
+    if (clientId == null) {
+      return null;
+    }
+
+    var id = clientId.getBytes(StandardCharsets.UTF_8);
+    var hash = hash(id);
+    var tag = hash >>> TAG_SHIFT;
+    var slot = (int) hash & this.indexMask;
+    while (true) {
+      var entry = this.index.get(slot);
+      if (entry == 0) {
+        return null;
+      }
+      if (entry >>> TAG_SHIFT == tag) {
+        var offset = (entry & OFFSET_MASK) - 1;
+        var chunk = this.records[(int) (offset >>> CHUNK_BITS)];
+        var position = (int) (offset & (CHUNK_SIZE - 1));
+        if (idEquals(chunk, position, id)) {
+          return this.read(chunk, position + Short.BYTES + id.length, clientId);
+        }
+      }
+      slot = (slot + 1) & this.indexMask;
+    }
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  // Package methods
+
+  /**
+   * Hash a UTF-8 encoded client id. The low bits select an index slot; the
+   * high 24 bits are kept in the slot as a tag so that most mismatches are
+   * rejected without touching the record.
+   */
+  static long hash(byte[] id) {
+    // FNV-1a, finished with the MurmurHash3 mixer to spread the low bits.
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : id) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /** Map a records section as a series of chunks of at most 1 GiB. */
+  static ByteBuffer[] mapRecords(FileChannel channel, long offset, long length)
+      throws IOException {
+    var chunks = new ByteBuffer[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+    for (int idx = 0; idx < chunks.length; idx++) {
+      var start = (long) idx << CHUNK_BITS;
+      chunks[idx] =
+          channel.map(
+              FileChannel.MapMode.READ_ONLY, offset + start, Math.min(CHUNK_SIZE, length - start));
+    }
+    return chunks;
+  }
+
+  /** Compare the id of the record at <code>position</code> with <code>id</code>. */
+  static boolean idEquals(ByteBuffer chunk, int position, byte[] id) {
+    if ((chunk.getShort(position) & 0xffff) != id.length) {
+      return false;
+    }
+    for (int idx = 0; idx < id.length; idx++) {
+      if (chunk.get(position + Short.BYTES + idx) != id[idx]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Private methods
+  private ClientConfig read(ByteBuffer chunk, int position, String clientId) {
+    var secret = new byte[chunk.getShort(position) & 0xffff];
+    position += Short.BYTES;
+    for (int idx = 0; idx < secret.length; idx++) {
+      secret[idx] = chunk.get(position + idx);
+    }
+    position += secret.length;
+
+    var roleSet = chunk.getInt(position);
+    var clientSecret = ClientSecret.parse(new String(secret, StandardCharsets.UTF_8));
+    return roleSet == NO_ROLES
+        ? new ClientConfig(clientId, clientSecret, null)
+        : new ClientConfig(
+            clientId, clientSecret, this.roleSets[roleSet], this.encodedRoleSets[roleSet]);
+  }
+}
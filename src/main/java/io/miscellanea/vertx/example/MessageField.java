@@ -11,6 +11,9 @@ public final class MessageField {
   public static final String SUBJECT = "subject";
   public static final String AUTHN = "authn";
   public static final String ROLES = "roles";
+  public static final String CLIENTS = "clients";
+  public static final String RESULTS = "results";
+  public static final String FAILURE_CODE = "failure-code";
 
   private MessageField() {
   }
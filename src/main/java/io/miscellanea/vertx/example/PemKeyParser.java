@@ -0,0 +1,338 @@
+package io.miscellanea.vertx.example;
+
+import javax.crypto.Cipher;
+import javax.crypto.EncryptedPrivateKeyInfo;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.KeySpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses PEM encoded keys and certificates into JCA objects. Private keys may
+ * be PKCS#8 (<code>PRIVATE KEY</code>), encrypted PKCS#8 (<code>ENCRYPTED
+ * PRIVATE KEY</code>) or RSA PKCS#1 (<code>RSA PRIVATE KEY</code>), which
+ * OpenSSL may have encrypted, as its <code>Proc-Type</code> and
+ * <code>DEK-Info</code> headers say, with AES or triple DES. Public keys may
+ * be X.509 SubjectPublicKeyInfo (<code>PUBLIC KEY</code>) or RSA PKCS#1
+ * (<code>RSA PUBLIC KEY</code>).
+ *
+ * @author Jason Hallford
+ */
+final class PemKeyParser {
+  // Fields
+  private static final String BEGIN = "-----BEGIN ";
+  private static final String END = "-----END ";
+
+  /** The DER encoded AlgorithmIdentifier of rsaEncryption, with NULL parameters. */
+  private static final byte[] RSA_ALGORITHM = {
+    0x30, 0x0d, 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x01,
+    0x01, 0x05, 0x00
+  };
+
+  private PemKeyParser() {}
+
+  // Package methods
+
+  /**
+   * Parse the first private key in a PEM file.
+   *
+   * @param pem The file's lines
+   * @param factory A factory for keys of the expected algorithm
+   * @param passphrase The key's passphrase, or <code>null</code> if it is not
+   *     encrypted
+   * @return The key
+   * @throws IdpException if the file holds no private key or it cannot be
+   *     decrypted or parsed
+   */
+  static PrivateKey parsePrivateKey(List<String> pem, KeyFactory factory, String passphrase) {
+    var block = firstBlock(pem, "PRIVATE KEY", "ENCRYPTED PRIVATE KEY", "RSA PRIVATE KEY");
+
+    KeySpec spec;
+    switch (block.type) {
+      case "ENCRYPTED PRIVATE KEY":
+        spec = decryptPkcs8(block.der, requirePassphrase(passphrase));
+        break;
+      case "RSA PRIVATE KEY":
+        requireRsa(factory, block.type);
+        var pkcs1 =
+            block.headers.containsKey("DEK-Info")
+                ? decryptOpenSsl(block.headers.get("DEK-Info"), block.der, passphrase)
+                : block.der;
+        spec =
+            new PKCS8EncodedKeySpec(
+                der(0x30, der(0x02, new byte[1]), RSA_ALGORITHM, der(0x04, pkcs1)));
+        break;
+      default:
+        spec = new PKCS8EncodedKeySpec(block.der);
+    }
+
+    try {
+      return factory.generatePrivate(spec);
+    } catch (GeneralSecurityException e) {
+      throw new IdpException(
+          "Unable to parse " + block.type + " as a " + factory.getAlgorithm() + " key.", e);
+    }
+  }
+
+  /**
+   * Parse the first public key in a PEM file.
+   *
+   * @param pem The file's lines
+   * @param factory A factory for keys of the expected algorithm
+   * @return The key
+   * @throws IdpException if the file holds no public key or it cannot be parsed
+   */
+  static PublicKey parsePublicKey(List<String> pem, KeyFactory factory) {
+    var block = firstBlock(pem, "PUBLIC KEY", "RSA PUBLIC KEY");
+
+    var spki = block.der;
+    if (block.type.equals("RSA PUBLIC KEY")) {
+      requireRsa(factory, block.type);
+      spki = der(0x30, RSA_ALGORITHM, der(0x03, new byte[1], block.der));
+    }
+
+    try {
+      return factory.generatePublic(new X509EncodedKeySpec(spki));
+    } catch (GeneralSecurityException e) {
+      throw new IdpException(
+          "Unable to parse " + block.type + " as a " + factory.getAlgorithm() + " key.", e);
+    }
+  }
+
+  /**
+   * Parse the certificates in a PEM file, in the order they appear.
+   *
+   * @param pem The file's lines
+   * @return The certificates
+   * @throws IdpException if the file holds no certificate or one cannot be parsed
+   */
+  static List<X509Certificate> parseCertificates(List<String> pem) {
+    var certificates = new ArrayList<X509Certificate>();
+    try {
+      var factory = CertificateFactory.getInstance("X.509");
+      for (var block : blocks(pem)) {
+        if (block.type.equals("CERTIFICATE")) {
+          certificates.add(
+              (X509Certificate) factory.generateCertificate(new ByteArrayInputStream(block.der)));
+        }
+      }
+    } catch (GeneralSecurityException e) {
+      throw new IdpException("Unable to parse a PEM certificate.", e);
+    }
+
+    if (certificates.isEmpty()) {
+      throw new IdpException("The PEM file holds no CERTIFICATE.");
+    }
+    return List.copyOf(certificates);
+  }
+
+  // Private methods
+  private static Block firstBlock(List<String> pem, String... types) {
+    for (var block : blocks(pem)) {
+      if (Arrays.asList(types).contains(block.type)) {
+        return block;
+      }
+    }
+    throw new IdpException("The PEM file holds no " + String.join(", ", types) + ".");
+  }
+
+  private static List<Block> blocks(List<String> pem) {
+    var blocks = new ArrayList<Block>();
+    String type = null;
+    var headers = new HashMap<String, String>();
+    var body = new StringBuilder();
+    for (var line : pem) {
+      line = line.strip();
+      if (line.startsWith(BEGIN)) {
+        type = line.substring(BEGIN.length(), line.length() - 5);
+        headers.clear();
+        body.setLength(0);
+      } else if (line.startsWith(END) && type != null) {
+        try {
+          var der = Base64.getMimeDecoder().decode(body.toString());
+          blocks.add(new Block(type, Map.copyOf(headers), der));
+        } catch (IllegalArgumentException e) {
+          throw new IdpException("The PEM encoded " + type + " is not valid base64.", e);
+        }
+        type = null;
+      } else if (type != null && line.contains(":")) {
+        var separator = line.indexOf(':');
+        headers.put(line.substring(0, separator).strip(), line.substring(separator + 1).strip());
+      } else if (type != null) {
+        body.append(line);
+      }
+    }
+    return blocks;
+  }
+
+  private static String requirePassphrase(String passphrase) {
+    if (passphrase == null) {
+      throw new IdpException("The private key is encrypted, but no passphrase is configured.");
+    }
+    return passphrase;
+  }
+
+  private static void requireRsa(KeyFactory factory, String type) {
+    if (!factory.getAlgorithm().equals("RSA")) {
+      throw new IdpException(
+          "A " + type + " cannot be used as a " + factory.getAlgorithm() + " key.");
+    }
+  }
+
+  private static KeySpec decryptPkcs8(byte[] der, String passphrase) {
+    EncryptedPrivateKeyInfo info;
+    SecretKey key;
+    Cipher cipher;
+    try {
+      info = new EncryptedPrivateKeyInfo(der);
+
+      // PBES2 names no cipher of its own; its parameters name the scheme.
+      var algorithm =
+          info.getAlgName().equals("PBES2")
+              ? info.getAlgParameters().toString()
+              : info.getAlgName();
+      key =
+          SecretKeyFactory.getInstance(algorithm)
+              .generateSecret(new PBEKeySpec(passphrase.toCharArray()));
+      cipher = Cipher.getInstance(algorithm);
+    } catch (Exception e) {
+      throw new IdpException(
+          "The ENCRYPTED PRIVATE KEY uses a scheme this Java runtime does not support; "
+              + "re-encrypt it with PBES2 and AES, e.g. openssl pkcs8 -topk8 -v2 aes-256-cbc.",
+          e);
+    }
+
+    try {
+      cipher.init(Cipher.DECRYPT_MODE, key, info.getAlgParameters());
+      return info.getKeySpec(cipher);
+    } catch (Exception e) {
+      throw new IdpException(
+          "Unable to decrypt the ENCRYPTED PRIVATE KEY; check its passphrase.", e);
+    }
+  }
+
+  /**
+   * Decrypt a key that OpenSSL encrypted with its traditional scheme: the
+   * cipher key is derived from the passphrase with <code>EVP_BytesToKey</code>
+   * and MD5, salted with the first eight bytes of the IV.
+   */
+  private static byte[] decryptOpenSsl(String dekInfo, byte[] der, String passphrase) {
+    requirePassphrase(passphrase);
+
+    var fields = dekInfo.split(",");
+    String transformation;
+    int keyLength;
+    switch (fields[0].strip().toUpperCase()) {
+      case "AES-128-CBC":
+        transformation = "AES";
+        keyLength = 16;
+        break;
+      case "AES-192-CBC":
+        transformation = "AES";
+        keyLength = 24;
+        break;
+      case "AES-256-CBC":
+        transformation = "AES";
+        keyLength = 32;
+        break;
+      case "DES-EDE3-CBC":
+        transformation = "DESede";
+        keyLength = 24;
+        break;
+      default:
+        throw new IdpException("Unsupported PEM encryption " + fields[0] + ".");
+    }
+
+    try {
+      var iv = hex(fields[1].strip());
+      var key = bytesToKey(passphrase, Arrays.copyOf(iv, 8), keyLength);
+      var cipher = Cipher.getInstance(transformation + "/CBC/PKCS5Padding");
+      cipher.init(
+          Cipher.DECRYPT_MODE,
+          new SecretKeySpec(key, transformation),
+          new IvParameterSpec(iv));
+      return cipher.doFinal(der);
+    } catch (Exception e) {
+      throw new IdpException("Unable to decrypt the RSA PRIVATE KEY; check its passphrase.", e);
+    }
+  }
+
+  private static byte[] bytesToKey(String passphrase, byte[] salt, int length)
+      throws GeneralSecurityException {
+    var md5 = MessageDigest.getInstance("MD5");
+    var key = new ByteArrayOutputStream();
+    var digest = new byte[0];
+    while (key.size() < length) {
+      md5.update(digest);
+      md5.update(passphrase.getBytes(StandardCharsets.UTF_8));
+      md5.update(salt);
+      digest = md5.digest();
+      key.writeBytes(digest);
+    }
+    return Arrays.copyOf(key.toByteArray(), length);
+  }
+
+  private static byte[] hex(String value) {
+    var bytes = new byte[value.length() / 2];
+    for (int idx = 0; idx < bytes.length; idx++) {
+      bytes[idx] = (byte) Integer.parseInt(value.substring(idx * 2, idx * 2 + 2), 16);
+    }
+    return bytes;
+  }
+
+  /** Encode a DER element whose content is the concatenation of the provided parts. */
+  private static byte[] der(int tag, byte[]... parts) {
+    var content = new ByteArrayOutputStream();
+    for (var part : parts) {
+      content.writeBytes(part);
+    }
+
+    var element = new ByteArrayOutputStream();
+    element.write(tag);
+    int length = content.size();
+    if (length < 0x80) {
+      element.write(length);
+    } else {
+      int octets = (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+      element.write(0x80 | octets);
+      for (int shift = (octets - 1) * 8; shift >= 0; shift -= 8) {
+        element.write(length >>> shift);
+      }
+    }
+    element.writeBytes(content.toByteArray());
+    return element.toByteArray();
+  }
+
+  /** One <code>-----BEGIN type-----</code> block of a PEM file. */
+  private static final class Block {
+    private final String type;
+    private final Map<String, String> headers;
+    private final byte[] der;
+
+    Block(String type, Map<String, String> headers, byte[] der) {
+      this.type = type;
+      this.headers = headers;
+      this.der = der;
+    }
+  }
+}
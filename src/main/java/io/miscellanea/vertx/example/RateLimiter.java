@@ -0,0 +1,358 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-client token buckets that cap how often each registered client may be
+ * served, checked before a client is authenticated so that one client cannot
+ * use up the signing capacity every client shares.
+ *
+ * <p>A client's limit comes from the <code>rate-limit</code> field of its
+ * <code>client-config</code> entry, or else from the <code>rate-limit</code>
+ * configuration element. Requests from unknown clients are not limited: they
+ * fail authentication without reaching the signing pool, and giving every
+ * made-up identifier a bucket would let them exhaust memory instead.
+ *
+ * <p>Each bucket is a single atomic word holding the time at which it will
+ * next be full again (the generic cell rate algorithm, a token bucket that
+ * refills continuously), so checking a bucket never locks. Buckets live in a
+ * concurrent map, whose reads never lock either, and a bucket that has
+ * refilled behaves like a new one, so {@link #sweep()} drops those without
+ * changing any client's allowance.
+ *
+ * <p>In a cluster, each node admits requests against its own buckets and
+ * {@link ClusterReplicator} periodically {@link #charge(String, int) charges}
+ * what the other nodes admitted, so a client's limit holds across the
+ * cluster, overshooting by at most what it can send between two exchanges.
+ *
+ * @author Jason Hallford
+ */
+public final class RateLimiter implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(RateLimiter.class);
+  public static final String ENABLED = "enabled";
+  public static final String SWEEP_PERIOD_SECONDS = "sweep-period-seconds";
+
+  private final ClientAuthenticator clients;
+  private final Limit defaultLimit;
+  private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder limited = new LongAdder();
+  private final LongAdder charged = new LongAdder();
+  private volatile boolean trackingUsage;
+
+  // Constructors
+
+  /**
+   * @param clients Finds the registered client, and so its limit, behind an
+   *     identifier
+   * @param defaultLimit The limit of clients that do not configure their own
+   */
+  public RateLimiter(ClientAuthenticator clients, Limit defaultLimit) {
+    assert clients != null : "clients must not be null.";
+    assert defaultLimit != null : "defaultLimit must not be null.";
+
+    this.clients = clients;
+    this.defaultLimit = defaultLimit;
+  }
+
+  // Factory methods
+
+  /**
+   * Create a limiter as described by the <code>rate-limit</code> element of the
+   * provided configuration.
+   *
+   * @param clients Finds registered clients
+   * @param config The IdP configuration
+   * @return The limiter, or <code>null</code> if rate limiting is disabled
+   */
+  public static RateLimiter fromConfig(ClientAuthenticator clients, JsonObject config) {
+    var limitConfig = config.getJsonObject(ConfigProp.RATE_LIMIT);
+    if (limitConfig == null || !limitConfig.getBoolean(ENABLED, true)) {
+      LOGGER.info("Rate limiting disabled.");
+      return null;
+    }
+
+    var limit =
+        Limit.fromJson(limitConfig, "Configuration element '" + ConfigProp.RATE_LIMIT + "'");
+    LOGGER.info(
+        "Clients are limited to {} request(s) per second with bursts of {} by default.",
+        limit.getRequestsPerSecond(),
+        limit.getBurst());
+    return new RateLimiter(clients, limit);
+  }
+
+  // Methods
+
+  /**
+   * Take one request from a client's bucket.
+   *
+   * @param clientId The identifier the request presents
+   * @return Zero if the request may proceed, otherwise the number of seconds,
+   *     at least one, until the client may try again
+   */
+  public long acquire(String clientId) {
+    var limit = this.limitOf(clientId);
+    if (limit == null) {
+      return 0;
+    }
+
+    long now = System.nanoTime();
+    var bucket = this.bucketOf(clientId, limit, now);
+    long wait = bucket.take(now);
+    if (wait == 0) {
+      if (this.trackingUsage) {
+        bucket.unsynced.incrementAndGet();
+      }
+      this.admitted.increment();
+      return 0;
+    }
+    this.limited.increment();
+    return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+  }
+
+  /**
+   * Charge requests that another node admitted against a client's bucket, so
+   * that the client's limit holds across a cluster rather than per node.
+   *
+   * @param clientId The client's identifier
+   * @param requests The number of requests to charge
+   */
+  public void charge(String clientId, int requests) {
+    var limit = this.limitOf(clientId);
+    if (limit == null || requests < 1) {
+      return;
+    }
+
+    long now = System.nanoTime();
+    this.bucketOf(clientId, limit, now).charge(now, requests);
+    this.charged.add(requests);
+  }
+
+  /** Start counting the requests admitted to each client, for {@link #drainUsage()}. */
+  public void trackUsage() {
+    this.trackingUsage = true;
+  }
+
+  /**
+   * @return The number of requests admitted to each client since the last
+   *     call, by identifier; clients with none are omitted
+   */
+  public JsonObject drainUsage() {
+    var usage = new JsonObject();
+    for (var entry : this.buckets.entrySet()) {
+      int requests = entry.getValue().unsynced.getAndSet(0);
+      if (requests > 0) {
+        usage.put(entry.getKey(), requests);
+      }
+    }
+    return usage;
+  }
+
+  /**
+   * Drop the buckets of clients that have been idle long enough for their
+   * bucket to refill. At worst a request racing a sweep is admitted without
+   * being counted against its client.
+   *
+   * @return The number of buckets dropped
+   */
+  public int sweep() {
+    long now = System.nanoTime();
+    int dropped = 0;
+    for (var entry : this.buckets.entrySet()) {
+      // Buckets whose usage has not been replicated yet are kept until it has.
+      var bucket = entry.getValue();
+      if (bucket.isFull(now)
+          && bucket.unsynced.get() == 0
+          && this.buckets.remove(entry.getKey(), bucket)) {
+        dropped++;
+      }
+    }
+    return dropped;
+  }
+
+  /** @return The limiter's counters as JSON */
+  public JsonObject stats() {
+    return new JsonObject()
+        .put("clients", this.buckets.size())
+        .put("admitted", this.admitted.sum())
+        .put("limited", this.limited.sum())
+        .put("charged", this.charged.sum());
+  }
+
+  // Private methods
+
+  /** @return The limit of a registered client, or <code>null</code> if it is not limited */
+  private Limit limitOf(String clientId) {
+    if (clientId == null) {
+      return null;
+    }
+
+    var client = this.clients.lookup(clientId);
+    if (client == null) {
+      return null;
+    }
+    var limit = client.getRateLimit() != null ? client.getRateLimit() : this.defaultLimit;
+    return limit.isUnlimited() ? null : limit;
+  }
+
+  private Bucket bucketOf(String clientId, Limit limit, long now) {
+    var bucket = this.buckets.get(clientId);
+    if (bucket == null || !bucket.limit.equals(limit)) {
+      // A new client, or one whose limit has been reconfigured.
+      bucket =
+          this.buckets.compute(
+              clientId,
+              (id, current) ->
+                  current != null && current.limit.equals(limit)
+                      ? current
+                      : new Bucket(limit, now));
+    }
+    return bucket;
+  }
+
+  /** A rate, in requests per second, and the burst a client may send at once. */
+  public static final class Limit {
+    // Fields
+    public static final String REQUESTS_PER_SECOND = "requests-per-second";
+    public static final String BURST = "burst";
+
+    private final double requestsPerSecond;
+    private final int burst;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+
+    // Constructors
+
+    /**
+     * @param requestsPerSecond The sustained rate; zero means unlimited
+     * @param burst How many requests may be sent at once by a client that has
+     *     been idle; must be positive
+     */
+    public Limit(double requestsPerSecond, int burst) {
+      assert requestsPerSecond >= 0 : "requestsPerSecond must not be negative.";
+      assert burst > 0 : "burst must be positive.";
+
+      this.requestsPerSecond = requestsPerSecond;
+      this.burst = burst;
+      this.intervalNanos =
+          requestsPerSecond > 0 ? Math.max(1, (long) (1_000_000_000L / requestsPerSecond)) : 0;
+      this.toleranceNanos = this.intervalNanos * (burst - 1);
+    }
+
+    // Factory methods
+
+    /**
+     * Read a limit from a JSON object. The burst defaults to one second's
+     * worth of requests.
+     *
+     * @param json An object with <code>requests-per-second</code> and,
+     *     optionally, <code>burst</code>
+     * @param where Names the object in error messages
+     */
+    public static Limit fromJson(JsonObject json, String where) {
+      var rate = json.getValue(REQUESTS_PER_SECOND);
+      var burst = json.getValue(BURST);
+      if (!(rate instanceof Number)
+          || ((Number) rate).doubleValue() < 0
+          || (burst != null && (!(burst instanceof Number) || ((Number) burst).intValue() < 1))) {
+        throw new IdpException(
+            where
+                + " must have a non-negative '"
+                + REQUESTS_PER_SECOND
+                + "' and, optionally, a positive '"
+                + BURST
+                + "'.");
+      }
+
+      var requestsPerSecond = ((Number) rate).doubleValue();
+      var defaultBurst =
+          (int) Math.min(Integer.MAX_VALUE, Math.max(1, Math.ceil(requestsPerSecond)));
+      return new Limit(
+          requestsPerSecond, burst != null ? ((Number) burst).intValue() : defaultBurst);
+    }
+
+    // Accessors
+    public double getRequestsPerSecond() {
+      return requestsPerSecond;
+    }
+
+    public int getBurst() {
+      return burst;
+    }
+
+    // Methods
+
+    /** @return <code>true</code> if requests are never limited */
+    public boolean isUnlimited() {
+      return this.intervalNanos == 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Limit)) {
+        return false;
+      }
+
+      var that = (Limit) other;
+      return this.intervalNanos == that.intervalNanos && this.burst == that.burst;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(this.intervalNanos) * 31 + this.burst;
+    }
+  }
+
+  /** One client's bucket: the time at which it will next be full. */
+  private static final class Bucket {
+    final Limit limit;
+    final AtomicLong fullAt;
+    final AtomicInteger unsynced = new AtomicInteger();
+
+    Bucket(Limit limit, long now) {
+      this.limit = limit;
+      this.fullAt = new AtomicLong(now);
+    }
+
+    /** @return Zero if a request was taken, otherwise the nanoseconds until one can be */
+    long take(long now) {
+      while (true) {
+        long fullAt = this.fullAt.get();
+        long excess = fullAt - now - this.limit.toleranceNanos;
+        if (excess > 0) {
+          return excess;
+        }
+        long next = Math.max(fullAt, now) + this.limit.intervalNanos;
+        if (this.fullAt.compareAndSet(fullAt, next)) {
+          return 0;
+        }
+      }
+    }
+
+    /** Consume requests without checking the limit; the bucket may go into debt. */
+    void charge(long now, int requests) {
+      long cost = this.limit.intervalNanos * requests;
+      long fullAt;
+      do {
+        fullAt = this.fullAt.get();
+      } while (!this.fullAt.compareAndSet(fullAt, Math.max(fullAt, now) + cost));
+    }
+
+    boolean isFull(long now) {
+      return this.fullAt.get() - now <= 0;
+    }
+  }
+}
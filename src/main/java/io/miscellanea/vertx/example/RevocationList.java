@@ -0,0 +1,339 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The identifiers (<code>jti</code>) of revoked tokens. Almost every token
+ * checked has not been revoked, so a {@link BloomFilter} answers first and
+ * only its rare positives consult the exact set.
+ *
+ * <p>Each revocation is appended to a local file, as a line holding the
+ * token's expiry and identifier, and forced to disk before it takes effect.
+ * The file is replayed when the list is opened. Once a token expires it can
+ * no longer be used, so {@link #purge(long)} drops it, rebuilds the filter
+ * and, when most of the file is stale, rewrites the file with the live
+ * entries only.
+ *
+ * <p>Checks never lock. Revocations and purges are serialized and perform
+ * blocking I/O, so they must not run on an event loop.
+ *
+ * @author Jason Hallford
+ */
+public final class RevocationList implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(RevocationList.class);
+  private static final int COMPACTION_SLACK = 1024;
+  public static final String FILE = "file";
+  public static final String EXPECTED_ENTRIES = "expected-entries";
+  public static final String FALSE_POSITIVE_RATE = "false-positive-rate";
+  public static final String PURGE_PERIOD_SECONDS = "purge-period-seconds";
+  public static final String DEFAULT_FILE = "revoked-tokens.log";
+
+  private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+  private final Path file;
+  private final long expectedEntries;
+  private final double falsePositiveRate;
+  private final LongAdder checks = new LongAdder();
+  private final LongAdder filterPositives = new LongAdder();
+  private final LongAdder falsePositives = new LongAdder();
+  private volatile BloomFilter filter;
+  private FileChannel log;
+  private int logRecords;
+
+  // Constructors
+  private RevocationList(Path file, long expectedEntries, double falsePositiveRate) {
+    this.file = file;
+    this.expectedEntries = expectedEntries;
+    this.falsePositiveRate = falsePositiveRate;
+  }
+
+  // Factory methods
+
+  /**
+   * Open a revocation list as described by the <code>revocation</code>
+   * element of the provided configuration.
+   *
+   * @param config The IdP configuration
+   * @return The list
+   * @throws IdpException if the configuration is invalid or the file cannot
+   *     be read
+   */
+  public static RevocationList fromConfig(JsonObject config) {
+    var revocationConfig = config.getJsonObject(ConfigProp.REVOCATION, new JsonObject());
+    var expectedEntries = revocationConfig.getLong(EXPECTED_ENTRIES, 100_000L);
+    var falsePositiveRate = revocationConfig.getDouble(FALSE_POSITIVE_RATE, 0.01);
+    if (expectedEntries < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.REVOCATION
+              + "' is invalid: expected-entries must be positive and false-positive-rate "
+              + "must be between 0 and 1.");
+    }
+
+    var file = Paths.get(revocationConfig.getString(FILE, DEFAULT_FILE));
+    return open(file, expectedEntries, falsePositiveRate, System.currentTimeMillis() / 1000);
+  }
+
+  /**
+   * Open a revocation list, replaying the revocations in <code>file</code>
+   * that have not expired. The file is created if it does not exist.
+   *
+   * @param file The file that records revocations
+   * @param expectedEntries The number of live revocations the filter is sized for
+   * @param falsePositiveRate The filter's tolerated false positive rate
+   * @param now The current time, in seconds since the epoch
+   * @return The list
+   * @throws IdpException if the file cannot be read or written
+   */
+  public static RevocationList open(
+      Path file, long expectedEntries, double falsePositiveRate, long now) {
+    assert file != null : "file must not be null.";
+
+    var list = new RevocationList(file, expectedEntries, falsePositiveRate);
+    try {
+      if (Files.exists(file)) {
+        int records = 0;
+        for (var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+          records++;
+          int separator = line.indexOf(' ');
+          try {
+            var expiresAt = Long.parseLong(line.substring(0, Math.max(0, separator)));
+            if (expiresAt > now) {
+              list.revoked.put(line.substring(separator + 1), expiresAt);
+            }
+          } catch (NumberFormatException e) {
+            // Most likely a record torn by a crash; it was never acknowledged.
+            LOGGER.warn("Ignoring malformed revocation record {} in {}.", records, file);
+          }
+        }
+        LOGGER.info(
+            "Replayed {} live revocation(s) from {} record(s) in {}.",
+            list.revoked.size(),
+            records,
+            file);
+      }
+
+      synchronized (list) {
+        list.rebuildFilter();
+        list.compact();
+      }
+    } catch (IOException e) {
+      throw new IdpException("Unable to read revocation list " + file + ".", e);
+    }
+
+    return list;
+  }
+
+  // Methods
+
+  /**
+   * Check whether a token has been revoked.
+   *
+   * @param jti The token's identifier
+   * @return <code>true</code> if the token was revoked
+   */
+  public boolean isRevoked(String jti) {
+    this.checks.increment();
+    if (jti == null || !this.filter.mightContain(jti)) {
+      return false;
+    }
+
+    this.filterPositives.increment();
+    if (this.revoked.containsKey(jti)) {
+      return true;
+    }
+    this.falsePositives.increment();
+    return false;
+  }
+
+  /**
+   * Revoke a token. The revocation is on disk when this method returns.
+   *
+   * @param jti The token's identifier
+   * @param expiresAt The token's expiry, in seconds since the epoch
+   * @param now The current time, in seconds since the epoch
+   * @return <code>true</code> if the token was revoked; <code>false</code> if
+   *     it had already been revoked or has expired
+   * @throws IdpException if the revocation cannot be recorded
+   */
+  public synchronized boolean revoke(String jti, long expiresAt, long now) {
+    assert jti != null : "jti must not be null.";
+
+    return this.revokeAll(Map.of(jti, expiresAt), now) == 1;
+  }
+
+  /**
+   * Revoke several tokens, such as those replicated from another node, with a
+   * single write to disk. Revocations that are already known or have expired
+   * are skipped.
+   *
+   * @param revocations The expiry of each token, in seconds since the epoch,
+   *     by identifier
+   * @param now The current time, in seconds since the epoch
+   * @return The number of tokens revoked
+   * @throws IdpException if the revocations cannot be recorded
+   */
+  public synchronized int revokeAll(Map<String, Long> revocations, long now) {
+    var lines = new StringBuilder();
+    var added = new ArrayList<String>();
+    for (var entry : revocations.entrySet()) {
+      var jti = entry.getKey();
+      long expiresAt = entry.getValue();
+      if (expiresAt <= now || this.revoked.containsKey(jti)) {
+        continue;
+      }
+      if (jti.indexOf('\n') >= 0 || jti.indexOf('\r') >= 0) {
+        throw new IdpException("Token identifiers must not contain line breaks.");
+      }
+      lines.append(expiresAt).append(' ').append(jti).append('\n');
+      added.add(jti);
+    }
+    if (added.isEmpty()) {
+      return 0;
+    }
+
+    try {
+      var records = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+      while (records.hasRemaining()) {
+        this.log.write(records);
+      }
+      this.log.force(false);
+      this.logRecords += added.size();
+    } catch (IOException e) {
+      throw new IdpException("Unable to record revocation in " + this.file + ".", e);
+    }
+
+    // Publish to the exact set before the filter, so a check that passes the
+    // filter always finds the entry.
+    for (var jti : added) {
+      this.revoked.put(jti, revocations.get(jti));
+      this.filter.add(jti);
+    }
+    return added.size();
+  }
+
+  /**
+   * @param now The current time, in seconds since the epoch
+   * @return The expiry of every live revocation, by token identifier
+   */
+  public JsonObject snapshot(long now) {
+    var snapshot = new JsonObject();
+    this.revoked.forEach(
+        (jti, expiresAt) -> {
+          if (expiresAt > now) {
+            snapshot.put(jti, expiresAt);
+          }
+        });
+    return snapshot;
+  }
+
+  /**
+   * Forget revocations of tokens that have expired.
+   *
+   * @param now The current time, in seconds since the epoch
+   * @return The number of revocations forgotten
+   * @throws IdpException if the file cannot be rewritten
+   */
+  public synchronized int purge(long now) {
+    int before = this.revoked.size();
+    this.revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    int purged = before - this.revoked.size();
+    if (purged == 0) {
+      return 0;
+    }
+
+    this.rebuildFilter();
+    if (this.logRecords > 2 * this.revoked.size() + COMPACTION_SLACK) {
+      try {
+        this.compact();
+      } catch (IOException e) {
+        throw new IdpException("Unable to compact revocation list " + this.file + ".", e);
+      }
+    }
+
+    LOGGER.debug("Purged {} expired revocation(s).", purged);
+    return purged;
+  }
+
+  /** Close the file. The list must not be modified afterwards. */
+  public synchronized void close() {
+    try {
+      this.log.close();
+    } catch (IOException e) {
+      LOGGER.warn("Unable to close revocation list {}.", this.file, e);
+    }
+  }
+
+  /** @return A snapshot of the list's counters */
+  public JsonObject stats() {
+    var filter = this.filter;
+    return new JsonObject()
+        .put("size", this.revoked.size())
+        .put("checks", this.checks.sum())
+        .put("filter-positives", this.filterPositives.sum())
+        .put("false-positives", this.falsePositives.sum())
+        .put("filter-bits", filter.getBitCount())
+        .put("filter-hashes", filter.getHashCount());
+  }
+
+  // Private methods
+
+  /**
+   * Replace the filter with one holding only the live revocations. A filter
+   * cannot forget entries, so this is how expired ones leave it. Checks keep
+   * using the old filter, which holds every live entry, until the swap.
+   */
+  private void rebuildFilter() {
+    var filter =
+        new BloomFilter(
+            Math.max(this.expectedEntries, 2L * this.revoked.size()), this.falsePositiveRate);
+    for (var jti : this.revoked.keySet()) {
+      filter.add(jti);
+    }
+    this.filter = filter;
+  }
+
+  /** Atomically replace the file with one holding only the live revocations. */
+  private void compact() throws IOException {
+    var parent = this.file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    var temp = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+    try (var out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+      var record = new StringBuilder();
+      for (var entry : this.revoked.entrySet()) {
+        record.append(entry.getValue()).append(' ').append(entry.getKey()).append('\n');
+      }
+      var buffer = ByteBuffer.wrap(record.toString().getBytes(StandardCharsets.UTF_8));
+      while (buffer.hasRemaining()) {
+        out.write(buffer);
+      }
+      out.force(true);
+    }
+
+    // Until the move, the previous file remains complete.
+    Files.move(
+        temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    if (this.log != null) {
+      this.log.close();
+    }
+    this.log = FileChannel.open(this.file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    this.logRecords = this.revoked.size();
+  }
+}
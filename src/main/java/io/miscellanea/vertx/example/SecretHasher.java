@@ -0,0 +1,23 @@
+package io.miscellanea.vertx.example;
+
+/**
+ * A command line tool that hashes a client secret for use in
+ * <code>client-config</code>. Usage:
+ * <code>java -cp vertx-jwt-idp-fat.jar io.miscellanea.vertx.example.SecretHasher &lt;secret&gt; [iterations]</code>
+ *
+ * @author Jason Hallford
+ */
+public final class SecretHasher {
+  private SecretHasher() {}
+
+  // Main method
+  public static void main(String[] args) {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: SecretHasher <secret> [iterations]");
+      System.exit(1);
+    }
+
+    var iterations = args.length == 2 ? Integer.parseInt(args[1]) : ClientSecret.DEFAULT_ITERATIONS;
+    System.out.println(ClientSecret.hash(args[0], iterations));
+  }
+}
@@ -0,0 +1,85 @@
+package io.miscellanea.vertx.example;
+
+/**
+ * The JWS algorithms the IdP can sign tokens with, along with the JCA names
+ * needed to implement them.
+ *
+ * @author Jason Hallford
+ */
+public enum SigningAlgorithm {
+  RS256("SHA256withRSA", "RSA"),
+  RS384("SHA384withRSA", "RSA"),
+  RS512("SHA512withRSA", "RSA"),
+  ES256("SHA256withECDSAinP1363Format", "EC"),
+  ES384("SHA384withECDSAinP1363Format", "EC"),
+  ES512("SHA512withECDSAinP1363Format", "EC"),
+  EdDSA("Ed25519", "Ed25519"),
+  HS256("HmacSHA256", null),
+  HS384("HmacSHA384", null),
+  HS512("HmacSHA512", null);
+
+  // Fields
+  public static final SigningAlgorithm DEFAULT = RS256;
+
+  private final String jcaName;
+  private final String keyAlgorithm;
+
+  // Constructors
+  SigningAlgorithm(String jcaName, String keyAlgorithm) {
+    this.jcaName = jcaName;
+    this.keyAlgorithm = keyAlgorithm;
+  }
+
+  // Factory methods
+
+  /**
+   * Find the algorithm with the provided JWS name.
+   *
+   * @param name The algorithm's name as it appears in a JOSE header
+   * @return The algorithm
+   * @throws IdpException if the algorithm is not supported
+   */
+  public static SigningAlgorithm of(String name) {
+    for (var algorithm : values()) {
+      if (algorithm.name().equals(name)) {
+        return algorithm;
+      }
+    }
+
+    throw new IdpException("Signing algorithm '" + name + "' is not supported.");
+  }
+
+  // Accessors
+
+  /** @return The name of the JCA signature or MAC that implements this algorithm */
+  public String getJcaName() {
+    return jcaName;
+  }
+
+  /** @return The JCA key factory algorithm, or <code>null</code> for HMAC algorithms */
+  public String getKeyAlgorithm() {
+    return keyAlgorithm;
+  }
+
+  /** @return <code>true</code> if the algorithm signs with a shared secret */
+  public boolean isSymmetric() {
+    return keyAlgorithm == null;
+  }
+
+  /**
+   * @return The minimum secret length in bytes; RFC 7518 requires HMAC keys at
+   *     least as long as the hash output
+   */
+  public int getMinimumSecretLength() {
+    switch (this) {
+      case HS256:
+        return 32;
+      case HS384:
+        return 48;
+      case HS512:
+        return 64;
+      default:
+        return 0;
+    }
+  }
+}
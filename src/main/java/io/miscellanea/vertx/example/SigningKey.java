@@ -0,0 +1,221 @@
+package io.miscellanea.vertx.example;
+
+import io.miscellanea.vertx.example.IdpKeyLoader.KeyType;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * The IdP's parsed signing key and the algorithm it signs with. Parsing a PEM
+ * encoded key is expensive, so a single immutable instance is shared by every
+ * issuer verticle.
+ *
+ * <p>Asymmetric algorithms use a private key for signing and a public key for
+ * verification; HMAC algorithms use the same secret key for both. A key that
+ * is being retired keeps only its public key and can no longer sign. Keys may
+ * carry a key identifier, which is written to the <code>kid</code> header of
+ * every token they sign.
+ *
+ * @author Jason Hallford
+ */
+public final class SigningKey implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(SigningKey.class);
+
+  public static final String KEY_ID = "kid";
+  public static final String ALGORITHM = "alg";
+
+  private final SigningAlgorithm algorithm;
+  private final String kid;
+  private final Key signingKey;
+  private final Key verificationKey;
+
+  // Constructors
+  public SigningKey(SigningAlgorithm algorithm, Key signingKey, Key verificationKey) {
+    this(algorithm, null, signingKey, verificationKey);
+  }
+
+  /**
+   * @param algorithm The algorithm the key is used with
+   * @param kid The key identifier, or <code>null</code>
+   * @param signingKey The signing key, or <code>null</code> for a key that
+   *     may only verify
+   * @param verificationKey The verification key
+   */
+  public SigningKey(SigningAlgorithm algorithm, String kid, Key signingKey, Key verificationKey) {
+    assert algorithm != null : "algorithm must not be null.";
+    assert verificationKey != null : "verificationKey must not be null.";
+
+    this.algorithm = algorithm;
+    this.kid = kid;
+    this.signingKey = signingKey;
+    this.verificationKey = verificationKey;
+  }
+
+  // Factory methods
+
+  /**
+   * Load and parse the keys needed by the algorithm named in the provided
+   * configuration. Asymmetric keys must be PEM encoded: the private key as
+   * PKCS#8, RSA PKCS#1 or either of them encrypted, the public key as X.509
+   * SubjectPublicKeyInfo or RSA PKCS#1. HMAC secrets must be base64 encoded.
+   *
+   * @param config The IdP configuration
+   * @return The parsed key
+   * @throws IdpException if a key cannot be read or parsed
+   */
+  public static SigningKey load(JsonObject config) {
+    var algorithmName = config.getString(ConfigProp.IDP_ALGORITHM);
+    var algorithm =
+        algorithmName != null ? SigningAlgorithm.of(algorithmName) : SigningAlgorithm.DEFAULT;
+
+    LOGGER.debug("Parsing IdP {} signing key.", algorithm);
+    var kid = config.getJsonObject(ConfigProp.KEYS, new JsonObject()).getString(KEY_ID);
+    return algorithm.isSymmetric()
+        ? loadSecret(algorithm, kid, config)
+        : loadKeyPair(algorithm, kid, config);
+  }
+
+  /**
+   * Load a retiring public key from an element of the
+   * <code>verification-keys</code> array. Each element names the key's
+   * <code>kid</code>, its <code>public</code> PEM file and, if it differs
+   * from <code>idp-algorithm</code>, its <code>alg</code>.
+   *
+   * @param config The IdP configuration
+   * @param entry The element describing the key
+   * @return A key that may only verify
+   * @throws IdpException if the key cannot be read or parsed
+   */
+  public static SigningKey loadVerificationKey(JsonObject config, JsonObject entry) {
+    var algorithmName = entry.getString(ALGORITHM, config.getString(ConfigProp.IDP_ALGORITHM));
+    var algorithm =
+        algorithmName != null ? SigningAlgorithm.of(algorithmName) : SigningAlgorithm.DEFAULT;
+    var kid = entry.getString(KEY_ID);
+    if (kid == null || algorithm.isSymmetric()) {
+      throw new IdpException(
+          "Elements of '"
+              + ConfigProp.VERIFICATION_KEYS
+              + "' must have a '"
+              + KEY_ID
+              + "' and use an asymmetric algorithm.");
+    }
+
+    LOGGER.debug("Parsing {} verification key {}.", algorithm, kid);
+    try {
+      return new SigningKey(
+          algorithm,
+          kid,
+          null,
+          new IdpKeyLoader(KeyType.IdpPublic, new JsonObject().put(ConfigProp.KEYS, entry))
+              .loadPublicKey(keyFactory(algorithm)));
+    } catch (IdpException e) {
+      throw new IdpException(
+          "Unable to load " + algorithm + " verification key " + kid + ": " + e.getMessage(), e);
+    }
+  }
+
+  // Accessors
+  public SigningAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  /** @return The key identifier, or <code>null</code> if none is configured */
+  public String getKid() {
+    return kid;
+  }
+
+  /** @return <code>true</code> if the key may sign tokens */
+  public boolean canSign() {
+    return signingKey != null;
+  }
+
+  /**
+   * @return The private key or, for HMAC algorithms, the secret key;
+   *     <code>null</code> for a key that may only verify
+   */
+  public Key getSigningKey() {
+    return signingKey;
+  }
+
+  /** @return The public key or, for HMAC algorithms, the secret key */
+  public Key getVerificationKey() {
+    return verificationKey;
+  }
+
+  // Private methods
+  private static KeyFactory keyFactory(SigningAlgorithm algorithm) {
+    try {
+      return KeyFactory.getInstance(algorithm.getKeyAlgorithm());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IdpException(
+          "This Java runtime does not support " + algorithm + " keys; EdDSA requires Java 15+.", e);
+    }
+  }
+
+  private static SigningKey loadKeyPair(SigningAlgorithm algorithm, String kid, JsonObject config) {
+    var factory = keyFactory(algorithm);
+    var privateKey = new IdpKeyLoader(KeyType.IdpPrivate, config).loadPrivateKey(factory);
+    var publicKey = new IdpKeyLoader(KeyType.IdpPublic, config).loadPublicKey(factory);
+    requireMatchingKeys(algorithm, privateKey, publicKey);
+    return new SigningKey(algorithm, kid, privateKey, publicKey);
+  }
+
+  /**
+   * Check that the public key verifies what the private key signs. The keys
+   * are separate files, so a reload may see one replaced before the other.
+   */
+  private static void requireMatchingKeys(
+      SigningAlgorithm algorithm, PrivateKey privateKey, PublicKey publicKey) {
+    try {
+      var challenge = algorithm.getJcaName().getBytes(StandardCharsets.US_ASCII);
+      var signer = Signature.getInstance(algorithm.getJcaName());
+      signer.initSign(privateKey);
+      signer.update(challenge);
+      var verifier = Signature.getInstance(algorithm.getJcaName());
+      verifier.initVerify(publicKey);
+      verifier.update(challenge);
+      if (verifier.verify(signer.sign())) {
+        return;
+      }
+    } catch (GeneralSecurityException e) {
+      throw new IdpException("Unable to check the IdP " + algorithm + " key pair.", e);
+    }
+    throw new IdpException("The IdP " + algorithm + " public key does not match its private key.");
+  }
+
+  private static SigningKey loadSecret(SigningAlgorithm algorithm, String kid, JsonObject config) {
+    String encoded = new IdpKeyLoader(KeyType.IdpSecret, config).loadKey().replaceAll("\\s", "");
+
+    byte[] secret;
+    try {
+      secret = Base64.getDecoder().decode(encoded);
+    } catch (IllegalArgumentException e) {
+      throw new IdpException("The IdP " + algorithm + " secret is not valid base64.", e);
+    }
+
+    if (secret.length < algorithm.getMinimumSecretLength()) {
+      throw new IdpException(
+          "The IdP "
+              + algorithm
+              + " secret must be at least "
+              + algorithm.getMinimumSecretLength()
+              + " bytes long.");
+    }
+
+    var key = new SecretKeySpec(secret, algorithm.getJcaName());
+    return new SigningKey(algorithm, kid, key, key);
+  }
+}
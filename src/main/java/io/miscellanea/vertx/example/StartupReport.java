@@ -0,0 +1,100 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The time an IdP node spent in each phase of its startup. Phases may run in
+ * parallel, so each is recorded with its start, relative to the start of the
+ * JVM, as well as its duration. The report is logged as one JSON object when
+ * the node is ready and is included in <code>/api/stats</code>.
+ *
+ * @author Jason Hallford
+ */
+public final class StartupReport implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(StartupReport.class);
+
+  private final long jvmStartNanos;
+  private final List<JsonObject> phases = new ArrayList<>();
+  private long readyNanos;
+
+  // Constructors
+  public StartupReport() {
+    var uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+    this.jvmStartNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(uptime);
+  }
+
+  // Methods
+
+  /**
+   * Run one phase of startup and record how long it took.
+   *
+   * @param phase The phase's name
+   * @param work The phase
+   * @return The phase's result
+   */
+  public <T> T time(String phase, Supplier<T> work) {
+    long start = System.nanoTime();
+    try {
+      return work.get();
+    } finally {
+      this.record(phase, start, System.nanoTime());
+    }
+  }
+
+  /**
+   * Record a phase that has completed.
+   *
+   * @param phase The phase's name
+   * @param startNanos When it started, as a {@link System#nanoTime()} value
+   * @param endNanos When it ended, as a {@link System#nanoTime()} value
+   */
+  public void record(String phase, long startNanos, long endNanos) {
+    var entry =
+        new JsonObject()
+            .put("phase", phase)
+            .put("start-ms", millis(startNanos - this.jvmStartNanos))
+            .put("duration-ms", millis(endNanos - startNanos))
+            .put("thread", Thread.currentThread().getName());
+    synchronized (this) {
+      this.phases.add(entry);
+    }
+  }
+
+  /** Mark the node ready to serve and log the report. */
+  public void ready() {
+    synchronized (this) {
+      this.readyNanos = System.nanoTime();
+    }
+    LOGGER.info("Startup report: {}", this.toJson().encode());
+  }
+
+  /** @return Whether the node has been marked ready */
+  public synchronized boolean isReady() {
+    return this.readyNanos != 0;
+  }
+
+  /** @return The phases recorded so far, in order of completion, and the time to readiness */
+  public synchronized JsonObject toJson() {
+    var report = new JsonObject().put("phases", new JsonArray(new ArrayList<>(this.phases)));
+    if (this.readyNanos != 0) {
+      report.put("ready-ms", millis(this.readyNanos - this.jvmStartNanos));
+    }
+    return report;
+  }
+
+  // Private methods
+  private static double millis(long nanos) {
+    return Math.round(nanos / 10_000.0) / 100.0;
+  }
+}
@@ -0,0 +1,416 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.impl.HttpServerImpl;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.JdkSSLEngineOptions;
+import io.vertx.core.net.KeyCertOptions;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.KeyManagerFactorySpi;
+import javax.net.ssl.ManagerFactoryParameters;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * The issuer's TLS and HTTP version settings, read from the <code>tls</code>
+ * configuration element:
+ *
+ * <ul>
+ *   <li><code>http2</code>: whether HTTP/2 is offered with ALPN (default true);
+ *       HTTP/1.1 clients are unaffected
+ *   <li><code>protocols</code>: the TLS versions offered (default TLSv1.2 and
+ *       TLSv1.3; Vert.x alone stops at TLSv1.2)
+ *   <li><code>session-cache-size</code>: how many TLS sessions the server
+ *       remembers for resumption (default 20480; 0 for no limit)
+ *   <li><code>session-timeout-seconds</code>: how long a session may be
+ *       resumed (default 86400)
+ *   <li><code>session-tickets</code>: whether sessions are resumed with
+ *       stateless tickets rather than from the server's cache (default true)
+ * </ul>
+ *
+ * The server's certificate and key are read from the PEM files named by the
+ * <code>tls-certificate</code> and <code>tls-private</code> entries of
+ * <code>keys</code> when they are configured, otherwise from the keystore named
+ * by <code>idp-keystore</code>. Either is loaded once, into a key manager that
+ * every server instance shares and that {@link #reloadKeys(JsonObject)}
+ * updates without a restart. The PEM private key may be PKCS#8 or RSA
+ * PKCS#1, encrypted with the passphrase in <code>tls-private-passphrase</code>
+ * if need be.
+ *
+ * <p>A resumed handshake skips the certificate exchange and the server's
+ * private-key operation, which cost more than issuing a token, so clients
+ * that reconnect benefit most from a session cache sized for them.
+ *
+ * @author Jason Hallford
+ */
+public final class TlsConfig implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(TlsConfig.class);
+  public static final String HTTP2 = "http2";
+  public static final String PROTOCOLS = "protocols";
+  public static final String SESSION_CACHE_SIZE = "session-cache-size";
+  public static final String SESSION_TIMEOUT_SECONDS = "session-timeout-seconds";
+  public static final String SESSION_TICKETS = "session-tickets";
+  private static final String SESSION_TICKETS_PROPERTY =
+      "jdk.tls.server.enableSessionTicketExtension";
+
+  private final HttpServerOptions serverOptions;
+  private final ReloadableKeyManager keyManager;
+  private final int sessionCacheSize;
+  private final int sessionTimeoutSeconds;
+
+  // Constructors
+  private TlsConfig(
+      HttpServerOptions serverOptions,
+      ReloadableKeyManager keyManager,
+      int sessionCacheSize,
+      int sessionTimeout) {
+    this.serverOptions = serverOptions;
+    this.keyManager = keyManager;
+    this.sessionCacheSize = sessionCacheSize;
+    this.sessionTimeoutSeconds = sessionTimeout;
+  }
+
+  // Factory methods
+
+  /**
+   * Read the TLS configuration, loading the server's certificate and key.
+   * This reads files and initializes the JDK's TLS implementation, so it must
+   * not run on an event loop.
+   */
+  public static TlsConfig fromConfig(JsonObject config) {
+    assert config != null : "config must not be null.";
+
+    var tlsConfig = config.getJsonObject(ConfigProp.TLS, new JsonObject());
+    var sessionCacheSize = tlsConfig.getInteger(SESSION_CACHE_SIZE, 20480);
+    var sessionTimeout = tlsConfig.getInteger(SESSION_TIMEOUT_SECONDS, 86400);
+    if (sessionCacheSize < 0 || sessionTimeout < 0) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.TLS
+              + "' is invalid: session-cache-size and session-timeout-seconds must not be "
+              + "negative.");
+    }
+
+    var options =
+        new HttpServerOptions().setSsl(true).setSslEngineOptions(new JdkSSLEngineOptions());
+    if (tlsConfig.getBoolean(HTTP2, true)) {
+      if (!JdkSSLEngineOptions.isAlpnAvailable()) {
+        throw new IdpException("HTTP/2 requires ALPN, which this JVM does not support.");
+      }
+      options.setUseAlpn(true).setAlpnVersions(List.of(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1));
+    }
+
+    var protocols =
+        tlsConfig.getJsonArray(PROTOCOLS, new JsonArray().add("TLSv1.2").add("TLSv1.3"));
+    if (protocols.isEmpty()) {
+      throw new IdpException(
+          "Configuration element '" + ConfigProp.TLS + "' must enable at least one protocol.");
+    }
+    var enabledProtocols = new LinkedHashSet<String>();
+    protocols.forEach(protocol -> enabledProtocols.add(protocol.toString()));
+    options.setEnabledSecureTransportProtocols(enabledProtocols);
+
+    var keyManager = new ReloadableKeyManager(loadKeyManager(config));
+    options.setKeyCertOptions(new LoadedKeyCertOptions(keyManager));
+
+    return new TlsConfig(options, keyManager, sessionCacheSize, sessionTimeout);
+  }
+
+  /**
+   * Enable or disable stateless session tickets. The JDK reads this setting
+   * once, when TLS is first used, so it applies to the whole JVM and must be
+   * made before any server starts.
+   */
+  public static void configureSessionTickets(JsonObject config) {
+    assert config != null : "config must not be null.";
+
+    var tlsConfig = config.getJsonObject(ConfigProp.TLS, new JsonObject());
+    var tickets = tlsConfig.getBoolean(SESSION_TICKETS, true);
+    System.setProperty(SESSION_TICKETS_PROPERTY, String.valueOf(tickets));
+  }
+
+  // Methods
+
+  /** @return A copy of the server options, ready to be extended with a port */
+  public HttpServerOptions serverOptions() {
+    return new HttpServerOptions(this.serverOptions);
+  }
+
+  /**
+   * Load the server's certificate and key again and use them for every
+   * handshake from now on, in every server. Connections that are already
+   * established keep the certificate they were set up with. This reads files,
+   * so it must not run on an event loop.
+   *
+   * @param config The IdP configuration
+   * @throws IdpException if the certificate or key cannot be loaded, in which
+   *     case the current ones are kept
+   */
+  public void reloadKeys(JsonObject config) {
+    assert config != null : "config must not be null.";
+
+    this.keyManager.delegate = loadKeyManager(config);
+    LOGGER.info("Reloaded the TLS certificate and key.");
+  }
+
+  /**
+   * Size the session cache of a server that has started listening. Vert.x
+   * does not expose these settings for the JDK engine, so they are applied
+   * to the session context of the server's SSL context.
+   */
+  public void tuneSessionCache(Vertx vertx, HttpServer server) {
+    if (server instanceof HttpServerImpl) {
+      var sslHelper = ((HttpServerImpl) server).getSslHelper();
+      var sessions = sslHelper.getContext((VertxInternal) vertx).sessionContext();
+      sessions.setSessionCacheSize(this.sessionCacheSize);
+      sessions.setSessionTimeout(this.sessionTimeoutSeconds);
+      LOGGER.debug(
+          "TLS session cache holds {} session(s) for {} second(s).",
+          this.sessionCacheSize,
+          this.sessionTimeoutSeconds);
+    }
+  }
+
+  // Private methods
+
+  /**
+   * Load the server's certificate and key into a key manager, from PEM files
+   * if they are configured, otherwise from the key store. Then build an SSL
+   * context with it: the first context a JVM builds initializes the JDK's TLS
+   * implementation, which takes far longer than parsing the keys; doing it
+   * here, while the rest of the IdP loads, takes it off every server's start.
+   */
+  private static X509ExtendedKeyManager loadKeyManager(JsonObject config) {
+    try {
+      var keys = IdpKeyLoader.keyConfig(config);
+      KeyStore keyStore;
+      char[] password;
+      if (keys.containsKey(ConfigProp.TLS_CERTIFICATE)
+          || keys.containsKey(ConfigProp.TLS_PRIVATE_KEY)) {
+        var chain =
+            new IdpKeyLoader(IdpKeyLoader.KeyType.TlsCertificate, config).loadCertificates();
+        var factory = KeyFactory.getInstance(chain.get(0).getPublicKey().getAlgorithm());
+        var key =
+            new IdpKeyLoader(IdpKeyLoader.KeyType.TlsPrivate, config).loadPrivateKey(factory);
+        requireMatchingKey(key, chain.get(0));
+
+        // The key store only carries the key to the key manager factory, so
+        // its password protects nothing.
+        password = "tls".toCharArray();
+        keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("tls", key, password, chain.toArray(new Certificate[0]));
+        LOGGER.debug("Using the PEM TLS certificate and key.");
+      } else {
+        var keyStorePath = config.getString(ConfigProp.KEY_STORE);
+        if (keyStorePath == null) {
+          throw new IdpException(
+              "Required configuration element '"
+                  + ConfigProp.KEY_STORE
+                  + "' is missing; verticle will not deploy.");
+        }
+
+        var keyStorePassword = config.getString(ConfigProp.KEY_STORE_PASSWORD);
+        if (keyStorePassword == null) {
+          throw new IdpException(
+              "Required configuration element '"
+                  + ConfigProp.KEY_STORE_PASSWORD
+                  + "' is missing; verticle will not deploy.");
+        }
+        password = keyStorePassword.toCharArray();
+        keyStore = KeyStore.getInstance("JKS");
+        try (var in = new ByteArrayInputStream(readKeyStore(keyStorePath))) {
+          keyStore.load(in, password);
+        }
+      }
+
+      var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+      keyManagers.init(keyStore, password);
+      var keyManager = (X509ExtendedKeyManager) keyManagers.getKeyManagers()[0];
+
+      var context = SSLContext.getInstance("TLS");
+      context.init(new KeyManager[] {keyManager}, null, null);
+      context.createSSLEngine();
+      return keyManager;
+    } catch (IdpException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IdpException("Unable to load the TLS certificate and key.", e);
+    }
+  }
+
+  /**
+   * Check that a key belongs to a certificate by signing with one and
+   * verifying with the other. The certificate and key are separate files, so
+   * a reload may see one replaced before the other.
+   */
+  private static void requireMatchingKey(PrivateKey key, X509Certificate certificate)
+      throws GeneralSecurityException {
+    String algorithm;
+    switch (key.getAlgorithm()) {
+      case "RSA":
+        algorithm = "SHA256withRSA";
+        break;
+      case "EC":
+        algorithm = "SHA256withECDSA";
+        break;
+      default:
+        algorithm = key.getAlgorithm();
+    }
+
+    var challenge = "tls".getBytes(StandardCharsets.US_ASCII);
+    var signer = Signature.getInstance(algorithm);
+    signer.initSign(key);
+    signer.update(challenge);
+    var verifier = Signature.getInstance(algorithm);
+    verifier.initVerify(certificate.getPublicKey());
+    verifier.update(challenge);
+    if (!verifier.verify(signer.sign())) {
+      throw new IdpException("The TLS private key does not match the certificate.");
+    }
+  }
+
+  /** Read a key store from a file or, as Vert.x would, from the classpath. */
+  private static byte[] readKeyStore(String path) throws IOException {
+    var file = Path.of(path);
+    if (Files.exists(file)) {
+      return Files.readAllBytes(file);
+    }
+    try (var in = Thread.currentThread().getContextClassLoader().getResourceAsStream(path)) {
+      if (in == null) {
+        throw new IdpException("TLS key store " + path + " does not exist.");
+      }
+      return in.readAllBytes();
+    }
+  }
+
+  /**
+   * A key manager that hands each handshake to the key manager loaded last,
+   * so that a reloaded certificate and key replace the old ones at once, in
+   * every server that shares it.
+   */
+  private static final class ReloadableKeyManager extends X509ExtendedKeyManager {
+    private volatile X509ExtendedKeyManager delegate;
+
+    ReloadableKeyManager(X509ExtendedKeyManager delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+      return this.delegate.getClientAliases(keyType, issuers);
+    }
+
+    @Override
+    public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+      return this.delegate.chooseClientAlias(keyType, issuers, socket);
+    }
+
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+      return this.delegate.getServerAliases(keyType, issuers);
+    }
+
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+      return this.delegate.chooseServerAlias(keyType, issuers, socket);
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+      return this.delegate.getCertificateChain(alias);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+      return this.delegate.getPrivateKey(alias);
+    }
+
+    @Override
+    public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+      return this.delegate.chooseEngineClientAlias(keyType, issuers, engine);
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+      return this.delegate.chooseEngineServerAlias(keyType, issuers, engine);
+    }
+  }
+
+  /**
+   * Key and certificate options whose key manager has already been loaded,
+   * so that every server instance shares it instead of parsing its own.
+   */
+  private static final class LoadedKeyCertOptions implements KeyCertOptions {
+    private final KeyManagerFactory keyManagers;
+
+    LoadedKeyCertOptions(KeyManager keyManager) {
+      this.keyManagers =
+          new KeyManagerFactory(
+              new KeyManagerFactorySpi() {
+                @Override
+                protected void engineInit(KeyStore keyStore, char[] password) {}
+
+                @Override
+                protected void engineInit(ManagerFactoryParameters parameters) {}
+
+                @Override
+                protected KeyManager[] engineGetKeyManagers() {
+                  return new KeyManager[] {keyManager};
+                }
+              },
+              null,
+              "IdP") {};
+    }
+
+    /**
+     * Return this instance rather than a copy. Sharing is intentional: the
+     * options hold nothing but the node's one key manager, which every server
+     * instance, and every copy of the server options, is meant to share.
+     */
+    @Override
+    public KeyCertOptions copy() {
+      return this;
+    }
+
+    /** @deprecated Use {@link #copy()}, as Vert.x does. */
+    @Deprecated
+    @Override
+    public KeyCertOptions clone() {
+      return this.copy();
+    }
+
+    @Override
+    public KeyManagerFactory getKeyManagerFactory(Vertx vertx) {
+      return this.keyManagers;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The streamed response to a batch token request. The result of each entry
+ * is written as one line of newline-delimited JSON as soon as it is known, so
+ * lines arrive in completion order rather than request order, and the
+ * response ends after the last one.
+ *
+ * <p>Every line carries the entry's <code>index</code> in the request, its
+ * <code>client_id</code> and an HTTP-style <code>status</code>. A 200 line
+ * adds the fields of a token response; any other line adds an OAuth
+ * <code>error</code> code.
+ *
+ * <p>A batch is used only on the event loop that serves its request.
+ *
+ * @author Jason Hallford
+ */
+final class TokenBatch {
+  // Fields
+  public static final String MIME_TYPE_NDJSON = "application/x-ndjson";
+  private static final byte[] NEWLINE = {'\n'};
+
+  private final HttpServerResponse response;
+  private int remaining;
+
+  // Constructors
+
+  /**
+   * Start streaming a response.
+   *
+   * @param response The response to write to
+   * @param size The number of entries in the batch; must be positive
+   */
+  TokenBatch(HttpServerResponse response, int size) {
+    assert response != null : "response must not be null.";
+    assert size > 0 : "size must be positive.";
+
+    this.response = response;
+    this.remaining = size;
+    response
+        .setChunked(true)
+        .putHeader(JwtIssuerVerticle.CONTENT_TYPE_HEADER, MIME_TYPE_NDJSON)
+        .setStatusCode(200);
+  }
+
+  // Methods
+
+  /**
+   * Report an issued token.
+   *
+   * @param index The entry's index in the request
+   * @param clientId The entry's client
+   * @param tokenResponse The token response, a JSON object
+   */
+  void issued(int index, String clientId, Buffer tokenResponse) {
+    // Splice the token response's fields into the line rather than parsing
+    // and re-encoding the token.
+    var prefix = header(index, clientId, 200).encode();
+    var line =
+        Buffer.buffer(prefix.length() + tokenResponse.length() + 2)
+            .appendString(prefix.substring(0, prefix.length() - 1), StandardCharsets.UTF_8.name())
+            .appendByte((byte) ',')
+            .appendBuffer(tokenResponse, 1, tokenResponse.length() - 1)
+            .appendBytes(NEWLINE);
+    this.write(line);
+  }
+
+  /**
+   * Report an entry for which no token was issued.
+   *
+   * @param index The entry's index in the request
+   * @param clientId The entry's client, if known
+   * @param status The HTTP status a single token request would have received
+   * @param error The OAuth error code
+   */
+  void failed(int index, String clientId, int status, String error) {
+    var line = header(index, clientId, status).put("error", error).toBuffer().appendBytes(NEWLINE);
+    this.write(line);
+  }
+
+  /** @return <code>true</code> once every entry has been reported */
+  boolean isDone() {
+    return this.remaining == 0;
+  }
+
+  // Private methods
+  private static JsonObject header(int index, String clientId, int status) {
+    return new JsonObject().put("index", index).put("client_id", clientId).put("status", status);
+  }
+
+  private void write(Buffer line) {
+    assert this.remaining > 0 : "every entry has already been reported.";
+
+    this.remaining--;
+    if (this.response.closed() || this.response.ended()) {
+      // The client went away; results still complete but are dropped.
+      return;
+    }
+    if (this.remaining == 0) {
+      this.response.end(line);
+    } else {
+      this.response.write(line);
+    }
+  }
+}
@@ -0,0 +1,228 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of issued tokens, keyed by client and requested claims.
+ * Clients that ask for tokens far more often than they expire are handed the
+ * token they already hold, sparing a signature, for as long as its remaining
+ * lifetime exceeds a configurable threshold.
+ *
+ * <p>The cache is split into segments, each an access-ordered LRU map guarded
+ * by its own lock, so that event loops rarely contend. Entries are evicted when
+ * a segment is full or when their remaining lifetime drops to the threshold.
+ * When refresh-ahead is enabled, a hit on a token nearing the threshold asks
+ * the caller to re-sign it in the background, so hot clients never see a miss.
+ *
+ * @author Jason Hallford
+ */
+public final class TokenCache implements Shareable {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(TokenCache.class);
+  private static final int SEGMENTS = 16;
+  public static final String ENABLED = "enabled";
+  public static final String MAX_ENTRIES = "max-entries";
+  public static final String MIN_REMAINING_SECONDS = "min-remaining-seconds";
+  public static final String REFRESH_AHEAD_SECONDS = "refresh-ahead-seconds";
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final long minRemaining;
+  private final long refreshAhead;
+  private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  private final LongAdder refreshes = new LongAdder();
+
+  // Constructors
+
+  /**
+   * @param maxEntries The maximum number of cached tokens
+   * @param minRemaining Tokens are only served while their remaining lifetime,
+   *     in seconds, exceeds this value
+   * @param refreshAhead Tokens whose remaining lifetime falls below this value
+   *     are refreshed in the background; zero disables refresh-ahead
+   */
+  public TokenCache(int maxEntries, long minRemaining, long refreshAhead) {
+    assert maxEntries > 0 : "maxEntries must be positive.";
+    assert minRemaining >= 0 : "minRemaining must not be negative.";
+
+    int perSegment = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+    for (int idx = 0; idx < SEGMENTS; idx++) {
+      this.segments[idx] = new Segment(perSegment, this.evictions);
+    }
+    this.minRemaining = minRemaining;
+    this.refreshAhead = refreshAhead;
+  }
+
+  // Factory methods
+
+  /**
+   * Create a token cache as described by the <code>token-cache</code> element
+   * of the provided configuration.
+   *
+   * @param config The IdP configuration
+   * @return The cache, or <code>null</code> if caching is disabled
+   */
+  public static TokenCache fromConfig(JsonObject config) {
+    var cacheConfig = config.getJsonObject(ConfigProp.TOKEN_CACHE);
+    if (cacheConfig == null || !cacheConfig.getBoolean(ENABLED, false)) {
+      return null;
+    }
+
+    var maxEntries = cacheConfig.getInteger(MAX_ENTRIES, 10_000);
+    var minRemaining = cacheConfig.getLong(MIN_REMAINING_SECONDS, 300L);
+    var refreshAhead = cacheConfig.getLong(REFRESH_AHEAD_SECONDS, 0L);
+    if (maxEntries < 1 || minRemaining < 0 || (refreshAhead != 0 && refreshAhead <= minRemaining)) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.TOKEN_CACHE
+              + "' is invalid: max-entries must be positive and refresh-ahead-seconds, if set, "
+              + "must exceed min-remaining-seconds.");
+    }
+
+    LOGGER.info(
+        "Token cache enabled with {} entries, {}s minimum remaining lifetime, {}s refresh-ahead.",
+        maxEntries,
+        minRemaining,
+        refreshAhead);
+    return new TokenCache(maxEntries, minRemaining, refreshAhead);
+  }
+
+  // Methods
+
+  /**
+   * Find a usable token.
+   *
+   * @param key The cache key
+   * @param now The current time in seconds since the epoch
+   * @return The token, or <code>null</code> if none is cached or the cached
+   *     token's remaining lifetime is too short
+   */
+  public IssuedToken get(String key, long now) {
+    var segment = this.segmentFor(key);
+
+    IssuedToken token;
+    synchronized (segment) {
+      token = segment.get(key);
+      if (token != null && token.getExpiresAt() - now <= this.minRemaining) {
+        segment.remove(key);
+        this.expirations.increment();
+        token = null;
+      }
+    }
+
+    if (token != null) {
+      this.hits.increment();
+    } else {
+      this.misses.increment();
+    }
+    return token;
+  }
+
+  /**
+   * Decide whether a token just served from the cache should be re-signed in
+   * the background. At most one refresh per key is in flight at a time; the
+   * caller must finish it with {@link #put(String, IssuedToken)} or
+   * {@link #cancelRefresh(String)}.
+   *
+   * @param key The cache key
+   * @param token The token that was served
+   * @param now The current time in seconds since the epoch
+   * @return <code>true</code> if the caller should refresh the token
+   */
+  public boolean startRefresh(String key, IssuedToken token, long now) {
+    if (this.refreshAhead == 0 || token.getExpiresAt() - now >= this.refreshAhead) {
+      return false;
+    }
+
+    if (this.refreshing.add(key)) {
+      this.refreshes.increment();
+      return true;
+    }
+    return false;
+  }
+
+  /** Abandon a refresh started by {@link #startRefresh(String, IssuedToken, long)}. */
+  public void cancelRefresh(String key) {
+    this.refreshing.remove(key);
+  }
+
+  /**
+   * Cache a newly issued token, replacing any token cached under the same key.
+   *
+   * @param key The cache key
+   * @param token The token
+   */
+  public void put(String key, IssuedToken token) {
+    var segment = this.segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, token);
+    }
+    this.refreshing.remove(key);
+  }
+
+  /** Discard every cached token, for example because the signing key was rotated. */
+  public void clear() {
+    for (var segment : this.segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  /** @return A snapshot of the cache's counters */
+  public JsonObject stats() {
+    int size = 0;
+    for (var segment : this.segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+
+    return new JsonObject()
+        .put("size", size)
+        .put("hits", this.hits.sum())
+        .put("misses", this.misses.sum())
+        .put("evictions", this.evictions.sum())
+        .put("expirations", this.expirations.sum())
+        .put("refreshes", this.refreshes.sum());
+  }
+
+  // Private methods
+  private Segment segmentFor(String key) {
+    int hash = key.hashCode();
+    return this.segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+  }
+
+  /** An access-ordered map that evicts its least recently used entry when full. */
+  private static final class Segment extends LinkedHashMap<String, IssuedToken> {
+    private final int capacity;
+    private final LongAdder evictions;
+
+    Segment(int capacity, LongAdder evictions) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+      this.evictions = evictions;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, IssuedToken> eldest) {
+      if (size() > this.capacity) {
+        this.evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A token whose signature has been verified, with the key that verified it
+ * and its claims.
+ *
+ * @author Jason Hallford
+ */
+public final class VerifiedToken {
+  // Fields
+  private final SigningKey key;
+  private final JsonObject claims;
+
+  // Constructors
+  public VerifiedToken(SigningKey key, JsonObject claims) {
+    assert key != null : "key must not be null.";
+    assert claims != null : "claims must not be null.";
+
+    this.key = key;
+    this.claims = claims;
+  }
+
+  // Methods
+
+  /**
+   * Check the token's lifetime.
+   *
+   * @param now The current time, in seconds since the epoch
+   * @return <code>true</code> if the token has an expiry that has not passed
+   *     and is not used before its <code>nbf</code> time
+   */
+  public boolean isActive(long now) {
+    var exp = this.claims.getLong("exp");
+    var nbf = this.claims.getLong("nbf");
+    return exp != null && exp > now && (nbf == null || nbf <= now);
+  }
+
+  // Accessors
+  public SigningKey getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the token's claims. The object may be shared and must be treated
+   * as read-only.
+   *
+   * @return The claims
+   */
+  public JsonObject getClaims() {
+    return claims;
+  }
+
+  /** @return The token's <code>jti</code> claim, or <code>null</code> if it has none */
+  public String getJti() {
+    return this.claims.getString("jti");
+  }
+
+  /** @return The token's expiry, in seconds since the epoch, or 0 if it has none */
+  public long getExpiresAt() {
+    var exp = this.claims.getLong("exp");
+    return exp != null ? exp : 0;
+  }
+}
@@ -0,0 +1,211 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of tokens whose signatures have been verified, so that
+ * repeatedly introspecting a hot token skips the signature check. Entries are
+ * keyed by the SHA-256 digest of the token, never the token itself, and
+ * expire at the token's <code>exp</code>. An entry is also ignored once the
+ * key that verified it leaves the key set.
+ *
+ * <p>The cache is split into segments, each an access-ordered LRU map guarded
+ * by its own lock, so that event loops rarely contend and a full segment
+ * evicts its least recently used entry in constant time. Expired entries are
+ * dropped when they are looked up and by {@link #purge(long)}, which the
+ * deployer runs every <code>purge-period-seconds</code>.
+ *
+ * @author Jason Hallford
+ */
+public final class VerifiedTokenCache implements Shareable {
+  // Fields
+  public static final String ENABLED = "enabled";
+  public static final String MAX_ENTRIES = "max-entries";
+  public static final String PURGE_PERIOD_SECONDS = "purge-period-seconds";
+  private static final int MAX_SEGMENTS = 16;
+
+  private final Segment[] segments;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+
+  // Constructors
+  public VerifiedTokenCache(int maxEntries) {
+    assert maxEntries > 0 : "maxEntries must be positive.";
+
+    // Small caches use fewer segments, so that they hold no more than asked.
+    int count = Integer.highestOneBit(Math.min(MAX_SEGMENTS, maxEntries));
+    int perSegment = (maxEntries + count - 1) / count;
+    this.segments = new Segment[count];
+    for (int idx = 0; idx < count; idx++) {
+      this.segments[idx] = new Segment(perSegment, this.evictions);
+    }
+  }
+
+  // Factory methods
+
+  /**
+   * Create a cache as described by the <code>introspection-cache</code>
+   * element of the provided configuration.
+   *
+   * @param config The IdP configuration
+   * @return The cache, or <code>null</code> if caching is disabled
+   */
+  public static VerifiedTokenCache fromConfig(JsonObject config) {
+    var cacheConfig = config.getJsonObject(ConfigProp.INTROSPECTION_CACHE, new JsonObject());
+    if (!cacheConfig.getBoolean(ENABLED, true)) {
+      return null;
+    }
+
+    var maxEntries = cacheConfig.getInteger(MAX_ENTRIES, 100_000);
+    if (maxEntries < 1) {
+      throw new IdpException(
+          "Configuration element '"
+              + ConfigProp.INTROSPECTION_CACHE
+              + "' must have a positive '"
+              + MAX_ENTRIES
+              + "'.");
+    }
+
+    return new VerifiedTokenCache(maxEntries);
+  }
+
+  // Methods
+
+  /**
+   * Compute the cache key of a token.
+   *
+   * @param token The token
+   * @return The key
+   */
+  public static ByteBuffer keyOf(String token) {
+    return ByteBuffer.wrap(ClientSecret.digest(token));
+  }
+
+  /**
+   * Return a cached verification if it is still usable.
+   *
+   * @param key The token's cache key
+   * @param keys The current key set
+   * @param now The current time, in seconds since the epoch
+   * @return The verified token or <code>null</code> on a miss
+   */
+  public VerifiedToken get(ByteBuffer key, KeySet keys, long now) {
+    var segment = this.segmentFor(key);
+
+    VerifiedToken token;
+    synchronized (segment) {
+      token = segment.get(key);
+      if (token != null
+          && (token.getExpiresAt() <= now
+              || keys.verificationKey(token.getKey().getKid()) != token.getKey())) {
+        segment.remove(key);
+        this.expirations.increment();
+        token = null;
+      }
+    }
+
+    if (token != null) {
+      this.hits.increment();
+    } else {
+      this.misses.increment();
+    }
+    return token;
+  }
+
+  /**
+   * Cache a verified token. Tokens without an expiry are not cached.
+   *
+   * @param key The token's cache key
+   * @param token The verified token
+   * @param now The current time, in seconds since the epoch
+   */
+  public void put(ByteBuffer key, VerifiedToken token, long now) {
+    if (token.getExpiresAt() <= now) {
+      return;
+    }
+
+    var segment = this.segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, token);
+    }
+  }
+
+  /**
+   * Drop the verifications of tokens that have expired. Each segment is
+   * locked only while it is scanned.
+   *
+   * @param now The current time, in seconds since the epoch
+   * @return The number of entries dropped
+   */
+  public int purge(long now) {
+    int purged = 0;
+    for (var segment : this.segments) {
+      synchronized (segment) {
+        var iterator = segment.values().iterator();
+        while (iterator.hasNext()) {
+          if (iterator.next().getExpiresAt() <= now) {
+            iterator.remove();
+            purged++;
+          }
+        }
+      }
+    }
+    this.expirations.add(purged);
+    return purged;
+  }
+
+  /** @return A snapshot of the cache's counters */
+  public JsonObject stats() {
+    int size = 0;
+    for (var segment : this.segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+
+    long hits = this.hits.sum();
+    long lookups = hits + this.misses.sum();
+    return new JsonObject()
+        .put("size", size)
+        .put("hits", hits)
+        .put("misses", lookups - hits)
+        .put("evictions", this.evictions.sum())
+        .put("expirations", this.expirations.sum())
+        .put("hit-ratio", lookups > 0 ? (double) hits / lookups : 0.0);
+  }
+
+  // Private methods
+  private Segment segmentFor(ByteBuffer key) {
+    int hash = key.hashCode();
+    return this.segments[(hash ^ (hash >>> 16)) & (this.segments.length - 1)];
+  }
+
+  /** An access-ordered map that evicts its least recently used entry when full. */
+  private static final class Segment extends LinkedHashMap<ByteBuffer, VerifiedToken> {
+    private final int capacity;
+    private final LongAdder evictions;
+
+    Segment(int capacity, LongAdder evictions) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+      this.evictions = evictions;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<ByteBuffer, VerifiedToken> eldest) {
+      if (size() > this.capacity) {
+        this.evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class AccessLogTest {
+    // Test methods
+    @Test
+    @DisplayName("Records are written as JSON lines with client-controlled fields redacted")
+    public void writesRedactedJsonLines() {
+        var bytes = new ByteArrayOutputStream();
+        var log = new AccessLog(Channels.newChannel(bytes), true, true, 16, 60_000, false);
+        log.access(IdpMetrics.Endpoint.TOKEN, 200, 1_500_000, "client-1", "127.0.0.1");
+        log.audit(AccessLog.Event.AUTHENTICATION_FAILED, IdpMetrics.Endpoint.TOKEN,
+                "eyJhbGciOiJSUzI1NiJ9.eyJzdWIiOiJ4In0.c2ln", "127.0.0.1", null);
+        log.audit(AccessLog.Event.TOKEN_REVOKED, IdpMetrics.Endpoint.REVOKE, "a\"b\n", null, "jti-1");
+        log.flush();
+        log.close();
+
+        var lines = bytes.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+
+        var access = new JsonObject(lines[0]);
+        assertThat(access.getString("event")).isEqualTo("request");
+        assertThat(access.getString("endpoint")).isEqualTo("token");
+        assertThat(access.getInteger("status")).isEqualTo(200);
+        assertThat(access.getLong("duration_us")).isEqualTo(1500);
+        assertThat(access.getString("client_id")).isEqualTo("client-1");
+        assertThat(access.getString("ts")).isNotNull();
+
+        var failure = new JsonObject(lines[1]);
+        assertThat(failure.getString("event")).isEqualTo("authentication-failed");
+        assertThat(failure.getString("client_id")).isEqualTo(AccessLog.REDACTED);
+        assertThat(failure.containsKey("status")).isFalse();
+
+        var revoked = new JsonObject(lines[2]);
+        assertThat(revoked.getString("client_id")).isEqualTo("a\"b\n");
+        assertThat(revoked.getString("jti")).isEqualTo("jti-1");
+        assertThat(revoked.containsKey("remote")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Disabled kinds are ignored and a full buffer drops records")
+    public void dropsWhenFull() {
+        var bytes = new ByteArrayOutputStream();
+        var log = new AccessLog(Channels.newChannel(bytes), false, true, 4, 60_000, false);
+        log.access(IdpMetrics.Endpoint.TOKEN, 200, 1, "ignored", null);
+        for (int idx = 0; idx < 6; idx++) {
+            log.audit(AccessLog.Event.AUTHENTICATION_FAILED, IdpMetrics.Endpoint.TOKEN, "c" + idx, null, null);
+        }
+        log.flush();
+
+        assertThat(log.stats().getLong("written")).isEqualTo(4);
+        assertThat(log.stats().getLong("dropped")).isEqualTo(2);
+        assertThat(bytes.toString(StandardCharsets.UTF_8)).doesNotContain("ignored").contains("\"c3\"");
+
+        // Space is reclaimed once the buffer has been written.
+        log.audit(AccessLog.Event.AUTHENTICATION_FAILED, IdpMetrics.Endpoint.TOKEN, "later", null, null);
+        log.close();
+        assertThat(bytes.toString(StandardCharsets.UTF_8)).contains("\"later\"");
+    }
+
+    @Test
+    @DisplayName("Access and audit logging can both be turned off")
+    public void disabledLogIsNull() {
+        var config = new JsonObject().put(ConfigProp.ACCESS_LOG, new JsonObject().put("audit", false));
+        assertThat(AccessLog.fromConfig(config)).isNull();
+    }
+}
@@ -0,0 +1,80 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class AdmissionControllerTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    // Test methods
+    @Test
+    @DisplayName("Requests beyond the limit are shed until an admitted one is released")
+    public void shedsBeyondLimit() {
+        var controller = new AdmissionController(2, false, 1, 250, 0.9, 5000);
+
+        assertThat(controller.tryAcquire()).isTrue();
+        assertThat(controller.tryAcquire()).isTrue();
+        assertThat(controller.tryAcquire()).isFalse();
+
+        controller.release(FAST);
+        assertThat(controller.tryAcquire()).isTrue();
+
+        var stats = controller.stats();
+        assertThat(stats.getInteger("in-flight")).isEqualTo(2);
+        assertThat(stats.getInteger("limit")).isEqualTo(2);
+        assertThat(stats.getLong("admitted")).isEqualTo(3);
+        assertThat(stats.getLong("shed")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("An adaptive limit backs off after slow requests and recovers after fast ones")
+    public void adaptsLimit() {
+        var controller = new AdmissionController(10, true, 2, 250, 0.5, 5000);
+
+        controller.tryAcquire();
+        controller.release(SLOW);
+        assertThat(controller.stats().getInteger("limit")).isEqualTo(5);
+
+        // A second overrun within the threshold is part of the same overload.
+        controller.authenticationTimedOut();
+        assertThat(controller.stats().getInteger("limit")).isEqualTo(5);
+        assertThat(controller.stats().getLong("authn-timeouts")).isEqualTo(1);
+
+        for (int idx = 0; idx < 3; idx++) {
+            controller.tryAcquire();
+        }
+        controller.release(FAST);
+        assertThat(controller.stats().getInteger("limit")).isEqualTo(6);
+        assertThat(controller.stats().getLong("limit-decreases")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Without an admission element no request is shed")
+    public void unlimitedByDefault() {
+        var controller = AdmissionController.fromConfig(new JsonObject());
+
+        for (int idx = 0; idx < 1000; idx++) {
+            assertThat(controller.tryAcquire()).isTrue();
+        }
+        assertThat(controller.stats().getValue("limit")).isNull();
+        assertThat(controller.stats().getInteger("in-flight")).isEqualTo(1000);
+        assertThat(controller.getAuthnTimeoutMillis()).isEqualTo(5000);
+    }
+
+    @Test
+    @DisplayName("An adaptive limit needs a maximum")
+    public void rejectsAdaptiveWithoutMaximum() {
+        var config = new JsonObject().put(ConfigProp.ADMISSION,
+                new JsonObject().put(AdmissionController.ADAPTIVE, true));
+
+        assertThatThrownBy(() -> AdmissionController.fromConfig(config))
+                .isInstanceOf(IdpException.class)
+                .hasMessageContaining("max-in-flight");
+    }
+}
@@ -0,0 +1,58 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class BoundedWorkerPoolTest {
+    private Vertx vertx;
+
+    // Test initializers
+    @BeforeEach
+    public void createVertx() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterEach
+    public void closeVertx() {
+        vertx.close();
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("Submissions beyond the queue capacity are refused")
+    public void refusesSubmissionsWhenQueueIsFull() throws Exception {
+        var executor = new BoundedWorkerPool(vertx, "test", 1, 2);
+        var release = new CountDownLatch(1);
+        var completed = new CountDownLatch(2);
+
+        assertThat(executor.submit(() -> release.await(5, TimeUnit.SECONDS), r -> completed.countDown())).isTrue();
+        assertThat(executor.submit(() -> "queued", r -> completed.countDown())).isTrue();
+        assertThat(executor.submit(() -> "refused", r -> fail("Refused task must not complete"))).isFalse();
+        assertThat(executor.getQueueDepth()).isEqualTo(2);
+
+        release.countDown();
+        assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getQueueDepth()).isZero();
+        assertThat(executor.stats().getLong("rejected")).isEqualTo(1);
+        assertThat(executor.stats().getLong("completed")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("A pool size of zero runs tasks on the caller's thread")
+    public void runsInlineWithoutPool() throws Exception {
+        var executor = new BoundedWorkerPool(vertx, "test", 0, 1);
+        var result = new CompletableFuture<String>();
+
+        assertThat(executor.submit(() -> Thread.currentThread().getName(), r -> result.complete(r.result()))).isTrue();
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo(Thread.currentThread().getName());
+    }
+}
@@ -0,0 +1,115 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ClaimTemplateTest {
+    private static final long NOW_MILLIS = 1586000340370L;
+    private static final UUID JTI = UUID.fromString("91bd8772-6ba8-45cc-bee9-366b0b274851");
+
+    private static JwtEncoder encoder;
+
+    // Test initializers
+    @BeforeAll
+    public static void createEncoder() {
+        List<String> config = FileUtils.readTextFileFromClasspath("conf/issuer-config.json");
+        var defaultConfig = (JsonObject) Json.decodeValue(String.join("\n", config));
+        encoder = new JwtEncoder(new JwtSigner(SigningKey.load(defaultConfig)), "vertxjwt", 3600,
+                () -> NOW_MILLIS, () -> JTI);
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("A compiled template issues the client's audience, scope, custom claims and lifetime")
+    public void issuesCompiledClaims() {
+        var client = new JsonObject()
+                .put("audience", new JsonArray().add("orders").add("billing"))
+                .put("scope", new JsonArray().add("read").add("write"))
+                .put("claims", new JsonObject().put("tenant", "acme").put("tier", 2))
+                .put("expires-in", 600);
+        var template = ClaimTemplate.compile("vertxjwt", "client-1", new JsonArray().add("basic"), 3600, client);
+
+        var response = encoder.encode(template).toJsonObject();
+        assertThat(response.getInteger("expires_in")).isEqualTo(600);
+
+        var claims = claimsOf(response.getString("access_token"));
+        assertThat(claims.fieldNames()).containsExactly(
+                "iss", "sub", "iat", "nbf", "jti", "exp", "rol", "aud", "scope", "tenant", "tier");
+        assertThat(claims.getString("sub")).isEqualTo("client-1");
+        assertThat(claims.getLong("iat")).isEqualTo(NOW_MILLIS / 1000);
+        assertThat(claims.getLong("exp")).isEqualTo(NOW_MILLIS / 1000 + 600);
+        assertThat(claims.getJsonArray("aud")).containsExactly("orders", "billing");
+        assertThat(claims.getString("scope")).isEqualTo("read write");
+        assertThat(claims.getString("tenant")).isEqualTo("acme");
+        assertThat(claims.getInteger("tier")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("A client without claims of its own compiles to the default template")
+    public void compilesDefaultTemplate() {
+        var roles = new JsonArray().add("basic");
+        var compiled = ClaimTemplate.compile("vertxjwt", "client-1", roles, 3600, new JsonObject());
+        var fallback = ClaimTemplate.of("vertxjwt", "client-1", roles.toBuffer().getBytes(), 3600);
+
+        assertThat(compiled).isEqualTo(fallback);
+        assertThat(encoder.encode(compiled)).isEqualTo(encoder.encode(fallback));
+    }
+
+    @Test
+    @DisplayName("Templates whose tokens differ never share a cache key")
+    public void cacheKeysDistinguishClaims() {
+        var basic = ClaimTemplate.compile("vertxjwt", "c", new JsonArray().add("basic"), 3600, new JsonObject());
+        var admin = ClaimTemplate.compile("vertxjwt", "c", new JsonArray().add("admin"), 3600, new JsonObject());
+        var none = ClaimTemplate.compile("vertxjwt", "c", null, 3600, new JsonObject());
+        var scoped = ClaimTemplate.compile("vertxjwt", "c", null, 3600, new JsonObject().put("scope", "read"));
+        var shorter = ClaimTemplate.compile("vertxjwt", "c", null, 60, new JsonObject());
+
+        assertThat(List.of(basic, admin, none, scoped, shorter).stream().map(ClaimTemplate::getCacheKey))
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("Invalid client claims are rejected when the client is registered")
+    public void rejectsInvalidClaims() {
+        assertThatExceptionOfType(IdpException.class).isThrownBy(() -> ClaimTemplate.compile(
+                "vertxjwt", "c", null, 3600, new JsonObject().put("claims", new JsonObject().put("exp", 1))));
+        assertThatExceptionOfType(IdpException.class).isThrownBy(() -> ClaimTemplate.compile(
+                "vertxjwt", "c", null, 3600, new JsonObject().put("scope", new JsonArray().add(1))));
+        assertThatExceptionOfType(IdpException.class).isThrownBy(() -> ClaimTemplate.compile(
+                "vertxjwt", "c", null, 3600, new JsonObject().put("expires-in", 0)));
+    }
+
+    @Test
+    @DisplayName("Token identifiers are unique, version 7 and ordered, even within a millisecond")
+    public void generatesOrderedIdentifiers() {
+        var seen = new HashSet<UUID>();
+        String previous = "";
+        for (int idx = 0; idx < 10_000; idx++) {
+            var id = JtiGenerator.next(NOW_MILLIS);
+            assertThat(id.version()).isEqualTo(7);
+            assertThat(id.variant()).isEqualTo(2);
+            assertThat(id.toString()).isGreaterThan(previous);
+            assertThat(seen.add(id)).isTrue();
+            previous = id.toString();
+        }
+        assertThat(JtiGenerator.next().toString()).isGreaterThan(previous);
+    }
+
+    // Private methods
+    private static JsonObject claimsOf(String token) {
+        var payload = token.split("\\.")[1];
+        return new JsonObject(new String(Base64.getUrlDecoder().decode(payload), StandardCharsets.UTF_8));
+    }
+}
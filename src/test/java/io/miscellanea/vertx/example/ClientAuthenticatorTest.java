@@ -0,0 +1,133 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ClientAuthenticatorTest {
+    private static final String PLAIN_ID = "plain";
+    private static final String HASHED_ID = "hashed";
+    private static final String SECRET = "s3cret";
+
+    private Vertx vertx;
+    private ClientAuthenticator authenticator;
+
+    // Test initializers
+    @BeforeEach
+    public void createAuthenticator() {
+        vertx = Vertx.vertx();
+
+        var clients = new JsonArray()
+                .add(new JsonObject().put("id", PLAIN_ID).put("secret", SECRET))
+                .add(new JsonObject().put("id", HASHED_ID).put("secret", ClientSecret.hash(SECRET, 1000)));
+        var registry = ClientRegistry.fromConfig(new JsonObject().put(ConfigProp.CLIENT_CONFIG, clients));
+        authenticator = new ClientAuthenticator(registry, new BoundedWorkerPool(vertx, "test", 0, 4), 10, 60);
+    }
+
+    @AfterEach
+    public void closeVertx() {
+        vertx.close();
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("Hashed secrets are stored in a parseable format")
+    public void hashedSecretsRoundTrip() {
+        var secret = ClientSecret.parse(ClientSecret.hash(SECRET, 1000));
+
+        assertThat(secret.isHashed()).isTrue();
+        assertThat(secret.matches(SECRET)).isTrue();
+        assertThat(secret.matches(SECRET + "x")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Malformed hashed secrets are rejected")
+    public void rejectsMalformedHash() {
+        assertThatExceptionOfType(IdpException.class)
+                .isThrownBy(() -> ClientSecret.parse("pbkdf2-sha256:abc:salt"));
+    }
+
+    @Test
+    @DisplayName("Plain text and hashed secrets authenticate")
+    public void authenticatesBothFormats() throws Exception {
+        assertThat(authenticate(PLAIN_ID, SECRET)).isNotNull();
+        assertThat(authenticate(PLAIN_ID, "wrong")).isNull();
+        assertThat(authenticate(HASHED_ID, SECRET)).isNotNull();
+        assertThat(authenticate(HASHED_ID, "wrong")).isNull();
+        assertThat(authenticate("unknown", SECRET)).isNull();
+    }
+
+    @Test
+    @DisplayName("Verified hashed secrets are served from the cache until invalidated")
+    public void cachesVerifiedSecrets() throws Exception {
+        authenticate(HASHED_ID, SECRET);
+        authenticate(HASHED_ID, SECRET);
+        assertThat(authenticator.stats().getLong("cache-hits")).isEqualTo(1);
+
+        // A cached verification must never vouch for a different secret.
+        assertThat(authenticate(HASHED_ID, "wrong")).isNull();
+
+        authenticator.invalidate(HASHED_ID);
+        authenticate(HASHED_ID, SECRET);
+        assertThat(authenticator.stats().getLong("cache-misses")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Reloading publishes a new registry and reports the differences")
+    public void reloadsRegistry() throws Exception {
+        authenticate(HASHED_ID, SECRET);
+
+        var clients = new JsonArray()
+                .add(new JsonObject().put("id", PLAIN_ID).put("secret", "rotated"))
+                .add(new JsonObject().put("id", "new").put("secret", SECRET));
+        var result = authenticator.reload(
+                ClientRegistry.fromConfig(new JsonObject().put(ConfigProp.CLIENT_CONFIG, clients)));
+
+        assertThat(result.getInteger("added")).isEqualTo(1);
+        assertThat(result.getInteger("removed")).isEqualTo(1);
+        assertThat(result.getInteger("changed")).isEqualTo(1);
+        assertThat(authenticate(PLAIN_ID, SECRET)).isNull();
+        assertThat(authenticate(PLAIN_ID, "rotated")).isNotNull();
+        assertThat(authenticate("new", SECRET)).isNotNull();
+        assertThat(authenticate(HASHED_ID, SECRET)).isNull();
+        assertThat(authenticator.stats().getInteger("cache-size")).isZero();
+    }
+
+    @Test
+    @DisplayName("A batch reports every entry's outcome against its index")
+    public void authenticatesBatch() throws Exception {
+        var outcomes = new ConcurrentHashMap<Integer, Boolean>();
+        var done = new CountDownLatch(4);
+        authenticator.authenticateAll(
+                List.of(PLAIN_ID, HASHED_ID, PLAIN_ID, "unknown"),
+                Arrays.asList(SECRET, SECRET, "wrong", null),
+                (index, result) -> {
+                    outcomes.put(index, result.succeeded() && result.result() != null);
+                    done.countDown();
+                });
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(outcomes).containsEntry(0, true).containsEntry(1, true)
+                .containsEntry(2, false).containsEntry(3, false);
+    }
+
+    // Private methods
+    private ClientConfig authenticate(String clientId, String clientSecret) throws Exception {
+        var result = new CompletableFuture<ClientConfig>();
+        assertThat(authenticator.authenticate(clientId, clientSecret, r -> result.complete(r.result()))).isTrue();
+        return result.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,130 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Runs two cluster members in one JVM, joined over the loopback interface
+ * under a cluster name of their own.
+ */
+public class ClusterReplicatorTest {
+    private static final long NOW = System.currentTimeMillis() / 1000;
+
+    @TempDir
+    public Path dir;
+
+    private final String clusterName = "idp-test-" + UUID.randomUUID();
+    private final List<Vertx> members = new ArrayList<>();
+
+    // Test finalizers
+    @AfterEach
+    public void leaveCluster() throws Exception {
+        for (var member : members) {
+            var closed = new CompletableFuture<Void>();
+            member.close(done -> closed.complete(null));
+            closed.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("Revocations reach every member, including one that joins later")
+    public void replicatesRevocations() throws Exception {
+        var first = join();
+        var firstList = RevocationList.open(dir.resolve("first.log"), 1000, 0.01, NOW);
+        var firstReplicator = new ClusterReplicator(first, firstList, null, 50);
+        firstReplicator.start();
+        firstList.revoke("early", NOW + 3600, NOW);
+        firstReplicator.revoked("early", NOW + 3600);
+
+        var second = join();
+        var secondList = RevocationList.open(dir.resolve("second.log"), 1000, 0.01, NOW);
+        new ClusterReplicator(second, secondList, null, 50).start();
+        await(() -> secondList.isRevoked("early"));
+
+        firstList.revoke("late", NOW + 3600, NOW);
+        firstReplicator.revoked("late", NOW + 3600);
+        await(() -> secondList.isRevoked("late"));
+
+        // The replica is durable: reopening the file replays both.
+        secondList.close();
+        var reopened = RevocationList.open(dir.resolve("second.log"), 1000, 0.01, NOW);
+        assertThat(reopened.isRevoked("early")).isTrue();
+        assertThat(reopened.isRevoked("late")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Requests admitted by one member count against the client's limit on the others")
+    public void replicatesRateLimitUsage() throws Exception {
+        var first = join();
+        var firstLimiter = limiter(first);
+        new ClusterReplicator(first, revocationList("first.log"), firstLimiter, 50).start();
+        var second = join();
+        var secondLimiter = limiter(second);
+        new ClusterReplicator(second, revocationList("second.log"), secondLimiter, 50).start();
+
+        assertThat(firstLimiter.acquire("client")).isZero();
+        assertThat(firstLimiter.acquire("client")).isZero();
+        await(() -> secondLimiter.stats().getLong("charged") == 2);
+
+        assertThat(secondLimiter.acquire("client")).isPositive();
+    }
+
+    // Private methods
+    private Vertx join() throws Exception {
+        var config = new JsonObject().put(ConfigProp.CLUSTER,
+                new JsonObject().put(IdpCluster.NAME, clusterName).put(IdpCluster.PORT, 15701));
+        var options = IdpCluster.vertxOptions(config);
+        ((HazelcastClusterManager) options.getClusterManager()).getConfig()
+                .setProperty("hazelcast.wait.seconds.before.join", "0");
+
+        var joined = new CompletableFuture<Vertx>();
+        Vertx.clusteredVertx(options, result -> {
+            if (result.succeeded()) {
+                joined.complete(result.result());
+            } else {
+                joined.completeExceptionally(result.cause());
+            }
+        });
+        var member = joined.get(60, TimeUnit.SECONDS);
+        members.add(member);
+        return member;
+    }
+
+    private RevocationList revocationList(String file) {
+        return RevocationList.open(dir.resolve(file), 1000, 0.01, NOW);
+    }
+
+    private static RateLimiter limiter(Vertx vertx) {
+        var config = new JsonObject()
+                .put(ConfigProp.CLIENT_CONFIG, new JsonArray().add(new JsonObject().put("id", "client").put("secret", "s")))
+                .put(ConfigProp.RATE_LIMIT, new JsonObject().put("requests-per-second", 0.1).put("burst", 2));
+        var authenticator = new ClientAuthenticator(
+                ClientRegistry.fromConfig(config), new BoundedWorkerPool(vertx, "test", 0, 4), 10, 60);
+        return RateLimiter.fromConfig(authenticator, config);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("replication deadline").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class HealthMonitorTest {
+    private static KeyRing keyRing;
+
+    private final Vertx vertx = Vertx.vertx();
+
+    // Test finalizers
+    @AfterEach
+    public void closeVertx() {
+        vertx.close();
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("A node with keys, clients and idle event loops is ready")
+    public void readyWhenIdle() throws Exception {
+        var monitor = new HealthMonitor(20, 200, 10);
+        monitor(monitor);
+        Thread.sleep(100);
+
+        var report = monitor.readiness(true, keyRing(), 3, 0);
+
+        assertThat(HealthMonitor.isUp(report)).isTrue();
+        assertThat(report.getJsonObject("checks").getJsonObject("clients").getInteger("count"))
+                .isEqualTo(3);
+        assertThat(report.getJsonObject("checks").getJsonObject("event-loop").getInteger("loops"))
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A stuck event loop makes the node unready until it recovers")
+    public void unreadyWhileEventLoopStuck() throws Exception {
+        var monitor = new HealthMonitor(20, 200, 10);
+        var context = monitor(monitor);
+
+        var stuck = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        context.runOnContext(v -> {
+            stuck.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stuck.await();
+        Thread.sleep(400);
+
+        var report = monitor.readiness(true, keyRing(), 1, 0);
+        assertThat(HealthMonitor.isUp(report)).isFalse();
+        assertThat(report.getJsonObject("checks").getJsonObject("event-loop").getString("status"))
+                .isEqualTo("DOWN");
+
+        release.countDown();
+        Thread.sleep(300);
+        assertThat(HealthMonitor.isUp(monitor.readiness(true, keyRing(), 1, 0))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Probe samples feed the metrics' lag histogram, once per stall")
+    public void feedsMetrics() throws Exception {
+        var monitor = new HealthMonitor(20, 200, 10);
+        var metrics = new IdpMetrics();
+        var context = vertx.getOrCreateContext();
+        var started = new CountDownLatch(1);
+        context.runOnContext(v -> {
+            monitor.monitorEventLoop(vertx, metrics);
+            started.countDown();
+        });
+        started.await();
+
+        // Stall the loop well past Vert.x's blocked-thread threshold.
+        context.runOnContext(v -> {
+            try {
+                Thread.sleep(2500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(3000);
+
+        var out = new StringBuilder();
+        metrics.writeTo(out);
+        assertThat(out.toString())
+                .containsPattern("idp_event_loop_lag_seconds_count [1-9]")
+                .contains("idp_event_loop_blocked_total 1\n");
+    }
+
+    @Test
+    @DisplayName("A stopped probe is forgotten rather than taken for a stuck event loop")
+    public void forgetsStoppedProbes() throws Exception {
+        var monitor = new HealthMonitor(20, 200, 10);
+        var probeId = new long[1];
+        var context = vertx.getOrCreateContext();
+        var started = new CountDownLatch(1);
+        context.runOnContext(v -> {
+            probeId[0] = monitor.monitorEventLoop(vertx);
+            started.countDown();
+        });
+        started.await();
+
+        monitor.stopMonitoring(vertx, probeId[0]);
+        Thread.sleep(400);
+
+        var report = monitor.readiness(true, keyRing(), 1, 0);
+        assertThat(HealthMonitor.isUp(report)).isTrue();
+        assertThat(report.getJsonObject("checks").getJsonObject("event-loop").getInteger("loops"))
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("A node is unready before startup, without keys or clients, or with a deep signing queue")
+    public void unreadyChecks() {
+        var monitor = new HealthMonitor(20, 200, 10);
+
+        assertThat(HealthMonitor.isUp(monitor.readiness(false, keyRing(), 1, 0))).isFalse();
+        assertThat(HealthMonitor.isUp(monitor.readiness(true, null, 1, 0))).isFalse();
+        assertThat(HealthMonitor.isUp(monitor.readiness(true, keyRing(), 0, 0))).isFalse();
+        assertThat(HealthMonitor.isUp(monitor.readiness(true, keyRing(), 1, 11))).isFalse();
+        assertThat(HealthMonitor.isUp(monitor.readiness(true, keyRing(), 1, 10))).isTrue();
+    }
+
+    @Test
+    @DisplayName("The signing queue threshold defaults to half the pool's capacity")
+    public void defaultsFromSigningPool() {
+        var pool = new BoundedWorkerPool(vertx, "test", 0, 8);
+        var monitor = HealthMonitor.fromConfig(new JsonObject(), pool);
+
+        assertThat(HealthMonitor.isUp(monitor.readiness(true, keyRing(), 1, 4))).isTrue();
+        assertThat(HealthMonitor.isUp(monitor.readiness(true, keyRing(), 1, 5))).isFalse();
+    }
+
+    // Private methods
+    private Context monitor(HealthMonitor monitor) throws InterruptedException {
+        var context = vertx.getOrCreateContext();
+        var started = new CountDownLatch(1);
+        context.runOnContext(v -> {
+            monitor.monitorEventLoop(vertx);
+            started.countDown();
+        });
+        started.await();
+        return context;
+    }
+
+    private static KeyRing keyRing() {
+        if (keyRing == null) {
+            List<String> config = FileUtils.readTextFileFromClasspath("conf/issuer-config.json");
+            keyRing = KeyRing.load((JsonObject) Json.decodeValue(String.join("\n", config)));
+        }
+        return keyRing;
+    }
+}
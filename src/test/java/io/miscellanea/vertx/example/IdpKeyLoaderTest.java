@@ -5,9 +5,13 @@ import io.vertx.core.json.JsonObject;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyFactory;
 import java.util.List;
 import java.util.UUID;
 
@@ -106,4 +110,85 @@ public class IdpKeyLoaderTest {
             }
         }
     }
+
+    @Test
+    @DisplayName("Can load a TLS certificate with its PEM armour")
+    public void canLoadTlsCertificateAsPem() {
+        JsonObject config = new JsonObject().put("keys",
+                new JsonObject().put("tls-certificate", "classpath:keys/tls-localhost-cert.pem"));
+
+        String pem = new IdpKeyLoader(IdpKeyLoader.KeyType.TlsCertificate, config).loadPem();
+        assertThat(pem).startsWith("-----BEGIN CERTIFICATE-----\n").endsWith("-----END CERTIFICATE-----\n");
+    }
+
+    @Test
+    @DisplayName("Private keys may be PKCS#1 or PKCS#8, encrypted or not")
+    public void parsesPrivateKeyEncodings() throws Exception {
+        var rsa = KeyFactory.getInstance("RSA");
+        var expected = new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, defaultConfig).loadPrivateKey(rsa);
+
+        for (var file : List.of("idp-private-pkcs1.pem", "idp-private-pkcs1-aes.pem", "idp-private-pkcs8-aes.pem")) {
+            var keys = new JsonObject()
+                    .put("private", "classpath:keys/" + file)
+                    .put("private-passphrase", "changeit");
+            var key = new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, new JsonObject().put("keys", keys))
+                    .loadPrivateKey(rsa);
+            assertThat(key.getEncoded()).as(file).isEqualTo(expected.getEncoded());
+        }
+
+        var keys = new JsonObject().put("public", "classpath:keys/idp-public-pkcs1.pem");
+        assertThat(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, new JsonObject().put("keys", keys))
+                .loadPublicKey(rsa).getEncoded())
+                .isEqualTo(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, defaultConfig).loadPublicKey(rsa).getEncoded());
+    }
+
+    @Test
+    @DisplayName("An encrypted key without the right passphrase is rejected")
+    public void rejectsWrongPassphrase() {
+        for (var passphrase : new String[] {null, "wrong"}) {
+            var keys = new JsonObject()
+                    .put("private", "classpath:keys/idp-private-pkcs8-aes.pem")
+                    .put("private-passphrase", passphrase);
+            assertThatExceptionOfType(IdpException.class).isThrownBy(() ->
+                    new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, new JsonObject().put("keys", keys))
+                            .loadPrivateKey(KeyFactory.getInstance("RSA")));
+        }
+    }
+
+    @Test
+    @DisplayName("A wrong passphrase is rejected even after the key was decrypted with the right one")
+    public void rejectsWrongPassphraseAfterRightOne() throws Exception {
+        var rsa = KeyFactory.getInstance("RSA");
+        var keys = new JsonObject()
+                .put("private", "classpath:keys/idp-private-pkcs8-aes.pem")
+                .put("private-passphrase", "changeit");
+        assertThat(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, new JsonObject().put("keys", keys))
+                .loadPrivateKey(rsa)).isNotNull();
+
+        keys.put("private-passphrase", "wrong");
+        assertThatExceptionOfType(IdpException.class).isThrownBy(() ->
+                new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, new JsonObject().put("keys", keys))
+                        .loadPrivateKey(rsa));
+    }
+
+    @Test
+    @DisplayName("A key file is parsed once and again only after it changes")
+    public void sharesParsedKeysUntilTheFileChanges(@TempDir Path dir) throws Exception {
+        var rsa = KeyFactory.getInstance("RSA");
+        var file = dir.resolve("public.pem");
+        Files.write(file, FileUtils.readTextFileFromClasspath("keys/idp-public.pem"));
+        var config = new JsonObject().put("keys", new JsonObject().put("public", file.toString()));
+
+        var first = new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, config).loadPublicKey(rsa);
+        assertThat(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, config).loadPublicKey(rsa)).isSameAs(first);
+        assertThat(IdpKeyLoader.changedKeys()).doesNotContain(IdpKeyLoader.KeyType.IdpPublic);
+
+        Files.write(file, FileUtils.readTextFileFromClasspath("keys/idp-public-pkcs1.pem"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        assertThat(IdpKeyLoader.changedKeys()).contains(IdpKeyLoader.KeyType.IdpPublic);
+        assertThat(IdpKeyLoader.changedKeys()).doesNotContain(IdpKeyLoader.KeyType.IdpPublic);
+
+        var reloaded = new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, config).loadPublicKey(rsa);
+        assertThat(reloaded).isNotSameAs(first).isEqualTo(first);
+    }
 }
@@ -0,0 +1,57 @@
+package io.miscellanea.vertx.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class IdpMetricsTest {
+    // Test methods
+    @Test
+    @DisplayName("Histogram counts are cumulative and samples land in the first bucket that holds them")
+    public void countsAreCumulative() {
+        var histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(11));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.SECONDS.toNanos(60));
+
+        var counts = histogram.cumulativeCounts();
+        assertThat(counts).hasSize(LatencyHistogram.BOUNDS.length + 1);
+        assertThat(counts[0]).isEqualTo(1);
+        assertThat(counts[1]).isEqualTo(2);
+        assertThat(counts[8]).isEqualTo(3);
+        assertThat(counts[LatencyHistogram.BOUNDS.length - 1]).isEqualTo(3);
+        assertThat(counts[LatencyHistogram.BOUNDS.length]).isEqualTo(4);
+        assertThat(histogram.getSumSeconds()).isCloseTo(60.003021, within(1e-9));
+    }
+
+    @Test
+    @DisplayName("Requests, stages and lag are written in the Prometheus text format")
+    public void writesPrometheusText() {
+        var metrics = new IdpMetrics();
+        metrics.recordRequest(IdpMetrics.Endpoint.forPath("/api/oauth2/token"), 200, 1_000_000);
+        metrics.recordRequest(IdpMetrics.Endpoint.forPath("/api/oauth2/token"), 200, 2_000_000);
+        metrics.recordRequest(IdpMetrics.Endpoint.forPath("/nowhere"), 404, 1_000);
+        metrics.stage(IdpMetrics.Stage.SIGNING).record(500_000);
+
+        var out = new StringBuilder();
+        metrics.writeTo(out);
+        var text = out.toString();
+
+        assertThat(text)
+                .contains("# TYPE idp_http_requests_total counter\n")
+                .contains("idp_http_requests_total{endpoint=\"token\",code=\"200\"} 2\n")
+                .contains("idp_http_requests_total{endpoint=\"other\",code=\"404\"} 1\n")
+                .contains("idp_http_request_duration_seconds_bucket{endpoint=\"token\",le=\"0.001\"} 1\n")
+                .contains("idp_http_request_duration_seconds_bucket{endpoint=\"token\",le=\"+Inf\"} 2\n")
+                .contains("idp_http_request_duration_seconds_sum{endpoint=\"token\"} 0.003\n")
+                .contains("idp_stage_duration_seconds_count{stage=\"signing\"} 1\n")
+                .contains("idp_stage_duration_seconds_count{stage=\"form_parse\"} 0\n")
+                .contains("idp_event_loop_lag_seconds_count 0\n")
+                .contains("idp_event_loop_blocked_total 0\n");
+        assertThat(text).doesNotContain("code=\"500\"");
+    }
+}
@@ -0,0 +1,134 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import io.vertx.ext.jwt.JWTOptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Golden tests proving that {@link JwtEncoder} produces exactly the bytes of
+ * the original <code>JsonObject</code> and <code>JWTAuth</code> based issuer,
+ * save that <code>iat</code> and <code>nbf</code> are now seconds since the
+ * epoch rather than that value divided by 1000.
+ */
+public class JwtEncoderTest {
+    private static final long NOW_MILLIS = 1586000340370L;
+    private static final UUID JTI = UUID.fromString("91bd8772-6ba8-45cc-bee9-366b0b274851");
+    private static final int EXPIRES_IN = 3600;
+
+    private static JsonObject defaultConfig;
+    private static Vertx vertx;
+    private static JWTAuth jwtAuth;
+    private static JwtSigner signer;
+
+    // Test initializers
+    @BeforeAll
+    public static void createSigners() {
+        List<String> config = FileUtils.readTextFileFromClasspath("conf/issuer-config.json");
+        defaultConfig = (JsonObject) Json.decodeValue(String.join("\n", config));
+
+        vertx = Vertx.vertx();
+        jwtAuth = JWTAuth.create(vertx, new JWTAuthOptions()
+                .addPubSecKey(new PubSecKeyOptions()
+                        .setAlgorithm("RS256")
+                        .setPublicKey(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, defaultConfig).loadKey())
+                        .setSecretKey(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, defaultConfig).loadKey())));
+        signer = new JwtSigner(SigningKey.load(defaultConfig));
+    }
+
+    @AfterAll
+    public static void closeVertx() {
+        vertx.close();
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("Responses for a client with roles match the original issuer")
+    public void matchesOriginalWithRoles() {
+        assertMatchesOriginal("6fe630e9-7e07-4ceb-9887-41e195a07917", new JsonArray().add("basic"));
+        assertMatchesOriginal("6fe630e9-7e07-4ceb-9887-41e195a07917",
+                new JsonArray().add("basic").add("admin").add(42));
+    }
+
+    @Test
+    @DisplayName("Responses for a client without roles match the original issuer")
+    public void matchesOriginalWithoutRoles() {
+        assertMatchesOriginal("6fe630e9-7e07-4ceb-9887-41e195a07917", null);
+    }
+
+    @Test
+    @DisplayName("Every base64 padding boundary matches the original issuer")
+    public void matchesOriginalAcrossPaddingBoundaries() {
+        for (int length = 0; length < 7; length++) {
+            assertMatchesOriginal("c".repeat(length), new JsonArray().add("basic"));
+        }
+    }
+
+    @Test
+    @DisplayName("Subjects requiring JSON escapes match the original issuer")
+    public void matchesOriginalWithEscapedSubjects() {
+        assertMatchesOriginal("quote\"back\\slash", null);
+        assertMatchesOriginal("tab\tnew\nline\r\b\f\u0001\u001f/", null);
+        assertMatchesOriginal("caf\u00e9-\u2603-\ud83d\ude00", null);
+    }
+
+    @Test
+    @DisplayName("Wrapping an issued token at its issue time matches the original issuer")
+    public void wrappedTokensMatchOriginal() {
+        var encoder = new JwtEncoder(signer, "vertxjwt", EXPIRES_IN, () -> NOW_MILLIS, () -> JTI);
+        var roles = new JsonArray().add("basic");
+        var token = encoder.issue("6fe630e9-7e07-4ceb-9887-41e195a07917", roles.toBuffer().getBytes());
+
+        assertThat(JwtEncoder.wrap(token, NOW_MILLIS / 1000).getBytes())
+                .isEqualTo(originalResponse("6fe630e9-7e07-4ceb-9887-41e195a07917", roles).getBytes());
+        assertThat(JwtEncoder.wrap(token, NOW_MILLIS / 1000 + 600).toJsonObject().getInteger("expires_in"))
+                .isEqualTo(EXPIRES_IN - 600);
+    }
+
+    // Helper methods
+    private static void assertMatchesOriginal(String subject, JsonArray roles) {
+        var encoder = new JwtEncoder(signer, "vertxjwt", EXPIRES_IN, () -> NOW_MILLIS, () -> JTI);
+        var actual = encoder.encode(subject, roles != null ? roles.toBuffer().getBytes() : null);
+
+        assertThat(actual.getBytes()).isEqualTo(originalResponse(subject, roles).getBytes());
+    }
+
+    /** The original issuer's claim generation, signing and wrapping, with corrected time claims. */
+    private static String originalResponse(String subject, JsonArray roles) {
+        var claims = new JsonObject();
+        claims.put("iss", "vertxjwt");
+        claims.put("sub", subject);
+
+        var now = ZonedDateTime.ofInstant(Instant.ofEpochMilli(NOW_MILLIS), ZoneId.of("Z"));
+        claims.put("iat", now.toEpochSecond());
+        claims.put("nbf", now.toEpochSecond());
+        claims.put("jti", JTI.toString());
+        claims.put("exp", now.plusSeconds(EXPIRES_IN).toInstant().toEpochMilli() / 1000);
+        if (roles != null) {
+            claims.put("rol", roles);
+        }
+
+        var jwt = new JsonObject();
+        jwt.put("access_token", jwtAuth.generateToken(claims, new JWTOptions().setAlgorithm("RS256")));
+        jwt.put("token_type", "bearer");
+        jwt.put("expires_in", EXPIRES_IN);
+
+        return jwt.toString();
+    }
+}
@@ -0,0 +1,179 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import io.vertx.ext.jwt.JWTOptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class JwtSignerTest {
+    private static JsonObject defaultConfig;
+    private static Vertx vertx;
+
+    // Test initializers
+    @BeforeAll
+    public static void loadDefaultConfig() {
+        List<String> config = FileUtils.readTextFileFromClasspath("conf/issuer-config.json");
+        defaultConfig = (JsonObject) Json.decodeValue(String.join("\n", config));
+        vertx = Vertx.vertx();
+    }
+
+    @AfterAll
+    public static void closeVertx() {
+        vertx.close();
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("Signed tokens are identical to those produced by JWTAuth")
+    public void tokensMatchJwtAuth() {
+        JWTAuth jwtAuth = JWTAuth.create(vertx, new JWTAuthOptions()
+                .addPubSecKey(new PubSecKeyOptions()
+                        .setAlgorithm("RS256")
+                        .setPublicKey(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, defaultConfig).loadKey())
+                        .setSecretKey(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, defaultConfig).loadKey())));
+        JwtSigner signer = new JwtSigner(SigningKey.load(defaultConfig));
+
+        JsonObject claims = new JsonObject()
+                .put("iss", "vertxjwt")
+                .put("sub", "6fe630e9-7e07-4ceb-9887-41e195a07917")
+                .put("iat", 1586000000L)
+                .put("jti", "91bd8772-6ba8-45cc-bee9-366b0b274851")
+                .put("rol", new JsonArray().add("basic"));
+
+        String expected = jwtAuth.generateToken(claims, new JWTOptions().setAlgorithm("RS256"));
+        assertThat(signer.sign(claims)).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Unsupported algorithms are rejected")
+    public void rejectsUnsupportedAlgorithm() {
+        IdpException expected = catchThrowableOfType(
+                () -> SigningKey.load(configFor("none", "keys/es256-private.pem", "keys/es256-public.pem")),
+                IdpException.class);
+
+        assertThat(expected).hasMessageContaining("not supported");
+    }
+
+    @Test
+    @DisplayName("ES256 tokens are verified by JWTAuth")
+    public void es256TokensVerify() throws Exception {
+        assertVerifiedByJwtAuth("ES256", configFor("ES256", "keys/es256-private.pem", "keys/es256-public.pem"));
+    }
+
+    @Test
+    @DisplayName("ES384 tokens are verified by JWTAuth")
+    public void es384TokensVerify() throws Exception {
+        assertVerifiedByJwtAuth("ES384", configFor("ES384", "keys/es384-private.pem", "keys/es384-public.pem"));
+    }
+
+    @Test
+    @DisplayName("HS256 tokens match those produced by JWTAuth")
+    public void hs256TokensMatchJwtAuth() throws IOException {
+        // JWTAuth takes HMAC secrets as strings, so use one that is plain ASCII.
+        String secret = "0123456789abcdefghijklmnopqrstuv";
+        File temp = File.createTempFile("junit-secret", ".key");
+        try {
+            Files.writeString(temp.toPath(), Base64.getEncoder().encodeToString(secret.getBytes(StandardCharsets.US_ASCII)));
+            JsonObject config = configFor("HS256", null, null);
+            config.getJsonObject("keys").put("secret", temp.getAbsolutePath());
+
+            JWTAuth jwtAuth = JWTAuth.create(vertx, new JWTAuthOptions()
+                    .addPubSecKey(new PubSecKeyOptions()
+                            .setAlgorithm("HS256")
+                            .setPublicKey(secret)
+                            .setSymmetric(true)));
+            JsonObject claims = new JsonObject().put("sub", "client").put("iat", 1586000000L);
+
+            String expected = jwtAuth.generateToken(claims, new JWTOptions().setAlgorithm("HS256"));
+            assertThat(new JwtSigner(SigningKey.load(config)).sign(claims)).isEqualTo(expected);
+        } finally {
+            assertThat(temp.delete()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("HS256 secrets shorter than the hash output are rejected")
+    public void rejectsShortHmacSecret() throws IOException {
+        File temp = File.createTempFile("junit-secret", ".key");
+        try {
+            Files.writeString(temp.toPath(), Base64.getEncoder().encodeToString(new byte[16]));
+            JsonObject config = configFor("HS256", null, null);
+            config.getJsonObject("keys").put("secret", temp.getAbsolutePath());
+
+            IdpException expected = catchThrowableOfType(() -> SigningKey.load(config), IdpException.class);
+            assertThat(expected).hasMessageContaining("at least 32 bytes");
+        } finally {
+            assertThat(temp.delete()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("EdDSA tokens verify with the Ed25519 public key")
+    public void eddsaTokensVerify() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 15, "Ed25519 requires Java 15 or newer");
+
+        SigningKey key = SigningKey.load(configFor("EdDSA", "keys/ed25519-private.pem", "keys/ed25519-public.pem"));
+        String token = new JwtSigner(key).sign(new JsonObject().put("sub", "client"));
+        String[] parts = token.split("\\.");
+
+        assertThat(new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8))
+                .isEqualTo("{\"typ\":\"JWT\",\"alg\":\"EdDSA\"}");
+
+        Signature verifier = Signature.getInstance("Ed25519");
+        verifier.initVerify((PublicKey) key.getVerificationKey());
+        verifier.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+        assertThat(verifier.verify(Base64.getUrlDecoder().decode(parts[2]))).isTrue();
+    }
+
+    // Helper methods
+    private static JsonObject configFor(String algorithm, String privateKey, String publicKey) {
+        JsonObject config = new JsonObject().mergeIn(defaultConfig, true);
+        config.put("idp-algorithm", algorithm);
+        config.put("keys", new JsonObject()
+                .put("private", "classpath:" + privateKey)
+                .put("public", "classpath:" + publicKey));
+        return config;
+    }
+
+    private static void assertVerifiedByJwtAuth(String algorithm, JsonObject config) throws Exception {
+        JWTAuth jwtAuth = JWTAuth.create(vertx, new JWTAuthOptions()
+                .addPubSecKey(new PubSecKeyOptions()
+                        .setAlgorithm(algorithm)
+                        .setPublicKey(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, config).loadKey())));
+        String token = new JwtSigner(SigningKey.load(config))
+                .sign(new JsonObject().put("sub", "client").put("iat", System.currentTimeMillis() / 1000));
+
+        CompletableFuture<JsonObject> principal = new CompletableFuture<>();
+        jwtAuth.authenticate(new JsonObject().put("jwt", token), result -> {
+            if (result.succeeded()) {
+                principal.complete(result.result().principal());
+            } else {
+                principal.completeExceptionally(result.cause());
+            }
+        });
+
+        assertThat(principal.get(5, TimeUnit.SECONDS).getString("sub")).isEqualTo("client");
+    }
+}
@@ -0,0 +1,106 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class JwtVerifierTest {
+    private static final long NOW = 1_600_000_000L;
+
+    private static KeySet keys;
+    private static String token;
+
+    // Test initializers
+    @BeforeAll
+    public static void signToken() {
+        List<String> config = FileUtils.readTextFileFromClasspath("conf/issuer-config.json");
+        keys = KeySet.load((JsonObject) Json.decodeValue(String.join("\n", config)));
+        token = new JwtSigner(keys.getActive())
+                .sign(new JsonObject().put("sub", "client").put("nbf", NOW - 10).put("exp", NOW + 60));
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("Tokens signed by the key set verify and report their lifetime")
+    public void verifiesSignedTokens() {
+        VerifiedToken verified = JwtVerifier.verify(keys, token);
+
+        assertThat(verified).isNotNull();
+        assertThat(verified.getClaims().getString("sub")).isEqualTo("client");
+        assertThat(verified.isActive(NOW)).isTrue();
+        assertThat(verified.isActive(NOW + 60)).isFalse();
+        assertThat(verified.isActive(NOW - 20)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Tampered and malformed tokens do not verify")
+    public void rejectsTamperedTokens() {
+        String[] parts = token.split("\\.");
+        String forged = new JwtSigner(keys.getActive()).sign(new JsonObject().put("sub", "admin"));
+        String spliced = parts[0] + "." + forged.split("\\.")[1] + "." + parts[2];
+
+        assertThat(JwtVerifier.verify(keys, spliced)).isNull();
+        assertThat(JwtVerifier.verify(keys, "not-a-token")).isNull();
+        assertThat(JwtVerifier.verify(keys, parts[0] + ".!!." + parts[2])).isNull();
+    }
+
+    @Test
+    @DisplayName("Cached verifications expire with the token and are counted")
+    public void cachesUntilExpiry() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        var key = VerifiedTokenCache.keyOf(token);
+
+        assertThat(cache.get(key, keys, NOW)).isNull();
+        cache.put(key, JwtVerifier.verify(keys, token), NOW);
+        assertThat(cache.get(key, keys, NOW)).isNotNull();
+        assertThat(cache.get(key, keys, NOW + 60)).isNull();
+        assertThat(cache.stats().getDouble("hit-ratio")).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    @DisplayName("Cached verifications are dropped once their key is rotated out")
+    public void dropsVerificationsOfRetiredKeys() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        var key = VerifiedTokenCache.keyOf(token);
+        cache.put(key, JwtVerifier.verify(keys, token), NOW);
+
+        KeySet rotated = new KeySet(SigningKey.load(new JsonObject()
+                .put("idp-algorithm", "ES256")
+                .put("keys", new JsonObject()
+                        .put("private", "classpath:keys/es256-private.pem")
+                        .put("public", "classpath:keys/es256-public.pem"))), List.of());
+
+        assertThat(cache.get(key, rotated, NOW)).isNull();
+        assertThat(JwtVerifier.verify(rotated, token)).isNull();
+    }
+
+    @Test
+    @DisplayName("A full cache evicts to make room")
+    public void boundsEntries() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(1);
+        cache.put(VerifiedTokenCache.keyOf("a"), JwtVerifier.verify(keys, token), NOW);
+        cache.put(VerifiedTokenCache.keyOf("b"), JwtVerifier.verify(keys, token), NOW);
+
+        assertThat(cache.stats().getInteger("size")).isEqualTo(1);
+        assertThat(cache.stats().getLong("evictions")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A purge drops expired verifications and keeps live ones")
+    public void purgesExpired() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        cache.put(VerifiedTokenCache.keyOf("a"), JwtVerifier.verify(keys, token), NOW);
+        cache.put(VerifiedTokenCache.keyOf("b"), JwtVerifier.verify(keys, token), NOW);
+
+        assertThat(cache.purge(NOW)).isZero();
+        assertThat(cache.purge(NOW + 60)).isEqualTo(2);
+        assertThat(cache.stats().getInteger("size")).isZero();
+        assertThat(cache.stats().getLong("expirations")).isEqualTo(2);
+    }
+}
@@ -0,0 +1,122 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import io.vertx.ext.jwt.JWTOptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class KeySetTest {
+    private static JsonObject defaultConfig;
+    private static Vertx vertx;
+
+    // Test initializers
+    @BeforeAll
+    public static void loadDefaultConfig() {
+        List<String> config = FileUtils.readTextFileFromClasspath("conf/issuer-config.json");
+        defaultConfig = (JsonObject) Json.decodeValue(String.join("\n", config));
+        vertx = Vertx.vertx();
+    }
+
+    @AfterAll
+    public static void closeVertx() {
+        vertx.close();
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("Tokens carry the key identifier in the same header JWTAuth writes")
+    public void headerMatchesJwtAuth() {
+        JsonObject config = rotatedConfig();
+        JWTAuth jwtAuth = JWTAuth.create(vertx, new JWTAuthOptions()
+                .addPubSecKey(new PubSecKeyOptions()
+                        .setAlgorithm("ES256")
+                        .setPublicKey(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPublic, config).loadKey())
+                        .setSecretKey(new IdpKeyLoader(IdpKeyLoader.KeyType.IdpPrivate, config).loadKey())));
+        JsonObject claims = new JsonObject().put("sub", "client").put("iat", 1586000000L);
+
+        String expected = jwtAuth.generateToken(claims, new JWTOptions()
+                .setAlgorithm("ES256")
+                .setHeader(new JsonObject().put("kid", "2020-04")));
+        String token = new JwtSigner(KeySet.load(config).getActive()).sign(claims);
+
+        assertThat(token.substring(0, token.indexOf('.'))).isEqualTo(expected.substring(0, expected.indexOf('.')));
+    }
+
+    @Test
+    @DisplayName("The JWKS publishes the active and retiring keys and verifies their tokens")
+    public void jwksVerifiesTokens() throws Exception {
+        KeySet keys = KeySet.load(rotatedConfig());
+        JsonArray jwks = new JsonObject(keys.getJwks()).getJsonArray("keys");
+
+        assertThat(jwks).hasSize(2);
+        assertThat(jwks.getJsonObject(0).getString("kid")).isEqualTo("2020-04");
+        assertThat(jwks.getJsonObject(0).getString("crv")).isEqualTo("P-256");
+        assertThat(Base64.getUrlDecoder().decode(jwks.getJsonObject(0).getString("x"))).hasSize(32);
+        assertThat(jwks.getJsonObject(1).getString("kty")).isEqualTo("RSA");
+        assertThat(keys.verificationKey("2020-01").canSign()).isFalse();
+        assertThat(keys.verificationKey("unknown")).isNull();
+
+        JWTAuthOptions options = new JWTAuthOptions();
+        jwks.forEach(jwk -> options.addJwk((JsonObject) jwk));
+        JWTAuth jwtAuth = JWTAuth.create(vertx, options);
+
+        String token = new JwtSigner(keys.getActive())
+                .sign(new JsonObject().put("sub", "client").put("iat", System.currentTimeMillis() / 1000));
+        CompletableFuture<JsonObject> principal = new CompletableFuture<>();
+        jwtAuth.authenticate(new JsonObject().put("jwt", token), result -> {
+            if (result.succeeded()) {
+                principal.complete(result.result().principal());
+            } else {
+                principal.completeExceptionally(result.cause());
+            }
+        });
+
+        assertThat(principal.get(5, TimeUnit.SECONDS).getString("sub")).isEqualTo("client");
+    }
+
+    @Test
+    @DisplayName("The entity tag changes only when the published keys do")
+    public void etagTracksKeys() {
+        assertThat(KeySet.load(rotatedConfig()).getEtag()).isEqualTo(KeySet.load(rotatedConfig()).getEtag());
+        assertThat(KeySet.load(rotatedConfig()).getEtag()).isNotEqualTo(KeySet.load(defaultConfig).getEtag());
+    }
+
+    @Test
+    @DisplayName("Retiring keys require the active key to have an identifier")
+    public void retiringKeysNeedActiveKid() {
+        JsonObject config = rotatedConfig();
+        config.getJsonObject("keys").remove("kid");
+
+        assertThatExceptionOfType(IdpException.class).isThrownBy(() -> KeySet.load(config));
+    }
+
+    // Helper methods
+    private static JsonObject rotatedConfig() {
+        JsonObject config = new JsonObject().mergeIn(defaultConfig, true);
+        config.put("idp-algorithm", "ES256");
+        config.put("keys", new JsonObject()
+                .put("kid", "2020-04")
+                .put("private", "classpath:keys/es256-private.pem")
+                .put("public", "classpath:keys/es256-public.pem"));
+        config.put("verification-keys", new JsonArray().add(new JsonObject()
+                .put("kid", "2020-01")
+                .put("alg", "RS256")
+                .put("public", "classpath:keys/idp-public.pem")));
+        return config;
+    }
+}
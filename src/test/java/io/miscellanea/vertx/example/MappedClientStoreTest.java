@@ -0,0 +1,97 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class MappedClientStoreTest {
+    @TempDir
+    Path tempDir;
+
+    // Test methods
+    @Test
+    @DisplayName("Imported clients can be looked up from the mapped store")
+    public void looksUpImportedClients() throws Exception {
+        var clients = new JsonArray();
+        for (int idx = 0; idx < 1000; idx++) {
+            clients.add(new JsonObject()
+                    .put("id", "client-" + idx)
+                    .put("secret", "secret-" + idx)
+                    .put("roles", new JsonArray().add(idx % 2 == 0 ? "even" : "odd")));
+        }
+        clients.add(new JsonObject().put("id", "\u00e9t\u00e9").put("secret", "s"));
+
+        var input = tempDir.resolve("config.json");
+        Files.writeString(input, new JsonObject().put("bind-port", 1).put("client-config", clients).encode());
+        var output = tempDir.resolve("clients.store");
+
+        assertThat(ClientStoreImporter.importClients(input, output)).isEqualTo(1001);
+
+        var store = MappedClientStore.open(output);
+        assertThat(store.size()).isEqualTo(1001);
+        assertThat(store.lookup("unknown")).isNull();
+        assertThat(store.lookup("\u00e9t\u00e9").getRoles()).isNull();
+
+        var client = store.lookup("client-42");
+        assertThat(client.getId()).isEqualTo("client-42");
+        assertThat(client.getSecret().matches("secret-42")).isTrue();
+        assertThat(client.getRoles()).isEqualTo(new JsonArray().add("even"));
+
+        // Clients with the same roles share one interned role set.
+        assertThat(store.lookup("client-2").getEncodedRoles()).isSameAs(client.getEncodedRoles());
+    }
+
+    @Test
+    @DisplayName("Duplicate client ids are rejected")
+    public void rejectsDuplicateIds() throws Exception {
+        try (var writer = new ClientStoreWriter(tempDir.resolve("clients.store"))) {
+            writer.add("a", "one", null);
+            writer.add("a", "two", null);
+
+            assertThatExceptionOfType(IdpException.class).isThrownBy(writer::commit);
+        }
+        assertThat(tempDir.resolve("clients.store")).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("A failed import leaves the existing store untouched and no temporary files")
+    public void failedImportKeepsStore() throws Exception {
+        var output = tempDir.resolve("clients.store");
+        var good = tempDir.resolve("good.json");
+        Files.writeString(good, new JsonObject().put("client-config", new JsonArray()
+                .add(new JsonObject().put("id", "a").put("secret", "s"))
+                .add(new JsonObject().put("id", "b").put("secret", "s"))).encode());
+        ClientStoreImporter.importClients(good, output);
+        var mapped = MappedClientStore.open(output);
+
+        var truncated = tempDir.resolve("truncated.json");
+        Files.writeString(truncated, "{\"client-config\": [{\"id\": \"x\", \"secret\": \"s\"}, {\"id\"");
+        assertThatThrownBy(() -> ClientStoreImporter.importClients(truncated, output)).isNotNull();
+
+        var store = MappedClientStore.open(output);
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.lookup("a")).isNotNull();
+        assertThat(store.lookup("x")).isNull();
+        assertThat(mapped.lookup("b")).isNotNull();
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .containsExactlyInAnyOrder("clients.store", "good.json", "truncated.json");
+        }
+    }
+
+    @Test
+    @DisplayName("Files that are not client stores are rejected")
+    public void rejectsOtherFiles() throws Exception {
+        var file = tempDir.resolve("junk.store");
+        Files.write(file, new byte[64]);
+
+        assertThatExceptionOfType(IdpException.class).isThrownBy(() -> MappedClientStore.open(file));
+    }
+}
@@ -0,0 +1,88 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class RateLimiterTest {
+    private Vertx vertx;
+    private RateLimiter limiter;
+
+    // Test initializers
+    @BeforeEach
+    public void createLimiter() {
+        vertx = Vertx.vertx();
+
+        var clients = new JsonArray()
+                .add(new JsonObject().put("id", "default").put("secret", "s"))
+                .add(new JsonObject().put("id", "slow").put("secret", "s")
+                        .put("rate-limit", new JsonObject().put("requests-per-second", 0.1).put("burst", 2)))
+                .add(new JsonObject().put("id", "exempt").put("secret", "s")
+                        .put("rate-limit", new JsonObject().put("requests-per-second", 0)));
+        var config = new JsonObject()
+                .put(ConfigProp.CLIENT_CONFIG, clients)
+                .put(ConfigProp.RATE_LIMIT, new JsonObject().put("requests-per-second", 0.5).put("burst", 3));
+        var authenticator = new ClientAuthenticator(
+                ClientRegistry.fromConfig(config), new BoundedWorkerPool(vertx, "test", 0, 4), 10, 60);
+        limiter = RateLimiter.fromConfig(authenticator, config);
+    }
+
+    @AfterEach
+    public void closeVertx() {
+        vertx.close();
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("A client may send its burst, then waits for its bucket to refill")
+    public void limitsAfterBurst() {
+        for (int idx = 0; idx < 3; idx++) {
+            assertThat(limiter.acquire("default")).isZero();
+        }
+        assertThat(limiter.acquire("default")).isBetween(1L, 2L);
+
+        assertThat(limiter.acquire("slow")).isZero();
+        assertThat(limiter.acquire("slow")).isZero();
+        assertThat(limiter.acquire("slow")).isBetween(9L, 10L);
+
+        assertThat(limiter.stats().getLong("admitted")).isEqualTo(5);
+        assertThat(limiter.stats().getLong("limited")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Unknown and exempt clients are never limited and get no bucket")
+    public void ignoresUnknownAndExemptClients() {
+        for (int idx = 0; idx < 100; idx++) {
+            assertThat(limiter.acquire("unknown-" + idx)).isZero();
+            assertThat(limiter.acquire("exempt")).isZero();
+        }
+        assertThat(limiter.acquire(null)).isZero();
+        assertThat(limiter.stats().getInteger("clients")).isZero();
+    }
+
+    @Test
+    @DisplayName("Only buckets that have refilled are swept")
+    public void sweepsIdleBuckets() {
+        assertThat(limiter.acquire("default")).isZero();
+        assertThat(limiter.sweep()).isZero();
+        assertThat(limiter.stats().getInteger("clients")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Limits must have a non-negative rate and a positive burst")
+    public void rejectsInvalidLimits() {
+        assertThatExceptionOfType(IdpException.class)
+                .isThrownBy(() -> RateLimiter.Limit.fromJson(new JsonObject().put("burst", 2), "limit"));
+        assertThatExceptionOfType(IdpException.class)
+                .isThrownBy(() -> RateLimiter.Limit.fromJson(
+                        new JsonObject().put("requests-per-second", 5).put("burst", 0), "limit"));
+        assertThat(RateLimiter.Limit.fromJson(new JsonObject().put("requests-per-second", 2.5), "limit").getBurst())
+                .isEqualTo(3);
+    }
+}
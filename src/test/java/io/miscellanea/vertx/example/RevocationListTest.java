@@ -0,0 +1,81 @@
+package io.miscellanea.vertx.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class RevocationListTest {
+    private static final long NOW = 1_600_000_000L;
+
+    @TempDir
+    Path dir;
+
+    // Test methods
+    @Test
+    @DisplayName("Revoked tokens are found and unrevoked tokens rarely reach the exact set")
+    public void checksRevocations() {
+        var list = RevocationList.open(dir.resolve("revoked.log"), 1000, 0.01, NOW);
+        assertThat(list.revoke("revoked", NOW + 60, NOW)).isTrue();
+        assertThat(list.revoke("revoked", NOW + 60, NOW)).isFalse();
+        assertThat(list.revoke("expired", NOW, NOW)).isFalse();
+
+        assertThat(list.isRevoked("revoked")).isTrue();
+        assertThat(list.isRevoked("expired")).isFalse();
+        for (int idx = 0; idx < 10_000; idx++) {
+            assertThat(list.isRevoked("token-" + idx)).isFalse();
+        }
+
+        // 10,000 misses against a filter sized for 1% false positives.
+        assertThat(list.stats().getLong("false-positives")).isLessThan(300);
+        list.close();
+    }
+
+    @Test
+    @DisplayName("Revocations survive a restart until their tokens expire")
+    public void replaysFile() throws Exception {
+        var file = dir.resolve("revoked.log");
+        var list = RevocationList.open(file, 1000, 0.01, NOW);
+        list.revoke("short", NOW + 10, NOW);
+        list.revoke("long", NOW + 100, NOW);
+        list.close();
+
+        // A record torn by a crash is skipped.
+        Files.write(file, "12".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        var reopened = RevocationList.open(file, 1000, 0.01, NOW + 50);
+        assertThat(reopened.isRevoked("short")).isFalse();
+        assertThat(reopened.isRevoked("long")).isTrue();
+        assertThat(Files.readAllLines(file)).containsExactly((NOW + 100) + " long");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Purging forgets expired revocations and compacts the file")
+    public void purgesExpiredRevocations() throws Exception {
+        var file = dir.resolve("revoked.log");
+        var list = RevocationList.open(file, 100, 0.01, NOW);
+        for (int idx = 0; idx < 2000; idx++) {
+            list.revoke("token-" + idx, NOW + (idx == 0 ? 100 : 10), NOW);
+        }
+        assertThat(Files.readAllLines(file)).hasSize(2000);
+
+        assertThat(list.purge(NOW + 10)).isEqualTo(1999);
+        assertThat(list.purge(NOW + 10)).isZero();
+        assertThat(list.isRevoked("token-0")).isTrue();
+        assertThat(list.isRevoked("token-1")).isFalse();
+        assertThat(list.stats().getInteger("size")).isEqualTo(1);
+        assertThat(Files.readAllLines(file)).containsExactly((NOW + 100) + " token-0");
+
+        // The compacted file is still appended to.
+        list.revoke("token-2000", NOW + 100, NOW + 10);
+        assertThat(Files.readAllLines(file)).hasSize(2);
+        list.close();
+    }
+}
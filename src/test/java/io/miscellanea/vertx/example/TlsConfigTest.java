@@ -0,0 +1,73 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.X509KeyManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TlsConfigTest {
+    private static JsonObject pemKeys() {
+        return new JsonObject()
+                .put("tls-certificate", "classpath:keys/tls-localhost-cert.pem")
+                .put("tls-private", "classpath:keys/tls-localhost-key.pem");
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("By default the server offers HTTP/2 and TLS 1.2 and 1.3")
+    public void defaultsOfferHttp2AndTls13() throws Exception {
+        var options = TlsConfig.fromConfig(new JsonObject().put("keys", pemKeys())).serverOptions();
+
+        assertThat(options.isSsl()).isTrue();
+        assertThat(options.isUseAlpn()).isTrue();
+        assertThat(options.getAlpnVersions()).containsExactly(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1);
+        assertThat(options.getEnabledSecureTransportProtocols()).containsExactlyInAnyOrder("TLSv1.2", "TLSv1.3");
+
+        // The certificate and key are loaded once, when the configuration is read.
+        var keyManagers = options.getKeyCertOptions().getKeyManagerFactory(null).getKeyManagers();
+        assertThat(keyManagers).hasSize(1);
+        assertThat(((X509KeyManager) keyManagers[0]).getServerAliases("RSA", null)).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("HTTP/2 and protocols can be configured")
+    public void http2AndProtocolsAreConfigurable() {
+        var config = new JsonObject()
+                .put("keys", pemKeys())
+                .put("tls", new JsonObject().put("http2", false).put("protocols", new JsonArray().add("TLSv1.3")));
+
+        var options = TlsConfig.fromConfig(config).serverOptions();
+        assertThat(options.isUseAlpn()).isFalse();
+        assertThat(options.getEnabledSecureTransportProtocols()).containsExactly("TLSv1.3");
+    }
+
+    @Test
+    @DisplayName("PEM files may be named in the idp-config-file key file")
+    public void readsPemFilesFromKeyConfigFile(@TempDir Path dir) throws Exception {
+        var keyFile = dir.resolve("keys.json");
+        Files.writeString(keyFile, pemKeys().encode());
+        var config = new JsonObject().put("idp-config-file", keyFile.toString());
+
+        var keyManagers = TlsConfig.fromConfig(config).serverOptions()
+                .getKeyCertOptions().getKeyManagerFactory(null).getKeyManagers();
+        assertThat(((X509KeyManager) keyManagers[0]).getServerAliases("RSA", null)).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("A keystore is required without PEM files")
+    public void keystoreIsRequiredWithoutPem() {
+        var config = new JsonObject().put("keys", new JsonObject());
+
+        assertThatThrownBy(() -> TlsConfig.fromConfig(config))
+                .isInstanceOf(IdpException.class)
+                .hasMessageContaining("idp-keystore");
+    }
+}
@@ -0,0 +1,75 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TokenBatchTest {
+    private final Vertx vertx = Vertx.vertx();
+
+    // Test finalizers
+    @AfterEach
+    public void closeVertx() {
+        vertx.close();
+    }
+
+    // Test methods
+    @Test
+    @DisplayName("Each entry is one NDJSON line, with token responses spliced in")
+    public void writesLines() throws Exception {
+        var body = serve(response -> {
+            var batch = new TokenBatch(response, 2);
+            batch.issued(0, "a", new JsonObject()
+                    .put("access_token", "t").put("token_type", "bearer").put("expires_in", 60).toBuffer());
+            batch.failed(1, null, 400, "invalid_request");
+        });
+
+        assertThat(body).isEqualTo(
+                "{\"index\":0,\"client_id\":\"a\",\"status\":200,"
+                        + "\"access_token\":\"t\",\"token_type\":\"bearer\",\"expires_in\":60}\n"
+                        + "{\"index\":1,\"client_id\":null,\"status\":400,\"error\":\"invalid_request\"}\n");
+    }
+
+    @Test
+    @DisplayName("Lines are written in completion order and the response ends with the last entry")
+    public void writesInCompletionOrder() throws Exception {
+        var endedEarly = new CompletableFuture<Boolean>();
+        var body = serve(response -> {
+            var batch = new TokenBatch(response, 3);
+            batch.failed(2, "c", 401, "invalid_client");
+            batch.failed(0, "a", 429, "temporarily_unavailable");
+            var early = response.ended() || batch.isDone();
+            batch.failed(1, "b", 503, "temporarily_unavailable");
+            endedEarly.complete(early || !response.ended() || !batch.isDone());
+        });
+
+        assertThat(endedEarly.get(10, TimeUnit.SECONDS)).isFalse();
+        assertThat(body.lines().map(line -> new JsonObject(line).getInteger("index")))
+                .containsExactly(2, 0, 1);
+    }
+
+    // Private methods
+    private String serve(Handler<HttpServerResponse> handler) throws Exception {
+        var listening = new CompletableFuture<Integer>();
+        vertx.createHttpServer()
+                .requestHandler(request -> handler.handle(request.response()))
+                .listen(0, result -> listening.complete(result.result().actualPort()));
+        var port = listening.get(10, TimeUnit.SECONDS);
+
+        var body = new CompletableFuture<String>();
+        vertx.createHttpClient().getNow(port, "localhost", "/", response -> {
+            assertThat(response.getHeader("Content-Type")).isEqualTo(TokenBatch.MIME_TYPE_NDJSON);
+            response.bodyHandler(buffer -> body.complete(buffer.toString()));
+        });
+        return body.get(10, TimeUnit.SECONDS);
+    }
+}
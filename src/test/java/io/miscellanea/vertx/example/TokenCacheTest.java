@@ -0,0 +1,63 @@
+package io.miscellanea.vertx.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TokenCacheTest {
+    private static final long NOW = 1_600_000_000L;
+
+    // Test methods
+    @Test
+    @DisplayName("Cached tokens are served while their remaining lifetime exceeds the threshold")
+    public void servesTokensUntilThreshold() {
+        var cache = new TokenCache(100, 300, 0);
+        var token = tokenExpiringAt(NOW + 3600);
+        cache.put("client", token);
+
+        assertThat(cache.get("client", NOW)).isSameAs(token);
+        assertThat(cache.get("client", NOW + 3300)).isNull();
+        assertThat(cache.get("client", NOW)).isNull();
+        assertThat(cache.stats().getLong("hits")).isEqualTo(1);
+        assertThat(cache.stats().getLong("misses")).isEqualTo(2);
+        assertThat(cache.stats().getLong("expirations")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("The least recently used token is evicted when the cache is full")
+    public void evictsLeastRecentlyUsed() {
+        // Keys are spread over segments, so overfill the cache and check that
+        // its size stays bounded.
+        var cache = new TokenCache(16, 0, 0);
+        for (int idx = 0; idx < 64; idx++) {
+            cache.put("client-" + idx, tokenExpiringAt(NOW + 3600));
+        }
+
+        assertThat(cache.stats().getInteger("size")).isLessThanOrEqualTo(16);
+        assertThat(cache.stats().getLong("evictions")).isEqualTo(64 - cache.stats().getInteger("size"));
+    }
+
+    @Test
+    @DisplayName("Only one refresh per key is started once a token nears the threshold")
+    public void startsOneRefreshPerKey() {
+        var cache = new TokenCache(100, 300, 900);
+        var token = tokenExpiringAt(NOW + 3600);
+        cache.put("client", token);
+
+        assertThat(cache.startRefresh("client", token, NOW)).isFalse();
+        assertThat(cache.startRefresh("client", token, NOW + 2800)).isTrue();
+        assertThat(cache.startRefresh("client", token, NOW + 2800)).isFalse();
+
+        cache.put("client", tokenExpiringAt(NOW + 6400));
+        assertThat(cache.startRefresh("client", token, NOW + 2800)).isTrue();
+    }
+
+    // Helper methods
+    private static IssuedToken tokenExpiringAt(long expiresAt) {
+        return new IssuedToken(
+                "header.claims.signature".getBytes(StandardCharsets.US_ASCII), "jti", expiresAt);
+    }
+}